@@ -0,0 +1,61 @@
+package edu.rowan.algorithms;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Tour cost kernel written with the JDK Vector API (incubator module
+ * jdk.incubator.vector). The coordinates of a run of consecutive cities are
+ * gathered into vectors, the edge lengths are computed lane by lane and
+ * summed at the end; the closing edge and the last few edges are added one
+ * at a time.
+ *
+ * This file needs '--add-modules jdk.incubator.vector' to compile and run,
+ * so it is kept out of the main source folder and only compiled when asked
+ * for (see README.md); TourEvaluator loads it by name and falls back to its
+ * scalar kernel when it is missing.
+ */
+final class VectorTourEvaluator implements TourEvaluator.Kernel {
+
+    private static final VectorSpecies<Double> SPECIES =
+            DoubleVector.SPECIES_PREFERRED;
+
+    public double cost(double[] x, double[] y, int[] tour, boolean integer) {
+        int n = tour.length;
+        if (n < 2) {
+            return 0;
+        }
+        int lanes = SPECIES.length();
+        // Edges (tour[i], tour[i + 1]) for i < n - 1, a vector at a time.
+        int bound = (n - 1) - (n - 1) % lanes;
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += lanes) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, x, 0, tour, i)
+                    .sub(DoubleVector.fromArray(SPECIES, x, 0, tour, i + 1));
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, y, 0, tour, i)
+                    .sub(DoubleVector.fromArray(SPECIES, y, 0, tour, i + 1));
+            DoubleVector d = dx.mul(dx).add(dy.mul(dy)).sqrt();
+            if (integer) {
+                // nint(d) = (long) (d + 0.5) for d >= 0.
+                d = (DoubleVector) ((LongVector) d.add(0.5)
+                        .convert(VectorOperators.D2L, 0))
+                        .convert(VectorOperators.L2D, 0);
+            }
+            sum = sum.add(d);
+        }
+        double total = sum.reduceLanes(VectorOperators.ADD);
+
+        for (; i < n; i++) {
+            int from = tour[i];
+            int to = tour[i + 1 < n ? i + 1 : 0];
+            double dx = x[from] - x[to];
+            double dy = y[from] - y[to];
+            double d = Math.sqrt(dx * dx + dy * dy);
+            total += integer ? (int) (d + 0.5) : d;
+        }
+        return total;
+    }//end of cost()
+}//end of class
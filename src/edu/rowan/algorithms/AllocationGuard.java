@@ -0,0 +1,86 @@
+package edu.rowan.algorithms;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Test mode that checks that the steady-state loops of the solvers do not
+ * allocate. When it is enabled (SolverBenchmark --assert-no-alloc turns it
+ * on for the measured iterations, after the warm-up ones), a solver takes
+ * a mark() when its loop starts and calls check() when the loop is done;
+ * check() fails if the thread allocated anything in between.
+ *
+ * The first runs of a loop in a JVM may allocate while classes and call
+ * sites are linked, which is why the mode is only enabled after warm-up.
+ * Even then the JVM charges a few bytes to the thread, once, when a loop
+ * is compiled or enters its compiled code; SolverBenchmark re-runs such an
+ * iteration and only fails when the loop allocates again.
+ * The check is skipped while debug tracing is on, since the trace messages
+ * are built as strings.
+ */
+final class AllocationGuard {
+
+    private static volatile boolean enabled;
+
+    private AllocationGuard() {
+    }
+
+    /**
+     * The thread bean, created on first use so the mode costs nothing when
+     * it is off.
+     */
+    private static class Threads {
+        static final com.sun.management.ThreadMXBean BEAN = init();
+
+        private static com.sun.management.ThreadMXBean init() {
+            com.sun.management.ThreadMXBean bean =
+                    (com.sun.management.ThreadMXBean)
+                    ManagementFactory.getThreadMXBean();
+            if (bean.isThreadAllocatedMemorySupported()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return bean;
+        }
+    }
+
+    /**
+     * This function turns the checks on or off.
+     * @param on True to check the loops.
+     */
+    static void setEnabled(boolean on) {
+        enabled = on;
+    }//end of setEnabled()
+
+    static boolean isEnabled() {
+        return enabled;
+    }//end of isEnabled()
+
+    /**
+     * This function records the bytes allocated so far by the current
+     * thread.
+     * @return The mark to pass to check(), or -1 if nothing is checked.
+     */
+    static long mark() {
+        if (!enabled || Trace.isDebug()
+                || !Threads.BEAN.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return Threads.BEAN.getCurrentThreadAllocatedBytes();
+    }//end of mark()
+
+    /**
+     * This function fails if the current thread allocated since the mark.
+     * @param mark The value returned by mark().
+     * @param loop Names the loop in the error.
+     * @throws IllegalStateException If the loop allocated.
+     */
+    static void check(long mark, String loop) {
+        if (mark < 0) {
+            return;
+        }
+        long bytes = Threads.BEAN.getCurrentThreadAllocatedBytes() - mark;
+        if (bytes > 0) {
+            throw new IllegalStateException(loop + " allocated " + bytes
+                    + " bytes in its steady-state loop");
+        }
+    }//end of check()
+}//end of class
@@ -0,0 +1,293 @@
+package edu.rowan.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * This class computes the assignment problem lower bound of the paths of a
+ * depth-first branch-and-bound search. For a path 0, p1, ..., pk, every
+ * city still to be left (pk and the unvisited cities) is assigned the city
+ * it goes to next (0 or an unvisited city) at the least total cost, the
+ * edge from pk back to 0 being forbidden while cities are unvisited. Every
+ * tour that starts with the path is such an assignment, so the cost of the
+ * path plus the cost of the assignment is a lower bound; it holds for
+ * asymmetric distances and is much tighter than the two shortest edges
+ * bound on them.
+ *
+ * The assignment is solved with the Hungarian method (shortest augmenting
+ * paths with row and column potentials) on primitive arrays. The solution
+ * of each depth of the path is kept: a child only removes one row and one
+ * column and forbids one edge, which leaves at most two rows unassigned,
+ * so its assignment is re-solved with at most two augmentations of O(n^2)
+ * instead of from scratch in O(n^3).
+ */
+final class AssignmentBound {
+
+    private final int dimension;
+    private final double[][] distances;
+
+    /** The path whose assignments are kept, and how long it is. */
+    private final int[] path;
+    private int length;
+    private final boolean[] onPath;
+
+    /**
+     * The solution of every depth: potentials, the column assigned to each
+     * row and the row assigned to each column (-1 if none), and the cost of
+     * the path and of the assignment.
+     */
+    private final double[][] rowPotential;
+    private final double[][] columnPotential;
+    private final int[][] columnOf;
+    private final int[][] rowOf;
+    private final double[] pathCost;
+    private final double[] assignmentCost;
+
+    /** Scratch arrays of the augmentations. */
+    private final double[] shortest;
+    private final int[] previousRow;
+    private final boolean[] scanned;
+    private final int[] scannedColumns;
+
+    /**
+     * Constructor
+     * @param tour The Tour object being solved; its distances are copied.
+     */
+    AssignmentBound(Tour tour) {
+        int n = tour.getDimension();
+        this.dimension = n;
+        distances = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                distances[i][j] = (i == j) ? 0 : tour.distance(i, j);
+            }
+        }
+        path = new int[n];
+        onPath = new boolean[n];
+        rowPotential = new double[n][n];
+        columnPotential = new double[n][n];
+        columnOf = new int[n][n];
+        rowOf = new int[n][n];
+        pathCost = new double[n];
+        assignmentCost = new double[n];
+        shortest = new double[n];
+        previousRow = new int[n];
+        scanned = new boolean[n];
+        scannedColumns = new int[n];
+    }//end of constructor
+
+    /**
+     * This function returns the lower bound of every tour that starts with
+     * a path. The solutions of the longest common prefix with the previous
+     * path are reused.
+     * @param cities The path, numbered from '0'; it starts with city 0 and
+     *        leaves at least one city unvisited.
+     * @param size The number of cities of the path.
+     * @return The lower bound, or Double.MAX_VALUE if no tour starts with
+     *         the path.
+     */
+    double bound(int[] cities, int size) {
+        int common = 0;
+        while (common < length && common < size
+                && path[common] == cities[common]) {
+            common++;
+        }
+        for (int d = common; d < length; d++) {
+            onPath[path[d]] = false;
+        }
+        length = common;
+        if (length == 0) {
+            solveRoot();
+        }
+        while (length < size) {
+            extend(cities[length]);
+        }
+        double cost = assignmentCost[length - 1];
+        return (cost == Double.MAX_VALUE) ? cost : pathCost[length - 1] + cost;
+    }//end of bound()
+
+    /**
+     * This function solves the assignment of the path made of city 0 only,
+     * from scratch.
+     */
+    private void solveRoot() {
+        path[0] = 0;
+        onPath[0] = true;
+        length = 1;
+        Arrays.fill(rowPotential[0], 0);
+        Arrays.fill(columnPotential[0], 0);
+        Arrays.fill(columnOf[0], -1);
+        Arrays.fill(rowOf[0], -1);
+        pathCost[0] = 0;
+        for (int row = 0; row < dimension; row++) {
+            if (!augment(0, row)) {
+                assignmentCost[0] = Double.MAX_VALUE;
+                return;
+            }
+        }
+        assignmentCost[0] = cost(0);
+    }//end of solveRoot()
+
+    /**
+     * This function adds a city to the path and re-solves the assignment of
+     * the new depth from the one of the previous depth.
+     * @param city The city added.
+     */
+    private void extend(int city) {
+        int from = length - 1;
+        int to = length;
+        int last = path[from];
+        path[to] = city;
+        onPath[city] = true;
+        length++;
+        pathCost[to] = pathCost[from] + distances[last][city];
+        if (assignmentCost[from] == Double.MAX_VALUE) {
+            assignmentCost[to] = Double.MAX_VALUE;
+            return;
+        }
+        System.arraycopy(rowPotential[from], 0, rowPotential[to], 0, dimension);
+        System.arraycopy(columnPotential[from], 0, columnPotential[to], 0,
+                dimension);
+        System.arraycopy(columnOf[from], 0, columnOf[to], 0, dimension);
+        System.arraycopy(rowOf[from], 0, rowOf[to], 0, dimension);
+        int[] column = columnOf[to];
+        int[] row = rowOf[to];
+
+        // The edge last -> city is now fixed: row 'last' and column 'city'
+        // leave the problem, and the rows and columns they were assigned to
+        // become free.
+        int freeRow1 = -1;
+        int freeRow2 = -1;
+        int freedColumn = column[last];
+        int freedRow = row[city];
+        column[last] = -1;
+        row[city] = -1;
+        if (freedColumn != city) {
+            row[freedColumn] = -1;
+            column[freedRow] = -1;
+            freeRow1 = freedRow;
+        }
+        // The new last city may not go back to 0 while cities are left.
+        if (length < dimension && column[city] == 0) {
+            column[city] = -1;
+            row[0] = -1;
+            freeRow2 = city;
+        }
+
+        // The potentials stay feasible: rows and columns were only removed
+        // and an edge forbidden, so the solution is completed by augmenting
+        // from the free rows.
+        if ((freeRow1 >= 0 && !augment(to, freeRow1))
+                || (freeRow2 >= 0 && !augment(to, freeRow2))) {
+            assignmentCost[to] = Double.MAX_VALUE;
+            return;
+        }
+        assignmentCost[to] = cost(to);
+    }//end of extend()
+
+    /**
+     * This function tells if the edge from a row to a column is part of the
+     * assignment problem of the current depth.
+     */
+    private boolean allowed(int row, int column) {
+        if (row == column || (onPath[column] && column != 0)) {
+            return false;
+        }
+        // 0 is only reached from the last city when the path is complete.
+        return column != 0 || row != path[length - 1] || length == dimension;
+    }//end of allowed()
+
+    /**
+     * This function assigns a free row with a shortest augmenting path
+     * (Dijkstra's algorithm on the reduced costs) and updates the
+     * potentials so the reduced costs stay non-negative.
+     * @param depth The depth whose solution is completed.
+     * @param start The free row.
+     * @return False, if the row can not be assigned.
+     */
+    private boolean augment(int depth, int start) {
+        double[] u = rowPotential[depth];
+        double[] v = columnPotential[depth];
+        int[] column = columnOf[depth];
+        int[] row = rowOf[depth];
+
+        for (int j = 0; j < dimension; j++) {
+            scanned[j] = false;
+            if (allowed(start, j)) {
+                shortest[j] = distances[start][j] - u[start] - v[j];
+                previousRow[j] = start;
+            } else {
+                shortest[j] = Double.MAX_VALUE;
+            }
+        }
+
+        int count = 0;
+        int sink;
+        double delta;
+        while (true) {
+            int next = -1;
+            delta = Double.MAX_VALUE;
+            for (int j = 0; j < dimension; j++) {
+                if (!scanned[j] && shortest[j] < delta) {
+                    delta = shortest[j];
+                    next = j;
+                }
+            }
+            if (next < 0) {
+                return false;
+            }
+            if (row[next] < 0) {
+                sink = next;
+                break;
+            }
+            scanned[next] = true;
+            scannedColumns[count++] = next;
+            // Row i is reached through its assigned edge, whose reduced
+            // cost is 0.
+            int i = row[next];
+            for (int j = 0; j < dimension; j++) {
+                if (!scanned[j] && allowed(i, j)) {
+                    double d = delta + distances[i][j] - u[i] - v[j];
+                    if (d < shortest[j]) {
+                        shortest[j] = d;
+                        previousRow[j] = i;
+                    }
+                }
+            }
+        }
+
+        u[start] += delta;
+        for (int k = 0; k < count; k++) {
+            int j = scannedColumns[k];
+            double change = delta - shortest[j];
+            u[row[j]] += change;
+            v[j] -= change;
+        }
+
+        int j = sink;
+        while (true) {
+            int i = previousRow[j];
+            int former = column[i];
+            column[i] = j;
+            row[j] = i;
+            if (i == start) {
+                break;
+            }
+            j = former;
+        }
+        return true;
+    }//end of augment()
+
+    /**
+     * This function adds up the distances of the assignment of a depth.
+     */
+    private double cost(int depth) {
+        int[] column = columnOf[depth];
+        double total = 0;
+        for (int i = 0; i < dimension; i++) {
+            if (column[i] >= 0) {
+                total += distances[i][column[i]];
+            }
+        }
+        return total;
+    }//end of cost()
+}//end of class
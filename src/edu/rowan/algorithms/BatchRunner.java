@@ -0,0 +1,202 @@
+package edu.rowan.algorithms;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class solves many .tsp files in a single JVM. The instances are
+ * taken from a directory (every .tsp file in it) or from a manifest (a text
+ * file listing one .tsp path per line). They run on a bounded thread pool;
+ * on top of the thread limit, every instance must reserve the memory its
+ * distance matrices need before it is parsed, so large instances do not
+ * exhaust the heap when they happen to run together. Each result is
+ * appended to the report file as soon as the instance completes.
+ */
+public class BatchRunner {
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    /** Fraction of the maximum heap that the matrices may use at once. */
+    private static final double HEAP_FRACTION = 0.75;
+
+    private final SolverType solver;
+    private final int threads;
+    private final Semaphore memory;
+    private final int memoryPermits;
+
+    private PrintWriter report;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * Constructor
+     * @param solver The solver to run on every instance.
+     * @param threads Maximum number of instances solved at the same time,
+     *        or 0 to use one thread per available processor.
+     */
+    public BatchRunner(SolverType solver, int threads) {
+        this.solver = solver;
+        this.threads = (threads > 0) ? threads
+                : Runtime.getRuntime().availableProcessors();
+        this.memoryPermits = (int) Math.max(1,
+                Runtime.getRuntime().maxMemory() * HEAP_FRACTION / MEGABYTE);
+        this.memory = new Semaphore(memoryPermits, true);
+    }//end of constructor
+
+    /**
+     * This function lists the .tsp files of a directory, or the files named
+     * in a manifest. Manifest paths are relative to the manifest location;
+     * empty lines and lines starting with '#' are ignored.
+     * @param source A directory or a manifest file.
+     * @return The list of .tsp files.
+     */
+    public static List<File> listInstances(String source) throws IOException {
+        File file = new File(source);
+        List<File> instances = new ArrayList<File>();
+
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            Arrays.sort(files);
+            for (File f : files) {
+                if (f.isFile() && f.getName().endsWith(".tsp")) {
+                    instances.add(f);
+                }
+            }
+        } else {
+            BufferedReader br = new BufferedReader(new FileReader(file));
+            try {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    File entry = new File(line);
+                    if (!entry.isAbsolute()) {
+                        entry = new File(file.getAbsoluteFile().getParentFile(),
+                                line);
+                    }
+                    instances.add(entry);
+                }
+            } finally {
+                br.close();
+            }
+        }
+        return instances;
+    }//end of listInstances()
+
+    /**
+     * This function estimates, in megabytes, the memory needed to solve an
+     * instance: the adjacency matrix, the lower bound matrix and the parsed
+     * cities.
+     * @param dimension The number of nodes/cities.
+     * @return The estimated memory, in megabytes (at least 1).
+     */
+    static int estimateMegabytes(int dimension) {
+        long n = Math.max(dimension, 1);
+        long bytes = n * n * 8 + n * 4 * 8 + n * 200;
+        return (int) Math.max(1, (bytes + MEGABYTE - 1) / MEGABYTE);
+    }//end of estimateMegabytes()
+
+    /**
+     * This function solves every instance and writes the report.
+     * @param instances The .tsp files to solve.
+     * @param reportFile The report (.csv) to write.
+     * @return The number of instances that could not be solved.
+     */
+    public int run(List<File> instances, String reportFile)
+            throws IOException, InterruptedException {
+        report = new PrintWriter(new FileWriter(reportFile));
+        report.println("file,name,dimension,solver,status,cost,wall_ms,tour");
+        report.flush();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (final File instance : instances) {
+                final int total = instances.size();
+                pool.execute(new Runnable() {
+                    public void run() {
+                        solve(instance, total);
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } finally {
+            pool.shutdownNow();
+            report.close();
+        }
+        return failed.get();
+    }//end of run()
+
+    /**
+     * This function solves one instance once enough memory is available, and
+     * appends the result to the report.
+     */
+    private void solve(File instance, int total) {
+        String path = instance.getPath();
+        int dimension = -1;
+        int permits = 0;
+        long start = System.nanoTime();
+        try {
+            dimension = Tour.peekDimension(path);
+            permits = Math.min(memoryPermits, estimateMegabytes(dimension));
+            memory.acquire(permits);
+            try {
+                start = System.nanoTime();
+                Tour tour = Tour.load(path);
+                SolveResult result = solver.solve(tour);
+                double wallMs = (System.nanoTime() - start) / 1e6;
+                write(path, tour.getName(), dimension, "ok",
+                        result.getCost(), wallMs, result.getTour());
+            } finally {
+                memory.release(permits);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.incrementAndGet();
+            write(path, "", dimension, "interrupted", Double.NaN, 0, null);
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            double wallMs = (System.nanoTime() - start) / 1e6;
+            write(path, "", dimension, "error: " + e, Double.NaN, wallMs, null);
+        } catch (OutOfMemoryError e) {
+            failed.incrementAndGet();
+            write(path, "", dimension, "out of memory", Double.NaN, 0, null);
+        }
+        Trace.summary("[" + completed.incrementAndGet() + "/" + total + "] "
+                + path);
+    }//end of solve()
+
+    private synchronized void write(String path, String name, int dimension,
+            String status, double cost, double wallMs, List<Integer> tour) {
+        StringBuilder cities = new StringBuilder();
+        if (tour != null) {
+            for (int i = 0; i < tour.size(); i++) {
+                if (i > 0) {
+                    cities.append(' ');
+                }
+                cities.append(tour.get(i));
+            }
+        }
+        report.println(String.format(Locale.ROOT,
+                "%s,%s,%d,%s,%s,%.4f,%.3f,%s", path.replace(',', ';'),
+                name.replace(',', ';'), dimension,
+                solver.name().toLowerCase(Locale.ROOT),
+                status.replace(',', ';'), cost, wallMs, cities));
+        report.flush();
+    }//end of write()
+}//end of class
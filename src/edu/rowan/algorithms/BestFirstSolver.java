@@ -0,0 +1,265 @@
+package edu.rowan.algorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * This class takes a Tour object and computes the shortest tour with a
+ * best-first branch-and-bound search: the open node with the smallest
+ * lower bound is always expanded next, so the search stops as soon as that
+ * bound reaches the cost of the best tour found. The open nodes are kept in
+ * an OffHeapFrontier, outside of the Java heap and spilled to disk when
+ * they do not fit in memory.
+ *
+ * The lower bound of a path from city 0 to city 'last' is its cost plus
+ * half the sum of the two shortest edges of every unvisited city and of
+ * the shortest edge of 'last' and of city 0; it is updated in constant
+ * time per child. The search starts with the nearest neighbor tour from
+ * city 0 as its best tour. Up to 64 cities are supported.
+ */
+public class BestFirstSolver {
+
+    /** Default off-heap memory of the frontier, in bytes. */
+    public static final long DEFAULT_MEMORY = 64L << 20;
+
+    /** Largest number of cities of a path bitmask. */
+    static final int MAX_DIMENSION = 64;
+
+    final Tour tour;
+    final SolverMetrics metrics;
+    final int dimension;
+    final double[][] distances;
+
+    /** The two shortest edges of every city. */
+    final double[] shortest;
+    final double[] secondShortest;
+
+    int[] bestTour;
+    double bestTourDist;
+
+    private final long memoryBytes;
+    private final File spillDirectory;
+    private long peakFrontier;
+    private long spilledRecords;
+
+    /**
+     * Constructor
+     * @param tour The Tour object to be solved.
+     */
+    public BestFirstSolver(Tour tour) {
+        this(tour, new SolverMetrics("BestFirst"), DEFAULT_MEMORY,
+                new File(System.getProperty("java.io.tmpdir")));
+    }//end of constructor
+
+    /**
+     * Constructor
+     * @param tour The Tour object to be solved.
+     * @param metrics Counters updated while the search runs.
+     * @param memoryBytes Off-heap memory of the frontier before it spills.
+     * @param spillDirectory Where the frontier spills.
+     * @throws IllegalArgumentException If the tour has more than 64 cities
+     *         or is asymmetric.
+     */
+    public BestFirstSolver(Tour tour, SolverMetrics metrics, long memoryBytes,
+            File spillDirectory) {
+        this.tour = tour;
+        this.metrics = metrics;
+        this.dimension = tour.getDimension();
+        if (dimension > MAX_DIMENSION) {
+            throw new IllegalArgumentException("Best-first search supports up"
+                    + " to " + MAX_DIMENSION + " cities, the tour has "
+                    + dimension + ".");
+        }
+        if (tour.isAsymmetric()) {
+            // The two shortest edges bound needs symmetric distances.
+            throw new IllegalArgumentException("Best-first search does not"
+                    + " support asymmetric tours.");
+        }
+        this.memoryBytes = memoryBytes;
+        this.spillDirectory = spillDirectory;
+
+        distances = new double[dimension][dimension];
+        shortest = new double[dimension];
+        secondShortest = new double[dimension];
+        for (int i = 0; i < dimension; i++) {
+            shortest[i] = Double.MAX_VALUE;
+            secondShortest[i] = Double.MAX_VALUE;
+            for (int j = 0; j < dimension; j++) {
+                if (i == j) {
+                    continue;
+                }
+                double d = tour.distance(i, j);
+                distances[i][j] = d;
+                if (d < shortest[i]) {
+                    secondShortest[i] = shortest[i];
+                    shortest[i] = d;
+                } else if (d < secondShortest[i]) {
+                    secondShortest[i] = d;
+                }
+            }
+        }
+    }//end of constructor
+
+    /**
+     * This function runs the search. Interrupting the thread stops it; the
+     * best tour found so far is kept.
+     */
+    public void solve() throws IOException {
+        metrics.start(tour);
+        try {
+            startFromNearestNeighbor();
+            if (dimension > 3) {
+                search();
+            }
+        } finally {
+            metrics.finish();
+        }
+        Trace.summary("\n" + "Best Tour: " + getShortestTour()
+                + " Tour Cost: " + bestTourDist + ", peak frontier: "
+                + peakFrontier + " nodes, spilled: " + spilledRecords);
+    }//end of solve()
+
+    private void search() throws IOException {
+        OffHeapFrontier frontier = new OffHeapFrontier(memoryBytes,
+                spillDirectory);
+        try {
+            double rest = 0;
+            for (int i = 1; i < dimension; i++) {
+                rest += shortest[i] + secondShortest[i];
+            }
+            frontier.push(1L, 0, 0.5 * (rest + 2 * shortest[0]), rest, -1, 0,
+                    1);
+
+            OffHeapFrontier.Node node = new OffHeapFrontier.Node();
+            long polls = 0;
+            while (frontier.pop(node)) {
+                if (node.bound >= bestTourDist) {
+                    // Every other open node has a bound at least as large.
+                    metrics.nodePruned();
+                    break;
+                }
+                if ((++polls & 1023) == 0
+                        && Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                metrics.nodeExpanded();
+                int index = frontier.log(node.parent, node.last);
+                expand(frontier, node, index);
+            }
+            peakFrontier = frontier.getPeakSize();
+            spilledRecords = frontier.getSpilledRecords();
+        } finally {
+            frontier.close();
+        }
+    }//end of search()
+
+    /**
+     * This function creates the children of a node: complete tours are
+     * compared with the best tour, the others are pushed unless their
+     * bound rules them out.
+     */
+    private void expand(OffHeapFrontier frontier, OffHeapFrontier.Node node,
+            int index) throws IOException {
+        int depth = node.depth + 1;
+        for (int city = 1; city < dimension; city++) {
+            if ((node.visited & (1L << city)) != 0) {
+                continue;
+            }
+            double cost = node.cost + distances[node.last][city];
+            if (depth == dimension) {
+                double total = cost + distances[city][0];
+                if (total < bestTourDist) {
+                    bestTourDist = total;
+                    bestTour = rebuildPath(frontier, index, city);
+                    metrics.incumbentImproved(total);
+                }
+                continue;
+            }
+            double rest = node.rest - shortest[city] - secondShortest[city];
+            double bound = cost + 0.5 * (rest + shortest[city] + shortest[0]);
+            metrics.boundEvaluated();
+            if (bound >= bestTourDist) {
+                metrics.nodePruned();
+                continue;
+            }
+            frontier.push(node.visited | (1L << city), cost, bound, rest,
+                    index, city, depth);
+        }
+    }//end of expand()
+
+    private int[] rebuildPath(OffHeapFrontier frontier, int index, int last) {
+        int[] path = new int[dimension];
+        int i = dimension - 1;
+        path[i--] = last;
+        for (int at = index; at >= 0; at = frontier.parentOf(at)) {
+            path[i--] = frontier.cityOf(at);
+        }
+        return path;
+    }//end of rebuildPath()
+
+    /**
+     * This function takes the nearest neighbor tour from city 0 as the
+     * first best tour.
+     */
+    private void startFromNearestNeighbor() {
+        boolean[] visited = new boolean[dimension];
+        bestTour = new int[dimension];
+        visited[0] = true;
+        bestTourDist = 0;
+        for (int i = 1; i < dimension; i++) {
+            int from = bestTour[i - 1];
+            int next = -1;
+            for (int city = 0; city < dimension; city++) {
+                if (!visited[city] && (next < 0
+                        || distances[from][city] < distances[from][next])) {
+                    next = city;
+                }
+            }
+            visited[next] = true;
+            bestTour[i] = next;
+            bestTourDist += distances[from][next];
+        }
+        bestTourDist += distances[bestTour[dimension - 1]][0];
+        metrics.incumbentImproved(bestTourDist);
+    }//end of startFromNearestNeighbor()
+
+    /**
+     * This function returns the counters collected during the search.
+     * @return The solver metrics.
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }//end of getMetrics()
+
+    /**
+     * This function returns the best tour found. The locations/nodes are
+     * numbered from '1' as in the .tsp file.
+     * @return An array representing the shortest tour found.
+     */
+    public ArrayList<Integer> getShortestTour() {
+        ArrayList<Integer> cities = new ArrayList<Integer>(dimension);
+        if (bestTour != null) {
+            for (int city : bestTour) {
+                cities.add(city + 1);
+            }
+        }
+        return cities;
+    }//end of getShortestTour()
+
+    /**
+     * This function returns the number of nodes the frontier spilled to
+     * disk during the last search.
+     */
+    long getSpilledRecords() {
+        return spilledRecords;
+    }//end of getSpilledRecords()
+
+    /**
+     * This function returns the cost of the best tour found.
+     * @return The cost of the shortest tour found.
+     */
+    public double getShortestDistance() {
+        return bestTourDist;
+    }//end of getShortestDistance()
+}//end of class
@@ -1,10 +1,17 @@
 package edu.rowan.algorithms;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * This class takes a Tour object and tries, by using a branch-and-bound
  * approach, to compute the shortest tour distance.
+ *
+ * Paths are bounded with the two shortest edges of every city, or with the
+ * assignment problem (see AssignmentBound), which is used for asymmetric
+ * tours, where the first bound does not hold, and when the tsp.bound
+ * system property is "assignment".
  * @author Nacer Abreu and Emmanuel Bonilla
  */
 public class BranchAndBoundSolver {
@@ -13,11 +20,65 @@ public class BranchAndBoundSolver {
     double[][] adjacencyMatrix;
     double[][] lowerboundMatrix;
     double[][] currentTourDistMatrix;
+    boolean[] visited;
 
+    /** The path being explored, numbered from '0'. */
+    int[] path;
+
+    /**
+     * Integer distance mode: int matrices, and the two bound values of
+     * every node with their 'changed' flags (CHANGE_A/CHANGE_B).
+     */
+    int[][] intMatrix;
+    int[][] intLowerBound;
+    int[] boundA;
+    int[] boundB;
+    boolean[] changedA;
+    boolean[] changedB;
+
+    /** The assignment problem bound, or null for the nearest edges one. */
+    AssignmentBound assignmentBound;
+
+    /**
+     * The best tour, numbered from '0', is kept in 'incumbent' during the
+     * search; 'bestTour' is its copy numbered from '1', made at the end.
+     */
+    IncumbentHolder incumbent;
     ArrayList<Integer> bestTour;
 
     double bestTourDist;
 
+    final SolverMetrics metrics;
+
+    CheckpointWriter checkpoints;
+    String instanceKey; // recorded in the checkpoints
+    int[] resumePath;
+    int nodesSinceCheckpoint;
+    boolean interruptSaved;
+
+    /**
+     * Distributed search: best cost known by other workers, the length of
+     * the prefix being solved, and the last child to explore at each depth
+     * (lowered when a part of the subtree is donated).
+     */
+    Listener listener;
+    volatile double sharedBound = Double.MAX_VALUE;
+    volatile boolean splitRequested;
+    int prefixLength = 1;
+    int[] levelEnd;
+
+    /**
+     * Number of nodes expanded between two checkpoints handed to the
+     * checkpoint writer.
+     */
+    static final int CHECKPOINT_NODES = 4096;
+
+    /**
+     * System property choosing the bound: "nearest" (the default) or
+     * "assignment".
+     */
+    static final String BOUND_PROPERTY = "tsp.bound";
+
     static final int NODE_A = 1;
     static final int NODE_B = 2;
     
@@ -26,75 +87,302 @@ public class BranchAndBoundSolver {
     
     static final int CLOSEST_DIST_A = 1;
     static final int CLOSEST_DIST_B = 3;
+
+    /**
+     * Receives the events of a search that runs as part of a distributed
+     * solve. The calls are made on the search thread.
+     */
+    interface Listener {
+
+        /**
+         * A tour shorter than the shared bound was found.
+         * @param cost The tour cost.
+         * @param tour The tour, numbered from '0'.
+         */
+        void incumbentImproved(double cost, int[] tour);
+
+        /**
+         * Answer to a split request: prefixes handed back to the
+         * coordinator, which this search will not explore.
+         * @param prefixes The donated prefixes (possibly none).
+         */
+        void donate(List<int[]> prefixes);
+    }
     
     /**
      * Constructor
      * @param tour 
      */
     public BranchAndBoundSolver(Tour tour) {
-        this.tour = tour;
-        this.adjacencyMatrix = tour.getAdjacencyMatrix();
-        this.lowerboundMatrix = tour.getLowerBoundMatrix();
+        this(tour, new SolverMetrics("BranchAndBound"));
+    }//end of constructor
 
-        currentTourDistMatrix = new double[tour.getDimension()][5];
-        bestTour = new ArrayList<Integer>();
+    /**
+     * Constructor
+     * @param tour 
+     * @param metrics Counters updated while the search runs. 
+     */
+    public BranchAndBoundSolver(Tour tour, SolverMetrics metrics) {
+        this(tour, metrics, null, null);
+    }//end of constructor
 
-        //TODO: find a better way to initialize this variable.
-        bestTourDist = 1000000000.00;
+    /**
+     * Constructor
+     * @param tour 
+     * @param metrics Counters updated while the search runs. 
+     * @param checkpoints If not null, receives the state of the search 
+     *        periodically so it can be saved off. 
+     * @param resume If not null, a checkpoint to continue the search from. 
+     */
+    public BranchAndBoundSolver(Tour tour, SolverMetrics metrics,
+            CheckpointWriter checkpoints, Checkpoint resume) {
+        this(tour, metrics, (Listener) null);
+        this.checkpoints = checkpoints;
+        if (checkpoints != null) {
+            this.instanceKey = Checkpoint.instanceKey(tour);
+        }
 
-        bestTour.add(0);
+        path[0] = 0;
+        visited[0] = true;
 
-        calculateSolution(bestTour, tour.getDimension());
+        boolean done = false;
+        if (resume != null) {
+            resume.checkCompatible(Checkpoint.BRANCH_AND_BOUND, tour);
+            bestTourDist = resume.getBestCost();
+            int[] resumeTour = resume.getBestTour();
+            incumbent.replace(resumeTour, resumeTour.length, bestTourDist);
+            resumePath = resume.getCursor();
+            done = resume.isComplete();
+        }
+
+        metrics.start(tour);
+        if (!done) {
+            // Saving checkpoints allocates; otherwise the search must not.
+            long mark = checkpoints == null ? AllocationGuard.mark() : -1;
+            calculateSolution(1, tour.getDimension());
+            AllocationGuard.check(mark, "BranchAndBoundSolver");
+        }
+        metrics.finish();
 
-        for (int i = 0; i < bestTour.size(); i++) {
-            bestTour.set(i, (bestTour.get(i) + 1));
+        if (checkpoints != null && !Thread.currentThread().isInterrupted()) {
+            // An empty cursor records that the search is complete.
+            publishCheckpoint(new int[0]);
         }
-        System.out.println("\n"+"Best Tour: " + bestTour + " Tour Cost: " + bestTourDist);
+
+        bestTour = incumbent.snapshotList(1);
+        IncumbentHolder.release(incumbent);
+        incumbent = null;
+        Trace.summary("\n"+"Best Tour: " + bestTour + " Tour Cost: " + bestTourDist);
+    }//end of constructor
+
+    /**
+     * Constructor. Only sets up the search; the subproblems are then solved
+     * one at a time with solvePrefix().
+     * @param tour 
+     * @param metrics Counters updated while the search runs. 
+     * @param listener Receives the improvements and donated prefixes. 
+     */
+    BranchAndBoundSolver(Tour tour, SolverMetrics metrics, Listener listener) {
+        this.tour = tour;
+        this.metrics = metrics;
+        this.listener = listener;
+        if (tour.isAsymmetric() || "assignment".equalsIgnoreCase(
+                System.getProperty(BOUND_PROPERTY, "nearest"))) {
+            this.assignmentBound = new AssignmentBound(tour);
+        }
+        if (tour.isIntegerDistances()) {
+            int n = tour.getDimension();
+            this.intMatrix = tour.getIntAdjacencyMatrix();
+            this.intLowerBound = tour.getIntLowerBoundMatrix();
+            boundA = new int[n];
+            boundB = new int[n];
+            changedA = new boolean[n];
+            changedB = new boolean[n];
+        } else {
+            this.adjacencyMatrix = tour.getAdjacencyMatrix();
+            this.lowerboundMatrix = tour.getLowerBoundMatrix();
+            currentTourDistMatrix = new double[tour.getDimension()][5];
+        }
+
+        visited = new boolean[tour.getDimension()];
+        path = new int[tour.getDimension()];
+        levelEnd = new int[tour.getDimension()];
+        incumbent = IncumbentHolder.acquire(tour.getDimension());
+
+        // No tour yet; the costs of a reduced tour (see InstanceReduction)
+        // can be far above any fixed sentinel.
+        bestTourDist = Double.MAX_VALUE;
     }//end of constructor
 
+    /**
+     * This function searches every tour that starts with the given path.
+     * The best tour found is kept across calls.
+     * @param prefix The first cities of the tour, numbered from '0'; it
+     *        always starts with city 0.
+     */
+    void solvePrefix(int[] prefix) {
+        Arrays.fill(visited, false);
+        for (int p = 0; p < prefix.length; p++) {
+            path[p] = prefix[p];
+            visited[prefix[p]] = true;
+        }
+        prefixLength = prefix.length;
+        splitRequested = false;
+        calculateSolution(prefix.length,
+                tour.getDimension() - prefix.length + 1);
+    }//end of solvePrefix()
+
+    /**
+     * This function lowers the bound used for pruning to a cost found by
+     * another search. It can be called from any thread.
+     * @param cost The cost of a known tour.
+     */
+    void offerBound(double cost) {
+        if (cost < sharedBound) {
+            sharedBound = cost;
+        }
+    }//end of offerBound()
+
+    /**
+     * This function asks the search to give away part of its remaining
+     * work; the answer goes to Listener.donate(). It can be called from any
+     * thread.
+     */
+    void requestSplit() {
+        splitRequested = true;
+    }//end of requestSplit()
+
+    /**
+     * This function returns the counters collected during the search.
+     * @return The solver metrics.
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }//end of getMetrics()
+
+    /**
+     * This function returns the best tour found. The locations/nodes are
+     * numbered from '1' as in the .tsp file.
+     * @return An array representing the shortest tour found.
+     */
+    public ArrayList<Integer> getShortestTour() {
+        if (bestTour == null) {
+            // Still searching (distributed); copy the tour found so far.
+            return incumbent.snapshotList(1);
+        }
+        return bestTour;
+    }//end of getShortestTour()
+
+    /**
+     * This function returns the cost of the best tour found.
+     * @return The cost of the shortest tour found.
+     */
+    public double getShortestDistance() {
+        return bestTourDist;
+    }//end of getShortestDistance()
+
     /**
      * This function takes a tour and starts calculating the
      * best tour and best distance.  It also calls the
      * branch-and-bound function to help prune out certain tours
-     * @param currentTour The current tour so far 
+     * @param size The number of cities of the current tour so far (in
+     *        'path')
      * @param paths The number of paths still left for this particular tour
      */
-    private void calculateSolution(ArrayList<Integer> currentTour, int paths) {
+    private void calculateSolution(int size, int paths) {
         double costOfCurrentTour = 0;
+        if (Thread.currentThread().isInterrupted()) {
+            // The search was cancelled; keep the best tour found so far.
+            if (checkpoints != null && !interruptSaved) {
+                interruptSaved = true;
+                publishCheckpoint(Arrays.copyOf(path, size));
+            }
+            return;
+        }
+        if (resumePath != null && size >= resumePath.length) {
+            // Reached the node the search was at; resume normal order.
+            resumePath = null;
+        }
+        if (splitRequested) {
+            splitRequested = false;
+            split(size);
+        }
+        metrics.nodeExpanded();
+        if (checkpoints != null && ++nodesSinceCheckpoint >= CHECKPOINT_NODES) {
+            nodesSinceCheckpoint = 0;
+            publishCheckpoint(Arrays.copyOf(path, size));
+        }
         paths--;
         if (paths == 0) {
             // All cities accounted for. Complete path!
-            for (int i = 0; i < (tour.getDimension() - 1); i++) {
+            if (intMatrix != null) {
+                long cost = intMatrix[path[tour.getDimension() - 1]][0];
+                for (int i = 0; i < (tour.getDimension() - 1); i++) {
+                    cost += intMatrix[path[i]][path[i + 1]];
+                }
+                costOfCurrentTour = cost;
+            } else {
+                for (int i = 0; i < (tour.getDimension() - 1); i++) {
 
-                costOfCurrentTour += adjacencyMatrix[currentTour.get(i)][currentTour.get(i + 1)];
+                    costOfCurrentTour += adjacencyMatrix[path[i]][path[i + 1]];
+                }
+                costOfCurrentTour += adjacencyMatrix[path[tour.getDimension() - 1]][0];
             }
-            costOfCurrentTour += adjacencyMatrix[0][currentTour.get(tour.getDimension() - 1)];
 
             // Update Best Tour and Distance
             if (bestTourDist > costOfCurrentTour) {
                 // We save off the best solution so far!
                 bestTourDist = costOfCurrentTour;
-                bestTour = (ArrayList<Integer>) currentTour.clone();               
+                incumbent.offer(path, size, costOfCurrentTour);
+                metrics.incumbentImproved(bestTourDist);
+                if (checkpoints != null) {
+                    publishCheckpoint(Arrays.copyOf(path, size));
+                }
+                if (listener != null && bestTourDist < sharedBound) {
+                    sharedBound = bestTourDist;
+                    listener.incumbentImproved(bestTourDist, incumbent.snapshot());
+                }
             }
 
         } else {
             // Not a complete path. Still some cities not visited!
             double compLowerBound = 0;
-            System.out.println("\n" + "Current tour " + currentTour);
-            compLowerBound = ComputeLowerBound(currentTour);
-            System.out.println("Tour Lower Bound: " + compLowerBound);
+            boolean inferior;
+            if (assignmentBound != null) {
+                metrics.boundEvaluated();
+                compLowerBound = assignmentBound.bound(path, size);
+                inferior = compLowerBound > Math.min(bestTourDist, sharedBound);
+            } else if (intMatrix != null) {
+                // Twice the bound is an exact integer: compare it with twice
+                // the best cost instead of dividing it.
+                long doubledBound = computeLowerBoundInteger(size);
+                compLowerBound = doubledBound / 2.0;
+                inferior = doubledBound > 2 * Math.min(bestTourDist, sharedBound);
+            } else {
+                compLowerBound = ComputeLowerBound(size);
+                inferior = compLowerBound > bestTourDist
+                        || compLowerBound > sharedBound;
+            }
+            if (Trace.isDebug()) {
+                Trace.debug("\n" + "Current tour "
+                        + Arrays.toString(Arrays.copyOf(path, size)));
+                Trace.debug("Tour Lower Bound: " + compLowerBound);
+            }
 
-            if (compLowerBound > bestTourDist) {
+            if (inferior) {
                 // Inferior solution, because the lower bound is greater than 
                 // the current best distance, when not all cities have been 
                 // visited yet.
-                System.out.println("Best Dist: " + bestTourDist);
+                metrics.nodePruned();
+                if (Trace.isDebug()) {
+                    Trace.debug("Best Dist: " + bestTourDist);
+                }
             } else {
                 // The computed lower bound is smaller than the current best 
                 // distance, however not all cities have been visited, so we
                 // we call this function recursevely via the createChildren()
                 // function.
-                createChildren(currentTour, paths);
+                createChildren(size, paths);
             }
         }//end of else..
     } //end calculateSolution
@@ -102,11 +390,12 @@ public class BranchAndBoundSolver {
     /**
      * This function creates a matrix of the current lower bounds
      * for a given tour
-     * @param tourList The current tour so far 
+     * @param size The number of cities of the current tour so far 
      */
-    private double ComputeLowerBound (ArrayList<Integer> tourList) {
+    private double ComputeLowerBound (int size) {
     	
     	double finalLowerBound = 0;
+    	metrics.boundEvaluated();
 
         // Setting up lowerbound Matrix
     	for (int i = 0; i < tour.getDimension(); i++){
@@ -115,13 +404,13 @@ public class BranchAndBoundSolver {
     		currentTourDistMatrix[i][NODE_B] = lowerboundMatrix[i][CLOSEST_DIST_B];
     		currentTourDistMatrix[i][CHANGE_A] = 0;
     		currentTourDistMatrix[i][CHANGE_B] = 0;
-    		finalLowerBound = getLowerBound();
     	}  // end for loop
+    	finalLowerBound = getLowerBound();
     	
-    	if (tourList.size() > 1) {
-    		for (int i = 0; i < (tourList.size()-1); i++) {
-    	    	int previousCity = tourList.get(tourList.size()-(i+2));
-    	    	int currentCity = tourList.get(tourList.size()-(i+1));
+    	if (size > 1) {
+    		for (int i = 0; i < (size-1); i++) {
+    	    	int previousCity = path[size-(i+2)];
+    	    	int currentCity = path[size-(i+1)];
 
     	    	double distanceBetweenCities = adjacencyMatrix[previousCity][currentCity];
 
@@ -156,34 +445,143 @@ public class BranchAndBoundSolver {
    	    	}
 
    	     	finalLowerBound = getLowerBound();
-    	}//end of ..if tourList.size > 1
+    	}//end of ..if size > 1
         
     	return finalLowerBound;
     } //end ComputeLowerBound()
+
+    /**
+     * This function computes the lower bound of a given tour in integer
+     * distance mode, following the same rules as ComputeLowerBound() with
+     * exact comparisons.
+     * @param size The number of cities of the current tour so far 
+     * @return Twice the lower bound (the sum of the two bound values of
+     *         every node).
+     */
+    private long computeLowerBoundInteger(int size) {
+        metrics.boundEvaluated();
+        int n = tour.getDimension();
+        for (int i = 0; i < n; i++) {
+            boundA[i] = intLowerBound[i][CLOSEST_DIST_A];
+            boundB[i] = intLowerBound[i][CLOSEST_DIST_B];
+            changedA[i] = false;
+            changedB[i] = false;
+        }
+
+        for (int i = size - 1; i > 0; i--) {
+            int previousCity = path[i - 1];
+            int currentCity = path[i];
+            int distanceBetweenCities = intMatrix[previousCity][currentCity];
+
+            if (!changedA[previousCity]
+                    && boundA[previousCity] == distanceBetweenCities) {
+                changedA[previousCity] = true;
+                changedA[currentCity] = true;
+            } else if (!changedB[previousCity]
+                    && boundB[previousCity] == distanceBetweenCities) {
+                changedB[previousCity] = true;
+                changedB[currentCity] = true;
+            } else if (!changedB[previousCity]
+                    && boundB[previousCity] < distanceBetweenCities) {
+                boundB[previousCity] = distanceBetweenCities;
+                changedB[previousCity] = true;
+                boundB[currentCity] = distanceBetweenCities;
+                changedB[currentCity] = true;
+            } else if (!changedA[previousCity]
+                    && boundA[previousCity] < distanceBetweenCities) {
+                boundA[previousCity] = distanceBetweenCities;
+                changedA[previousCity] = true;
+                boundA[currentCity] = distanceBetweenCities;
+                changedA[currentCity] = true;
+            }
+        }
+
+        long doubledBound = 0;
+        for (int i = 0; i < n; i++) {
+            doubledBound += (long) boundA[i] + boundB[i];
+        }
+        return doubledBound;
+    }//end of computeLowerBoundInteger()
     
     /**
      * This function creates the children of the parent and 
      * then calls calculateSolution to continue to next city.
-     * @param parentList The current tour so far 
+     * @param depth The number of cities of the current tour so far 
      * @param numChildren The number of paths still left for this particular tour
      */
-    private void createChildren(ArrayList<Integer> parentList, int numChildren) {        
-        int childrenMade = 0;
+    private void createChildren(int depth, int numChildren) {        
+        int start = 0;
+        if (resumePath != null && depth < resumePath.length) {
+            // Children before the resumed path were explored already.
+            start = resumePath[depth];
+        }
 
-        for (int i = 0; childrenMade < numChildren; i++) {
+        levelEnd[depth] = tour.getDimension();
+        for (int i = start; i < levelEnd[depth]; i++) {
 
-            if (parentList.contains(i)) {
+            if (visited[i]) {
                 // Do not add
             } else {
-                parentList.add(i);
-                calculateSolution(parentList, numChildren);
-                int arraysize = parentList.size() - 1;
-                parentList.remove(arraysize);
-                childrenMade++;
+                path[depth] = i;
+                visited[i] = true;
+                calculateSolution(depth + 1, numChildren);
+                visited[i] = false;
+                // The child on the resumed path is done (searched or
+                // pruned); its siblings start from their first child.
+                resumePath = null;
             }
         }//end of for..loop
     } //end createChildren
     
+    /**
+     * This function gives away half of the unexplored children of the
+     * shallowest level that still has some, since those are the largest
+     * subtrees left. The search will stop before the donated children.
+     * @param size The number of cities of the path being explored.
+     */
+    private void split(int size) {
+        List<int[]> donated = new ArrayList<int[]>();
+        boolean[] onPath = new boolean[tour.getDimension()];
+        for (int p = 0; p < size; p++) {
+            int chosen = path[p];
+            if (p >= prefixLength) {
+                List<Integer> remaining = new ArrayList<Integer>();
+                for (int j = chosen + 1; j < levelEnd[p]; j++) {
+                    if (!onPath[j]) {
+                        remaining.add(j);
+                    }
+                }
+                if (!remaining.isEmpty()) {
+                    int keep = remaining.size() / 2;
+                    for (int r = keep; r < remaining.size(); r++) {
+                        int[] prefix = new int[p + 1];
+                        for (int q = 0; q < p; q++) {
+                            prefix[q] = path[q];
+                        }
+                        prefix[p] = remaining.get(r);
+                        donated.add(prefix);
+                    }
+                    levelEnd[p] = remaining.get(keep);
+                    break;
+                }
+            }
+            onPath[chosen] = true;
+        }
+        listener.donate(donated);
+    }//end of split()
+
+    /**
+     * This function hands the current state of the search to the
+     * checkpoint writer. Only copies are handed over; the writer saves them
+     * off on its own thread.
+     * @param cursor The path being explored (empty if the search is done).
+     */
+    private void publishCheckpoint(int[] cursor) {
+        checkpoints.publish(new Checkpoint(Checkpoint.BRANCH_AND_BOUND,
+                tour.getDimension(), instanceKey, tour.isIntegerDistances(),
+                bestTourDist, incumbent.snapshot(), cursor));
+    }//end of publishCheckpoint()
+
     /**
      * This function calculates the lower bound for a given tour
      * @return lowerBound/2 The calculated lower bound
@@ -18,9 +18,44 @@ public class BruteForceSolver {
     private ArrayList<Integer> shortestTour;
     private double shortestDistance;
     private StringBuilder sb;
+    private final SolverMetrics metrics;
+
+    private CheckpointWriter checkpoints;
+    private String instanceKey; // recorded in the checkpoints
+    private Checkpoint resume;
+    private int permutationsSinceCheckpoint;
+
+    /**
+     * Number of permutations evaluated between two checkpoints handed to the
+     * checkpoint writer.
+     */
+    static final int CHECKPOINT_PERMUTATIONS = 4096;
     
     BruteForceSolver(Tour tour) {
+        this(tour, new SolverMetrics("BruteForce"));
+    }
+
+    BruteForceSolver(Tour tour, SolverMetrics metrics) {
+        this(tour, metrics, null, null);
+    }
+
+    /**
+     * Constructor
+     * @param tour The Tour object to be solved.
+     * @param metrics Counters updated while the search runs.
+     * @param checkpoints If not null, receives the state of the search
+     *        periodically so it can be saved off.
+     * @param resume If not null, a checkpoint to continue the search from.
+     */
+    BruteForceSolver(Tour tour, SolverMetrics metrics,
+            CheckpointWriter checkpoints, Checkpoint resume) {
         this.tour = tour;
+        this.metrics = metrics;
+        this.checkpoints = checkpoints;
+        if (checkpoints != null) {
+            this.instanceKey = Checkpoint.instanceKey(tour);
+        }
+        this.resume = resume;
         permutations = new ArrayList<List<Integer>>();
         this.cities = tour.getCities();
         permutations.add(cities);
@@ -32,19 +67,52 @@ public class BruteForceSolver {
 
     public void generatePermutations() {
         int lastItemIndex = cities.size() - 1;
-         System.out.println(cities.toString() + " Dist.:" + getTotalDistance(cities));
+        boolean done = false;
+        if (resume != null) {
+            // Continue from the permutation saved off in the checkpoint.
+            resume.checkCompatible(Checkpoint.BRUTE_FORCE, tour);
+            done = resume.isComplete();
+            if (!done) {
+                cities.clear();
+                for (int city : resume.getCursor()) {
+                    cities.add(city);
+                }
+            }
+        }
+        metrics.start(tour);
         
         /**
          * Initialize shortestDistance. This CAN NOT be initialize to zero.
          */
         shortestDistance = getTotalDistance(cities);
+        if (Trace.isDebug()) {
+            Trace.debug(cities.toString() + " Dist.:" + shortestDistance);
+        }
+        metrics.permutationEvaluated();
         shortestTour.clear();
+        shortestTour.addAll(cities);
+        if (resume != null && resume.getBestCost() <= shortestDistance) {
+            shortestDistance = resume.getBestCost();
+            shortestTour.clear();
+            for (int city : resume.getBestTour()) {
+                shortestTour.add(city);
+            }
+        }
 
         
-        for (int j = 0; j < cities.size(); j++) {
+        search:
+        for (int j = 0; j < cities.size() && !done; j++) {
 
             for (int trail = lastItemIndex; trail >= 0; trail--) {
 
+                if (Thread.currentThread().isInterrupted()) {
+                    // Cancelled; keep the best tour found so far.
+                    if (checkpoints != null) {
+                        publishCheckpoint(toArray(cities));
+                    }
+                    break search;
+                }
+
                 int head = (trail - 1);
                 //System.out.println(head + " " + trail);
                 if (head >= 0) {
@@ -67,7 +135,15 @@ public class BruteForceSolver {
                          * permutation of cities. 
                          */
                         double totalDistance = getTotalDistance(cities);
-                        System.out.println(cities.toString() + " Dist.:" + totalDistance);
+                        metrics.permutationEvaluated();
+                        if (checkpoints != null && ++permutationsSinceCheckpoint
+                                >= CHECKPOINT_PERMUTATIONS) {
+                            permutationsSinceCheckpoint = 0;
+                            publishCheckpoint(toArray(cities));
+                        }
+                        if (Trace.isDebug()) {
+                            Trace.debug(cities.toString() + " Dist.:" + totalDistance);
+                        }
                         
                         /**
                          * Save off the shortest distance.
@@ -76,16 +152,50 @@ public class BruteForceSolver {
                             shortestDistance = totalDistance;
                             shortestTour.clear();
                             shortestTour.addAll(cities);
-                            sb.append("Total Dist.: ").append(totalDistance).append("\n");
-                            System.out.println(sb.toString());
+                            metrics.incumbentImproved(shortestDistance);
+                            if (checkpoints != null) {
+                                publishCheckpoint(toArray(cities));
+                            }
+                            if (Trace.isDebug()) {
+                                sb.append("Total Dist.: ").append(totalDistance).append("\n");
+                                Trace.debug(sb.toString());
+                            }
                         }
                         
                     }
                 }
             }
         }
+        metrics.finish();
+        if (checkpoints != null && !Thread.currentThread().isInterrupted()) {
+            // An empty cursor records that the search is complete.
+            publishCheckpoint(new int[0]);
+        }
     }//end of generatePermutations()
 
+    /**
+     * This function hands the current state of the search to the
+     * checkpoint writer, which saves it off on its own thread.
+     * @param cursor The current permutation (empty if the search is done).
+     */
+    private void publishCheckpoint(int[] cursor) {
+        checkpoints.publish(new Checkpoint(Checkpoint.BRUTE_FORCE,
+                tour.getDimension(), instanceKey, tour.isIntegerDistances(),
+                shortestDistance, toArray(shortestTour), cursor));
+    }//end of publishCheckpoint()
+
+    private static int[] toArray(ArrayList<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }//end of toArray()
+
+    public SolverMetrics getMetrics(){
+        return metrics;
+    }
+
     public double getShortestDistance(){
         return shortestDistance;
     }
@@ -127,7 +237,10 @@ public class BruteForceSolver {
         double x1, y1, x2, y2;
         int m;  // For debugging purposes. It holds the city location.
         int n;  // For debugging purposes. It holds the city location.
-        sb = new StringBuilder();
+        boolean debug = Trace.isDebug();
+        if (debug) {
+            sb = new StringBuilder();
+        }
         
         for (int i = 0; i < cities.size(); i++) {
             x1 = tour.getXCoord(cities.get(i));
@@ -148,10 +261,14 @@ public class BruteForceSolver {
             double[] q = {x2, y2};
             
             
-            String s = String.format("%d (%.2f, %.2f); %d (%.2f, %.2f); %f \n",
-                    m, x1, y1, n, x2, y2, getDistance(p, q));
-            sb.append(s);
-            total += getDistance(p, q);
+            double distance = tour.hasCoordinates() ? getDistance(p, q)
+                    : tour.distance(m - 1, n - 1);
+            if (debug) {
+                String s = String.format("%d (%.2f, %.2f); %d (%.2f, %.2f); %f \n",
+                        m, x1, y1, n, x2, y2, distance);
+                sb.append(s);
+            }
+            total += distance;
              
         }// end for loop
 
@@ -165,6 +282,10 @@ public class BruteForceSolver {
         double x = Math.pow((p[0] - q[0]), 2);
         double y = Math.pow((p[1] - q[1]), 2);        
         a = Math.sqrt( x + y );
+        if (tour.isIntegerDistances()) {
+            // TSPLIB EUC_2D: nint(√(x - a)² + (y - b)²)
+            a = (int) (a + 0.5);
+        }
         return a;
     }// end of getDistance()
 
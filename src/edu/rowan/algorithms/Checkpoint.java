@@ -0,0 +1,241 @@
+package edu.rowan.algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class holds the state of an exact search at one point in time: the
+ * best tour found so far, its cost, and a cursor telling where the search
+ * has to continue. For the branch-and-bound solver the cursor is the path
+ * being explored (the nodes before it in depth-first order are done); for
+ * the brute force solver it is the current permutation. An empty cursor
+ * means the search is complete.
+ *
+ * A checkpoint also records the instance it was written for (a hash of its
+ * coordinates or distances, in city order, and of its metric) and whether
+ * the distances were rounded to integers, so that it is never resumed on
+ * another instance or in another distance mode, where its cost would not
+ * be a valid bound.
+ *
+ * Checkpoints are saved off in a small binary file:
+ *   int magic, int version, byte solver, int dimension, UTF instance,
+ *   boolean integerDistances, double bestCost, int n, n x int bestTour,
+ *   int m, m x int cursor
+ */
+public final class Checkpoint {
+
+    public static final byte BRANCH_AND_BOUND = 1;
+    public static final byte BRUTE_FORCE = 2;
+
+    private static final int MAGIC = 0x54535043; // "TSPC"
+    private static final int VERSION = 2;
+
+    private final byte solver;
+    private final int dimension;
+    private final String instance;
+    private final boolean integerDistances;
+    private final double bestCost;
+    private final int[] bestTour;
+    private final int[] cursor;
+
+    /**
+     * Constructor. The arrays are not copied.
+     * @param solver BRANCH_AND_BOUND or BRUTE_FORCE.
+     * @param dimension Number of nodes/cities of the tour.
+     * @param instance The key of the tour (see instanceKey()).
+     * @param integerDistances True, if the costs are integer distances.
+     * @param bestCost Cost of the best tour found so far.
+     * @param bestTour Best tour found so far.
+     * @param cursor Where the search continues (empty when complete).
+     */
+    public Checkpoint(byte solver, int dimension, String instance,
+            boolean integerDistances, double bestCost, int[] bestTour,
+            int[] cursor) {
+        this.solver = solver;
+        this.dimension = dimension;
+        this.instance = instance;
+        this.integerDistances = integerDistances;
+        this.bestCost = bestCost;
+        this.bestTour = bestTour;
+        this.cursor = cursor;
+    }//end of constructor
+
+    public byte getSolver() {
+        return solver;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public String getInstance() {
+        return instance;
+    }
+
+    public boolean isIntegerDistances() {
+        return integerDistances;
+    }
+
+    public double getBestCost() {
+        return bestCost;
+    }
+
+    public int[] getBestTour() {
+        return bestTour;
+    }
+
+    public int[] getCursor() {
+        return cursor;
+    }
+
+    public boolean isComplete() {
+        return cursor.length == 0;
+    }
+
+    /**
+     * This function returns the key a checkpoint records for a tour: the
+     * hash SolutionStore uses for it (coordinates or distances, and
+     * metric), followed by a hash of the order of its cities, since the
+     * cursor and the best tour are given by city number.
+     * @param tour The Tour object searched.
+     * @return The instance key.
+     */
+    public static String instanceKey(Tour tour) {
+        SolutionStore.Key key = SolutionStore.keyOf(tour);
+        return key + "/" + Integer.toHexString(Arrays.hashCode(key.canonical));
+    }//end of instanceKey()
+
+    /**
+     * This function creates a checkpoint that starts a branch-and-bound
+     * search from the beginning, with a known tour as the best tour so far;
+     * the search then prunes with its cost from the first node on.
+     * @param tour The Tour object to be searched.
+     * @param bestCost Cost of the known tour.
+     * @param bestTour The known tour, numbered from '1'.
+     * @return The checkpoint.
+     */
+    public static Checkpoint warmStart(Tour tour, double bestCost,
+            List<Integer> bestTour) {
+        // Rotate the tour to start at node 0, as the search does.
+        int n = bestTour.size();
+        int first = bestTour.indexOf(1);
+        int[] cities = new int[n];
+        for (int i = 0; i < n; i++) {
+            cities[i] = bestTour.get((first + i) % n) - 1;
+        }
+        return new Checkpoint(BRANCH_AND_BOUND, tour.getDimension(),
+                instanceKey(tour), tour.isIntegerDistances(), bestCost, cities,
+                new int[] { 0 });
+    }//end of warmStart()
+
+    /**
+     * This function checks that the checkpoint can be used to resume the
+     * specified solver on the specified tour.
+     * @throws IllegalArgumentException If it belongs to another search.
+     */
+    public void checkCompatible(byte expectedSolver, Tour tour) {
+        if (solver != expectedSolver) {
+            throw new IllegalArgumentException(
+                    "Checkpoint was written by another solver.");
+        }
+        if (dimension != tour.getDimension()) {
+            throw new IllegalArgumentException("Checkpoint has " + dimension
+                    + " nodes, the tour has " + tour.getDimension() + ".");
+        }
+        if (integerDistances != tour.isIntegerDistances()) {
+            throw new IllegalArgumentException("Checkpoint was written with "
+                    + (integerDistances ? "integer" : "real")
+                    + " distances, the tour has "
+                    + (tour.isIntegerDistances() ? "integer" : "real")
+                    + " ones.");
+        }
+        if (!instance.equals(instanceKey(tour))) {
+            throw new IllegalArgumentException(
+                    "Checkpoint was written for another instance.");
+        }
+    }//end of checkCompatible()
+
+    /**
+     * This function saves off the checkpoint. The file is written under a
+     * temporary name and then renamed, so a crash while writing never
+     * leaves a truncated checkpoint behind.
+     * @param file The checkpoint file.
+     */
+    public void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(solver);
+            out.writeInt(dimension);
+            out.writeUTF(instance);
+            out.writeBoolean(integerDistances);
+            out.writeDouble(bestCost);
+            writeArray(out, bestTour);
+            writeArray(out, cursor);
+        } finally {
+            out.close();
+        }
+        Files.move(tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }//end of write()
+
+    /**
+     * This function reads a checkpoint file.
+     * @param file The checkpoint file.
+     * @return The checkpoint.
+     */
+    public static Checkpoint read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a checkpoint file.");
+            }
+            byte solver = in.readByte();
+            int dimension = in.readInt();
+            String instance = in.readUTF();
+            boolean integerDistances = in.readBoolean();
+            double bestCost = in.readDouble();
+            int[] bestTour = readArray(in);
+            int[] cursor = readArray(in);
+            return new Checkpoint(solver, dimension, instance,
+                    integerDistances, bestCost, bestTour, cursor);
+        } finally {
+            in.close();
+        }
+    }//end of read()
+
+    private static void writeArray(DataOutputStream out, int[] values)
+            throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readArray(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > (1 << 26)) {
+            throw new IOException("Corrupt checkpoint.");
+        }
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}//end of class
@@ -0,0 +1,81 @@
+package edu.rowan.algorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class saves off checkpoints in the background. A solver publishes
+ * its latest Checkpoint (a cheap volatile write) and a separate thread
+ * writes the most recent one to disk at a fixed interval, so the search
+ * threads never wait for the disk.
+ */
+public class CheckpointWriter {
+
+    private final File file;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Checkpoint latest;
+    private Checkpoint written;
+
+    /**
+     * Constructor. The background thread starts right away.
+     * @param file The checkpoint file.
+     * @param intervalSeconds Seconds between two writes (at least 1).
+     */
+    public CheckpointWriter(File file, long intervalSeconds) {
+        this.file = file;
+        intervalSeconds = Math.max(1, intervalSeconds);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "checkpoint-writer");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                writeLatest();
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }//end of constructor
+
+    /**
+     * This function makes a checkpoint the next one to be written.
+     * @param checkpoint The latest state of the search.
+     */
+    public void publish(Checkpoint checkpoint) {
+        latest = checkpoint;
+    }//end of publish()
+
+    /**
+     * This function stops the background thread and writes the latest
+     * checkpoint one last time.
+     */
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeLatest();
+    }//end of close()
+
+    private synchronized void writeLatest() {
+        Checkpoint checkpoint = latest;
+        if (checkpoint == null || checkpoint == written) {
+            return;
+        }
+        try {
+            checkpoint.write(file);
+            written = checkpoint;
+        } catch (IOException e) {
+            System.err.println("Error: could not write checkpoint: " + e);
+        }
+    }//end of writeLatest()
+}//end of class
@@ -0,0 +1,377 @@
+package edu.rowan.algorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class solves very large instances by decomposition. The cities are
+ * split into spatial clusters by recursive median cuts along the wider
+ * side of the bounding box (Karp partitioning); each cluster is solved
+ * concurrently by the nearest neighbor solver on a small Tour object of its
+ * own, the clusters are ordered by a coarse tour through their centroids,
+ * and their subtours are stitched into a single tour. A global 2-opt pass,
+ * using neighbor lists, then repairs the seams.
+ *
+ * No n x n matrix is ever created: only the clusters being solved have a
+ * (small) adjacency matrix, so the peak memory grows with the cluster size
+ * and the number of threads instead of n^2.
+ */
+public class DecompositionSolver {
+
+    /** Default maximum number of cities per cluster. */
+    public static final int DEFAULT_CLUSTER_SIZE = 100;
+
+    /** Candidate neighbors per city used by the repair pass. */
+    private static final int NEIGHBORS = 8;
+
+    final Tour tour;
+    final int clusterSize;
+    final int threads;
+    final SolverMetrics metrics;
+
+    final double[] x;
+    final double[] y;
+
+    int[] bestTour;
+    double bestTourDist;
+
+    // False when the solver runs as a step of another solver.
+    boolean reportSummary = true;
+
+    /**
+     * Constructor
+     * @param tour The Tour object to be solved.
+     */
+    public DecompositionSolver(Tour tour) {
+        this(tour, DEFAULT_CLUSTER_SIZE, 0);
+    }//end of constructor
+
+    /**
+     * Constructor
+     * @param tour The Tour object to be solved.
+     * @param clusterSize Maximum number of cities per cluster.
+     * @param threads Clusters solved at once, or 0 for one per processor.
+     */
+    public DecompositionSolver(Tour tour, int clusterSize, int threads) {
+        if (!tour.hasCoordinates()) {
+            throw new IllegalArgumentException("Decomposition needs the"
+                    + " coordinates of the cities.");
+        }
+        this.tour = tour;
+        this.clusterSize = Math.max(3, clusterSize);
+        this.threads = (threads > 0) ? threads
+                : Runtime.getRuntime().availableProcessors();
+        this.metrics = new SolverMetrics("Decomposition");
+        this.x = tour.getXCoordinates();
+        this.y = tour.getYCoordinates();
+    }//end of constructor
+
+    /**
+     * This function returns an array representing a solution for the TSP
+     * problem. The locations/nodes are numbered from '1' as in the .tsp
+     * file.
+     * @return An array representing the shortest tour found.
+     */
+    public ArrayList<Integer> getShortestTour() {
+        if (bestTour == null) {
+            solve();
+        }
+        ArrayList<Integer> cities = new ArrayList<Integer>(bestTour.length);
+        for (int city : bestTour) {
+            cities.add(city + 1);
+        }
+        return cities;
+    }//end of getShortestTour()
+
+    /**
+     * This function returns the cost of the tour found by getShortestTour().
+     * @return The cost of the shortest tour found.
+     */
+    public double getShortestDistance() {
+        return bestTourDist;
+    }//end of getShortestDistance()
+
+    /**
+     * This function returns the counters collected during the search.
+     * @return The solver metrics.
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }//end of getMetrics()
+
+    private void solve() {
+        int n = tour.getDimension();
+        metrics.start(tour);
+        long start = System.currentTimeMillis();
+
+        List<int[]> clusters = new ArrayList<int[]>();
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) {
+            all[i] = i;
+        }
+        partition(all, 0, n, clusters);
+        Trace.debug(clusters.size() + " clusters, "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        int[][] subtours = solveClusters(clusters);
+        Trace.debug("Clusters solved, "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        int[] order = stitch(subtours, orderClusters(subtours));
+
+        TwoLevelListTour sequence = new TwoLevelListTour(tour, order);
+        if (Trace.isDebug()) {
+            Trace.debug("Stitched tour cost: " + sequence.cost());
+        }
+        if (n > 3) {
+            TwoOptLocalSearch repair = new TwoOptLocalSearch(tour,
+                    tour.getNeighborList(NEIGHBORS));
+            long moves = repair.optimize(sequence);
+            Trace.debug("Repair: " + moves + " 2-opt moves, "
+                    + (System.currentTimeMillis() - start) + " ms");
+        }
+
+        bestTour = sequence.toArray(new int[n]);
+        bestTourDist = sequence.cost();
+        metrics.incumbentImproved(bestTourDist);
+        metrics.finish();
+        if (reportSummary) {
+            Trace.summary("\nTour cost = " + bestTourDist);
+        }
+    }//end of solve()
+
+    /**
+     * This function splits cities[from, to) at the median of the wider
+     * side of their bounding box until every part holds at most
+     * 'clusterSize' cities.
+     * @param cities City indexes; the range is reordered in place.
+     * @param clusters Receives the clusters.
+     */
+    private void partition(int[] cities, int from, int to,
+            List<int[]> clusters) {
+        if (to - from <= clusterSize) {
+            int[] cluster = new int[to - from];
+            System.arraycopy(cities, from, cluster, 0, cluster.length);
+            clusters.add(cluster);
+            return;
+        }
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            minX = Math.min(minX, x[cities[i]]);
+            maxX = Math.max(maxX, x[cities[i]]);
+            minY = Math.min(minY, y[cities[i]]);
+            maxY = Math.max(maxY, y[cities[i]]);
+        }
+        double[] key = (maxX - minX >= maxY - minY) ? x : y;
+        int middle = (from + to) >>> 1;
+        select(cities, from, to - 1, middle, key);
+        partition(cities, from, middle, clusters);
+        partition(cities, middle, to, clusters);
+    }//end of partition()
+
+    /**
+     * This function reorders cities[lo, hi] so that the city at 'nth' is
+     * the one a full sort by key would put there, with no greater key
+     * before it and no smaller key after it (quickselect).
+     */
+    private static void select(int[] cities, int lo, int hi, int nth,
+            double[] key) {
+        while (lo < hi) {
+            double pivot = key[cities[(lo + hi) >>> 1]];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (key[cities[i]] < pivot) {
+                    i++;
+                }
+                while (key[cities[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = cities[i];
+                    cities[i] = cities[j];
+                    cities[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (nth <= j) {
+                hi = j;
+            } else if (nth >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }//end of select()
+
+    /**
+     * This function solves every cluster with the nearest neighbor solver,
+     * using a fixed size thread pool.
+     * @param clusters City indexes of every cluster.
+     * @return The subtour of every cluster, as global city indexes.
+     */
+    private int[][] solveClusters(List<int[]> clusters) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<int[]>> futures = new ArrayList<Future<int[]>>();
+            for (final int[] cluster : clusters) {
+                futures.add(pool.submit(new Callable<int[]>() {
+                    public int[] call() {
+                        return solveCluster(cluster);
+                    }
+                }));
+            }
+            int[][] subtours = new int[clusters.size()][];
+            for (int i = 0; i < subtours.length; i++) {
+                subtours[i] = futures.get(i).get();
+            }
+            return subtours;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Keep going with the clusters in their original order.
+            return clusters.toArray(new int[clusters.size()][]);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }//end of solveClusters()
+
+    private int[] solveCluster(int[] cluster) {
+        if (cluster.length <= 3) {
+            return cluster;
+        }
+        double[] cx = new double[cluster.length];
+        double[] cy = new double[cluster.length];
+        for (int i = 0; i < cluster.length; i++) {
+            cx[i] = x[cluster[i]];
+            cy[i] = y[cluster[i]];
+        }
+        Tour sub = Tour.fromCoordinates(tour.getName(), cx, cy);
+        NearestNeighborSolver nn = new NearestNeighborSolver(sub);
+        nn.reportSummary = false;
+        ArrayList<Integer> local = nn.getShortestTour();
+        if (local.size() != cluster.length) {
+            return cluster; // interrupted before the first tour
+        }
+        int[] subtour = new int[cluster.length];
+        for (int i = 0; i < subtour.length; i++) {
+            subtour[i] = cluster[local.get(i) - 1];
+        }
+        metrics.restarted();
+        return subtour;
+    }//end of solveCluster()
+
+    /**
+     * This function orders the clusters by a tour through their centroids:
+     * nearest neighbor improved by 2-opt or, when there are more centroids
+     * than cities allowed in a cluster, a decomposition of the centroids.
+     * @param subtours The cities of every cluster.
+     * @return Cluster indexes in visiting order.
+     */
+    private int[] orderClusters(int[][] subtours) {
+        int count = subtours.length;
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        if (count <= 3) {
+            return order;
+        }
+        double[] cx = new double[count];
+        double[] cy = new double[count];
+        for (int i = 0; i < count; i++) {
+            for (int city : subtours[i]) {
+                cx[i] += x[city];
+                cy[i] += y[city];
+            }
+            cx[i] /= subtours[i].length;
+            cy[i] /= subtours[i].length;
+        }
+        Tour coarse = Tour.fromCoordinates(tour.getName(), cx, cy);
+        if (count > clusterSize) {
+            DecompositionSolver decomposition =
+                    new DecompositionSolver(coarse, clusterSize, threads);
+            decomposition.reportSummary = false;
+            ArrayList<Integer> local = decomposition.getShortestTour();
+            for (int i = 0; i < count; i++) {
+                order[i] = local.get(i) - 1;
+            }
+            return order;
+        }
+        NearestNeighborSolver nn = new NearestNeighborSolver(coarse);
+        nn.reportSummary = false;
+        ArrayList<Integer> local = nn.getShortestTour();
+        if (local.size() != count) {
+            return order;
+        }
+        for (int i = 0; i < count; i++) {
+            order[i] = local.get(i) - 1;
+        }
+        PrimitiveTour sequence = new PrimitiveTour(coarse, order);
+        new TwoOptLocalSearch(coarse, coarse.getNeighborList(NEIGHBORS))
+                .optimize(sequence);
+        return sequence.toArray(order);
+    }//end of orderClusters()
+
+    /**
+     * This function joins the subtours in the given cluster order. Each
+     * subtour is entered at its city nearest to the previous exit and
+     * followed in the direction whose last city is nearer to the next
+     * cluster, so only one edge of every subtour is dropped.
+     * @param subtours The subtour of every cluster.
+     * @param order Cluster indexes in visiting order.
+     * @return The complete tour, as zero based city indexes.
+     */
+    private int[] stitch(int[][] subtours, int[] order) {
+        int[] result = new int[tour.getDimension()];
+        int size = 0;
+        int exit = -1;
+        for (int k = 0; k < order.length; k++) {
+            int[] subtour = subtours[order[k]];
+            int[] next = subtours[order[(k + 1) % order.length]];
+            int m = subtour.length;
+
+            int entry = 0;
+            if (exit >= 0) {
+                double best = Double.MAX_VALUE;
+                for (int i = 0; i < m; i++) {
+                    double d = tour.distance(exit, subtour[i]);
+                    if (d < best) {
+                        best = d;
+                        entry = i;
+                    }
+                }
+            }
+            // Going forward the last city is the one before the entry;
+            // going backward it is the one after it.
+            int forwardExit = subtour[(entry + m - 1) % m];
+            int backwardExit = subtour[(entry + 1) % m];
+            boolean forward = nearest(forwardExit, next)
+                    <= nearest(backwardExit, next);
+            for (int i = 0; i < m; i++) {
+                int pos = forward ? (entry + i) % m : (entry - i + m) % m;
+                result[size++] = subtour[pos];
+            }
+            exit = result[size - 1];
+        }
+        return result;
+    }//end of stitch()
+
+    private double nearest(int city, int[] cities) {
+        double best = Double.MAX_VALUE;
+        for (int other : cities) {
+            if (other != city) {
+                best = Math.min(best, tour.distance(city, other));
+            }
+        }
+        return best;
+    }//end of nearest()
+}//end of class
@@ -0,0 +1,444 @@
+package edu.rowan.algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * This class splits a branch-and-bound search among worker processes. The
+ * search space is cut into subproblems, each one the set of tours starting
+ * with a fixed path (a prefix), which are handed out to the workers over
+ * local sockets as they become free. A worker that improves the best tour
+ * reports it and the coordinator broadcasts the new bound, so every worker
+ * prunes against the global best. When the queue runs dry while some
+ * workers are idle, a busy worker is asked to split its subproblem and
+ * donate part of it back to the queue.
+ *
+ * The workers are DistributedWorker processes; they may be started by hand
+ * or spawned on this machine with --spawn-workers.
+ *
+ * Usage:
+ *   DistributedCoordinator file.tsp [--port n] [--spawn-workers n]
+ *                          [--units-per-worker n]
+ */
+public class DistributedCoordinator {
+
+    /** Messages sent by the coordinator. */
+    static final byte INSTANCE = 1;
+    static final byte WORK = 2;
+    static final byte BOUND = 3;
+    static final byte SPLIT = 4;
+    static final byte STOP = 5;
+
+    /** Messages sent by the workers. */
+    static final byte INCUMBENT = 11;
+    static final byte DONE = 12;
+    static final byte DONATE = 13;
+
+    private final Tour tour;
+    private final String instanceText;
+    private final int unitsPerWorker;
+
+    private final Deque<int[]> queue = new ArrayDeque<int[]>();
+    private final List<Connection> workers = new ArrayList<Connection>();
+    private double bestCost = Double.MAX_VALUE;
+    private int[] bestTour;
+    private long unitsSolved;
+    private long unitsDonated;
+    private boolean finished;
+
+    /**
+     * The coordinator side of one worker.
+     */
+    private class Connection implements Runnable {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        int[] unit;
+        boolean splitPending;
+        boolean exhausted; // its last split gave nothing away
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    if (type == INCUMBENT) {
+                        double cost = in.readDouble();
+                        incumbent(this, cost, readInts(in));
+                    } else if (type == DONE) {
+                        done(this);
+                    } else if (type == DONATE) {
+                        int count = in.readInt();
+                        List<int[]> prefixes = new ArrayList<int[]>(count);
+                        for (int i = 0; i < count; i++) {
+                            prefixes.add(readInts(in));
+                        }
+                        donated(this, prefixes);
+                    } else {
+                        throw new IOException("Unknown message: " + type);
+                    }
+                }
+            } catch (EOFException e) {
+                lost(this, null);
+            } catch (IOException e) {
+                lost(this, e);
+            }
+        }
+    }
+
+    /**
+     * Constructor
+     * @param tour The instance to solve.
+     * @param instanceText The .tsp file sent to the workers.
+     * @param unitsPerWorker Initial number of subproblems per worker.
+     */
+    public DistributedCoordinator(Tour tour, String instanceText,
+            int unitsPerWorker) {
+        this.tour = tour;
+        this.instanceText = instanceText;
+        this.unitsPerWorker = Math.max(1, unitsPerWorker);
+    }//end of constructor
+
+    public static void main(String[] args) throws Exception {
+        String filename = null;
+        int port = 0;
+        int spawn = 0;
+        int unitsPerWorker = 8;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("--port")) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equalsIgnoreCase("--spawn-workers")) {
+                spawn = Integer.parseInt(args[++i]);
+            } else if (args[i].equalsIgnoreCase("--units-per-worker")) {
+                unitsPerWorker = Integer.parseInt(args[++i]);
+            } else if (args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            } else {
+                filename = args[i];
+            }
+        }
+        if (filename == null) {
+            System.err.println("Usage: DistributedCoordinator file.tsp"
+                    + " [--port n] [--spawn-workers n] [--units-per-worker n]");
+            System.exit(2);
+        }
+
+        String text = new String(Files.readAllBytes(new File(filename).toPath()),
+                StandardCharsets.UTF_8);
+        Tour tour = Tour.parse(text);
+        DistributedCoordinator coordinator =
+                new DistributedCoordinator(tour, text, unitsPerWorker);
+
+        long start = System.currentTimeMillis();
+        ServerSocket server = new ServerSocket(port, 50,
+                InetAddress.getLoopbackAddress());
+        List<Process> processes = new ArrayList<Process>();
+        try {
+            Trace.summary("Coordinator listening on port "
+                    + server.getLocalPort());
+            for (int i = 0; i < spawn; i++) {
+                processes.add(spawnWorker(server.getLocalPort()));
+            }
+            coordinator.run(server, Math.max(spawn, 1));
+        } finally {
+            server.close();
+            for (Process p : processes) {
+                p.waitFor();
+            }
+        }
+
+        Trace.summary(String.format("%d subproblems solved, %d donated",
+                coordinator.unitsSolved, coordinator.unitsDonated));
+        Trace.summary("\n" + "Best Tour: " + coordinator.getShortestTour()
+                + " Tour Cost: " + coordinator.bestCost);
+        Trace.summary("Total time to execute: "
+                + (System.currentTimeMillis() - start) + " ms");
+        Trace.flush();
+    }//end of main()
+
+    /**
+     * This function starts a worker process on this machine, using the same
+     * java binary and class path as the coordinator.
+     * @param port The port of the coordinator.
+     * @return The worker process.
+     */
+    static Process spawnWorker(int port) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+                System.getProperty("java.class.path"),
+                DistributedWorker.class.getName(), "localhost",
+                String.valueOf(port));
+        builder.inheritIO();
+        return builder.start();
+    }//end of spawnWorker()
+
+    /**
+     * This function accepts workers and hands out subproblems until the
+     * whole search space is explored. Workers may join at any time.
+     * @param server The listening socket.
+     * @param expectedWorkers Workers used to size the initial subproblems.
+     */
+    public void run(ServerSocket server, int expectedWorkers)
+            throws IOException, InterruptedException {
+        synchronized (this) {
+            for (int[] prefix : initialPrefixes(tour.getDimension(),
+                    expectedWorkers * unitsPerWorker)) {
+                queue.add(prefix);
+            }
+        }
+
+        Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept(server);
+            }
+        }, "coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        synchronized (this) {
+            while (!finished) {
+                wait();
+            }
+            for (Connection c : workers) {
+                send(c, STOP, null);
+            }
+        }
+    }//end of run()
+
+    private void accept(ServerSocket server) {
+        while (true) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                return; // the server socket was closed
+            }
+            try {
+                socket.setTcpNoDelay(true);
+                Connection c = new Connection(socket);
+                synchronized (this) {
+                    if (finished) {
+                        socket.close();
+                        continue;
+                    }
+                    byte[] bytes = instanceText.getBytes(StandardCharsets.UTF_8);
+                    c.out.writeByte(INSTANCE);
+                    c.out.writeInt(bytes.length);
+                    c.out.write(bytes);
+                    if (bestTour != null) {
+                        c.out.writeByte(BOUND);
+                        c.out.writeDouble(bestCost);
+                    }
+                    c.out.flush();
+                    workers.add(c);
+                    dispatch(c);
+                }
+                Thread reader = new Thread(c, "coordinator-worker-"
+                        + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+                Trace.summary("Worker connected: "
+                        + socket.getRemoteSocketAddress());
+            } catch (IOException e) {
+                System.err.println("Error: " + e);
+            }
+        }
+    }//end of accept()
+
+    /**
+     * This function lists the prefixes of the smallest depth that gives at
+     * least 'target' subproblems. Every tour starts with city 0.
+     * @param dimension The number of cities.
+     * @param target The wanted number of subproblems.
+     * @return The prefixes, numbered from '0'.
+     */
+    static List<int[]> initialPrefixes(int dimension, int target) {
+        List<int[]> prefixes = new ArrayList<int[]>();
+        prefixes.add(new int[] { 0 });
+        while (prefixes.size() < target && prefixes.get(0).length < dimension) {
+            List<int[]> next = new ArrayList<int[]>();
+            for (int[] prefix : prefixes) {
+                boolean[] used = new boolean[dimension];
+                for (int city : prefix) {
+                    used[city] = true;
+                }
+                for (int city = 0; city < dimension; city++) {
+                    if (!used[city]) {
+                        int[] child = Arrays.copyOf(prefix, prefix.length + 1);
+                        child[prefix.length] = city;
+                        next.add(child);
+                    }
+                }
+            }
+            prefixes = next;
+        }
+        return prefixes;
+    }//end of initialPrefixes()
+
+    /**
+     * This function gives the next subproblem to an idle worker or, if
+     * there is none left, asks a busy worker to split its own.
+     */
+    private void dispatch(Connection idle) {
+        if (!queue.isEmpty()) {
+            idle.unit = queue.poll();
+            idle.exhausted = false;
+            send(idle, WORK, idle.unit);
+            return;
+        }
+        boolean busy = false;
+        for (Connection c : workers) {
+            if (c.unit != null) {
+                busy = true;
+                if (!c.splitPending && !c.exhausted) {
+                    c.splitPending = true;
+                    send(c, SPLIT, null);
+                    break;
+                }
+            }
+        }
+        if (!busy) {
+            finished = true;
+            notifyAll();
+        }
+    }//end of dispatch()
+
+    private synchronized void incumbent(Connection from, double cost,
+            int[] cities) {
+        if (cost >= bestCost) {
+            return;
+        }
+        bestCost = cost;
+        bestTour = cities;
+        Trace.summary("New best tour: " + cost);
+        for (Connection c : workers) {
+            if (c != from) {
+                send(c, BOUND, null);
+            }
+        }
+    }//end of incumbent()
+
+    private synchronized void done(Connection c) {
+        c.unit = null;
+        c.splitPending = false;
+        unitsSolved++;
+        dispatch(c);
+    }//end of done()
+
+    private synchronized void donated(Connection from, List<int[]> prefixes) {
+        from.splitPending = false;
+        from.exhausted = prefixes.isEmpty();
+        queue.addAll(prefixes);
+        unitsDonated += prefixes.size();
+        for (Connection c : workers) {
+            if (c.unit == null) {
+                dispatch(c);
+            }
+        }
+    }//end of donated()
+
+    /**
+     * This function removes a worker that disconnected; its subproblem goes
+     * back to the queue so no part of the search is lost.
+     */
+    private synchronized void lost(Connection c, IOException error) {
+        if (!workers.remove(c)) {
+            return;
+        }
+        if (!finished) {
+            Trace.summary("Worker lost: " + c.socket.getRemoteSocketAddress()
+                    + (error == null ? "" : " (" + error + ")"));
+        }
+        if (c.unit != null) {
+            queue.addFirst(c.unit);
+            c.unit = null;
+        }
+        if (finished) {
+            return;
+        }
+        for (Connection idle : workers) {
+            if (idle.unit == null) {
+                dispatch(idle);
+            }
+        }
+    }//end of lost()
+
+    private void send(Connection c, byte type, int[] prefix) {
+        try {
+            c.out.writeByte(type);
+            if (type == BOUND) {
+                c.out.writeDouble(bestCost);
+            } else if (type == WORK) {
+                writeInts(c.out, prefix);
+            }
+            c.out.flush();
+        } catch (IOException e) {
+            try {
+                c.socket.close(); // the reader thread reports the worker lost
+            } catch (IOException ignored) {
+            }
+        }
+    }//end of send()
+
+    /**
+     * This function returns the best tour found. The locations/nodes are
+     * numbered from '1' as in the .tsp file.
+     * @return The shortest tour found, or an empty list.
+     */
+    public synchronized ArrayList<Integer> getShortestTour() {
+        ArrayList<Integer> cities = new ArrayList<Integer>();
+        if (bestTour != null) {
+            for (int city : bestTour) {
+                cities.add(city + 1);
+            }
+        }
+        return cities;
+    }//end of getShortestTour()
+
+    /**
+     * This function returns the cost of the best tour found.
+     * @return The shortest distance found.
+     */
+    public synchronized double getShortestDistance() {
+        return bestCost;
+    }//end of getShortestDistance()
+
+    static void writeInts(DataOutputStream out, int[] values)
+            throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}//end of class
@@ -0,0 +1,163 @@
+package edu.rowan.algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * This class is a worker process of a distributed branch-and-bound search
+ * (see DistributedCoordinator). It receives the instance and then solves
+ * the subproblems it is handed, one at a time, reporting every improvement
+ * of the best tour. A reader thread applies the bounds broadcast by the
+ * coordinator and its split requests while the search runs.
+ *
+ * Usage:
+ *   DistributedWorker host port
+ */
+public class DistributedWorker implements BranchAndBoundSolver.Listener {
+
+    /** Marks the end of the work in the queue. */
+    private static final int[] NO_MORE_WORK = new int[0];
+
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final BlockingQueue<int[]> work = new LinkedBlockingQueue<int[]>();
+
+    private BranchAndBoundSolver solver;
+    private volatile boolean working;
+
+    /**
+     * Constructor
+     * @param socket The connection to the coordinator.
+     */
+    public DistributedWorker(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+    }//end of constructor
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: DistributedWorker host port");
+            System.exit(2);
+        }
+        Trace.setLevel(TraceLevel.OFF);
+        Socket socket = new Socket(args[0], Integer.parseInt(args[1]));
+        try {
+            new DistributedWorker(socket).run();
+        } finally {
+            socket.close();
+        }
+    }//end of main()
+
+    /**
+     * This function receives the instance and solves subproblems until the
+     * coordinator tells it to stop.
+     */
+    public void run() throws IOException, InterruptedException {
+        if (in.readByte() != DistributedCoordinator.INSTANCE) {
+            throw new IOException("Expected the instance first");
+        }
+        byte[] text = new byte[in.readInt()];
+        in.readFully(text);
+        Tour tour = Tour.parse(new String(text, StandardCharsets.UTF_8));
+        SolverMetrics metrics = new SolverMetrics("DistributedBranchAndBound");
+        solver = new BranchAndBoundSolver(tour, metrics, this);
+
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                receive();
+            }
+        }, "worker-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        metrics.start(tour);
+        try {
+            while (true) {
+                int[] prefix = work.take();
+                if (prefix == NO_MORE_WORK) {
+                    break;
+                }
+                working = true;
+                solver.solvePrefix(prefix);
+                working = false;
+                synchronized (out) {
+                    out.writeByte(DistributedCoordinator.DONE);
+                    out.flush();
+                }
+            }
+        } finally {
+            metrics.finish();
+        }
+    }//end of run()
+
+    /**
+     * This function reads the messages of the coordinator. Work is queued
+     * for the search thread; bounds and split requests are handed to the
+     * running search directly.
+     */
+    private void receive() {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                if (type == DistributedCoordinator.WORK) {
+                    work.add(DistributedCoordinator.readInts(in));
+                } else if (type == DistributedCoordinator.BOUND) {
+                    solver.offerBound(in.readDouble());
+                } else if (type == DistributedCoordinator.SPLIT) {
+                    if (working) {
+                        solver.requestSplit();
+                    }
+                } else if (type == DistributedCoordinator.STOP) {
+                    break;
+                } else {
+                    throw new IOException("Unknown message: " + type);
+                }
+            }
+        } catch (EOFException e) {
+            // The coordinator went away.
+        } catch (IOException e) {
+            System.err.println("Error: " + e);
+        }
+        work.add(NO_MORE_WORK);
+    }//end of receive()
+
+    public void incumbentImproved(double cost, int[] tour) {
+        try {
+            synchronized (out) {
+                out.writeByte(DistributedCoordinator.INCUMBENT);
+                out.writeDouble(cost);
+                DistributedCoordinator.writeInts(out, tour);
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e);
+        }
+    }//end of incumbentImproved()
+
+    public void donate(List<int[]> prefixes) {
+        try {
+            synchronized (out) {
+                out.writeByte(DistributedCoordinator.DONATE);
+                out.writeInt(prefixes.size());
+                for (int[] prefix : prefixes) {
+                    DistributedCoordinator.writeInts(out, prefix);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e);
+        }
+    }//end of donate()
+}//end of class
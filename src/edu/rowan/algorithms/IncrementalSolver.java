@@ -0,0 +1,287 @@
+package edu.rowan.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class keeps a solution up to date while cities are added, removed
+ * or moved, instead of solving again from scratch. The changes go through
+ * the Tour object, which updates its distances, lower bounds and neighbor
+ * lists incrementally; reoptimize() then repairs the previous tour: the new
+ * (or moved) cities are placed by cheapest insertion and a 2-opt search is
+ * run only around the cities whose tour edges changed.
+ */
+public class IncrementalSolver {
+
+    /** Candidate neighbors per city. */
+    private static final int NEIGHBORS = 8;
+
+    final Tour tour;
+
+    // Zero based cities of the current tour, and the position of every city
+    // in it (-1 for cities waiting to be inserted).
+    int[] order;
+    int size;
+    int[] position;
+
+    // Cities waiting to be inserted, and cities whose edges changed.
+    int[] pending = new int[16];
+    int pendingCount;
+    int[] touched = new int[16];
+    int touchedCount;
+
+    double cost;
+
+    /**
+     * Constructor
+     * @param tour The Tour object that was solved.
+     * @param solution Its solution, numbered from '1' as returned by the
+     *        solvers.
+     */
+    public IncrementalSolver(Tour tour, ArrayList<Integer> solution) {
+        this.tour = tour;
+        this.size = solution.size();
+        this.order = new int[Math.max(16, size)];
+        this.position = new int[order.length];
+        for (int i = 0; i < size; i++) {
+            order[i] = solution.get(i) - 1;
+        }
+        renumber(0);
+        this.cost = new PrimitiveTour(tour, Arrays.copyOf(order, size)).cost();
+    }//end of constructor
+
+    /**
+     * This function adds a city to the Tour object. It is inserted into the
+     * tour by the next reoptimize().
+     * @param x x-coordinate of the new city.
+     * @param y y-coordinate of the new city.
+     * @return The zero based index of the new city.
+     */
+    public int addCity(double x, double y) {
+        int city = tour.addCity(x, y);
+        ensureCapacity(tour.getDimension());
+        position[city] = -1;
+        pending = append(pending, pendingCount++, city);
+        return city;
+    }//end of addCity()
+
+    /**
+     * This function removes a city from the Tour object and closes the gap
+     * it leaves in the tour. As in Tour.removeCity(), the last city takes
+     * the index of the removed one.
+     * @param city Zero based index of the city to remove.
+     */
+    public void removeCity(int city) {
+        unlink(city);
+        dropPending(city);
+        dropTouched(city);
+
+        int last = tour.removeCity(city);
+        if (last >= 0) {
+            // The last city is now known as 'city'.
+            if (position[last] >= 0) {
+                order[position[last]] = city;
+            }
+            position[city] = position[last];
+            position[last] = -1;
+            relabel(pending, pendingCount, last, city);
+            relabel(touched, touchedCount, last, city);
+        }
+    }//end of removeCity()
+
+    /**
+     * This function moves a city of the Tour object. It is taken out of the
+     * tour and inserted again by the next reoptimize().
+     * @param city Zero based index of the city.
+     * @param x New x-coordinate.
+     * @param y New y-coordinate.
+     */
+    public void moveCity(int city, double x, double y) {
+        if (position[city] >= 0) {
+            unlink(city);
+            pending = append(pending, pendingCount++, city);
+        }
+        tour.moveCity(city, x, y);
+    }//end of moveCity()
+
+    /**
+     * This function repairs the tour after the changes made since the last
+     * call: cheapest insertion of the new and moved cities, then 2-opt
+     * around every city whose edges changed.
+     * @return The cost of the repaired tour.
+     */
+    public double reoptimize() {
+        NeighborList neighbors = tour.getNeighborList(NEIGHBORS);
+        for (int i = 0; i < pendingCount; i++) {
+            insert(pending[i], neighbors);
+        }
+        pendingCount = 0;
+
+        PrimitiveTour sequence = new PrimitiveTour(tour,
+                Arrays.copyOf(order, size));
+        if (size > 3 && touchedCount > 0) {
+            new TwoOptLocalSearch(tour, neighbors).optimize(sequence,
+                    Arrays.copyOf(touched, touchedCount));
+            sequence.toArray(order);
+            renumber(0);
+        }
+        touchedCount = 0;
+        cost = sequence.cost();
+        return cost;
+    }//end of reoptimize()
+
+    /**
+     * This function returns the current tour, repairing it first if there
+     * are pending changes. The locations/nodes are numbered from '1'.
+     * @return An array representing the shortest tour found.
+     */
+    public ArrayList<Integer> getShortestTour() {
+        if (pendingCount > 0 || touchedCount > 0) {
+            reoptimize();
+        }
+        ArrayList<Integer> cities = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            cities.add(order[i] + 1);
+        }
+        return cities;
+    }//end of getShortestTour()
+
+    /**
+     * This function returns the cost of the tour after the last
+     * reoptimize().
+     * @return The tour cost.
+     */
+    public double getShortestDistance() {
+        return cost;
+    }//end of getShortestDistance()
+
+    /**
+     * This function inserts a city between the two consecutive cities where
+     * it adds the least cost. Only the tour edges of its nearest neighbors
+     * are tried, unless none of them is in the tour yet.
+     */
+    private void insert(int city, NeighborList neighbors) {
+        if (size < 2) {
+            insertAt(size, city);
+            return;
+        }
+        int bestPos = -1;
+        double bestDelta = Double.MAX_VALUE;
+        for (int r = 0; r < neighbors.getK(); r++) {
+            int j = neighbors.get(city, r);
+            int p = position[j];
+            if (p < 0) {
+                continue;
+            }
+            // Edges (prev(j), j) and (j, next(j)).
+            for (int q = p - 1; q <= p; q++) {
+                int from = (q + size) % size;
+                double delta = insertionCost(city, from);
+                if (delta < bestDelta) {
+                    bestDelta = delta;
+                    bestPos = from;
+                }
+            }
+        }
+        if (bestPos < 0) {
+            for (int q = 0; q < size; q++) {
+                double delta = insertionCost(city, q);
+                if (delta < bestDelta) {
+                    bestDelta = delta;
+                    bestPos = q;
+                }
+            }
+        }
+        insertAt(bestPos + 1, city);
+    }//end of insert()
+
+    private double insertionCost(int city, int from) {
+        int a = order[from];
+        int b = order[(from + 1) % size];
+        return tour.distance(a, city) + tour.distance(city, b)
+                - tour.distance(a, b);
+    }
+
+    private void insertAt(int pos, int city) {
+        System.arraycopy(order, pos, order, pos + 1, size - pos);
+        order[pos] = city;
+        size++;
+        renumber(pos);
+        touch(city);
+        if (size > 1) {
+            touch(order[(pos + size - 1) % size]);
+            touch(order[(pos + 1) % size]);
+        }
+    }//end of insertAt()
+
+    /**
+     * This function takes a city out of the tour, joining its predecessor
+     * and successor.
+     */
+    private void unlink(int city) {
+        int pos = position[city];
+        if (pos < 0) {
+            return;
+        }
+        if (size > 1) {
+            touch(order[(pos + size - 1) % size]);
+            touch(order[(pos + 1) % size]);
+        }
+        System.arraycopy(order, pos + 1, order, pos, size - pos - 1);
+        size--;
+        position[city] = -1;
+        renumber(pos);
+    }//end of unlink()
+
+    private void renumber(int from) {
+        for (int i = from; i < size; i++) {
+            position[order[i]] = i;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (position.length < capacity) {
+            int grown = Math.max(capacity, position.length * 2);
+            order = Arrays.copyOf(order, grown);
+            position = Arrays.copyOf(position, grown);
+        }
+    }
+
+    private void touch(int city) {
+        touched = append(touched, touchedCount++, city);
+    }
+
+    private void dropPending(int city) {
+        pendingCount = drop(pending, pendingCount, city);
+    }
+
+    private void dropTouched(int city) {
+        touchedCount = drop(touched, touchedCount, city);
+    }
+
+    private static int[] append(int[] array, int index, int value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, 2 * array.length);
+        }
+        array[index] = value;
+        return array;
+    }
+
+    private static int drop(int[] array, int count, int value) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (array[i] != value) {
+                array[kept++] = array[i];
+            }
+        }
+        return kept;
+    }
+
+    private static void relabel(int[] array, int count, int from, int to) {
+        for (int i = 0; i < count; i++) {
+            if (array[i] == from) {
+                array[i] = to;
+            }
+        }
+    }
+}//end of class
@@ -0,0 +1,172 @@
+package edu.rowan.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class holds the best tour of a search (the incumbent) in two
+ * primitive buffers, so that recording a new best tour does not allocate:
+ * the tour is written into the back buffer (directly, or copied there by
+ * offer()) and publish() swaps the buffers. Copies of the front buffer are
+ * made only when asked for (snapshot(), snapshotList()), and may be asked
+ * for from another thread while the search keeps writing; a holder has a
+ * single writer.
+ *
+ * Holders are pooled: acquire() reuses a released holder that is large
+ * enough, and release() gives one back once its tour has been copied out.
+ */
+public final class IncumbentHolder {
+
+    /** Released holders kept for reuse. */
+    static final int POOL_SIZE = 8;
+
+    private static final IncumbentHolder[] pool = new IncumbentHolder[POOL_SIZE];
+    private static int pooled;
+
+    private int[] front;
+    private int[] back;
+    private int length;
+    private volatile double cost = Double.MAX_VALUE;
+
+    /**
+     * Constructor
+     * @param capacity The largest number of cities of a tour.
+     */
+    public IncumbentHolder(int capacity) {
+        this.front = new int[capacity];
+        this.back = new int[capacity];
+    }//end of constructor
+
+    /**
+     * This function returns an empty holder for tours of up to 'capacity'
+     * cities, from the pool if one is available.
+     * @param capacity The largest number of cities of a tour.
+     * @return An empty holder.
+     */
+    public static IncumbentHolder acquire(int capacity) {
+        synchronized (pool) {
+            for (int i = pooled - 1; i >= 0; i--) {
+                IncumbentHolder holder = pool[i];
+                if (holder.front.length >= capacity) {
+                    pool[i] = pool[--pooled];
+                    pool[pooled] = null;
+                    return holder;
+                }
+            }
+        }
+        return new IncumbentHolder(capacity);
+    }//end of acquire()
+
+    /**
+     * This function empties a holder and returns it to the pool. The holder
+     * must not be used afterwards.
+     * @param holder The holder, or null.
+     */
+    public static void release(IncumbentHolder holder) {
+        if (holder == null) {
+            return;
+        }
+        holder.reset();
+        synchronized (pool) {
+            if (pooled < POOL_SIZE) {
+                pool[pooled++] = holder;
+            }
+        }
+    }//end of release()
+
+    /**
+     * This function empties the holder; its cost goes back to
+     * Double.MAX_VALUE.
+     */
+    public synchronized void reset() {
+        length = 0;
+        cost = Double.MAX_VALUE;
+    }//end of reset()
+
+    /**
+     * This function returns the buffer the next tour is written into. It
+     * belongs to the writer until publish() is called.
+     * @return The back buffer.
+     */
+    public int[] buffer() {
+        return back;
+    }//end of buffer()
+
+    /**
+     * This function makes the tour written into buffer() the incumbent.
+     * @param length The number of cities written.
+     * @param cost The cost of the tour.
+     */
+    public synchronized void publish(int length, double cost) {
+        int[] swap = front;
+        front = back;
+        back = swap;
+        this.length = length;
+        this.cost = cost;
+    }//end of publish()
+
+    /**
+     * This function makes a tour the incumbent if it is cheaper than the
+     * current one.
+     * @param cities The cities of the tour.
+     * @param length The number of cities.
+     * @param cost The cost of the tour.
+     * @return True, if the tour became the incumbent; otherwise, false.
+     */
+    public boolean offer(int[] cities, int length, double cost) {
+        if (cost >= this.cost) {
+            return false;
+        }
+        replace(cities, length, cost);
+        return true;
+    }//end of offer()
+
+    /**
+     * This function makes a tour the incumbent whatever its cost.
+     * @param cities The cities of the tour.
+     * @param length The number of cities.
+     * @param cost The cost of the tour.
+     */
+    public void replace(int[] cities, int length, double cost) {
+        System.arraycopy(cities, 0, back, 0, length);
+        publish(length, cost);
+    }//end of replace()
+
+    /**
+     * This function returns the cost of the incumbent.
+     * @return The cost, or Double.MAX_VALUE if there is none.
+     */
+    public double getCost() {
+        return cost;
+    }//end of getCost()
+
+    /**
+     * This function returns the number of cities of the incumbent.
+     * @return The number of cities, 0 if there is none.
+     */
+    public synchronized int size() {
+        return length;
+    }//end of size()
+
+    /**
+     * This function returns a copy of the incumbent.
+     * @return The cities, as they were written.
+     */
+    public synchronized int[] snapshot() {
+        return Arrays.copyOf(front, length);
+    }//end of snapshot()
+
+    /**
+     * This function returns a copy of the incumbent as a list.
+     * @param offset Added to every city, e.g. 1 to number the cities from
+     *        '1' as in the .tsp file.
+     * @return The cities of the tour.
+     */
+    public synchronized ArrayList<Integer> snapshotList(int offset) {
+        ArrayList<Integer> cities = new ArrayList<Integer>(length);
+        for (int i = 0; i < length; i++) {
+            cities.add(front[i] + offset);
+        }
+        return cities;
+    }//end of snapshotList()
+}//end of class
@@ -0,0 +1,789 @@
+package edu.rowan.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * This class shrinks a tour before it is solved, and expands the solution
+ * of the smaller tour back to the cities of the original one.
+ *
+ * Coincident cities (same coordinates) are merged: a tour of the merged
+ * cities is expanded by visiting the duplicates of a city right after it,
+ * at no cost, so an optimal tour stays optimal. This also removes the zero
+ * length edges that the -1 sentinel of distance() can not tell apart.
+ *
+ * Edges that every optimal tour uses are then detected (for the exact
+ * solvers, up to FIXING_LIMIT cities) by bound-based elimination: the
+ * Held-Karp lower bound (a minimum 1-tree with subgradient-optimized city
+ * penalties) is computed, and for every edge of the 1-tree, the bound of
+ * the tours without that edge (the 1-tree with the edge swapped for its
+ * cheapest replacement). If that bound exceeds the cost of a good tour
+ * (nearest neighbor, then 2-opt with double-bridge restarts), no optimal
+ * tour leaves the edge out. A
+ * city with two fixed edges is removed and the fixed path through it is
+ * contracted to an edge between its two end cities, which the reduced tour
+ * is forced to use: every edge but the forced ones costs a constant M more
+ * than its distance, M being larger than any tour. Every tour that uses all
+ * the forced edges then costs the same (k - p) M more than its distance (k
+ * cities, p forced edges, see getPenalty()), and every other tour at least
+ * M more again. The costs the solvers report for the reduced tour include
+ * that penalty; the cost of the expanded tour does not.
+ */
+public final class InstanceReduction {
+
+    /** Largest tour (after merging) whose edges are fixed. */
+    public static final int FIXING_LIMIT = 300;
+
+    /** Subgradient iterations of the Held-Karp bound, per city. */
+    static final int ITERATIONS_PER_CITY = 5;
+
+    /** Candidate neighbors of the 2-opt upper bound. */
+    static final int NEIGHBORS = 10;
+
+    /** Random double-bridge restarts of the upper bound, per city. */
+    static final int KICKS_PER_CITY = 10;
+
+    private static final double EPSILON = 1e-6;
+
+    private final Tour original;
+    private Tour reduced;
+
+    /** The cities of the original tour merged into each merged city. */
+    private int[] groupStart;
+    private int[] groupCities;
+    private int mergedDimension;
+
+    /**
+     * The merged city of each city of the reduced tour, and the fixed
+     * paths: their end cities (by reduced index) and their inner cities
+     * (merged cities, from the first end to the second).
+     */
+    private int[] keptCity;
+    private int[] pathOf;
+    private int[] pathFrom;
+    private int[] pathTo;
+    private int[] pathStart;
+    private int[] pathCities;
+
+    private int fixedEdges;
+    private double penalty;
+    private int[] fixedPairs = new int[0];
+    private double lowerBound = Double.NaN;
+    private double upperBound = Double.NaN;
+    private long elapsedNanos;
+
+    private InstanceReduction(Tour original) {
+        this.original = original;
+    }//end of constructor
+
+    /**
+     * This function reduces a tour. Tours with time windows or
+     * precedences are left as they are, and so are asymmetric tours,
+     * whose edges are not fixed.
+     * @param tour The Tour object to be reduced.
+     * @param fixEdges True to detect fixed edges and contract them; the
+     *        reduced tour then has no coordinates.
+     * @return The reduction; getReducedTour() is the tour itself if
+     *         nothing was reduced.
+     */
+    public static InstanceReduction reduce(Tour tour, boolean fixEdges) {
+        long start = System.nanoTime();
+        InstanceReduction reduction = new InstanceReduction(tour);
+        Tour merged = reduction.merge();
+        int m = reduction.mergedDimension;
+        reduction.reduced = merged;
+        reduction.contractNothing(m);
+        if (fixEdges && !merged.isAsymmetric() && !tour.hasConstraints()
+                && m >= 5 && m <= FIXING_LIMIT) {
+            reduction.fixEdges(merged);
+        }
+        reduction.elapsedNanos = System.nanoTime() - start;
+        return reduction;
+    }//end of reduce()
+
+    /**
+     * This function returns the tour to be solved instead of the original.
+     * @return The reduced tour.
+     */
+    public Tour getReducedTour() {
+        return reduced;
+    }//end of getReducedTour()
+
+    /**
+     * This function tells if the reduced tour is smaller than the original.
+     * @return True, if cities were merged or contracted.
+     */
+    public boolean isReduced() {
+        return reduced.getDimension() < original.getDimension();
+    }//end of isReduced()
+
+    /**
+     * This function returns the number of cities merged into another one.
+     * @return The number of duplicate cities.
+     */
+    public int getMergedCount() {
+        return original.getDimension() - mergedDimension;
+    }//end of getMergedCount()
+
+    /**
+     * This function returns the number of edges found in every optimal
+     * tour (of the merged cities).
+     * @return The number of fixed edges.
+     */
+    public int getFixedEdgeCount() {
+        return fixedEdges;
+    }//end of getFixedEdgeCount()
+
+    /**
+     * This function returns the fixed edges, as pairs of cities of the
+     * merged tour (a0, b0, a1, b1, ...), numbered from '0'; they are the
+     * cities of the original tour when no city was merged.
+     * @return The end cities of the fixed edges.
+     */
+    int[] getFixedEdges() {
+        return Arrays.copyOf(fixedPairs, 2 * fixedEdges);
+    }//end of getFixedEdges()
+
+    /**
+     * This function returns the number of cities removed by contracting
+     * the fixed paths.
+     * @return The number of contracted cities.
+     */
+    public int getContractedCount() {
+        return mergedDimension - reduced.getDimension();
+    }//end of getContractedCount()
+
+    /**
+     * This function returns how much more than its distance a tour of the
+     * reduced tour that uses all the forced edges costs.
+     * @return The penalty, 0 if no path was contracted.
+     */
+    public double getPenalty() {
+        return penalty;
+    }//end of getPenalty()
+
+    /**
+     * This function returns the Held-Karp lower bound of the tour.
+     * @return The bound, or NaN if the edges were not fixed.
+     */
+    public double getLowerBound() {
+        return lowerBound;
+    }//end of getLowerBound()
+
+    /**
+     * This function returns the cost of the tour the fixed edges were
+     * tested against.
+     * @return The cost, or NaN if the edges were not fixed.
+     */
+    public double getUpperBound() {
+        return upperBound;
+    }//end of getUpperBound()
+
+    /**
+     * This function returns a solution of the original tour from one of
+     * the reduced tour. A fixed path the solution does not go along is
+     * visited from one of its end cities, so any tour of the reduced tour
+     * gives a tour of the original one.
+     * @param solution A tour of the reduced tour, numbered from '1'.
+     * @return The tour of the original cities, numbered from '1' and
+     *         starting with location 1.
+     */
+    public ArrayList<Integer> expand(ArrayList<Integer> solution) {
+        int[] order = new int[mergedDimension];
+        int count = 0;
+        boolean[] used = new boolean[pathFrom.length];
+        int k = solution.size();
+        for (int i = 0; i < k; i++) {
+            int r = solution.get(i) - 1;
+            int previous = solution.get((i + k - 1) % k) - 1;
+            order[count++] = keptCity[r];
+            int path = pathOf[r];
+            int partner = (path < 0) ? -1
+                    : (pathFrom[path] == r) ? pathTo[path] : pathFrom[path];
+            // Coming from the partner, the path is visited after it (the
+            // last city, if this is the first one).
+            if (path >= 0 && !used[path] && partner != previous) {
+                used[path] = true;
+                if (pathFrom[path] == r) {
+                    for (int p = pathStart[path]; p < pathStart[path + 1];
+                            p++) {
+                        order[count++] = pathCities[p];
+                    }
+                } else {
+                    for (int p = pathStart[path + 1] - 1;
+                            p >= pathStart[path]; p--) {
+                        order[count++] = pathCities[p];
+                    }
+                }
+            }
+        }
+
+        int n = original.getDimension();
+        int[] cities = new int[n];
+        int size = 0;
+        int first = 0;
+        for (int i = 0; i < count; i++) {
+            for (int g = groupStart[order[i]]; g < groupStart[order[i] + 1];
+                    g++) {
+                if (groupCities[g] == 0) {
+                    first = size;
+                }
+                cities[size++] = groupCities[g];
+            }
+        }
+        ArrayList<Integer> tour = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            tour.add(cities[(first + i) % size] + 1);
+        }
+        return tour;
+    }//end of expand()
+
+    @Override
+    public String toString() {
+        return "Presolve: " + original.getDimension() + " cities, "
+                + getMergedCount() + " duplicates merged, " + fixedEdges
+                + " edges fixed, " + getContractedCount()
+                + " cities contracted, " + reduced.getDimension() + " left"
+                + (Double.isNaN(lowerBound) ? "" : " (Held-Karp bound "
+                + lowerBound + ", tour " + upperBound + ")") + " in "
+                + (elapsedNanos / 1000000) + " ms" + (penalty > 0
+                ? "; reduced tour costs include a penalty of " + penalty
+                : "");
+    }//end of toString()
+
+    /**
+     * This function merges the cities with the same coordinates; the one
+     * with the lowest index represents them. Merging stops short of fewer
+     * than three cities.
+     * @return The tour of the merged cities (the original one if none).
+     */
+    private Tour merge() {
+        int n = original.getDimension();
+        int[] mergedOf = new int[n];
+        int m = n;
+        if (original.hasCoordinates() && !original.hasConstraints()) {
+            final double[] x = original.getXCoordinates();
+            final double[] y = original.getYCoordinates();
+            Integer[] sorted = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                sorted[i] = i;
+            }
+            Arrays.sort(sorted, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    int c = Double.compare(x[a], x[b]);
+                    if (c == 0) {
+                        c = Double.compare(y[a], y[b]);
+                    }
+                    return (c != 0) ? c : Integer.compare(a, b);
+                }
+            });
+            int[] representative = new int[n];
+            for (int i = 0; i < n; i++) {
+                int city = sorted[i];
+                int before = (i > 0) ? sorted[i - 1] : -1;
+                representative[city] = (before >= 0 && x[before] == x[city]
+                        && y[before] == y[city]) ? representative[before]
+                        : city;
+            }
+            m = 0;
+            for (int city = 0; city < n; city++) {
+                if (representative[city] == city) {
+                    mergedOf[city] = m++;
+                }
+            }
+            if (m >= 3) {
+                for (int city = 0; city < n; city++) {
+                    mergedOf[city] = mergedOf[representative[city]];
+                }
+            } else {
+                m = n;
+            }
+        }
+        if (m == n) {
+            for (int city = 0; city < n; city++) {
+                mergedOf[city] = city;
+            }
+        }
+
+        mergedDimension = m;
+        groupStart = new int[m + 1];
+        groupCities = new int[n];
+        for (int city = 0; city < n; city++) {
+            groupStart[mergedOf[city] + 1]++;
+        }
+        for (int i = 0; i < m; i++) {
+            groupStart[i + 1] += groupStart[i];
+        }
+        int[] fill = Arrays.copyOf(groupStart, m);
+        for (int city = 0; city < n; city++) {
+            // In increasing order, so the representative comes first.
+            groupCities[fill[mergedOf[city]]++] = city;
+        }
+        if (m == n) {
+            return original;
+        }
+
+        double[] x = new double[m];
+        double[] y = new double[m];
+        for (int i = 0; i < m; i++) {
+            x[i] = original.getXCoordinates()[groupCities[groupStart[i]]];
+            y[i] = original.getYCoordinates()[groupCities[groupStart[i]]];
+        }
+        Tour merged = Tour.fromCoordinates(original.getName(), x, y);
+        merged.setIntegerDistances(original.isIntegerDistances());
+        return merged;
+    }//end of merge()
+
+    /**
+     * This function sets up the reduced tour as the merged one, with no
+     * fixed path.
+     */
+    private void contractNothing(int m) {
+        keptCity = new int[m];
+        pathOf = new int[m];
+        for (int i = 0; i < m; i++) {
+            keptCity[i] = i;
+        }
+        Arrays.fill(pathOf, -1);
+        pathFrom = new int[0];
+        pathTo = new int[0];
+        pathStart = new int[1];
+        pathCities = new int[0];
+    }//end of contractNothing()
+
+    /**
+     * This function finds the fixed edges of the merged tour and contracts
+     * the paths they form.
+     */
+    private void fixEdges(Tour merged) {
+        int m = mergedDimension;
+        double[][] d = new double[m][m];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < m; j++) {
+                d[i][j] = (i == j) ? 0 : merged.distance(i, j);
+            }
+        }
+        boolean integer = merged.isIntegerDistances();
+
+        upperBound = upperBound(merged);
+
+        // Held-Karp bound: subgradient optimization of the penalties.
+        OneTree tree = new OneTree(d);
+        double[] pi = new double[m];
+        double[] bestPi = new double[m];
+        double best = -Double.MAX_VALUE;
+        double lambda = 2;
+        int period = Math.max(10, m / 2);
+        int stale = 0;
+        for (int iteration = 0; iteration < ITERATIONS_PER_CITY * m;
+                iteration++) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            double bound = tree.compute(pi);
+            if (bound > best + EPSILON) {
+                best = bound;
+                System.arraycopy(pi, 0, bestPi, 0, m);
+                stale = 0;
+            } else if (++stale >= period) {
+                lambda /= 2;
+                stale = 0;
+            }
+            int norm = 0;
+            for (int i = 0; i < m; i++) {
+                norm += (tree.degree[i] - 2) * (tree.degree[i] - 2);
+            }
+            if (norm == 0 || upperBound - best < EPSILON || lambda < 1e-6) {
+                // A tour, or no gap left to close.
+                break;
+            }
+            double step = lambda * (upperBound - bound) / norm;
+            for (int i = 0; i < m; i++) {
+                pi[i] += step * (tree.degree[i] - 2);
+            }
+        }
+        lowerBound = tree.compute(bestPi);
+
+        // Edges whose removal lifts the bound above the upper bound. When
+        // (nearly) all of them are, the last ones are left free, so that the
+        // fixed edges form paths and at least three cities are kept.
+        int[] fixedDegree = new int[m];
+        int[][] fixedTo = new int[m][2];
+        fixedPairs = new int[2 * m];
+        int[] pathEnd = new int[m];
+        for (int i = 0; i < m; i++) {
+            pathEnd[i] = i;
+        }
+        int inner = 0;
+        int count = 0;
+        for (int e = 0; e < m; e++) {
+            int a = tree.edgeFrom(e);
+            int b = tree.edgeTo(e);
+            double without = lowerBound - tree.weight(a, b)
+                    + tree.replacement(e);
+            if (!exceeds(without, upperBound, integer)) {
+                continue;
+            }
+            if (fixedDegree[a] == 2 || fixedDegree[b] == 2) {
+                // Only possible through rounding; trust none of them.
+                return;
+            }
+            int newInner = inner + (fixedDegree[a] == 1 ? 1 : 0)
+                    + (fixedDegree[b] == 1 ? 1 : 0);
+            if (pathEnd[a] == b || newInner > m - 3) {
+                continue;
+            }
+            // Join the two paths: their far ends now end each other's.
+            int endA = pathEnd[a];
+            int endB = pathEnd[b];
+            pathEnd[endA] = endB;
+            pathEnd[endB] = endA;
+            fixedTo[a][fixedDegree[a]++] = b;
+            fixedTo[b][fixedDegree[b]++] = a;
+            fixedPairs[2 * count] = a;
+            fixedPairs[2 * count + 1] = b;
+            inner = newInner;
+            count++;
+        }
+        fixedEdges = count;
+        contract(merged, d, fixedDegree, fixedTo);
+    }//end of fixEdges()
+
+    /**
+     * This function removes the cities with two fixed edges and builds the
+     * reduced tour, whose fixed paths are single forced edges.
+     */
+    private void contract(Tour merged, double[][] d, int[] fixedDegree,
+            int[][] fixedTo) {
+        int m = mergedDimension;
+        int inner = 0;
+        for (int i = 0; i < m; i++) {
+            if (fixedDegree[i] == 2) {
+                inner++;
+            }
+        }
+        if (inner == 0 || m - inner < 3) {
+            return;
+        }
+
+        int[] reducedOf = new int[m];
+        int k = 0;
+        for (int i = 0; i < m; i++) {
+            reducedOf[i] = (fixedDegree[i] == 2) ? -1 : k++;
+        }
+        int[] kept = new int[k];
+        for (int i = 0; i < m; i++) {
+            if (reducedOf[i] >= 0) {
+                kept[reducedOf[i]] = i;
+            }
+        }
+
+        // Walk the paths from their lower end city.
+        int[] paths = new int[m];
+        int[] ends = new int[m];
+        int[] starts = new int[m + 1];
+        int[] cities = new int[inner];
+        int[] partner = new int[k];
+        double[] length = new double[m];
+        Arrays.fill(partner, -1);
+        int pathCount = 0;
+        int size = 0;
+        for (int r = 0; r < k; r++) {
+            int a = kept[r];
+            if (fixedDegree[a] != 1 || partner[r] >= 0) {
+                continue;
+            }
+            int previous = a;
+            int city = fixedTo[a][0];
+            double total = d[a][city];
+            while (fixedDegree[city] == 2) {
+                cities[size++] = city;
+                int next = (fixedTo[city][0] != previous) ? fixedTo[city][0]
+                        : fixedTo[city][1];
+                total += d[city][next];
+                previous = city;
+                city = next;
+            }
+            paths[pathCount] = r;
+            ends[pathCount] = reducedOf[city];
+            length[pathCount] = total;
+            starts[pathCount + 1] = size;
+            partner[r] = reducedOf[city];
+            partner[reducedOf[city]] = r;
+            pathCount++;
+        }
+        if (size != inner) {
+            // The fixed edges close a cycle; nothing to contract safely.
+            return;
+        }
+
+        // Every edge but the forced ones costs M more than its distance.
+        double big = Math.floor(upperBound) + 1;
+        double[][] w = new double[k][k];
+        for (int r = 0; r < k; r++) {
+            for (int s = 0; s < k; s++) {
+                w[r][s] = (r == s) ? 0 : d[kept[r]][kept[s]] + big;
+            }
+        }
+        int[] path = new int[k];
+        Arrays.fill(path, -1);
+        for (int p = 0; p < pathCount; p++) {
+            w[paths[p]][ends[p]] = length[p];
+            w[ends[p]][paths[p]] = length[p];
+            path[paths[p]] = p;
+            path[ends[p]] = p;
+        }
+
+        penalty = (k - pathCount) * big;
+        reduced = Tour.fromWeights(original.getName(), w);
+        reduced.setIntegerDistances(merged.isIntegerDistances());
+        keptCity = kept;
+        pathOf = path;
+        pathFrom = Arrays.copyOf(paths, pathCount);
+        pathTo = Arrays.copyOf(ends, pathCount);
+        pathStart = Arrays.copyOf(starts, pathCount + 1);
+        pathCities = cities;
+    }//end of contract()
+
+    /**
+     * This function finds a good tour: the nearest neighbor tour improved
+     * by 2-opt, then by 2-opt after random double-bridge moves (the tour
+     * cut in four parts A B C D and joined as A C B D), keeping the best.
+     * @return The cost of the tour.
+     */
+    private static double upperBound(Tour merged) {
+        int m = merged.getDimension();
+        NearestNeighborSolver nn = new NearestNeighborSolver(merged);
+        nn.reportSummary = false;
+        PrimitiveTour sequence = PrimitiveTour.fromSolution(merged,
+                nn.getShortestTour());
+        TwoOptLocalSearch twoOpt = new TwoOptLocalSearch(merged,
+                merged.getNeighborList(NEIGHBORS));
+        twoOpt.optimize(sequence);
+        double best = sequence.cost();
+        int[] bestOrder = sequence.toArray(new int[m]);
+        int[] kicked = new int[m];
+        int[] touched = new int[8];
+        Random random = new Random(m);
+        for (int kick = 0; kick < KICKS_PER_CITY * m; kick++) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            int a = 1 + random.nextInt(m - 3);
+            int b = a + 1 + random.nextInt(m - a - 2);
+            int c = b + 1 + random.nextInt(m - b - 1);
+            int size = 0;
+            System.arraycopy(bestOrder, 0, kicked, size, a);
+            size += a;
+            System.arraycopy(bestOrder, b, kicked, size, c - b);
+            size += c - b;
+            System.arraycopy(bestOrder, a, kicked, size, b - a);
+            size += b - a;
+            System.arraycopy(bestOrder, c, kicked, size, m - c);
+            touched[0] = bestOrder[a - 1];
+            touched[1] = bestOrder[a];
+            touched[2] = bestOrder[b - 1];
+            touched[3] = bestOrder[b];
+            touched[4] = bestOrder[c - 1];
+            touched[5] = bestOrder[c];
+            touched[6] = bestOrder[0];
+            touched[7] = bestOrder[m - 1];
+            sequence.set(kicked);
+            twoOpt.optimize(sequence, touched);
+            double cost = sequence.cost();
+            if (cost < best - EPSILON) {
+                best = cost;
+                sequence.toArray(bestOrder);
+            }
+        }
+        return best;
+    }//end of upperBound()
+
+    /**
+     * This function tells if a lower bound proves every tour costlier than
+     * the upper bound. Integer tour costs are at least the bound rounded
+     * up.
+     */
+    private static boolean exceeds(double bound, double upper,
+            boolean integer) {
+        if (integer) {
+            return Math.ceil(bound - EPSILON) > upper + EPSILON;
+        }
+        return bound > upper + EPSILON;
+    }//end of exceeds()
+
+    /**
+     * A minimum 1-tree with city penalties: a minimum spanning tree of the
+     * cities other than 0 (Prim's algorithm, rooted at city 1) plus the two
+     * cheapest edges of city 0, the weight of edge (i, j) being
+     * d(i, j) + pi(i) + pi(j). Its weight minus twice the penalties is a
+     * lower bound of every tour. Edge e < m - 2 is the one from city e + 2
+     * to its parent; edges m - 2 and m - 1 are those of city 0.
+     */
+    private static final class OneTree {
+        final double[][] d;
+        final int m;
+        final int[] parent;
+        final int[] degree;
+        final int[] zero = new int[3];
+        final double[] key;
+        final boolean[] inTree;
+        double[] pi;
+
+        /** Preorder of the tree from city 1, and each subtree's range. */
+        final int[] preorder;
+        final int[] enter;
+        final int[] leave;
+
+        OneTree(double[][] d) {
+            this.d = d;
+            this.m = d.length;
+            parent = new int[m];
+            degree = new int[m];
+            key = new double[m];
+            inTree = new boolean[m];
+            preorder = new int[m];
+            enter = new int[m];
+            leave = new int[m];
+        }//end of constructor
+
+        double weight(int i, int j) {
+            return d[i][j] + pi[i] + pi[j];
+        }//end of weight()
+
+        /**
+         * This function computes the 1-tree of the penalties.
+         * @return Its lower bound.
+         */
+        double compute(double[] penalties) {
+            this.pi = penalties;
+            Arrays.fill(degree, 0);
+            Arrays.fill(inTree, false);
+            double total = 0;
+            inTree[1] = true;
+            parent[1] = -1;
+            for (int j = 2; j < m; j++) {
+                key[j] = weight(1, j);
+                parent[j] = 1;
+            }
+            for (int added = 2; added < m; added++) {
+                int next = -1;
+                for (int j = 2; j < m; j++) {
+                    if (!inTree[j] && (next < 0 || key[j] < key[next])) {
+                        next = j;
+                    }
+                }
+                inTree[next] = true;
+                total += key[next];
+                degree[next]++;
+                degree[parent[next]]++;
+                for (int j = 2; j < m; j++) {
+                    if (!inTree[j]) {
+                        double w = weight(next, j);
+                        if (w < key[j]) {
+                            key[j] = w;
+                            parent[j] = next;
+                        }
+                    }
+                }
+            }
+
+            // The three cheapest edges of city 0, in order.
+            Arrays.fill(zero, -1);
+            for (int j = 1; j < m; j++) {
+                double w = weight(0, j);
+                int slot = 3;
+                while (slot > 0 && (zero[slot - 1] < 0
+                        || w < weight(0, zero[slot - 1]))) {
+                    slot--;
+                }
+                if (slot < 3) {
+                    System.arraycopy(zero, slot, zero, slot + 1, 2 - slot);
+                    zero[slot] = j;
+                }
+            }
+            total += weight(0, zero[0]) + weight(0, zero[1]);
+            degree[0] = 2;
+            degree[zero[0]]++;
+            degree[zero[1]]++;
+
+            for (int i = 0; i < m; i++) {
+                total -= 2 * pi[i];
+            }
+            order();
+            return total;
+        }//end of compute()
+
+        /**
+         * This function numbers the cities of the spanning tree in
+         * preorder, so each subtree is a range of the numbers.
+         */
+        private void order() {
+            int[] childStart = new int[m + 1];
+            for (int j = 2; j < m; j++) {
+                childStart[parent[j] + 1]++;
+            }
+            for (int i = 0; i < m; i++) {
+                childStart[i + 1] += childStart[i];
+            }
+            int[] children = new int[m];
+            int[] fill = Arrays.copyOf(childStart, m);
+            for (int j = 2; j < m; j++) {
+                children[fill[parent[j]]++] = j;
+            }
+            int[] stack = new int[m];
+            int[] nextChild = Arrays.copyOf(childStart, m);
+            int top = 0;
+            int count = 0;
+            stack[top++] = 1;
+            enter[1] = count;
+            preorder[count++] = 1;
+            while (top > 0) {
+                int city = stack[top - 1];
+                if (nextChild[city] < childStart[city + 1]) {
+                    int child = children[nextChild[city]++];
+                    enter[child] = count;
+                    preorder[count++] = child;
+                    stack[top++] = child;
+                } else {
+                    leave[city] = count;
+                    top--;
+                }
+            }
+        }//end of order()
+
+        int edgeFrom(int e) {
+            return (e < m - 2) ? e + 2 : 0;
+        }//end of edgeFrom()
+
+        int edgeTo(int e) {
+            return (e < m - 2) ? parent[e + 2] : zero[e - (m - 2)];
+        }//end of edgeTo()
+
+        /**
+         * This function returns the weight of the cheapest edge that
+         * replaces an edge of the 1-tree when that edge is left out.
+         */
+        double replacement(int e) {
+            if (e >= m - 2) {
+                return weight(0, zero[2]);
+            }
+            int city = e + 2;
+            double cheapest = Double.MAX_VALUE;
+            for (int p = enter[city]; p < leave[city]; p++) {
+                int a = preorder[p];
+                for (int b = 1; b < m; b++) {
+                    if ((enter[b] < enter[city] || enter[b] >= leave[city])
+                            && !(a == city && b == parent[city])) {
+                        // Any edge across the cut but the one left out.
+                        cheapest = Math.min(cheapest, weight(a, b));
+                    }
+                }
+            }
+            return cheapest;
+        }//end of replacement()
+    }//end of class OneTree
+}//end of class
@@ -0,0 +1,440 @@
+package edu.rowan.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class computes minimum spanning trees of the cities of a Tour
+ * object. Small tours use Prim's algorithm on the dense distances (the
+ * adjacency matrix, if it was computed), in O(n^2) time and O(n) extra
+ * memory. Large tours use Boruvka's algorithm on the candidate edges of
+ * the neighbor lists: every round, each city finds its cheapest candidate
+ * edge to another component, in parallel, and each component then adds the
+ * cheapest edge of its cities. This is the minimum spanning tree of the
+ * candidate graph, which is (nearly always) the one of the full graph; if
+ * the candidate graph is not connected, the components left are joined by
+ * their cheapest edges over all cities.
+ *
+ * The weight of a minimum spanning tree is a lower bound of the cost of
+ * any tour, and the tree is the basis of the double tree and Christofides
+ * tours (see SpanningTreeSolver). The distances must be symmetric.
+ */
+public final class MinimumSpanningTree {
+
+    /** Largest tour solved with Prim's algorithm by compute(). */
+    public static final int DENSE_LIMIT = 2000;
+
+    /** Candidate edges per city of Boruvka's algorithm. */
+    public static final int CANDIDATES = 10;
+
+    /** Cities scanned per task of a parallel Boruvka round. */
+    static final int PARALLEL_GRAIN = 1 << 14;
+
+    private final int dimension;
+    private final String method;
+    private final int[] from;
+    private final int[] to;
+    private int edgeCount;
+    private double weight;
+    private long elapsedNanos;
+
+    private MinimumSpanningTree(int dimension, String method) {
+        this.dimension = dimension;
+        this.method = method;
+        this.from = new int[Math.max(0, dimension - 1)];
+        this.to = new int[Math.max(0, dimension - 1)];
+    }//end of constructor
+
+    /**
+     * This function computes the minimum spanning tree of a tour, with
+     * Prim's algorithm up to DENSE_LIMIT cities (or if the adjacency matrix
+     * exists), and with Boruvka's algorithm on the common fork/join pool
+     * above that.
+     * @param tour A symmetric Tour object.
+     * @return The tree.
+     */
+    public static MinimumSpanningTree compute(Tour tour)
+            throws InterruptedException {
+        if (tour.getDimension() <= DENSE_LIMIT || tour.hasAdjacencyMatrix()
+                || !tour.hasCoordinates()) {
+            return prim(tour, -1);
+        }
+        return boruvka(tour, CANDIDATES, ForkJoinPool.commonPool(),
+                ForkJoinPool.getCommonPoolParallelism());
+    }//end of compute()
+
+    /**
+     * This function computes a minimum spanning tree with Prim's algorithm.
+     * @param tour A symmetric Tour object.
+     * @param excluded A city left out of the tree, or -1 for none.
+     * @return The tree of every city but 'excluded'.
+     */
+    public static MinimumSpanningTree prim(Tour tour, int excluded) {
+        checkSymmetric(tour);
+        long start = System.nanoTime();
+        int n = tour.getDimension();
+        MinimumSpanningTree tree = new MinimumSpanningTree(n, "Prim");
+        double[] key = new double[n];
+        int[] parent = new int[n];
+        boolean[] inTree = new boolean[n];
+        Arrays.fill(key, Double.MAX_VALUE);
+        if (excluded >= 0) {
+            inTree[excluded] = true;
+        }
+        int next = (excluded == 0) ? 1 : 0;
+        if (next < n) {
+            key[next] = 0;
+            parent[next] = -1;
+        }
+        while (next >= 0 && next < n) {
+            int city = next;
+            inTree[city] = true;
+            if (parent[city] >= 0) {
+                tree.addEdge(parent[city], city, key[city]);
+            }
+            next = -1;
+            double best = Double.MAX_VALUE;
+            for (int j = 0; j < n; j++) {
+                if (inTree[j]) {
+                    continue;
+                }
+                double d = tour.distance(city, j);
+                if (d < key[j]) {
+                    key[j] = d;
+                    parent[j] = city;
+                }
+                if (key[j] < best) {
+                    best = key[j];
+                    next = j;
+                }
+            }
+        }
+        tree.elapsedNanos = System.nanoTime() - start;
+        return tree;
+    }//end of prim()
+
+    /**
+     * This function computes a minimum spanning tree with Boruvka's
+     * algorithm on the candidate edges of the neighbor lists.
+     * @param tour A symmetric Tour object.
+     * @param k Candidate edges per city.
+     * @param pool The threads scanning the cities.
+     * @param threads Number of threads of the pool.
+     * @return The tree.
+     */
+    public static MinimumSpanningTree boruvka(final Tour tour, int k,
+            ExecutorService pool, int threads) throws InterruptedException {
+        checkSymmetric(tour);
+        long start = System.nanoTime();
+        final int n = tour.getDimension();
+        MinimumSpanningTree tree = new MinimumSpanningTree(n, "Boruvka");
+        final NeighborList neighbors = tour.getNeighborList(k);
+        final int[] component = new int[n];
+        final int[] cheapest = new int[n];
+        final double[] cheapestWeight = new double[n];
+        int[] union = new int[n];
+        int[] bestFrom = new int[n];
+        int[] bestTo = new int[n];
+        double[] bestWeight = new double[n];
+        for (int i = 0; i < n; i++) {
+            union[i] = i;
+        }
+
+        int components = n;
+        while (components > 1) {
+            for (int i = 0; i < n; i++) {
+                component[i] = find(union, i);
+            }
+            final int candidates = neighbors.getK();
+            scan(pool, threads, n, new Scan() {
+                public void cities(int first, int last) {
+                    for (int v = first; v < last; v++) {
+                        cheapest[v] = -1;
+                        cheapestWeight[v] = Double.MAX_VALUE;
+                        for (int r = 0; r < candidates; r++) {
+                            offer(tour, component, v, neighbors.get(v, r),
+                                    cheapest, cheapestWeight);
+                        }
+                    }
+                }
+            });
+            if (!reduce(component, cheapest, cheapestWeight, bestFrom, bestTo,
+                    bestWeight)) {
+                // No candidate edge leaves any component: scan every city
+                // from the components other than the largest one.
+                final int largest = largestComponent(component);
+                scan(pool, threads, n, new Scan() {
+                    public void cities(int first, int last) {
+                        for (int v = first; v < last; v++) {
+                            cheapest[v] = -1;
+                            cheapestWeight[v] = Double.MAX_VALUE;
+                            if (component[v] == largest) {
+                                continue;
+                            }
+                            for (int u = 0; u < n; u++) {
+                                offer(tour, component, v, u, cheapest,
+                                        cheapestWeight);
+                            }
+                        }
+                    }
+                });
+                reduce(component, cheapest, cheapestWeight, bestFrom, bestTo,
+                        bestWeight);
+            }
+            int before = components;
+            for (int root = 0; root < n; root++) {
+                if (component[root] != root || bestTo[root] < 0) {
+                    continue;
+                }
+                int a = find(union, bestFrom[root]);
+                int b = find(union, bestTo[root]);
+                if (a != b) {
+                    union[a] = b;
+                    tree.addEdge(bestFrom[root], bestTo[root],
+                            bestWeight[root]);
+                    components--;
+                }
+            }
+            if (components == before) {
+                throw new IllegalStateException("No edge joins the "
+                        + components + " components left.");
+            }
+        }
+        tree.elapsedNanos = System.nanoTime() - start;
+        return tree;
+    }//end of boruvka()
+
+    /**
+     * This function returns the 1-tree lower bound of a tour: the minimum
+     * spanning tree of every city but 0, plus the two shortest edges of
+     * city 0. Every tour is a 1-tree, so no tour is shorter.
+     * @param tour A symmetric Tour object with at least three cities.
+     * @return The lower bound.
+     */
+    public static double oneTreeBound(Tour tour) {
+        MinimumSpanningTree tree = prim(tour, 0);
+        double first = Double.MAX_VALUE;
+        double second = Double.MAX_VALUE;
+        for (int j = 1; j < tour.getDimension(); j++) {
+            double d = tour.distance(0, j);
+            if (d < first) {
+                second = first;
+                first = d;
+            } else if (d < second) {
+                second = d;
+            }
+        }
+        return tree.getWeight() + first + second;
+    }//end of oneTreeBound()
+
+    /**
+     * This function returns the number of cities the tree was computed
+     * for (including an excluded city).
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * This function returns the number of edges of the tree.
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * This function returns one end of an edge.
+     * @param edge Index of the edge, from 0 to getEdgeCount() - 1.
+     * @return Zero based index of the city.
+     */
+    public int getFrom(int edge) {
+        return from[edge];
+    }
+
+    /**
+     * This function returns the other end of an edge.
+     * @param edge Index of the edge, from 0 to getEdgeCount() - 1.
+     * @return Zero based index of the city.
+     */
+    public int getTo(int edge) {
+        return to[edge];
+    }
+
+    /**
+     * This function returns the sum of the distances of the edges.
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * This function returns the algorithm the tree was computed with.
+     * @return "Prim" or "Boruvka".
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * This function returns how long computing the tree took.
+     * @return The time, in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * This function returns the number of edges of every city.
+     * @return The degrees, by zero based index.
+     */
+    public int[] degrees() {
+        int[] degree = new int[dimension];
+        for (int e = 0; e < edgeCount; e++) {
+            degree[from[e]]++;
+            degree[to[e]]++;
+        }
+        return degree;
+    }//end of degrees()
+
+    @Override
+    public String toString() {
+        return method + " MST: " + edgeCount + " edges, weight " + weight
+                + ", " + elapsedNanos / 1000000 + " ms";
+    }//end of toString()
+
+    private void addEdge(int a, int b, double d) {
+        from[edgeCount] = a;
+        to[edgeCount] = b;
+        edgeCount++;
+        weight += d;
+    }//end of addEdge()
+
+    private static void checkSymmetric(Tour tour) {
+        if (tour.isAsymmetric()) {
+            throw new IllegalArgumentException("Spanning trees need"
+                    + " symmetric distances.");
+        }
+    }//end of checkSymmetric()
+
+    /**
+     * A range of cities scanned by one task of a Boruvka round.
+     */
+    private interface Scan {
+        void cities(int first, int last);
+    }
+
+    /**
+     * This function scans the cities in tasks of PARALLEL_GRAIN cities on
+     * a pool, or on the calling thread if there are few of them.
+     */
+    private static void scan(ExecutorService pool, int threads, int n,
+            final Scan scan) throws InterruptedException {
+        int tasks = Math.min(Math.max(1, threads), n / PARALLEL_GRAIN);
+        if (tasks <= 1) {
+            scan.cities(0, n);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<Future<?>>(tasks);
+        for (int t = 0; t < tasks; t++) {
+            final int first = (int) ((long) n * t / tasks);
+            final int last = (int) ((long) n * (t + 1) / tasks);
+            futures.add(pool.submit(new Callable<Void>() {
+                public Void call() {
+                    scan.cities(first, last);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }//end of scan()
+
+    /**
+     * This function keeps the edge from v to u as the cheapest edge of v
+     * if it leaves the component of v and is cheaper. Ties are broken by
+     * the index of u, so all the edges chosen in a round form a forest.
+     */
+    private static void offer(Tour tour, int[] component, int v, int u,
+            int[] cheapest, double[] cheapestWeight) {
+        if (component[u] == component[v]) {
+            return;
+        }
+        double d = tour.distance(v, u);
+        if (d < cheapestWeight[v]
+                || (d == cheapestWeight[v] && u < cheapest[v])) {
+            cheapest[v] = u;
+            cheapestWeight[v] = d;
+        }
+    }//end of offer()
+
+    /**
+     * This function finds the cheapest edge of every component among the
+     * cheapest edges of its cities.
+     * @return False, if no component has an edge.
+     */
+    private static boolean reduce(int[] component, int[] cheapest,
+            double[] cheapestWeight, int[] bestFrom, int[] bestTo,
+            double[] bestWeight) {
+        int n = component.length;
+        Arrays.fill(bestTo, -1);
+        Arrays.fill(bestWeight, Double.MAX_VALUE);
+        boolean found = false;
+        for (int v = 0; v < n; v++) {
+            int u = cheapest[v];
+            if (u < 0) {
+                continue;
+            }
+            int root = component[v];
+            double d = cheapestWeight[v];
+            if (d < bestWeight[root] || (d == bestWeight[root]
+                    && edgeBefore(v, u, bestFrom[root], bestTo[root]))) {
+                bestFrom[root] = v;
+                bestTo[root] = u;
+                bestWeight[root] = d;
+                found = true;
+            }
+        }
+        return found;
+    }//end of reduce()
+
+    private static boolean edgeBefore(int a, int b, int c, int d) {
+        int low = Math.min(a, b);
+        int otherLow = Math.min(c, d);
+        return low != otherLow ? low < otherLow
+                : Math.max(a, b) < Math.max(c, d);
+    }//end of edgeBefore()
+
+    private static int largestComponent(int[] component) {
+        int[] size = new int[component.length];
+        int largest = 0;
+        for (int root : component) {
+            if (++size[root] > size[largest]) {
+                largest = root;
+            }
+        }
+        return largest;
+    }//end of largestComponent()
+
+    private static int find(int[] union, int i) {
+        while (union[i] != i) {
+            union[i] = union[union[i]];
+            i = union[i];
+        }
+        return i;
+    }//end of find()
+}//end of class
@@ -1,6 +1,7 @@
 package edu.rowan.algorithms;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * This class takes a Tour object and tries, by using a nearest 
@@ -11,24 +12,49 @@ public class NearestNeighborSolver {
 
     final Tour tour;
     final double[][] adjacencyMatrix;
+    final int[][] intMatrix; // integer distance mode only
     
-    ArrayList<Integer> visitedCities;
+    boolean[] visitedCities;
+    int visitedCount;
+    int[] route; // the tour being built, numbered from '0'
+    IncumbentHolder incumbent;
     ArrayList<Integer> bestTourSoFar;
     
     double tmpTourCost;
     double costOfBestTourSoFar;
 
+    final SolverMetrics metrics;
+
+    // False when the solver runs as a step of another solver, which
+    // reports the final tour cost itself.
+    boolean reportSummary = true;
+
     
     public NearestNeighborSolver(Tour tour) {
+        this(tour, new SolverMetrics("NearestNeighbor"));
+    }
+
+    /**
+     * Constructor
+     * @param tour The Tour object to be solved.
+     * @param metrics Counters updated while the search runs.
+     */
+    public NearestNeighborSolver(Tour tour, SolverMetrics metrics) {
     
         this.tour = tour;
-        this.adjacencyMatrix = tour.getAdjacencyMatrix();
+        this.metrics = metrics;
+        if (tour.isIntegerDistances()) {
+            this.intMatrix = tour.getIntAdjacencyMatrix();
+            this.adjacencyMatrix = null;
+        } else {
+            this.intMatrix = null;
+            this.adjacencyMatrix = tour.getAdjacencyMatrix();
+        }
         tmpTourCost = 0.0;
-        visitedCities = new ArrayList<Integer>();
-        bestTourSoFar = new ArrayList<Integer>();
-        
-        //TODO: find a better way to initialize this variable.
-        costOfBestTourSoFar = 1000000000.00; 
+        visitedCities = new boolean[tour.getDimension()];
+        route = new int[tour.getDimension()];
+        bestTourSoFar = new ArrayList<Integer>(tour.getDimension());
+        costOfBestTourSoFar = Double.MAX_VALUE;
     }
 
     /**
@@ -40,22 +66,64 @@ public class NearestNeighborSolver {
          
         /**
          * Test every city as the starting location/node. 
-         * The shortest tour will be save off in the variable 'bestTourSoFar' 
-         * and its cost in the variable 'costOfBestTourSoFar'
+         * The shortest tour is kept in 'incumbent' while the starts run,
+         * then copied to the variable 'bestTourSoFar' and its cost to the
+         * variable 'costOfBestTourSoFar'
          */
+        incumbent = IncumbentHolder.acquire(tour.getDimension());
+        long mark = -1;
+        metrics.start(tour);
         for(int city = 0; city < tour.getDimension(); city++){
             
             //Repetitive Nearest-Neighbor Algorithm (RNNA)
 
+            if (Thread.currentThread().isInterrupted()) {
+                // Cancelled; keep the best tour found so far.
+                break;
+            }
+            metrics.restarted();
             determineShortestTour(city);
-            
+            if (city == 0) {
+                // The first start warms up; the others must not allocate.
+                mark = AllocationGuard.mark();
+            }
         }
+        AllocationGuard.check(mark, "NearestNeighborSolver");
+        metrics.finish();
+
+        if (incumbent.size() > 0) {
+            bestTourSoFar = incumbent.snapshotList(1);
+            costOfBestTourSoFar = incumbent.getCost();
+        }
+        IncumbentHolder.release(incumbent);
+        incumbent = null;
         
-        printSolution(bestTourSoFar);
-        System.out.println("\nTour cost = " + costOfBestTourSoFar);
+        if (reportSummary && Trace.isDebug()) {
+            printSolution(bestTourSoFar);
+        }
+        if (reportSummary) {
+            Trace.summary("\nTour cost = " + costOfBestTourSoFar);
+        }
 
         return bestTourSoFar;
     }//end of getShortestTour()   
+
+    /**
+     * This function returns the counters collected during the search.
+     * @return The solver metrics.
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }//end of getMetrics()
+
+    /**
+     * This function returns the cost of the best tour found by the last call
+     * to getShortestTour().
+     * @return The cost of the shortest tour found.
+     */
+    public double getShortestDistance() {
+        return costOfBestTourSoFar;
+    }//end of getShortestDistance()
     
     /**
      * This function follows the nearest neighbor strategy to create a tour
@@ -67,37 +135,50 @@ public class NearestNeighborSolver {
         int initialNode = node;
         
         /**
-         * The tmpSolution arraylist holds the running solution for a particular 
-         * recursion. The values in the array, are saved in a way such that, are 
-         * compatible with the TSPLIB format. In other words, in the .tsp file all 
-         * location/nodes start from number '1'. Because our for...loops 
-         * iterate from '0' (zero), we add '1' to the appending value. 
+         * The route array holds the running solution for a particular 
+         * recursion, numbered from '0' (zero); the cities are numbered from 
+         * '1' as in the .tsp file only when the best tour is copied out. 
          */
-        ArrayList<Integer> tmpSolution = new ArrayList<Integer>();
+        int[] tmpSolution = route;
         
-        visitedCities.clear();
+        Arrays.fill(visitedCities, false);
+        visitedCount = 0;
         tmpTourCost = 0.0;
         
-        tmpSolution.add(node + 1); // Add the starting node to the solution.
-        visitedCities.add(node); // Add the starting node to the visited cities.
+        tmpSolution[0] = node; // Add the starting node to the solution.
+        markVisited(node); // Add the starting node to the visited cities.
         
-        while (visitedCities.size() < tour.getDimension()) {
-           
-            node = getNearestNode(node);
-            visitedCities.add(node); // Mark this node as visited
-            tmpSolution.add(node + 1);  // Add the current node to the solution.
+        if (intMatrix != null) {
+            // Integer distance mode: exact costs, summed as a long.
+            long cost = 0;
+            while (visitedCount < tour.getDimension()) {
+                int nearest = getNearestNodeInteger(node);
+                cost += intMatrix[node][nearest];
+                node = nearest;
+                markVisited(node);
+                tmpSolution[visitedCount - 1] = node;
+            }
+            cost += intMatrix[node][initialNode];
+            tmpTourCost = cost;
+        } else {
+            while (visitedCount < tour.getDimension()) {
+               
+                node = getNearestNode(node);
+                markVisited(node); // Mark this node as visited
+                tmpSolution[visitedCount - 1] = node;  // Add the current node to the solution.
+            }
+            
+            /**
+             * Add the distance from the last node visited to the initial node, to 
+             * the tour cost, in order to complete the cycle.
+             */
+            tmpTourCost += adjacencyMatrix[node][initialNode]; 
         }
-        
-        /**
-         * Add the distance from the last node visited to the initial node, to 
-         * the tour cost, in order to complete the cycle.
-         */
-        tmpTourCost += adjacencyMatrix[node][initialNode]; 
   
-        // Update best-tour-so-far and its cost.
-        if (tmpTourCost < costOfBestTourSoFar) {
-            costOfBestTourSoFar = tmpTourCost;
-            bestTourSoFar = (ArrayList<Integer>) tmpSolution.clone();
+        // Update best-tour-so-far and its cost; the holder copies the
+        // route into its spare buffer, so nothing is allocated.
+        if (incumbent.offer(tmpSolution, visitedCount, tmpTourCost)) {
+            metrics.incumbentImproved(tmpTourCost);
         }        
         
     }//end of determineShortestTour()
@@ -109,7 +190,7 @@ public class NearestNeighborSolver {
      * @return The location/node number of the nearest neighbor
      */
     private int getNearestNode(int currentNode) {
-        double edge = -1.0;
+        double edge = Double.MAX_VALUE;
         int nearestNode = -1;
 
         /**
@@ -122,23 +203,11 @@ public class NearestNeighborSolver {
             
             if (isMarkedVisited(i)){
                 // This city has already been visited by some other 
-                // node/recursion.
-                continue;
-            }
-            
-            if (-1 == adjacencyMatrix[currentNode][i]){
-                // Same City. Current and destination cities are the same.
-                // Same cities are encoded with a -1 in the adjancency matrix.
+                // node/recursion. The current city is always visited, so 
+                // the diagonal (-1) of the matrix is never read.
                 continue;
             }
                         
-            if ((-1.0 == edge) && (-1 != adjacencyMatrix[currentNode][i])) {
-               edge = adjacencyMatrix[currentNode][i];
-                // initiliaze this variable with the edge value of the
-                // first city, that is not the current city. This solves the 
-                // currentNode[0][0] issues, where it is originally set to -1.
-            }            
-                        
             if ((adjacencyMatrix[currentNode][i] <= edge)) { 
                 edge = adjacencyMatrix[currentNode][i];
                 nearestNode = i; //save off nearest neighbour.
@@ -150,6 +219,26 @@ public class NearestNeighborSolver {
         tmpTourCost += adjacencyMatrix[currentNode][nearestNode];
         return nearestNode;
     }//end of getNearestNode()  
+
+    /**
+     * This function returns the nearest neighbor from the specified argument
+     * in integer distance mode, with the same tie breaker as 
+     * getNearestNode().
+     * @param currentNode The starting location/node. 
+     * @return The location/node number of the nearest neighbor
+     */
+    private int getNearestNodeInteger(int currentNode) {
+        int[] row = intMatrix[currentNode];
+        int edge = Integer.MAX_VALUE;
+        int nearestNode = -1;
+        for (int i = (tour.getDimension() - 1); i > -1; i--) {
+            if (!visitedCities[i] && row[i] <= edge) {
+                edge = row[i];
+                nearestNode = i;
+            }
+        }
+        return nearestNode;
+    }//end of getNearestNodeInteger()
     
     
     
@@ -159,16 +248,17 @@ public class NearestNeighborSolver {
      * @return True, if the node was already visited; otherwise, false.
      */
     private boolean isMarkedVisited(int node) {
-        boolean found = false;
-
-        for (int i = 0; i < visitedCities.size(); i++) {
-            if (node == visitedCities.get(i)) {
-                found = true;
-                break;
-            }
-        }
-        return found;
+        return visitedCities[node];
     }//end of isMarkedVisited();
+
+    /**
+     * Mark the node argument as visited.
+     * @param node Node to be added to the visited cities array.
+     */
+    private void markVisited(int node) {
+        visitedCities[node] = true;
+        visitedCount++;
+    }//end of markVisited()
     
     /**
      * FOR DEBUGGING PURPOSES. It prints out all the cost for each leg of a 
@@ -185,22 +275,22 @@ public class NearestNeighborSolver {
             currentNode = solution.get(i - 1);
             nextNode = solution.get(i);           
             
-            edge = adjacencyMatrix[currentNode -1][nextNode - 1];
+            edge = tour.distance(currentNode - 1, nextNode - 1);
             cost += edge;
             
-            System.out.println("Node: " + currentNode);            
-            System.out.println("Nearest Node: " + nextNode  + "; Edge: " + edge);
-            System.out.println();
+            Trace.debug("Node: " + currentNode);            
+            Trace.debug("Nearest Node: " + nextNode  + "; Edge: " + edge);
+            Trace.debug("");
         }//end of for loop.
         
         // The following ties the end node back to the initial
         currentNode = nextNode;
         nextNode = solution.get(0);
-        edge = adjacencyMatrix[currentNode - 1][nextNode - 1];
+        edge = tour.distance(currentNode - 1, nextNode - 1);
         cost += edge;      
         
-        System.out.println("Node: " + currentNode);
-        System.out.println("Nearest Node: " + nextNode + "; Edge: " + edge);
+        Trace.debug("Node: " + currentNode);
+        Trace.debug("Nearest Node: " + nextNode + "; Edge: " + edge);
         
     }//end of printSolution()
 }//end of class
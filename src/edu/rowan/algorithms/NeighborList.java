@@ -0,0 +1,291 @@
+package edu.rowan.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * This class holds, for every city, its 'k' nearest neighbors sorted by
+ * increasing distance. The lists are stored in a single primitive array:
+ * the neighbors of city 'i' are at [i * k, (i + 1) * k).
+ * When the Tour object has no adjacency matrix, the neighbors are found
+ * from the coordinates with a uniform grid instead of comparing every pair
+ * of cities, so large instances are handled in about O(n * k) time.
+ */
+public class NeighborList {
+
+    private int dimension;
+    private final int k;
+    private int[] neighbors;
+
+    /**
+     * Constructor. The lists are built from the distances of the Tour
+     * object, keeping the 'k' closest cities of each city.
+     * @param tour The Tour object holding the distances between cities.
+     * @param k Number of neighbors per city.
+     */
+    public NeighborList(Tour tour, int k) {
+        this.dimension = tour.getDimension();
+        this.k = Math.max(0, Math.min(k, dimension - 1));
+        this.neighbors = new int[dimension * this.k];
+
+        double[] best = new double[this.k];
+        if (!tour.hasAdjacencyMatrix() && tour.hasCoordinates()) {
+            fillFromGrid(tour.getXCoordinates(), tour.getYCoordinates(), best);
+            return;
+        }
+        for (int i = 0; i < dimension; i++) {
+            fill(tour, i, best);
+        }
+    }//end of constructor
+
+    /**
+     * This function finds the nearest neighbors of one city with an
+     * insertion into a small sorted array, i.e. O(n * k) per city.
+     * @param tour The Tour object holding the distances between cities.
+     * @param city The city whose neighbors are computed.
+     * @param best Scratch array of size k.
+     */
+    void fill(Tour tour, int city, double[] best) {
+        int base = city * k;
+        int count = 0;
+        for (int j = 0; j < dimension; j++) {
+            if (j == city) {
+                continue;
+            }
+            count = insert(base, count, best, tour.distance(city, j), j);
+        }
+    }//end of fill()
+
+    /**
+     * This function adds a candidate to the sorted neighbors of a city, if
+     * it is closer than the k-th neighbor found so far.
+     * @return The number of neighbors found after the insertion.
+     */
+    private int insert(int base, int count, double[] best, double d, int j) {
+        if (count == k && d >= best[k - 1]) {
+            return count;
+        }
+        int slot = (count < k) ? count++ : k - 1;
+        while (slot > 0 && best[slot - 1] > d) {
+            best[slot] = best[slot - 1];
+            neighbors[base + slot] = neighbors[base + slot - 1];
+            slot--;
+        }
+        best[slot] = d;
+        neighbors[base + slot] = j;
+        return count;
+    }//end of insert()
+
+    /**
+     * This function finds the nearest neighbors of every city from their
+     * coordinates. The cities are bucketed into a grid of about two cities
+     * per cell; the cells around a city are scanned ring by ring until the
+     * next ring can not hold a closer city than the k-th one found.
+     * @param x x-coordinates of the cities.
+     * @param y y-coordinates of the cities.
+     * @param best Scratch array of size k (squared distances).
+     */
+    private void fillFromGrid(double[] x, double[] y, double[] best) {
+        if (k == 0) {
+            return;
+        }
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < dimension; i++) {
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        int side = (int) Math.ceil(Math.sqrt(dimension / 2.0));
+        double cell = Math.max(maxX - minX, maxY - minY) / side;
+        if (cell <= 0) {
+            cell = 1;
+        }
+        int columns = (int) ((maxX - minX) / cell) + 1;
+        int rows = (int) ((maxY - minY) / cell) + 1;
+
+        // Bucket the cities by cell (counting sort).
+        int[] cellOf = new int[dimension];
+        int[] cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < dimension; i++) {
+            int cx = Math.min(columns - 1, (int) ((x[i] - minX) / cell));
+            int cy = Math.min(rows - 1, (int) ((y[i] - minY) / cell));
+            cellOf[i] = cy * columns + cx;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] cellCities = new int[dimension];
+        int[] fillPos = Arrays.copyOf(cellStart, cellStart.length);
+        for (int i = 0; i < dimension; i++) {
+            cellCities[fillPos[cellOf[i]]++] = i;
+        }
+
+        int maxRing = Math.max(columns, rows);
+        for (int city = 0; city < dimension; city++) {
+            int base = city * k;
+            int count = 0;
+            int cx = cellOf[city] % columns;
+            int cy = cellOf[city] / columns;
+            for (int r = 0; r <= maxRing; r++) {
+                for (int gy = cy - r; gy <= cy + r; gy++) {
+                    if (gy < 0 || gy >= rows) {
+                        continue;
+                    }
+                    boolean edgeRow = (gy == cy - r || gy == cy + r);
+                    for (int gx = cx - r; gx <= cx + r;
+                            gx += (edgeRow || r == 0) ? 1 : 2 * r) {
+                        if (gx < 0 || gx >= columns) {
+                            continue;
+                        }
+                        int c = gy * columns + gx;
+                        for (int p = cellStart[c]; p < cellStart[c + 1]; p++) {
+                            int j = cellCities[p];
+                            if (j != city) {
+                                double dx = x[city] - x[j];
+                                double dy = y[city] - y[j];
+                                count = insert(base, count, best,
+                                        dx * dx + dy * dy, j);
+                            }
+                        }
+                    }
+                }
+                // Every city outside the scanned square is at least r cells
+                // away.
+                double reach = r * cell;
+                if (count == k && best[k - 1] <= reach * reach) {
+                    break;
+                }
+            }
+        }
+    }//end of fillFromGrid()
+
+    /**
+     * This function updates the lists after a city was appended to the
+     * Tour object: the new city gets its own list and becomes a neighbor of
+     * the cities it is closer to than their k-th neighbor.
+     * @param tour The Tour object, already holding the new city.
+     * @param city Zero based index of the new city.
+     */
+    void cityAdded(Tour tour, int city) {
+        dimension = tour.getDimension();
+        if (neighbors.length < dimension * k) {
+            neighbors = Arrays.copyOf(neighbors,
+                    (dimension + Math.max(16, dimension / 8)) * k);
+        }
+        double[] best = new double[k];
+        for (int i = 0; i < dimension; i++) {
+            if (i != city) {
+                offer(tour, i, city, best);
+            }
+        }
+        fill(tour, city, best);
+    }//end of cityAdded()
+
+    /**
+     * This function updates the lists after a city was removed from the
+     * Tour object and the last city took its index.
+     * @param tour The Tour object, already updated.
+     * @param city Index of the removed city (now the moved city's index).
+     * @param last Former index of the moved city.
+     */
+    void cityRemoved(Tour tour, int city, int last) {
+        if (city != last) {
+            System.arraycopy(neighbors, last * k, neighbors, city * k, k);
+        }
+        dimension = tour.getDimension();
+        double[] best = new double[k];
+        for (int i = 0; i < dimension; i++) {
+            int base = i * k;
+            boolean stale = false;
+            for (int r = 0; r < k; r++) {
+                if (neighbors[base + r] == city) {
+                    stale = true;
+                }
+            }
+            if (stale) {
+                // Lost a neighbor; the next closest city must be found.
+                fill(tour, i, best);
+            } else {
+                for (int r = 0; r < k; r++) {
+                    if (neighbors[base + r] == last) {
+                        neighbors[base + r] = city;
+                    }
+                }
+            }
+        }
+    }//end of cityRemoved()
+
+    /**
+     * This function updates the lists after a city of the Tour object was
+     * moved.
+     * @param tour The Tour object, already updated.
+     * @param city Zero based index of the moved city.
+     */
+    void cityMoved(Tour tour, int city) {
+        double[] best = new double[k];
+        for (int i = 0; i < dimension; i++) {
+            if (i == city) {
+                continue;
+            }
+            boolean listed = false;
+            for (int r = 0; r < k; r++) {
+                if (neighbors[i * k + r] == city) {
+                    listed = true;
+                }
+            }
+            if (listed) {
+                fill(tour, i, best);
+            } else {
+                offer(tour, i, city, best);
+            }
+        }
+        fill(tour, city, best);
+    }//end of cityMoved()
+
+    /**
+     * This function adds a candidate to the list of a city if it is closer
+     * than its current k-th neighbor.
+     */
+    private void offer(Tour tour, int city, int candidate, double[] best) {
+        if (k == 0) {
+            return;
+        }
+        int base = city * k;
+        double d = tour.distance(city, candidate);
+        if (d >= tour.distance(city, neighbors[base + k - 1])) {
+            return;
+        }
+        for (int r = 0; r < k; r++) {
+            best[r] = tour.distance(city, neighbors[base + r]);
+        }
+        insert(base, k, best, d, candidate);
+    }//end of offer()
+
+    /**
+     * This function returns the number of neighbors per city.
+     * @return The 'k' of this neighbor list.
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * This function returns the n-th nearest neighbor of a city.
+     * @param city Zero based index of a city.
+     * @param rank 0 for the nearest neighbor, up to k - 1.
+     * @return Zero based index of the neighbor.
+     */
+    public int get(int city, int rank) {
+        return neighbors[city * k + rank];
+    }
+
+    /**
+     * This function returns the backing array of the neighbor lists.
+     * @return The neighbors of city 'i' are at [i * k, (i + 1) * k).
+     */
+    public int[] getArray() {
+        return neighbors;
+    }
+}//end of class
@@ -0,0 +1,351 @@
+package edu.rowan.algorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class holds the open nodes (the frontier) of a best-first
+ * branch-and-bound search outside of the Java heap, so a frontier of any
+ * size causes no garbage collection work.
+ *
+ * Every node is a fixed size record of RECORD_BYTES bytes:
+ *   long visited   bitmask of the cities on the path
+ *   double cost    cost of the path
+ *   double bound   lower bound of every tour starting with the path
+ *   double rest    sum of the two shortest edges of the unvisited cities
+ *   int parent     index of the parent node in the node log
+ *   short last     last city of the path
+ *   short depth    number of cities on the path
+ *
+ * The records are kept in a binary min-heap (by bound) in a direct buffer,
+ * which grows by doubling up to the memory given. When it is full it is
+ * sorted and its worse half is spilled to a memory-mapped file as a sorted
+ * run; pop() returns the smallest bound of the heap and of the heads of the
+ * runs, so the nodes are read back in bound order.
+ *
+ * Expanded nodes are appended to a node log (int parent, int city) kept
+ * in memory-mapped files as well; a path is rebuilt by following the
+ * parent indexes.
+ */
+final class OffHeapFrontier {
+
+    static final int RECORD_BYTES = 40;
+
+    private static final int VISITED = 0;
+    private static final int COST = 8;
+    private static final int BOUND = 16;
+    private static final int REST = 24;
+    private static final int PARENT = 32;
+    private static final int LAST = 36;
+    private static final int DEPTH = 38;
+
+    /** Records of the heap buffer when the search starts. */
+    private static final int INITIAL_RECORDS = 4096;
+
+    /** Entries per node log file (8 bytes each). */
+    private static final int LOG_CHUNK = 1 << 22;
+
+    /**
+     * A node read from the frontier. It is filled in by pop() and reused
+     * by the caller.
+     */
+    static final class Node {
+        long visited;
+        double cost;
+        double bound;
+        double rest;
+        int parent;
+        int last;
+        int depth;
+    }//end of class Node
+
+    /**
+     * A sorted run spilled to disk.
+     */
+    private static final class Run {
+        final File file;
+        final MappedByteBuffer records;
+        final int count;
+        int next;
+
+        Run(File file, MappedByteBuffer records, int count) {
+            this.file = file;
+            this.records = records;
+            this.count = count;
+        }
+
+        double headBound() {
+            return records.getDouble(next * RECORD_BYTES + BOUND);
+        }
+    }//end of class Run
+
+    private final File spillDirectory;
+    private ByteBuffer heap;
+    private final int capacity;
+    private int size;
+    private final List<Run> runs = new ArrayList<Run>();
+    private final List<MappedByteBuffer> log = new ArrayList<MappedByteBuffer>();
+    private final List<File> logFiles = new ArrayList<File>();
+    private int logSize;
+    private long runRecords;
+
+    private long spilledRecords;
+    private int spilledRuns;
+    private long peakSize;
+
+    /**
+     * Constructor
+     * @param memoryBytes Off-heap memory of the in-memory heap.
+     * @param spillDirectory Where the runs and the node log are written.
+     */
+    OffHeapFrontier(long memoryBytes, File spillDirectory) {
+        long records = Math.max(64, memoryBytes / RECORD_BYTES);
+        this.capacity = (int) Math.min(records,
+                Integer.MAX_VALUE / RECORD_BYTES);
+        this.heap = ByteBuffer.allocateDirect(
+                Math.min(capacity, INITIAL_RECORDS) * RECORD_BYTES);
+        this.spillDirectory = spillDirectory;
+    }//end of constructor
+
+    /**
+     * This function adds a node to the frontier.
+     */
+    void push(long visited, double cost, double bound, double rest,
+            int parent, int last, int depth) throws IOException {
+        if (size == capacity) {
+            spill();
+        } else if (size * RECORD_BYTES == heap.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(RECORD_BYTES
+                    * (int) Math.min(capacity, 2L * size));
+            heap.clear();
+            grown.put(heap);
+            heap = grown;
+        }
+        int at = size * RECORD_BYTES;
+        heap.putLong(at + VISITED, visited);
+        heap.putDouble(at + COST, cost);
+        heap.putDouble(at + BOUND, bound);
+        heap.putDouble(at + REST, rest);
+        heap.putInt(at + PARENT, parent);
+        heap.putShort(at + LAST, (short) last);
+        heap.putShort(at + DEPTH, (short) depth);
+        siftUp(size++);
+        peakSize = Math.max(peakSize, size + runRecords);
+    }//end of push()
+
+    /**
+     * This function removes the node with the smallest bound.
+     * @param node Receives the node.
+     * @return False, if the frontier is empty.
+     */
+    boolean pop(Node node) {
+        Run best = null;
+        double bestBound = size > 0 ? bound(heap, 0) : Double.MAX_VALUE;
+        for (Run run : runs) {
+            if (run.headBound() < bestBound) {
+                bestBound = run.headBound();
+                best = run;
+            }
+        }
+        if (best != null) {
+            read(best.records, best.next * RECORD_BYTES, node);
+            runRecords--;
+            if (++best.next == best.count) {
+                runs.remove(best);
+                best.file.delete();
+            }
+            return true;
+        }
+        if (size == 0) {
+            return false;
+        }
+        read(heap, 0, node);
+        size--;
+        if (size > 0) {
+            copy(heap, size * RECORD_BYTES, heap, 0);
+            siftDown(0, size);
+        }
+        return true;
+    }//end of pop()
+
+    /**
+     * This function returns the number of nodes in the frontier.
+     */
+    long size() {
+        return size + runRecords;
+    }//end of size()
+
+    long getPeakSize() {
+        return peakSize;
+    }
+
+    long getSpilledRecords() {
+        return spilledRecords;
+    }
+
+    int getSpilledRuns() {
+        return spilledRuns;
+    }
+
+    /**
+     * This function appends an expanded node to the node log.
+     * @param parent Index of its parent (-1 for the root).
+     * @param city Its last city.
+     * @return Its index in the log.
+     */
+    int log(int parent, int city) throws IOException {
+        if (logSize == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Node log is full.");
+        }
+        if (logSize == log.size() * LOG_CHUNK) {
+            File file = File.createTempFile("frontier", ".log",
+                    spillDirectory);
+            file.deleteOnExit();
+            logFiles.add(file);
+            log.add(map(file, (long) LOG_CHUNK * 8));
+        }
+        ByteBuffer chunk = log.get(logSize / LOG_CHUNK);
+        int at = (logSize % LOG_CHUNK) * 8;
+        chunk.putInt(at, parent);
+        chunk.putInt(at + 4, city);
+        return logSize++;
+    }//end of log()
+
+    int parentOf(int index) {
+        return log.get(index / LOG_CHUNK).getInt((index % LOG_CHUNK) * 8);
+    }
+
+    int cityOf(int index) {
+        return log.get(index / LOG_CHUNK).getInt((index % LOG_CHUNK) * 8 + 4);
+    }
+
+    /**
+     * This function deletes the spill files, so none is left in the spill
+     * directory. A deleted file stays mapped, though: Java cannot unmap a
+     * MappedByteBuffer, so the disk blocks of a run (also of a run deleted
+     * by pop() once consumed) and of the node log are freed only when the
+     * garbage collector collects its buffer.
+     */
+    void close() {
+        for (Run run : runs) {
+            run.file.delete();
+        }
+        runs.clear();
+        runRecords = 0;
+        for (File file : logFiles) {
+            file.delete();
+        }
+        logFiles.clear();
+        log.clear();
+        logSize = 0;
+        size = 0;
+    }//end of close()
+
+    /**
+     * This function sorts the heap and writes its worse half to a new
+     * sorted run. The better half, in ascending order, is a valid heap.
+     */
+    private void spill() throws IOException {
+        // Heapsort: the records end up in descending order of bound.
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        int half = size / 2;
+        File file = File.createTempFile("frontier", ".run", spillDirectory);
+        file.deleteOnExit();
+        MappedByteBuffer records = map(file, (long) half * RECORD_BYTES);
+        for (int i = 0; i < half; i++) {
+            copy(heap, (half - 1 - i) * RECORD_BYTES, records,
+                    i * RECORD_BYTES);
+        }
+        runs.add(new Run(file, records, half));
+        for (int i = 0; i < size - half; i++) {
+            copy(heap, (size - 1 - i) * RECORD_BYTES, heap, i * RECORD_BYTES);
+        }
+        size -= half;
+        spilledRecords += half;
+        runRecords += half;
+        spilledRuns++;
+    }//end of spill()
+
+    private static MappedByteBuffer map(File file, long length)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+            // The mapping stays valid after the file is closed.
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    length);
+        } finally {
+            raf.close();
+        }
+    }//end of map()
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (bound(heap, parent) <= bound(heap, i)) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }//end of siftUp()
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < end && bound(heap, left) < bound(heap, smallest)) {
+                smallest = left;
+            }
+            if (right < end && bound(heap, right) < bound(heap, smallest)) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }//end of siftDown()
+
+    private static double bound(ByteBuffer records, int index) {
+        return records.getDouble(index * RECORD_BYTES + BOUND);
+    }
+
+    private void swap(int i, int j) {
+        int a = i * RECORD_BYTES;
+        int b = j * RECORD_BYTES;
+        for (int k = 0; k < RECORD_BYTES; k += 8) {
+            long tmp = heap.getLong(a + k);
+            heap.putLong(a + k, heap.getLong(b + k));
+            heap.putLong(b + k, tmp);
+        }
+    }//end of swap()
+
+    private static void copy(ByteBuffer from, int fromAt, ByteBuffer to,
+            int toAt) {
+        for (int k = 0; k < RECORD_BYTES; k += 8) {
+            to.putLong(toAt + k, from.getLong(fromAt + k));
+        }
+    }//end of copy()
+
+    private static void read(ByteBuffer records, int at, Node node) {
+        node.visited = records.getLong(at + VISITED);
+        node.cost = records.getDouble(at + COST);
+        node.bound = records.getDouble(at + BOUND);
+        node.rest = records.getDouble(at + REST);
+        node.parent = records.getInt(at + PARENT);
+        node.last = records.getShort(at + LAST);
+        node.depth = records.getShort(at + DEPTH);
+    }//end of read()
+}//end of class
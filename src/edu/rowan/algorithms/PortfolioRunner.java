@@ -0,0 +1,258 @@
+package edu.rowan.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class races several solvers on the same Tour object, each one in
+ * its own thread, and returns the best tour found by any of them. The best
+ * tour so far (the incumbent) is shared: every improvement is handed to
+ * the branch-and-bound searches, so they prune with the cost of the
+ * heuristic tours from the moment those are known.
+ *
+ * The race ends at the deadline, when every solver is done, or as soon as
+ * an exact solver completes: its result proves that the incumbent is
+ * optimal. The remaining solvers are then cancelled (interrupted).
+ *
+ * The solvers only read the Tour object; its matrices and neighbor lists
+ * are built once, by the first solver that needs them.
+ */
+public class PortfolioRunner {
+
+    /** The solvers raced when none are configured. */
+    public static final List<SolverType> DEFAULT_MEMBERS =
+            Collections.unmodifiableList(Arrays.asList(SolverType.NEAREST,
+                    SolverType.DECOMPOSITION, SolverType.BRANCHANDBOUND));
+
+    /**
+     * How long the cancelled solvers are given to hand in the best tour
+     * they have, in milliseconds.
+     */
+    static final long CANCEL_GRACE_MS = 200;
+
+    private final List<SolverType> members;
+
+    /**
+     * The best tour found by the portfolio, and the branch-and-bound
+     * searches that prune with its cost.
+     */
+    static final class Incumbent {
+        private double cost = Double.MAX_VALUE;
+        private ArrayList<Integer> tour;
+        private SolverType source;
+        private final List<BranchAndBoundSolver> searches =
+                new CopyOnWriteArrayList<BranchAndBoundSolver>();
+
+        /**
+         * This function keeps a tour if it is the best one so far.
+         * @param cost The tour cost.
+         * @param tour The tour, numbered from '1'.
+         * @param source The solver that found it.
+         * @return True, if the tour is the new incumbent.
+         */
+        boolean offer(double cost, ArrayList<Integer> tour,
+                SolverType source) {
+            synchronized (this) {
+                if (tour == null || tour.isEmpty() || cost >= this.cost) {
+                    return false;
+                }
+                this.cost = cost;
+                this.tour = tour;
+                this.source = source;
+            }
+            for (BranchAndBoundSolver search : searches) {
+                search.offerBound(cost);
+            }
+            return true;
+        }//end of offer()
+
+        void register(BranchAndBoundSolver search) {
+            searches.add(search);
+            search.offerBound(getCost());
+        }
+
+        synchronized double getCost() {
+            return cost;
+        }
+
+        synchronized SolveResult toResult(boolean optimal) {
+            return new SolveResult(source, tour, cost, optimal);
+        }
+    }//end of class Incumbent
+
+    /**
+     * Constructor
+     * @param members The solvers to race.
+     */
+    public PortfolioRunner(List<SolverType> members) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("No solvers to race.");
+        }
+        this.members = new ArrayList<SolverType>(members);
+    }//end of constructor
+
+    /**
+     * This function parses a list of solver names, such as
+     * "nearest,decomposition,branchandbound".
+     * @param names Comma separated solver names, or "default" for the
+     *        DEFAULT_MEMBERS.
+     * @return The solvers.
+     * @throws IllegalArgumentException If a name is unknown.
+     */
+    public static List<SolverType> parseMembers(String names) {
+        if (names.trim().equalsIgnoreCase("default")) {
+            return DEFAULT_MEMBERS;
+        }
+        List<SolverType> members = new ArrayList<SolverType>();
+        for (String name : names.split(",")) {
+            if (!name.trim().isEmpty()) {
+                members.add(SolverType.fromName(name.trim()));
+            }
+        }
+        return members;
+    }//end of parseMembers()
+
+    /**
+     * This function races the solvers on a tour.
+     * @param tour The Tour object to be solved.
+     * @param deadlineMillis Time budget in milliseconds.
+     * @param startTour A known tour (numbered from '1') the race starts
+     *        from, or null.
+     * @return The best tour found, marked complete if it is proven
+     *         optimal; its solver is the one that found it (null for the
+     *         start tour).
+     * @throws IllegalStateException If every solver failed.
+     */
+    public SolveResult run(final Tour tour, long deadlineMillis,
+            ArrayList<Integer> startTour) throws InterruptedException {
+        final Incumbent incumbent = new Incumbent();
+        if (startTour != null) {
+            incumbent.offer(cost(tour, startTour), startTour, null);
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        ExecutorService pool = Executors.newFixedThreadPool(members.size(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable task) {
+                        Thread thread = new Thread(task,
+                                "portfolio-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        CompletionService<SolveResult> done =
+                new ExecutorCompletionService<SolveResult>(pool);
+        Map<Future<SolveResult>, SolverType> submitted =
+                new HashMap<Future<SolveResult>, SolverType>();
+        for (final SolverType member : members) {
+            submitted.put(done.submit(new Callable<SolveResult>() {
+                public SolveResult call() {
+                    return runMember(member, tour, incumbent);
+                }
+            }), member);
+        }
+
+        boolean optimal = false;
+        int failed = 0;
+        Throwable failure = null;
+        try {
+            for (int finished = 0; finished < members.size() && !optimal;
+                    finished++) {
+                Future<SolveResult> next = done.poll(
+                        deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    Trace.summary("Portfolio deadline reached.");
+                    break;
+                }
+                try {
+                    SolveResult result = next.get();
+                    Trace.summary("Portfolio: " + result.getSolver()
+                            + " done after " + (System.nanoTime() - start)
+                            / 1000000 + " ms, Dist.: " + result.getCost());
+                    optimal = result.getSolver().isExact()
+                            && result.isComplete();
+                } catch (ExecutionException e) {
+                    Trace.summary("Portfolio: " + submitted.get(next)
+                            + " failed: " + e.getCause());
+                    failed++;
+                    failure = e.getCause();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        if (failed == members.size()) {
+            throw new IllegalStateException(
+                    "Every solver of the portfolio failed.", failure);
+        }
+        // The cancelled solvers hand in the best tour they have.
+        pool.awaitTermination(CANCEL_GRACE_MS, TimeUnit.MILLISECONDS);
+        return incumbent.toResult(optimal);
+    }//end of run()
+
+    /**
+     * This function runs one solver of the portfolio. Branch-and-bound
+     * searches share the incumbent while they run; the other solvers
+     * offer their tour when they are done or cancelled.
+     */
+    private static SolveResult runMember(SolverType member, Tour tour,
+            final Incumbent incumbent) {
+        if (member != SolverType.BRANCHANDBOUND) {
+            SolveResult result = member.solve(tour);
+            incumbent.offer(result.getCost(), result.getTour(), member);
+            return result;
+        }
+
+        BranchAndBoundSolver search = new BranchAndBoundSolver(tour,
+                new SolverMetrics("BranchAndBound"),
+                new BranchAndBoundSolver.Listener() {
+                    public void incumbentImproved(double cost, int[] cities) {
+                        ArrayList<Integer> found =
+                                new ArrayList<Integer>(cities.length);
+                        for (int city : cities) {
+                            found.add(city + 1);
+                        }
+                        incumbent.offer(cost, found,
+                                SolverType.BRANCHANDBOUND);
+                    }
+
+                    public void donate(List<int[]> prefixes) {
+                        // Never asked to split.
+                    }
+                });
+        incumbent.register(search);
+        search.solvePrefix(new int[] { 0 });
+        boolean complete = !Thread.currentThread().isInterrupted();
+        return new SolveResult(member, null,
+                Math.min(search.getShortestDistance(), incumbent.getCost()),
+                complete);
+    }//end of runMember()
+
+    private static double cost(Tour tour, ArrayList<Integer> solution) {
+        double cost = 0;
+        int n = solution.size();
+        for (int i = 0; i < n; i++) {
+            cost += tour.distance(solution.get(i) - 1,
+                    solution.get((i + 1) % n) - 1);
+        }
+        return cost;
+    }//end of cost()
+}//end of class
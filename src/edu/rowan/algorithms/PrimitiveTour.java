@@ -0,0 +1,183 @@
+package edu.rowan.algorithms;
+
+import java.util.ArrayList;
+
+/**
+ * This class holds a complete tour in two primitive arrays: 'order' holds the
+ * cities in visiting order and 'position' holds, for every city, its index in
+ * 'order'. This gives O(1) next/prev/between queries without boxing. The tour
+ * cost is cached and kept up to date on reversals.
+ */
+public class PrimitiveTour implements TourSequence {
+
+    private final Tour tour;
+    private final int[] order;
+    private final int[] position;
+
+    private double cost;
+    private boolean costValid;
+
+    /**
+     * Constructor
+     * @param tour The Tour object holding the distances between cities.
+     * @param cities Zero based city indexes in visiting order.
+     */
+    public PrimitiveTour(Tour tour, int[] cities) {
+        this.tour = tour;
+        this.order = new int[cities.length];
+        this.position = new int[cities.length];
+        set(cities);
+    }//end of constructor
+
+    /**
+     * This function builds a primitive tour from a solution as returned by
+     * the solvers, where cities are numbered from '1' as in the .tsp file.
+     * @param tour The Tour object holding the distances between cities.
+     * @param solution An array containing a tour solution.
+     * @return A primitive tour with zero based city indexes.
+     */
+    public static PrimitiveTour fromSolution(Tour tour,
+            ArrayList<Integer> solution) {
+        int[] cities = new int[solution.size()];
+        for (int i = 0; i < cities.length; i++) {
+            cities[i] = solution.get(i) - 1;
+        }
+        return new PrimitiveTour(tour, cities);
+    }//end of fromSolution()
+
+    /**
+     * This function overwrites the tour with the specified ordering. No new
+     * arrays are allocated.
+     * @param cities Zero based city indexes in visiting order.
+     */
+    public final void set(int[] cities) {
+        System.arraycopy(cities, 0, order, 0, order.length);
+        for (int i = 0; i < order.length; i++) {
+            position[order[i]] = i;
+        }
+        costValid = false;
+    }//end of set()
+
+    @Override
+    public int size() {
+        return order.length;
+    }
+
+    @Override
+    public int city(int pos) {
+        return order[pos];
+    }
+
+    /**
+     * This function returns the position of the city in the tour.
+     * @param city Zero based index of a city.
+     * @return Index of the city in the visiting order.
+     */
+    public int position(int city) {
+        return position[city];
+    }
+
+    @Override
+    public int next(int city) {
+        int p = position[city] + 1;
+        return order[p == order.length ? 0 : p];
+    }
+
+    @Override
+    public int prev(int city) {
+        int p = position[city];
+        return order[p == 0 ? order.length - 1 : p - 1];
+    }
+
+    @Override
+    public boolean between(int a, int b, int c) {
+        int pa = position[a];
+        int pb = position[b];
+        int pc = position[c];
+        if (pa <= pc) {
+            return pa <= pb && pb <= pc;
+        }
+        return pb >= pa || pb <= pc;
+    }//end of between()
+
+    /**
+     * This function reverses the path from 'from' to 'to'. When that path is
+     * longer than half of the tour, the complementary path is reversed
+     * instead, which yields the same cycle.
+     * @param from First city of the path to be reversed.
+     * @param to Last city of the path to be reversed.
+     */
+    @Override
+    public void reverse(int from, int to) {
+        int n = order.length;
+        int i = position[from];
+        int j = position[to];
+        int length = ((j - i + n) % n) + 1;
+
+        if (length < n && costValid) {
+            int a = prev(from);
+            int b = next(to);
+            cost += tour.distance(a, to) + tour.distance(from, b)
+                    - tour.distance(a, from) - tour.distance(to, b);
+        }
+
+        if (2 * length > n) {
+            // Reverse the complementary path instead.
+            int tmp = (j + 1) % n;
+            j = (i - 1 + n) % n;
+            i = tmp;
+            length = n - length;
+        }
+
+        for (int k = 0; k < length / 2; k++) {
+            int p = i + k;
+            int q = j - k;
+            if (p >= n) {
+                p -= n;
+            }
+            if (q < 0) {
+                q += n;
+            }
+            int cityP = order[p];
+            int cityQ = order[q];
+            order[p] = cityQ;
+            order[q] = cityP;
+            position[cityQ] = p;
+            position[cityP] = q;
+        }
+    }//end of reverse()
+
+    @Override
+    public double cost() {
+        if (!costValid) {
+            double total = 0.0;
+            for (int i = 0; i < order.length - 1; i++) {
+                total += tour.distance(order[i], order[i + 1]);
+            }
+            if (order.length > 1) {
+                total += tour.distance(order[order.length - 1], order[0]);
+            }
+            cost = total;
+            costValid = true;
+        }
+        return cost;
+    }//end of cost()
+
+    @Override
+    public int[] toArray(int[] dest) {
+        System.arraycopy(order, 0, dest, 0, order.length);
+        return dest;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder("[");
+        for (int i = 0; i < order.length; i++) {
+            if (i > 0) {
+                line.append(", ");
+            }
+            line.append(order[i] + 1);
+        }
+        return line.append("]").toString();
+    }//end of toString()
+}//end of class
@@ -0,0 +1,318 @@
+package edu.rowan.algorithms;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solution-quality regression harness. For every instance in the inputs
+ * folder that has a matching optimal tour (X.tsp and X.opt.tour), it runs
+ * the selected solvers in parallel, validates the tours they return and
+ * reports cost, gap to the optimal tour, wall time and memory as .csv or
+ * JSON.
+ *
+ * Usage:
+ *   QualityHarness [--inputs dir] [--solvers a,b] [--threads n]
+ *                  [--max-exact n] [--format csv|json] [--output file]
+ *                  [--integer]
+ *
+ * With --integer, distances are rounded to the nearest integer as TSPLIB
+ * defines them, so the costs match the published optima.
+ */
+public class QualityHarness {
+
+    private static final String OPT_TOUR_SUFFIX = ".opt.tour";
+
+    private String inputs = "src/edu/rowan/algorithms/nearest_neighbour/inputs";
+    private List<SolverType> solvers = Arrays.asList(SolverType.NEAREST);
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int maxExact = 12;
+    private boolean json = false;
+    private String output;
+    private boolean integerDistances = false;
+
+    /**
+     * The evaluation of one solver on one instance.
+     */
+    static class Evaluation {
+        String instance;
+        int dimension;
+        SolverType solver;
+        double cost = Double.NaN;
+        double optimal;
+        boolean valid;
+        String error = "";
+        double wallMs;
+        long allocatedBytes;
+
+        double gapPercent() {
+            return 100.0 * (cost - optimal) / optimal;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        QualityHarness harness = new QualityHarness();
+        harness.parseArguments(args);
+        Trace.setLevel(TraceLevel.OFF);
+
+        List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+
+        List<Evaluation> evaluations = harness.evaluateAll();
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        PrintWriter out = (harness.output == null)
+                ? new PrintWriter(new OutputStreamWriter(System.out))
+                : new PrintWriter(new FileWriter(harness.output));
+        try {
+            if (harness.json) {
+                writeJson(out, evaluations, peakHeap);
+            } else {
+                writeCsv(out, evaluations, peakHeap);
+            }
+        } finally {
+            out.flush();
+            if (harness.output != null) {
+                out.close();
+            }
+        }
+
+        for (Evaluation e : evaluations) {
+            if (!e.valid) {
+                System.exit(1);
+            }
+        }
+    }//end of main()
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equalsIgnoreCase("--inputs")) {
+                inputs = args[++i];
+            } else if (arg.equalsIgnoreCase("--solvers")) {
+                solvers = new ArrayList<SolverType>();
+                for (String name : args[++i].split(",")) {
+                    solvers.add(SolverType.fromName(name.trim()));
+                }
+            } else if (arg.equalsIgnoreCase("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (arg.equalsIgnoreCase("--max-exact")) {
+                maxExact = Integer.parseInt(args[++i]);
+            } else if (arg.equalsIgnoreCase("--format")) {
+                json = args[++i].equalsIgnoreCase("json");
+            } else if (arg.equalsIgnoreCase("--output")) {
+                output = args[++i];
+            } else if (arg.equalsIgnoreCase("--integer")) {
+                integerDistances = true;
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+    }//end of parseArguments()
+
+    /**
+     * This function loads every instance that has an optimal tour and runs
+     * the selected solvers on it using a fixed size thread pool.
+     * @return The evaluations, in instance and solver order.
+     */
+    List<Evaluation> evaluateAll() throws IOException, InterruptedException {
+        File[] files = new File(inputs).listFiles();
+        if (files == null) {
+            throw new IOException("Not a directory: " + inputs);
+        }
+        Arrays.sort(files);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Evaluation>> futures = new ArrayList<Future<Evaluation>>();
+        try {
+            for (File optFile : files) {
+                String optName = optFile.getName();
+                if (!optName.endsWith(OPT_TOUR_SUFFIX)) {
+                    continue;
+                }
+                String instance = optName.substring(0,
+                        optName.length() - OPT_TOUR_SUFFIX.length());
+                File tspFile = new File(optFile.getParentFile(),
+                        instance + ".tsp");
+                if (!tspFile.isFile()) {
+                    continue;
+                }
+
+                Tour tour = Tour.load(tspFile.getPath());
+                tour.setIntegerDistances(integerDistances);
+                int[] optimalTour = TourFileReader.read(optFile.getPath());
+                double optimal = tourCost(tour, optimalTour);
+
+                for (SolverType solver : solvers) {
+                    if (solver.isExact() && tour.getDimension() > maxExact) {
+                        continue;
+                    }
+                    futures.add(pool.submit(
+                            createTask(instance, tour, optimal, solver)));
+                }
+            }
+
+            List<Evaluation> evaluations = new ArrayList<Evaluation>();
+            for (Future<Evaluation> future : futures) {
+                try {
+                    evaluations.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return evaluations;
+        } finally {
+            pool.shutdownNow();
+        }
+    }//end of evaluateAll()
+
+    private Callable<Evaluation> createTask(final String instance,
+            final Tour tour, final double optimal, final SolverType solver) {
+        return new Callable<Evaluation>() {
+            public Evaluation call() {
+                com.sun.management.ThreadMXBean mx =
+                        (com.sun.management.ThreadMXBean)
+                        ManagementFactory.getThreadMXBean();
+                long threadId = Thread.currentThread().getId();
+
+                Evaluation e = new Evaluation();
+                e.instance = instance;
+                e.dimension = tour.getDimension();
+                e.solver = solver;
+                e.optimal = optimal;
+
+                long bytesBefore = mx.getThreadAllocatedBytes(threadId);
+                long start = System.nanoTime();
+                try {
+                    SolveResult result = solver.solve(tour);
+                    e.wallMs = (System.nanoTime() - start) / 1e6;
+                    int[] cities = toArray(result.getTour());
+                    e.error = validate(tour.getDimension(), cities);
+                    e.valid = e.error.isEmpty();
+                    if (e.valid) {
+                        e.cost = tourCost(tour, cities);
+                    }
+                } catch (RuntimeException ex) {
+                    e.wallMs = (System.nanoTime() - start) / 1e6;
+                    e.error = ex.toString();
+                }
+                e.allocatedBytes = mx.getThreadAllocatedBytes(threadId)
+                        - bytesBefore;
+                return e;
+            }
+        };
+    }//end of createTask()
+
+    /**
+     * This function checks that a tour visits every location exactly once.
+     * @param dimension The number of locations/nodes.
+     * @param cities The tour, numbered from '1'.
+     * @return An empty string if the tour is valid; otherwise, the reason.
+     */
+    static String validate(int dimension, int[] cities) {
+        if (cities.length != dimension) {
+            return "expected " + dimension + " nodes, found " + cities.length;
+        }
+        boolean[] seen = new boolean[dimension + 1];
+        for (int city : cities) {
+            if (city < 1 || city > dimension) {
+                return "node " + city + " out of range";
+            }
+            if (seen[city]) {
+                return "node " + city + " visited twice";
+            }
+            seen[city] = true;
+        }
+        return "";
+    }//end of validate()
+
+    /**
+     * This function calculates the cost of a closed tour.
+     * @param tour The Tour object holding the distances.
+     * @param cities The tour, numbered from '1'.
+     * @return The tour cost.
+     */
+    static double tourCost(Tour tour, int[] cities) {
+        int[] zeroBased = new int[cities.length];
+        for (int i = 0; i < cities.length; i++) {
+            zeroBased[i] = cities[i] - 1;
+        }
+        return new PrimitiveTour(tour, zeroBased).cost();
+    }//end of tourCost()
+
+    private static int[] toArray(List<Integer> list) {
+        int[] cities = new int[list.size()];
+        for (int i = 0; i < cities.length; i++) {
+            cities[i] = list.get(i);
+        }
+        return cities;
+    }
+
+    private static void writeCsv(PrintWriter out, List<Evaluation> rows,
+            long peakHeap) {
+        out.println("instance,dimension,solver,valid,cost,optimal,gap_pct,"
+                + "wall_ms,allocated_bytes,error");
+        for (Evaluation e : rows) {
+            out.println(String.format(Locale.ROOT,
+                    "%s,%d,%s,%b,%.4f,%.4f,%.4f,%.3f,%d,%s", e.instance,
+                    e.dimension, e.solver.name().toLowerCase(Locale.ROOT),
+                    e.valid, e.cost, e.optimal, e.gapPercent(), e.wallMs,
+                    e.allocatedBytes, e.error.replace(',', ';')));
+        }
+        out.println("# peak_heap_bytes," + peakHeap);
+    }//end of writeCsv()
+
+    private static void writeJson(PrintWriter out, List<Evaluation> rows,
+            long peakHeap) {
+        out.println("{");
+        out.println("  \"peakHeapBytes\": " + peakHeap + ",");
+        out.println("  \"results\": [");
+        for (int i = 0; i < rows.size(); i++) {
+            Evaluation e = rows.get(i);
+            out.print(String.format(Locale.ROOT,
+                    "    {\"instance\": \"%s\", \"dimension\": %d, "
+                    + "\"solver\": \"%s\", \"valid\": %b, \"cost\": %s, "
+                    + "\"optimal\": %.4f, \"gapPct\": %s, \"wallMs\": %.3f, "
+                    + "\"allocatedBytes\": %d, \"error\": \"%s\"}",
+                    escape(e.instance), e.dimension,
+                    e.solver.name().toLowerCase(Locale.ROOT), e.valid,
+                    number(e.cost), e.optimal, number(e.gapPercent()),
+                    e.wallMs, e.allocatedBytes, escape(e.error)));
+            out.println(i + 1 < rows.size() ? "," : "");
+        }
+        out.println("  ]");
+        out.println("}");
+    }//end of writeJson()
+
+    private static String number(double value) {
+        return Double.isNaN(value) ? "null"
+                : String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}//end of class
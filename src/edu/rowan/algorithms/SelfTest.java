@@ -0,0 +1,844 @@
+package edu.rowan.algorithms;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runnable self-checks that compare the solvers with exact answers
+ * (a Held-Karp dynamic program over the subsets of cities) on small random
+ * tours.
+ *
+ * Usage:
+ *   SelfTest [check ...]
+ *
+ * Run from the top folder of the project, where the 'solvers' check finds
+ * the brute*.tsp instances. With no argument every check runs. Each check prints PASS or FAIL with
+ * the reason, and the exit code is 1 if any failed.
+ */
+public class SelfTest {
+
+    static final String[] ALL_CHECKS = {
+        "solvers", "reduction", "resume", "checkpoint", "timewindows",
+        "addcity", "instances", "failures", "bounds", "spill", "sequences"
+    };
+
+    /** The instances every solver is checked on. */
+    static final String[] EXACT_INSTANCES = {
+        "src/edu/rowan/algorithms/bruteforce/inputs/brute10.tsp",
+        "src/edu/rowan/algorithms/bruteforce/inputs/brute11.tsp",
+        "src/edu/rowan/algorithms/bruteforce/inputs/brute12.tsp"
+    };
+
+    /** Brute force is only run up to this many cities. */
+    static final int MAX_BRUTE_FORCE = 10;
+
+    private static final double EPSILON = 1e-6;
+
+    private int failures;
+
+    public static void main(String[] args) throws Exception {
+        Trace.setLevel(TraceLevel.OFF);
+        SelfTest test = new SelfTest();
+        for (String check : (args.length > 0) ? args : ALL_CHECKS) {
+            test.run(check);
+        }
+        if (test.failures > 0) {
+            System.err.println(test.failures + " check(s) failed.");
+            System.exit(1);
+        }
+    }//end of main()
+
+    private void run(String check) throws Exception {
+        long start = System.nanoTime();
+        try {
+            if (check.equals("solvers")) {
+                checkSolvers();
+            } else if (check.equals("reduction")) {
+                checkReduction();
+            } else if (check.equals("resume")) {
+                checkResume();
+            } else if (check.equals("checkpoint")) {
+                checkCheckpoint();
+            } else if (check.equals("timewindows")) {
+                checkTimeWindows();
+            } else if (check.equals("addcity")) {
+                checkAddCity();
+            } else if (check.equals("bounds")) {
+                checkBounds();
+            } else if (check.equals("spill")) {
+                checkSpill();
+            } else if (check.equals("sequences")) {
+                checkSequences();
+            } else if (check.equals("failures")) {
+                checkFailures();
+            } else if (check.equals("instances")) {
+                checkInstances();
+            } else {
+                throw new IllegalArgumentException("Unknown check: " + check);
+            }
+            System.out.println("PASS " + check + " ("
+                    + (System.nanoTime() - start) / 1000000 + " ms)");
+        } catch (AssertionError e) {
+            failures++;
+            System.out.println("FAIL " + check + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            failures++;
+            System.out.println("FAIL " + check + ": " + e);
+        }
+    }//end of run()
+
+    /**
+     * Every solver, on the brute* instances and on small random tours in
+     * real and integer distances: the tour visits every city once, its
+     * reported cost is its cost, and it is the optimum for the exact
+     * solvers and no better than the optimum for the others.
+     */
+    private void checkSolvers() throws Exception {
+        List<Tour> tours = new ArrayList<Tour>();
+        for (String file : EXACT_INSTANCES) {
+            tours.add(Tour.load(file));
+        }
+        for (int seed = 0; seed < 10; seed++) {
+            Random random = new Random(seed);
+            tours.add(randomTour(random, 6 + random.nextInt(4), 0,
+                    (seed % 2) == 1));
+        }
+        for (Tour tour : tours) {
+            double optimum = optimum(tour, -1, -1);
+            for (SolverType solver : SolverType.values()) {
+                if (solver == SolverType.BRUTEFORCE
+                        && tour.getDimension() > MAX_BRUTE_FORCE) {
+                    continue;
+                }
+                SolveResult result = solver.solve(tour);
+                String what = solver + " on " + tour.getName();
+                double cost = requireTour(tour, result.getTour(), what);
+                require(Math.abs(cost - result.getCost()) < EPSILON, what
+                        + ": reports a cost of " + result.getCost()
+                        + ", the tour costs " + cost);
+                if (solver.isExact()) {
+                    require(Math.abs(cost - optimum) < EPSILON, what
+                            + ": found " + cost + ", the optimum is "
+                            + optimum);
+                } else {
+                    require(cost > optimum - EPSILON, what + ": found "
+                            + cost + ", below the optimum " + optimum);
+                }
+            }
+        }
+    }//end of checkSolvers()
+
+    /**
+     * Branch and bound with each lower bound: on random asymmetric (ATSP)
+     * tours with many equal distances, where the assignment bound is used
+     * and re-solved incrementally, it must match brute force; on symmetric
+     * tours it must find the optimum with the nearest neighbor bound and
+     * with tsp.bound=assignment.
+     */
+    private void checkBounds() {
+        String saved = System.getProperty(BranchAndBoundSolver.BOUND_PROPERTY);
+        try {
+            for (int seed = 0; seed < 200; seed++) {
+                Random random = new Random(seed);
+                int n = 4 + random.nextInt(5);
+                Tour tour = asymmetricTour(random, n, 1 + random.nextInt(9));
+                String what = "ATSP seed " + seed;
+                require(tour.isAsymmetric(), what + " was parsed as symmetric");
+                BruteForceSolver bruteForce = new BruteForceSolver(tour);
+                bruteForce.generatePermutations();
+                double expected = requireTour(tour,
+                        bruteForce.getShortestTour(), what + " brute force");
+                double cost = requireTour(tour, new BranchAndBoundSolver(tour)
+                        .getShortestTour(), what);
+                require(Math.abs(cost - expected) < EPSILON, what + ": found "
+                        + cost + ", brute force found " + expected);
+            }
+            for (String bound : new String[] {"nearest", "assignment"}) {
+                System.setProperty(BranchAndBoundSolver.BOUND_PROPERTY, bound);
+                for (int seed = 0; seed < 40; seed++) {
+                    Random random = new Random(seed);
+                    Tour tour = randomTour(random, 5 + random.nextInt(6), 0,
+                            (seed % 2) == 1);
+                    String what = bound + " bound, seed " + seed;
+                    double optimum = optimum(tour, -1, -1);
+                    double cost = requireTour(tour, new BranchAndBoundSolver(
+                            tour).getShortestTour(), what);
+                    require(Math.abs(cost - optimum) < EPSILON, what
+                            + ": found " + cost + ", the optimum is " + optimum);
+                }
+            }
+        } finally {
+            if (saved == null) {
+                System.clearProperty(BranchAndBoundSolver.BOUND_PROPERTY);
+            } else {
+                System.setProperty(BranchAndBoundSolver.BOUND_PROPERTY, saved);
+            }
+        }
+    }//end of checkBounds()
+
+    /**
+     * Best-first search with the smallest in-memory frontier (the memory
+     * asked for is rounded up to 64 records): it must spill to disk, find the same cost as branch and bound, and leave no
+     * spill file behind.
+     */
+    private void checkSpill() throws Exception {
+        File directory = File.createTempFile("selftest", ".spill");
+        require(directory.delete() && directory.mkdir(),
+                "Cannot create " + directory);
+        try {
+            for (int seed = 0; seed < 10; seed++) {
+                Random random = new Random(seed);
+                Tour tour = randomTour(random, 10 + random.nextInt(3), 0,
+                        false);
+                String what = "spill seed " + seed;
+                BestFirstSolver bestFirst = new BestFirstSolver(tour,
+                        new SolverMetrics("BestFirst"), 4 * OffHeapFrontier.RECORD_BYTES,
+                        directory);
+                bestFirst.solve();
+                require(bestFirst.getSpilledRecords() > 0, what
+                        + ": the frontier did not spill");
+                double cost = requireTour(tour, bestFirst.getShortestTour(),
+                        what);
+                double expected = requireTour(tour, new BranchAndBoundSolver(
+                        tour).getShortestTour(), what + " branch and bound");
+                require(Math.abs(cost - expected) < EPSILON, what + ": found "
+                        + cost + ", branch and bound found " + expected);
+                String[] left = directory.list();
+                require(left != null && left.length == 0, what + ": "
+                        + Arrays.toString(left) + " left in the spill directory");
+            }
+        } finally {
+            directory.delete();
+        }
+    }//end of checkSpill()
+
+    /**
+     * PrimitiveTour and TwoLevelListTour: random reversals are applied to
+     * both and to a plain array, and next, prev, between and cost are
+     * compared after every step. PrimitiveTour may reverse the
+     * complementary path, which gives the same cycle the other way round,
+     * so each tour has its own array, turned to the orientation the tour
+     * shows.
+     */
+    private void checkSequences() {
+        int[] sizes = {3, 4, 5, 8, 17, 64, 250};
+        for (int seed = 0; seed < sizes.length * 3; seed++) {
+            Random random = new Random(seed);
+            int n = sizes[seed % sizes.length];
+            Tour tour = randomTour(random, n, 0, false);
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
+            TourSequence[] sequences = {new PrimitiveTour(tour, order),
+                new TwoLevelListTour(tour, order)};
+            int[][] orders = {order.clone(), order.clone()};
+            int[][] positions = new int[2][n];
+            for (int step = 0; step <= 4 * n + 20; step++) {
+                int from = random.nextInt(n);
+                int to = random.nextInt(n);
+                boolean whole = random.nextInt(8) == 0;
+                for (int s = 0; s < sequences.length; s++) {
+                    if (step > 0) {
+                        int last = whole ? sequences[s].prev(from) : to;
+                        reverse(orders[s], positions[s][from],
+                                positions[s][last]);
+                        sequences[s].reverse(from, last);
+                    }
+                    compareSequence(tour, sequences[s], orders[s],
+                            positions[s], random, sequences[s].getClass()
+                            .getSimpleName() + " seed " + seed + " step "
+                            + step);
+                }
+            }
+        }
+    }//end of checkSequences()
+
+    /**
+     * This function reverses order[i..j], wrapping around the end.
+     */
+    private static void reverse(int[] order, int i, int j) {
+        int n = order.length;
+        int length = ((j - i + n) % n) + 1;
+        for (int k = 0; k < length / 2; k++) {
+            int p = (i + k) % n;
+            int q = (j - k + n) % n;
+            int tmp = order[p];
+            order[p] = order[q];
+            order[q] = tmp;
+        }
+    }//end of reverse()
+
+    /**
+     * This function compares a tour sequence with the cycle of a plain
+     * array. The array is reversed first if the sequence travels it
+     * backward, and 'position' is filled in from it.
+     */
+    private static void compareSequence(Tour tour, TourSequence sequence,
+            int[] order, int[] position, Random random, String what) {
+        int n = order.length;
+        require(sequence.size() == n, what + ": size " + sequence.size());
+        if (sequence.next(order[0]) != order[1 % n]) {
+            reverse(order, 0, n - 1);
+        }
+        for (int i = 0; i < n; i++) {
+            position[order[i]] = i;
+        }
+        double expected = 0;
+        for (int i = 0; i < n; i++) {
+            int city = order[i];
+            int next = order[(i + 1) % n];
+            int prev = order[(i + n - 1) % n];
+            require(sequence.next(city) == next && sequence.prev(city) == prev,
+                    what + ": around " + city + " expected " + prev + " "
+                    + city + " " + next + ", found " + sequence.prev(city)
+                    + " " + city + " " + sequence.next(city));
+            expected += tour.distance(city, order[(i + 1) % n]);
+        }
+        require(Math.abs(sequence.cost() - expected) < EPSILON * expected,
+                what + ": cost " + sequence.cost() + ", expected " + expected);
+        for (int k = 0; k < 20; k++) {
+            int a = random.nextInt(n);
+            int b = random.nextInt(n);
+            int c = random.nextInt(n);
+            boolean expectedBetween = (position[b] - position[a] + n) % n
+                    <= (position[c] - position[a] + n) % n;
+            require(sequence.between(a, b, c) == expectedBetween, what
+                    + ": between(" + a + ", " + b + ", " + c + ") is "
+                    + sequence.between(a, b, c));
+        }
+    }//end of compareSequence()
+
+    /**
+     * This function draws an ATSP tour whose distances are integers from 1
+     * to 'range', so a small range gives many ties.
+     */
+    static Tour asymmetricTour(Random random, int n, int range) {
+        StringBuilder text = new StringBuilder();
+        text.append("NAME: atsp").append(n).append("\nTYPE: ATSP\n");
+        text.append("DIMENSION: ").append(n).append("\n");
+        text.append("EDGE_WEIGHT_TYPE: EXPLICIT\n");
+        text.append("EDGE_WEIGHT_FORMAT: FULL_MATRIX\n");
+        text.append("EDGE_WEIGHT_SECTION\n");
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                text.append(i == j ? 0 : 1 + random.nextInt(range));
+                text.append(j + 1 < n ? " " : "\n");
+            }
+        }
+        text.append("EOF\n");
+        return Tour.parse(text.toString());
+    }//end of asymmetricTour()
+
+    /**
+     * Presolve: every fixed edge is in every optimal tour, the gap-free
+     * tours have most of their edges fixed, and solving the reduced tour
+     * exactly gives an optimal tour of the original one, with and without
+     * duplicate cities, in real and integer distances.
+     */
+    private void checkReduction() {
+        int closed = 0;
+        int fixedWhenClosed = 0;
+        int citiesWhenClosed = 0;
+        for (int seed = 0; seed < 100; seed++) {
+            Random random = new Random(seed);
+            int n = 8 + random.nextInt(4);
+            boolean integer = (seed % 2) == 1;
+            Tour tour = randomTour(random, n, 0, integer);
+            double optimum = optimum(tour, -1, -1);
+
+            InstanceReduction reduction = InstanceReduction.reduce(tour, true);
+            int[] fixed = reduction.getFixedEdges();
+            for (int e = 0; e < fixed.length; e += 2) {
+                double without = optimum(tour, fixed[e], fixed[e + 1]);
+                require(without > optimum + EPSILON, "seed " + seed
+                        + ": fixed edge " + (fixed[e] + 1) + "-"
+                        + (fixed[e + 1] + 1) + " is not in every optimal"
+                        + " tour");
+            }
+            if (reduction.getLowerBound() > optimum - EPSILON
+                    && reduction.getUpperBound() < optimum + EPSILON) {
+                closed++;
+                fixedWhenClosed += reduction.getFixedEdgeCount();
+                citiesWhenClosed += n;
+            }
+            requireOptimal(tour, reduction, optimum, "seed " + seed);
+
+            // The same with coincident cities, which are merged first.
+            Tour duplicated = randomTour(random, n, 1 + random.nextInt(3),
+                    integer);
+            requireOptimal(duplicated, InstanceReduction.reduce(duplicated,
+                    true), optimum(duplicated, -1, -1), "seed " + seed
+                    + " with duplicates");
+        }
+        // Where the bound is the optimum, (nearly) every edge is fixed.
+        require(closed > 0 && 2 * fixedWhenClosed > citiesWhenClosed,
+                fixedWhenClosed + " edges fixed on " + closed
+                + " gap-free tours of " + citiesWhenClosed + " cities");
+    }//end of checkReduction()
+
+    /**
+     * Branch and bound resumed from a checkpoint: with the best of the tours
+     * before the cursor as its incumbent, the search must still find the
+     * optimum among the tours from the cursor on, even where a node above
+     * the cursor is pruned.
+     */
+    private void checkResume() {
+        for (int seed = 0; seed < 60; seed++) {
+            Random random = new Random(seed);
+            int n = 7 + random.nextInt(3);
+            Tour tour = randomTour(random, n, 0, (seed % 2) == 1);
+            double optimum = optimum(tour, -1, -1);
+
+            // A random cursor: node 0, then a few distinct cities.
+            int[] cities = new int[n];
+            for (int i = 0; i < n; i++) {
+                cities[i] = i;
+            }
+            for (int i = n - 1; i > 1; i--) {
+                int j = 1 + random.nextInt(i);
+                int swap = cities[i];
+                cities[i] = cities[j];
+                cities[j] = swap;
+            }
+            int[] cursor = Arrays.copyOf(cities, 2 + random.nextInt(n - 2));
+
+            // The best tour the search had found before reaching the cursor.
+            int[] before = new int[0];
+            double beforeCost = Double.MAX_VALUE;
+            int[] permutation = new int[n];
+            for (int i = 0; i < n; i++) {
+                permutation[i] = i;
+            }
+            do {
+                if (compare(permutation, cursor) < 0) {
+                    double cost = cost(tour, permutation);
+                    if (cost < beforeCost) {
+                        beforeCost = cost;
+                        before = permutation.clone();
+                    }
+                }
+            } while (nextPermutation(permutation));
+
+            BranchAndBoundSolver solver = new BranchAndBoundSolver(tour,
+                    new SolverMetrics("BranchAndBound"), null,
+                    new Checkpoint(Checkpoint.BRANCH_AND_BOUND, n,
+                            Checkpoint.instanceKey(tour),
+                            tour.isIntegerDistances(), beforeCost, before,
+                            cursor));
+            String what = "seed " + seed + " resumed at "
+                    + Arrays.toString(cursor);
+            double cost = requireTour(tour, solver.getShortestTour(), what);
+            require(Math.abs(cost - optimum) < EPSILON, what + ": found "
+                    + cost + ", the optimum is " + optimum);
+        }
+    }//end of checkResume()
+
+    /**
+     * Time windows: the time warp of the route, from the summaries of any
+     * prefix and suffix concatenated, is the one found by driving the
+     * route, on windows too narrow to be met.
+     */
+    private void checkTimeWindows() {
+        for (int seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            int n = 5 + random.nextInt(20);
+            Tour tour = randomTour(random, n, 0, false);
+            for (int city = 1; city <= n; city++) {
+                double from = random.nextInt(3000);
+                tour.saveTimeWindow(city, from, from + random.nextInt(200));
+            }
+            TimeWindowSolver solver = new TimeWindowSolver(tour);
+            String what = "seed " + seed;
+            requireTour(tour, solver.getShortestTour(), what);
+
+            // Arriving late, the route goes back in time to the window.
+            int[] route = solver.bestTour;
+            double time = tour.getEarliest(0);
+            double warp = 0;
+            for (int i = 1; i <= n; i++) {
+                int city = route[i % n];
+                time = Math.max(time + tour.distance(route[i - 1], city),
+                        tour.getEarliest(city));
+                if (time > tour.getLatest(city)) {
+                    warp += time - tour.getLatest(city);
+                    time = tour.getLatest(city);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                double split = solver.warpSplitAfter(i);
+                require(Math.abs(warp - split) < EPSILON * (1 + warp), what
+                        + ": the route warps " + warp + ", its summaries"
+                        + " split after " + i + " say " + split);
+            }
+            require(solver.isFeasible() == (warp == 0), what + ": feasible is "
+                    + solver.isFeasible() + " with a warp of " + warp);
+        }
+    }//end of checkTimeWindows()
+
+    /**
+     * Tour.addCity(): after cities are added to a tour whose matrices are
+     * built, past the spare room of the distance matrix, the distances and
+     * nearest neighbors are those of a tour built with all the cities.
+     */
+    private void checkAddCity() {
+        Random random = new Random(1);
+        Tour tour = randomTour(random, 40, 0, false);
+        tour.getAdjacencyMatrix();
+        tour.getLowerBoundMatrix();
+        for (int added = 0; added < 60; added++) {
+            tour.addCity(random.nextInt(1000), random.nextInt(1000));
+        }
+        int n = tour.getDimension();
+        Tour fresh = Tour.fromCoordinates("fresh",
+                Arrays.copyOf(tour.getXCoordinates(), n),
+                Arrays.copyOf(tour.getYCoordinates(), n));
+        double[][] matrix = tour.getAdjacencyMatrix();
+        double[][] expected = fresh.getAdjacencyMatrix();
+        double[][] bounds = tour.getLowerBoundMatrix();
+        double[][] expectedBounds = fresh.getLowerBoundMatrix();
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                require(matrix[i][j] == expected[i][j], "distance " + (i + 1)
+                        + "-" + (j + 1) + " is " + matrix[i][j] + " instead of "
+                        + expected[i][j]);
+            }
+            require(bounds[i][1] == expectedBounds[i][1]
+                    && bounds[i][3] == expectedBounds[i][3], "city " + (i + 1)
+                    + " has the wrong two nearest distances");
+        }
+        ArrayList<Integer> solution = new NearestNeighborSolver(tour)
+                .getShortestTour();
+        requireTour(tour, solution, "nearest neighbor after addCity()");
+    }//end of checkAddCity()
+
+    /**
+     * SolveService request bodies: .tsp files with coordinates, with an
+     * explicit matrix and with an asymmetric one, and plain lists of
+     * cities, are each parsed the right way.
+     */
+    private void checkInstances() {
+        Tour coordinates = SolveService.parseInstance("coordinates",
+                "NAME: square\nTYPE: TSP\nDIMENSION: 4\n"
+                + "EDGE_WEIGHT_TYPE: EUC_2D\nNODE_COORD_SECTION\n"
+                + "1 0 0\n2 3 0\n3 3 4\n4 0 4\nEOF\n");
+        require(coordinates.getDimension() == 4
+                && coordinates.distance(0, 2) == 5, "coordinates");
+
+        Tour explicit = SolveService.parseInstance("explicit",
+                "NAME: triangle\nTYPE: TSP\nDIMENSION: 3\n"
+                + "EDGE_WEIGHT_TYPE: EXPLICIT\n"
+                + "EDGE_WEIGHT_FORMAT: LOWER_DIAG_ROW\n"
+                + "EDGE_WEIGHT_SECTION\n0 7 0 9 8 0\nEOF\n");
+        require(explicit.getDimension() == 3 && explicit.distance(0, 1) == 7
+                && explicit.distance(2, 1) == 8, "explicit matrix");
+
+        Tour asymmetric = SolveService.parseInstance("asymmetric",
+                "NAME: one way\nTYPE: ATSP\nDIMENSION: 3\n"
+                + "EDGE_WEIGHT_TYPE: EXPLICIT\n"
+                + "EDGE_WEIGHT_FORMAT: FULL_MATRIX\n"
+                + "EDGE_WEIGHT_SECTION\n0 1 9\n9 0 1\n1 9 0\nEOF\n");
+        require(asymmetric.getDimension() == 3
+                && asymmetric.distance(0, 1) == 1
+                && asymmetric.distance(1, 0) == 9, "asymmetric matrix");
+
+        Tour list = SolveService.parseInstance("a list of cities",
+                "# x y\n0 0\n3 0\n3 4\n");
+        require(list.getDimension() == 3 && list.distance(0, 2) == 5,
+                "list of cities");
+    }//end of checkInstances()
+
+    /**
+     * Checkpoints: one saved off and read back resumes the search on the
+     * same instance, and is rejected on the instance with its coordinates
+     * scaled or its cities in another order, and in integer distances.
+     */
+    private void checkCheckpoint() throws Exception {
+        Random random = new Random(5);
+        int n = 9;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = random.nextInt(1000);
+            y[i] = random.nextInt(1000);
+        }
+        Tour tour = Tour.fromCoordinates("original", x, y);
+        double optimum = optimum(tour, -1, -1);
+
+        File file = File.createTempFile("selftest", ".ckpt");
+        try {
+            CheckpointWriter writer = new CheckpointWriter(file, 3600);
+            new BranchAndBoundSolver(tour, new SolverMetrics("BranchAndBound"),
+                    writer, null);
+            writer.close();
+            Checkpoint checkpoint = Checkpoint.read(file);
+            require(checkpoint.isComplete()
+                    && Math.abs(checkpoint.getBestCost() - optimum) < EPSILON,
+                    "the checkpoint of a complete search costs "
+                    + checkpoint.getBestCost() + ", the optimum is " + optimum);
+
+            Tour same = Tour.fromCoordinates("same", x.clone(), y.clone());
+            BranchAndBoundSolver resumed = new BranchAndBoundSolver(same,
+                    new SolverMetrics("BranchAndBound"), null, checkpoint);
+            require(Math.abs(resumed.getShortestDistance() - optimum) < EPSILON,
+                    "resumed on the same instance: "
+                    + resumed.getShortestDistance());
+
+            double[] scaledX = x.clone();
+            double[] scaledY = y.clone();
+            for (int i = 0; i < n; i++) {
+                scaledX[i] *= 10;
+                scaledY[i] *= 10;
+            }
+            requireRejected(checkpoint, Tour.fromCoordinates("scaled",
+                    scaledX, scaledY), "coordinates x 10");
+
+            double[] swappedX = x.clone();
+            double[] swappedY = y.clone();
+            swappedX[1] = x[2];
+            swappedY[1] = y[2];
+            swappedX[2] = x[1];
+            swappedY[2] = y[1];
+            requireRejected(checkpoint, Tour.fromCoordinates("swapped",
+                    swappedX, swappedY), "cities 2 and 3 swapped");
+
+            Tour integer = Tour.fromCoordinates("integer", x.clone(),
+                    y.clone());
+            integer.setIntegerDistances(true);
+            requireRejected(checkpoint, integer, "integer distances");
+        } finally {
+            file.delete();
+        }
+    }//end of checkCheckpoint()
+
+    private static void requireRejected(Checkpoint checkpoint, Tour tour,
+            String what) {
+        try {
+            new BranchAndBoundSolver(tour, new SolverMetrics("BranchAndBound"),
+                    null, checkpoint);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new AssertionError("a checkpoint was resumed with " + what);
+    }//end of requireRejected()
+
+    /**
+     * Solvers that reject a tour (the spanning tree ones on an ATSP tour,
+     * the time window one on a precedence cycle): the exception reaches the
+     * caller and the metrics of the solve are finished anyway, so no
+     * progress events are left running. A portfolio whose every solver
+     * fails throws as well.
+     */
+    private void checkFailures() throws Exception {
+        Tour asymmetric = Tour.parse("NAME: one way\nTYPE: ATSP\n"
+                + "DIMENSION: 3\nEDGE_WEIGHT_TYPE: EXPLICIT\n"
+                + "EDGE_WEIGHT_FORMAT: FULL_MATRIX\nEDGE_WEIGHT_SECTION\n"
+                + "0 1 9\n9 0 1\n1 9 0\nEOF\n");
+        requireFailure(SolverType.DOUBLETREE, asymmetric);
+        requireFailure(SolverType.CHRISTOFIDES, asymmetric);
+        try {
+            new PortfolioRunner(Arrays.asList(SolverType.DOUBLETREE,
+                    SolverType.CHRISTOFIDES)).run(asymmetric, 10000, null);
+            throw new AssertionError("a portfolio of failing solvers solved "
+                    + asymmetric.getName());
+        } catch (IllegalStateException e) {
+            require(e.getCause() instanceof IllegalArgumentException,
+                    "the portfolio failed with " + e.getCause());
+        }
+
+        Tour cycle = Tour.parse("NAME: cycle\nTYPE: TSP\nDIMENSION: 4\n"
+                + "EDGE_WEIGHT_TYPE: EUC_2D\nNODE_COORD_SECTION\n"
+                + "1 0 0\n2 3 0\n3 3 4\n4 0 4\nPRECEDENCE_SECTION\n"
+                + "2 3\n3 4\n4 2\nEOF\n");
+        requireFailure(SolverType.TIMEWINDOWS, cycle);
+    }//end of checkFailures()
+
+    private static void requireFailure(SolverType solver, Tour tour) {
+        int running = SolverMetrics.runningCount();
+        try {
+            solver.solve(tour);
+        } catch (IllegalArgumentException e) {
+            require(SolverMetrics.runningCount() == running, solver
+                    + " on " + tour.getName() + " left its metrics running");
+            return;
+        }
+        throw new AssertionError(solver + " solved " + tour.getName());
+    }//end of requireFailure()
+
+    /**
+     * This function compares the start of a tour with a cursor, city by
+     * city, in the order branch and bound visits the tours.
+     */
+    private static int compare(int[] cities, int[] cursor) {
+        for (int i = 0; i < cursor.length; i++) {
+            if (cities[i] != cursor[i]) {
+                return cities[i] - cursor[i];
+            }
+        }
+        return 0;
+    }//end of compare()
+
+    /**
+     * This function steps to the next permutation of the cities after the
+     * first one, in lexicographic order.
+     * @return False, once the last permutation has been passed.
+     */
+    private static boolean nextPermutation(int[] cities) {
+        int i = cities.length - 2;
+        while (i > 0 && cities[i] > cities[i + 1]) {
+            i--;
+        }
+        if (i < 1) {
+            return false;
+        }
+        int j = cities.length - 1;
+        while (cities[j] < cities[i]) {
+            j--;
+        }
+        int swap = cities[i];
+        cities[i] = cities[j];
+        cities[j] = swap;
+        for (int a = i + 1, b = cities.length - 1; a < b; a++, b--) {
+            swap = cities[a];
+            cities[a] = cities[b];
+            cities[b] = swap;
+        }
+        return true;
+    }//end of nextPermutation()
+
+    private static double cost(Tour tour, int[] cities) {
+        double cost = 0;
+        for (int i = 0; i < cities.length; i++) {
+            cost += tour.distance(cities[i], cities[(i + 1) % cities.length]);
+        }
+        return cost;
+    }//end of cost()
+
+    private static void requireOptimal(Tour tour,
+            InstanceReduction reduction, double optimum, String what) {
+        BranchAndBoundSolver solver = new BranchAndBoundSolver(
+                reduction.getReducedTour());
+        ArrayList<Integer> expanded = reduction.expand(
+                solver.getShortestTour());
+        double cost = requireTour(tour, expanded, what);
+        require(Math.abs(cost - optimum) < EPSILON, what + ": presolved"
+                + " tour costs " + cost + ", the optimum is " + optimum
+                + " (" + reduction + ")");
+    }//end of requireOptimal()
+
+    /**
+     * This function checks that a solution visits every city once.
+     * @param tour The Tour object solved.
+     * @param solution The cities, numbered from '1'.
+     * @param what Names the solution in the error.
+     * @return The cost of the solution.
+     */
+    static double requireTour(Tour tour, ArrayList<Integer> solution,
+            String what) {
+        int n = tour.getDimension();
+        require(solution != null && solution.size() == n, what
+                + ": the tour has " + (solution == null ? 0 : solution.size())
+                + " cities instead of " + n);
+        boolean[] seen = new boolean[n];
+        for (int city : solution) {
+            require(city >= 1 && city <= n && !seen[city - 1], what
+                    + ": city " + city + " is out of range or repeated in "
+                    + solution);
+            seen[city - 1] = true;
+        }
+        return PrimitiveTour.fromSolution(tour, solution).cost();
+    }//end of requireTour()
+
+    /**
+     * This function returns the cost of the optimal tour (Held-Karp), for
+     * up to about 16 cities.
+     * @param tour The Tour object to be solved.
+     * @param forbidA With forbidB, an edge no tour may use, or -1.
+     * @param forbidB The other end city of the forbidden edge.
+     * @return The optimal cost, Double.MAX_VALUE if there is no tour.
+     */
+    static double optimum(Tour tour, int forbidA, int forbidB) {
+        int n = tour.getDimension();
+        double[][] d = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                boolean forbidden = (i == forbidA && j == forbidB)
+                        || (i == forbidB && j == forbidA);
+                d[i][j] = (i == j || forbidden) ? Double.MAX_VALUE
+                        : tour.distance(i, j);
+            }
+        }
+        // best[s][j]: the shortest path from city 0 through the set s (of
+        // cities 1 to n - 1, bit j - 1 for city j) ending at j.
+        int full = 1 << (n - 1);
+        double[][] best = new double[full][n];
+        for (double[] row : best) {
+            Arrays.fill(row, Double.MAX_VALUE);
+        }
+        for (int j = 1; j < n; j++) {
+            best[1 << (j - 1)][j] = d[0][j];
+        }
+        for (int s = 1; s < full; s++) {
+            for (int j = 1; j < n; j++) {
+                double length = best[s][j];
+                if (length == Double.MAX_VALUE) {
+                    continue;
+                }
+                for (int k = 1; k < n; k++) {
+                    int bit = 1 << (k - 1);
+                    if ((s & bit) == 0 && d[j][k] != Double.MAX_VALUE
+                            && length + d[j][k] < best[s | bit][k]) {
+                        best[s | bit][k] = length + d[j][k];
+                    }
+                }
+            }
+        }
+        double optimum = Double.MAX_VALUE;
+        for (int j = 1; j < n; j++) {
+            if (best[full - 1][j] != Double.MAX_VALUE
+                    && d[j][0] != Double.MAX_VALUE) {
+                optimum = Math.min(optimum, best[full - 1][j] + d[j][0]);
+            }
+        }
+        return optimum;
+    }//end of optimum()
+
+    /**
+     * This function draws a tour of random cities in a 1000 x 1000 square.
+     * @param duplicates The number of cities that copy another one.
+     */
+    static Tour randomTour(Random random, int n, int duplicates,
+            boolean integer) {
+        double[] x = new double[n];
+        double[] y = new double[n];
+        int distinct = n - duplicates;
+        for (int i = 0; i < n; i++) {
+            if (i < distinct) {
+                x[i] = random.nextInt(1000);
+                y[i] = random.nextInt(1000);
+            } else {
+                int copy = random.nextInt(distinct);
+                x[i] = x[copy];
+                y[i] = y[copy];
+            }
+        }
+        Tour tour = Tour.fromCoordinates("random" + n, x, y);
+        tour.setIntegerDistances(integer);
+        return tour;
+    }//end of randomTour()
+
+    static void require(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }//end of require()
+}//end of class
@@ -0,0 +1,497 @@
+package edu.rowan.algorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * This class is a persistent store of solved instances. Instances are
+ * identified by a hash of their coordinates and metric only: the NAME,
+ * COMMENT and the order of the cities in the .tsp file do not matter, so a
+ * re-submitted instance is recognized even when its cities were renumbered.
+ * For every instance the store keeps the best tour known, its cost, which
+ * solver found it and whether it is proven optimal.
+ *
+ * The store is a directory holding two files:
+ *   index.bin  Open addressing hash table, memory-mapped. Header: int magic,
+ *              int version, int capacity, int count; then 'capacity' slots
+ *              of long hash1, long hash2, long offset (0 = empty slot).
+ *   tours.bin  Append-only records: long hash1, long hash2, int dimension,
+ *              double cost, byte optimal, long elapsedMillis, long savedAt,
+ *              short n + n bytes solver name, int n + n x int tour.
+ * A lookup reads one or two slots of the mapped index and one record, so
+ * its cost does not depend on the number of instances stored. A better
+ * tour is appended and the slot is pointed to it; the old record stays as
+ * history. The files are locked while in use, so several processes can
+ * share a store.
+ *
+ * Tours are saved off in canonical numbering (cities sorted by coordinates)
+ * and mapped back to the numbering of the instance looked up.
+ */
+public final class SolutionStore {
+
+    private static final int INDEX_MAGIC = 0x54535049; // "TSPI"
+    private static final int DATA_MAGIC = 0x54535044;  // "TSPD"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_BYTES = 24;
+    /** Bytes of a record before the solver name. */
+    private static final int RECORD_HEAD_BYTES = 47;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final RandomAccessFile indexFile;
+    private final RandomAccessFile dataFile;
+    private final FileChannel indexChannel;
+    private final FileChannel dataChannel;
+    private MappedByteBuffer index;
+    private int capacity;
+
+    /**
+     * Identifies an instance: a 128-bit hash of its metric and sorted
+     * coordinates, and the canonical position of every city.
+     */
+    public static final class Key {
+
+        final long hash1;
+        final long hash2;
+        /** canonical[i] = city (numbered from '0') at canonical position i. */
+        final int[] canonical;
+
+        Key(long hash1, long hash2, int[] canonical) {
+            this.hash1 = hash1;
+            this.hash2 = hash2;
+            this.canonical = canonical;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%016x%016x", hash1, hash2);
+        }
+    }//end of class Key
+
+    /**
+     * A stored solution, numbered for the instance it was looked up for.
+     */
+    public static final class Entry {
+
+        private final ArrayList<Integer> tour;
+        private final double cost;
+        private final boolean optimal;
+        private final String solver;
+        private final long elapsedMillis;
+        private final long savedAt;
+
+        Entry(ArrayList<Integer> tour, double cost, boolean optimal,
+                String solver, long elapsedMillis, long savedAt) {
+            this.tour = tour;
+            this.cost = cost;
+            this.optimal = optimal;
+            this.solver = solver;
+            this.elapsedMillis = elapsedMillis;
+            this.savedAt = savedAt;
+        }
+
+        /**
+         * @return The tour, numbered from '1' as returned by the solvers.
+         */
+        public ArrayList<Integer> getTour() {
+            return tour;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+
+        /**
+         * @return True, if an exact solver completed on the instance.
+         */
+        public boolean isOptimal() {
+            return optimal;
+        }
+
+        /**
+         * @return The name of the solver that found the tour.
+         */
+        public String getSolver() {
+            return solver;
+        }
+
+        /**
+         * @return How long that solver ran, in milliseconds.
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return When the tour was stored (milliseconds since the epoch).
+         */
+        public long getSavedAt() {
+            return savedAt;
+        }
+    }//end of class Entry
+
+    /**
+     * Constructor. Creates the store if the directory does not hold one.
+     * @param directory The store directory.
+     */
+    public SolutionStore(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        indexFile = new RandomAccessFile(new File(directory, "index.bin"), "rw");
+        dataFile = new RandomAccessFile(new File(directory, "tours.bin"), "rw");
+        indexChannel = indexFile.getChannel();
+        dataChannel = dataFile.getChannel();
+
+        FileLock lock = indexChannel.lock();
+        try {
+            if (indexChannel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(INDEX_MAGIC).putInt(VERSION)
+                        .putInt(INITIAL_CAPACITY).putInt(0).flip();
+                indexChannel.write(header, 0);
+                indexFile.setLength(HEADER_BYTES
+                        + (long) INITIAL_CAPACITY * SLOT_BYTES);
+            }
+            if (dataChannel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(8);
+                header.putInt(DATA_MAGIC).putInt(VERSION).flip();
+                dataChannel.write(header, 0);
+            }
+            ByteBuffer header = ByteBuffer.allocate(8);
+            dataChannel.read(header, 0);
+            if (header.getInt(0) != DATA_MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(directory + " is not a solution store.");
+            }
+            map();
+        } finally {
+            lock.release();
+        }
+    }//end of constructor
+
+    /**
+     * This function computes the key of an instance. The coordinates are
+     * sorted, so the key does not depend on the order of the cities. Tours
+     * with explicit weights are keyed by their distance matrix, in the
+     * order of the file.
+     * @param tour The instance.
+     * @return Its key.
+     */
+    public static Key keyOf(Tour tour) {
+        if (!tour.hasCoordinates()) {
+            return keyOfMatrix(tour);
+        }
+        final double[] x = tour.getXCoordinates();
+        final double[] y = tour.getYCoordinates();
+        int n = tour.getDimension();
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                int byX = Double.compare(x[a] + 0.0, x[b] + 0.0);
+                return byX != 0 ? byX : Double.compare(y[a] + 0.0, y[b] + 0.0);
+            }
+        });
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        String metric = String.valueOf(tour.getEdgeWeighType()).trim()
+                .toUpperCase() + (tour.isIntegerDistances() ? "/NINT" : "");
+        digest.update(metric.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.allocate(16 * 512);
+        buffer.putInt(n);
+        int[] canonical = new int[n];
+        for (int i = 0; i < n; i++) {
+            canonical[i] = order[i];
+            if (buffer.remaining() < 16) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            // Adding 0.0 turns -0.0 into 0.0.
+            buffer.putDouble(x[canonical[i]] + 0.0);
+            buffer.putDouble(y[canonical[i]] + 0.0);
+        }
+        buffer.flip();
+        digest.update(buffer);
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+        return new Key(hash.getLong(), hash.getLong(), canonical);
+    }//end of keyOf()
+
+    private static Key keyOfMatrix(Tour tour) {
+        int n = tour.getDimension();
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        String metric = "EXPLICIT" + (tour.isAsymmetric() ? "/ATSP" : "")
+                + (tour.isIntegerDistances() ? "/NINT" : "");
+        digest.update(metric.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.allocate(16 * 512);
+        buffer.putInt(n);
+        int[] canonical = new int[n];
+        for (int i = 0; i < n; i++) {
+            canonical[i] = i;
+            for (int j = 0; j < n; j++) {
+                if (buffer.remaining() < 8) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+                buffer.putDouble(tour.distance(i, j) + 0.0);
+            }
+        }
+        buffer.flip();
+        digest.update(buffer);
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+        return new Key(hash.getLong(), hash.getLong(), canonical);
+    }//end of keyOfMatrix()
+
+    /**
+     * This function returns the stored solution of an instance.
+     * @param key The key of the instance, see keyOf().
+     * @return The solution, or null if the instance was never stored.
+     */
+    public synchronized Entry lookup(Key key) throws IOException {
+        FileLock lock = indexChannel.lock(0, Long.MAX_VALUE, true);
+        try {
+            remapIfGrown();
+            long offset = index.getLong(slotOf(key) + 16);
+            return offset == 0 ? null : readEntry(key, offset);
+        } finally {
+            lock.release();
+        }
+    }//end of lookup()
+
+    /**
+     * This function stores a solution, unless the store already has a
+     * tour at least as good (a proven optimum only replaces a tour of the
+     * same cost that was not proven).
+     * @param key The key of the instance, see keyOf().
+     * @param tour The instance.
+     * @param solution The tour, numbered from '1' as returned by the
+     *        solvers.
+     * @param solver The name of the solver that found it.
+     * @param optimal True, if an exact solver completed.
+     * @param elapsedMillis How long the solver ran.
+     * @return True, if the solution was stored.
+     */
+    public synchronized boolean record(Key key, Tour tour,
+            ArrayList<Integer> solution, String solver, boolean optimal,
+            long elapsedMillis) throws IOException {
+        int n = solution.size();
+        if (n != key.canonical.length) {
+            throw new IllegalArgumentException("The tour has " + n
+                    + " cities, the instance " + key.canonical.length + ".");
+        }
+        double cost = 0;
+        for (int i = 0; i < n; i++) {
+            cost += tour.distance(solution.get(i) - 1,
+                    solution.get((i + 1) % n) - 1);
+        }
+
+        FileLock lock = indexChannel.lock();
+        try {
+            remapIfGrown();
+            int slot = slotOf(key);
+            long offset = index.getLong(slot + 16);
+            if (offset != 0) {
+                ByteBuffer stored = ByteBuffer.allocate(9);
+                readFully(stored, offset + 20);
+                double storedCost = stored.getDouble(0);
+                boolean storedOptimal = stored.get(8) != 0;
+                if (storedCost < cost
+                        || (storedCost == cost && (storedOptimal || !optimal))) {
+                    return false;
+                }
+            }
+
+            // Renumber the tour canonically.
+            int[] position = new int[n];
+            for (int i = 0; i < n; i++) {
+                position[key.canonical[i]] = i;
+            }
+            byte[] name = solver.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEAD_BYTES + name.length + 4 + 4 * n);
+            record.putLong(key.hash1).putLong(key.hash2).putInt(n)
+                    .putDouble(cost).put((byte) (optimal ? 1 : 0))
+                    .putLong(elapsedMillis).putLong(System.currentTimeMillis())
+                    .putShort((short) name.length).put(name).putInt(n);
+            for (int i = 0; i < n; i++) {
+                record.putInt(position[solution.get(i) - 1]);
+            }
+            record.flip();
+
+            // The record must be on disk before the index points to it.
+            long end = dataChannel.size();
+            while (record.hasRemaining()) {
+                end += dataChannel.write(record, end);
+            }
+            dataChannel.force(false);
+
+            if (offset == 0) {
+                index.putLong(slot, key.hash1);
+                index.putLong(slot + 8, key.hash2);
+                index.putInt(12, index.getInt(12) + 1);
+            }
+            index.putLong(slot + 16, end - record.limit());
+            if (2 * index.getInt(12) > capacity) {
+                grow();
+            }
+            index.force();
+            return true;
+        } finally {
+            lock.release();
+        }
+    }//end of record()
+
+    /**
+     * This function returns the number of instances stored.
+     * @return The number of instances.
+     */
+    public synchronized int size() throws IOException {
+        FileLock lock = indexChannel.lock(0, Long.MAX_VALUE, true);
+        try {
+            remapIfGrown();
+            return index.getInt(12);
+        } finally {
+            lock.release();
+        }
+    }//end of size()
+
+    /**
+     * This function closes the store files.
+     */
+    public synchronized void close() throws IOException {
+        indexFile.close();
+        dataFile.close();
+    }//end of close()
+
+    /**
+     * This function returns the position in the index of the slot of a
+     * key: the slot holding it, or the empty slot where it belongs
+     * (linear probing).
+     */
+    private int slotOf(Key key) {
+        int i = (int) ((key.hash1 & 0x7fffffffffffffffL) % capacity);
+        while (true) {
+            int slot = HEADER_BYTES + i * SLOT_BYTES;
+            if (index.getLong(slot + 16) == 0
+                    || (index.getLong(slot) == key.hash1
+                        && index.getLong(slot + 8) == key.hash2)) {
+                return slot;
+            }
+            i = (i + 1) % capacity;
+        }
+    }//end of slotOf()
+
+    private Entry readEntry(Key key, long offset) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(RECORD_HEAD_BYTES);
+        readFully(head, offset);
+        head.flip();
+        if (head.getLong() != key.hash1 || head.getLong() != key.hash2) {
+            throw new IOException("Corrupt solution store.");
+        }
+        int dimension = head.getInt();
+        double cost = head.getDouble();
+        boolean optimal = head.get() != 0;
+        long elapsedMillis = head.getLong();
+        long savedAt = head.getLong();
+        int nameLength = head.getShort();
+
+        ByteBuffer rest = ByteBuffer.allocate(nameLength + 4 + 4 * dimension);
+        readFully(rest, offset + RECORD_HEAD_BYTES);
+        rest.flip();
+        byte[] name = new byte[nameLength];
+        rest.get(name);
+        if (rest.getInt() != dimension || dimension != key.canonical.length) {
+            throw new IOException("Corrupt solution store.");
+        }
+        ArrayList<Integer> tour = new ArrayList<Integer>(dimension);
+        for (int i = 0; i < dimension; i++) {
+            tour.add(key.canonical[rest.getInt()] + 1);
+        }
+        return new Entry(tour, cost, optimal,
+                new String(name, StandardCharsets.UTF_8), elapsedMillis,
+                savedAt);
+    }//end of readEntry()
+
+    private void readFully(ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = dataChannel.read(buffer,
+                    position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Corrupt solution store.");
+            }
+        }
+    }//end of readFully()
+
+    private void map() throws IOException {
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                indexChannel.size());
+        if (index.getInt(0) != INDEX_MAGIC || index.getInt(4) != VERSION) {
+            throw new IOException("Not a solution store index.");
+        }
+        capacity = index.getInt(8);
+    }//end of map()
+
+    /**
+     * This function maps the index again when another process grew it.
+     */
+    private void remapIfGrown() throws IOException {
+        if (indexChannel.size() != index.capacity()) {
+            map();
+        }
+    }//end of remapIfGrown()
+
+    /**
+     * This function doubles the capacity of the index, in place. The
+     * caller holds the exclusive lock.
+     */
+    private void grow() throws IOException {
+        long[] slots = new long[3 * capacity];
+        for (int i = 0; i < capacity; i++) {
+            int slot = HEADER_BYTES + i * SLOT_BYTES;
+            slots[3 * i] = index.getLong(slot);
+            slots[3 * i + 1] = index.getLong(slot + 8);
+            slots[3 * i + 2] = index.getLong(slot + 16);
+        }
+        int grown = 2 * capacity;
+        indexFile.setLength(HEADER_BYTES + (long) grown * SLOT_BYTES);
+        map();
+        for (int i = 0; i < grown; i++) {
+            index.putLong(HEADER_BYTES + i * SLOT_BYTES + 16, 0);
+        }
+        index.putInt(8, grown);
+        capacity = grown;
+        for (int i = 0; i < slots.length; i += 3) {
+            if (slots[i + 2] != 0) {
+                int slot = slotOf(new Key(slots[i], slots[i + 1], null));
+                index.putLong(slot, slots[i]);
+                index.putLong(slot + 8, slots[i + 1]);
+                index.putLong(slot + 16, slots[i + 2]);
+            }
+        }
+    }//end of grow()
+}//end of class
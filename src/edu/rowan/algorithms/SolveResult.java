@@ -0,0 +1,62 @@
+package edu.rowan.algorithms;
+
+import java.util.ArrayList;
+
+/**
+ * This class holds the outcome of running one solver on one tour: the best
+ * tour found (locations numbered from '1' as in the .tsp file) and its cost.
+ */
+public class SolveResult {
+
+    private final SolverType solver;
+    private final ArrayList<Integer> tour;
+    private final double cost;
+    private final boolean complete;
+
+    public SolveResult(SolverType solver, ArrayList<Integer> tour,
+            double cost) {
+        this(solver, tour, cost, true);
+    }
+
+    public SolveResult(SolverType solver, ArrayList<Integer> tour,
+            double cost, boolean complete) {
+        this.solver = solver;
+        this.tour = tour;
+        this.cost = cost;
+        this.complete = complete;
+    }
+
+    /**
+     * This function returns the solver that produced this result.
+     * @return The solver type.
+     */
+    public SolverType getSolver() {
+        return solver;
+    }
+
+    /**
+     * This function returns the best tour found.
+     * @return An array representing the tour solution.
+     */
+    public ArrayList<Integer> getTour() {
+        return tour;
+    }
+
+    /**
+     * This function returns the cost of the best tour found.
+     * @return The tour cost.
+     */
+    public double getCost() {
+        return cost;
+    }
+
+    /**
+     * This function tells if the solver ran to completion. It is false when
+     * the solving thread was interrupted, in which case the tour is the best
+     * one found before the interruption (possibly empty).
+     * @return True, if the solver was not interrupted.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}//end of class
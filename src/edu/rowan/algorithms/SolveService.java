@@ -0,0 +1,525 @@
+package edu.rowan.algorithms;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long-running local solve service. It keeps a warm JVM and answers HTTP
+ * requests:
+ *
+ *   POST /solve?solver=nearest&amp;deadlineMs=5000
+ *        body: a .tsp file, or one city per line as "x y" or "id x y".
+ *        reply: the tour in TSPLIB format; the cost is in X-Tour-Cost.
+ *   GET  /stats
+ *
+ * Parsed Tour objects (with their matrices and neighbor lists) are kept in
+ * a cache bounded by their estimated size and keyed by the SHA-256 of the
+ * request body; results are kept in a second cache keyed by content hash
+ * and solver, so an identical request is answered without solving.
+ * Requests are served by a bounded pool of I/O threads while the solvers
+ * run on a separate pool sized to the processors, so a burst of requests
+ * queues for CPU instead of oversubscribing it. When the deadline expires
+ * the solver is interrupted and the best tour found so far is returned.
+ *
+ * Usage:
+ *   SolveService [--port n] [--instance-cache-mb n] [--result-cache n]
+ *                [--workers n] [--request-threads n]
+ */
+public class SolveService {
+
+    private static final int NEIGHBORS = 10;
+    private static final long DEFAULT_DEADLINE_MS = 10000;
+    private static final long GRACE_MS = 2000;
+
+    private final InstanceCache instances;
+    private final ResultCache results;
+    private final ExecutorService solverPool;
+    private final ExecutorService requestPool;
+    private final ConcurrentHashMap<String, Future<Tour>> parsing =
+            new ConcurrentHashMap<String, Future<Tour>>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong instanceHits = new AtomicLong();
+    private final AtomicLong resultHits = new AtomicLong();
+    private final AtomicLong deadlinesMissed = new AtomicLong();
+
+    private HttpServer server;
+
+    /**
+     * Constructor
+     * @param instanceCacheBytes Maximum estimated size of the cached tours.
+     * @param resultCacheEntries Maximum number of cached results.
+     * @param workers Number of threads running solvers.
+     * @param requestThreads Number of threads serving HTTP requests.
+     */
+    public SolveService(long instanceCacheBytes, int resultCacheEntries,
+            int workers, int requestThreads) {
+        this.instances = new InstanceCache(instanceCacheBytes);
+        this.results = new ResultCache(resultCacheEntries);
+        this.solverPool = Executors.newFixedThreadPool(workers);
+        this.requestPool = Executors.newFixedThreadPool(requestThreads);
+    }//end of constructor
+
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        long cacheMb = 512;
+        int resultEntries = 1024;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int requestThreads = 64;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("--port")) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equalsIgnoreCase("--instance-cache-mb")) {
+                cacheMb = Long.parseLong(args[++i]);
+            } else if (args[i].equalsIgnoreCase("--result-cache")) {
+                resultEntries = Integer.parseInt(args[++i]);
+            } else if (args[i].equalsIgnoreCase("--workers")) {
+                workers = Integer.parseInt(args[++i]);
+            } else if (args[i].equalsIgnoreCase("--request-threads")) {
+                requestThreads = Integer.parseInt(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Trace.setLevel(TraceLevel.OFF);
+        SolveService service = new SolveService(cacheMb * 1024 * 1024,
+                resultEntries, workers, requestThreads);
+        service.start(port);
+        System.out.println("Listening on http://localhost:" + port + "/solve");
+    }//end of main()
+
+    /**
+     * This function starts the HTTP server on the loopback interface.
+     * @param port The TCP port to listen on (0 picks a free port).
+     * @return The port the server is listening on.
+     */
+    public int start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(requestPool);
+        server.createContext("/solve", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                handleSolve(exchange);
+            }
+        });
+        server.createContext("/stats", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                handleStats(exchange);
+            }
+        });
+        server.start();
+        return server.getAddress().getPort();
+    }//end of start()
+
+    /**
+     * This function stops the server and the thread pools.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        requestPool.shutdownNow();
+        solverPool.shutdownNow();
+    }//end of stop()
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+                reply(exchange, 405, "Use POST.\n");
+                return;
+            }
+            requests.incrementAndGet();
+            Map<String, String> query = parseQuery(exchange.getRequestURI());
+            SolverType solver = SolverType.fromName(
+                    value(query, "solver", "nearest"));
+            long deadlineMs = Long.parseLong(value(query, "deadlineMs",
+                    String.valueOf(DEFAULT_DEADLINE_MS)));
+
+            byte[] body = readBody(exchange.getRequestBody());
+            String hash = sha256(body);
+            String resultKey = hash + "/" + solver.name();
+
+            SolveResult result = results.get(resultKey);
+            String cacheStatus = "result";
+            Tour tour;
+            if (result != null) {
+                resultHits.incrementAndGet();
+                tour = instances.get(hash);
+                if (tour == null) {
+                    tour = getTour(hash, body);
+                }
+            } else {
+                cacheStatus = (instances.get(hash) != null) ? "instance"
+                        : "miss";
+                tour = getTour(hash, body);
+                result = solve(solver, tour, deadlineMs);
+                if (result == null) {
+                    deadlinesMissed.incrementAndGet();
+                    reply(exchange, 504, "Deadline exceeded before a tour "
+                            + "was found.\n");
+                    return;
+                }
+                if (result.isComplete()) {
+                    results.put(resultKey, result);
+                } else {
+                    deadlinesMissed.incrementAndGet();
+                }
+            }
+
+            exchange.getResponseHeaders().set("X-Tour-Cost",
+                    String.valueOf(result.getCost()));
+            exchange.getResponseHeaders().set("X-Solver",
+                    solver.name().toLowerCase());
+            exchange.getResponseHeaders().set("X-Complete",
+                    String.valueOf(result.isComplete()));
+            exchange.getResponseHeaders().set("X-Cache", cacheStatus);
+            reply(exchange, 200, tour.printTour(result.getTour()));
+        } catch (IllegalArgumentException e) {
+            reply(exchange, 400, "Bad request: " + e.getMessage() + "\n");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                reply(exchange, 400, "Bad request: "
+                        + e.getCause().getMessage() + "\n");
+            } else {
+                reply(exchange, 500, "Error: " + e.getCause() + "\n");
+            }
+        } catch (Exception e) {
+            reply(exchange, 500, "Error: " + e + "\n");
+        }
+    }//end of handleSolve()
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"requests\": ").append(requests.get());
+        json.append(", \"instanceHits\": ").append(instanceHits.get());
+        json.append(", \"resultHits\": ").append(resultHits.get());
+        json.append(", \"deadlinesMissed\": ").append(deadlinesMissed.get());
+        json.append(", \"cachedInstances\": ").append(instances.size());
+        json.append(", \"cachedInstanceBytes\": ").append(instances.bytes());
+        json.append(", \"cachedResults\": ").append(results.size());
+        json.append("}\n");
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        reply(exchange, 200, json.toString());
+    }//end of handleStats()
+
+    /**
+     * This function returns the parsed tour for a request body, from the
+     * cache if possible. Concurrent requests for the same content share a
+     * single parse.
+     */
+    private Tour getTour(final String hash, final byte[] body)
+            throws InterruptedException, ExecutionException {
+        Tour cached = instances.get(hash);
+        if (cached != null) {
+            instanceHits.incrementAndGet();
+            return cached;
+        }
+
+        FutureTask<Tour> task = new FutureTask<Tour>(new Callable<Tour>() {
+            public Tour call() {
+                Tour tour = parseInstance(hash,
+                        new String(body, StandardCharsets.UTF_8));
+                // Build the neighbor lists once, while the tour is cached.
+                tour.getNeighborList(NEIGHBORS);
+                instances.put(hash, tour);
+                return tour;
+            }
+        });
+        Future<Tour> existing = parsing.putIfAbsent(hash, task);
+        if (existing != null) {
+            return existing.get();
+        }
+        try {
+            task.run();
+            return task.get();
+        } finally {
+            parsing.remove(hash);
+        }
+    }//end of getTour()
+
+    /**
+     * This function runs the solver on the solver pool. If the deadline
+     * expires, the solver thread is interrupted and the best tour found so
+     * far is used.
+     * @return The result, or null if no complete tour was found in time.
+     */
+    private SolveResult solve(final SolverType solver, final Tour tour,
+            long deadlineMs) throws InterruptedException, ExecutionException {
+        final Object lock = new Object();
+        final Thread[] runner = new Thread[1];
+
+        Future<SolveResult> future = solverPool.submit(
+                new Callable<SolveResult>() {
+                    public SolveResult call() {
+                        synchronized (lock) {
+                            runner[0] = Thread.currentThread();
+                        }
+                        try {
+                            return solver.solve(tour);
+                        } finally {
+                            synchronized (lock) {
+                                runner[0] = null;
+                                // Do not leak an interruption to the next task.
+                                Thread.interrupted();
+                            }
+                        }
+                    }
+                });
+
+        SolveResult result;
+        try {
+            result = future.get(deadlineMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            synchronized (lock) {
+                if (runner[0] != null) {
+                    runner[0].interrupt();
+                } else {
+                    // Still waiting for a solver thread.
+                    future.cancel(false);
+                }
+            }
+            try {
+                result = future.get(GRACE_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException again) {
+                return null;
+            } catch (CancellationException cancelled) {
+                return null;
+            }
+        }
+
+        if (result.getTour().size() != tour.getDimension()) {
+            return null;
+        }
+        return result;
+    }//end of solve()
+
+    /**
+     * The keywords of a .tsp file header; a body with a line starting with
+     * one of them is parsed as a .tsp file.
+     */
+    private static final String[] TSPLIB_KEYWORDS = {
+        "NAME", "TYPE", "COMMENT", "DIMENSION", "EDGE_WEIGHT_TYPE",
+        "EDGE_WEIGHT_FORMAT", "EDGE_WEIGHT_SECTION", "NODE_COORD_SECTION"
+    };
+
+    /**
+     * This function parses a request body: either a .tsp file (with
+     * coordinates or an explicit, possibly asymmetric, distance matrix) or
+     * one city per line, given as "x y" or "id x y".
+     */
+    static Tour parseInstance(String name, String text) {
+        if (isTsplib(text)) {
+            return Tour.parse(text);
+        }
+
+        List<double[]> cities = new ArrayList<double[]>();
+        for (String line : text.split("\\r?\\n")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] split = line.split("[\\s,]+");
+            if (split.length < 2 || split.length > 3) {
+                throw new IllegalArgumentException("bad city: " + line);
+            }
+            int offset = split.length - 2;
+            cities.add(new double[] {Double.parseDouble(split[offset]),
+                    Double.parseDouble(split[offset + 1])});
+        }
+        if (cities.size() < 2) {
+            throw new IllegalArgumentException("need at least two cities");
+        }
+
+        double[] x = new double[cities.size()];
+        double[] y = new double[cities.size()];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = cities.get(i)[0];
+            y[i] = cities.get(i)[1];
+        }
+        return Tour.fromCoordinates(name.substring(0, 12), x, y);
+    }//end of parseInstance()
+
+    /**
+     * This function tells if a request body is a .tsp file, i.e. if a line
+     * starts with a header keyword such as DIMENSION or
+     * EDGE_WEIGHT_SECTION.
+     */
+    static boolean isTsplib(String text) {
+        for (String line : text.split("\\r?\\n")) {
+            String keyword = line.trim().split("[\\s:]", 2)[0];
+            for (String tsplib : TSPLIB_KEYWORDS) {
+                if (keyword.equals(tsplib)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }//end of isTsplib()
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            buffer.write(chunk, 0, read);
+        }
+        in.close();
+        return buffer.toByteArray();
+    }//end of readBody()
+
+    static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }//end of sha256()
+
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> query = new HashMap<String, String>();
+        String raw = uri.getRawQuery();
+        if (raw == null) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(pair.substring(0, eq), pair.substring(eq + 1));
+            }
+        }
+        return query;
+    }//end of parseQuery()
+
+    private static String value(Map<String, String> query, String key,
+            String defaultValue) {
+        String value = query.get(key);
+        return (value == null || value.isEmpty()) ? defaultValue : value;
+    }
+
+    private static void reply(HttpExchange exchange, int status, String text)
+            throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+            exchange.getResponseHeaders().set("Content-Type",
+                    "text/plain; charset=utf-8");
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }//end of reply()
+
+    /**
+     * Least-recently-used cache of parsed tours, bounded by the estimated
+     * memory of their matrices and neighbor lists.
+     */
+    static final class InstanceCache {
+        private final long maxBytes;
+        private long bytes;
+        private final LinkedHashMap<String, Tour> map =
+                new LinkedHashMap<String, Tour>(16, 0.75f, true);
+
+        InstanceCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        static long estimate(Tour tour) {
+            long n = tour.getDimension();
+            return n * n * 8 + n * 4 * 8 + n * NEIGHBORS * 4 + n * 200;
+        }
+
+        synchronized Tour get(String key) {
+            return map.get(key);
+        }
+
+        synchronized void put(String key, Tour tour) {
+            Tour previous = map.put(key, tour);
+            if (previous != null) {
+                bytes -= estimate(previous);
+            }
+            bytes += estimate(tour);
+
+            Iterator<Map.Entry<String, Tour>> it = map.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Tour> eldest = it.next();
+                if (eldest.getKey().equals(key)) {
+                    // Never evict the entry just added.
+                    continue;
+                }
+                bytes -= estimate(eldest.getValue());
+                it.remove();
+            }
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+    }//end of class InstanceCache
+
+    /**
+     * Least-recently-used cache of complete solver results.
+     */
+    static final class ResultCache {
+        private final LinkedHashMap<String, SolveResult> map;
+
+        ResultCache(final int maxEntries) {
+            map = new LinkedHashMap<String, SolveResult>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, SolveResult> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized SolveResult get(String key) {
+            return map.get(key);
+        }
+
+        synchronized void put(String key, SolveResult result) {
+            map.put(key, result);
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }//end of class ResultCache
+}//end of class
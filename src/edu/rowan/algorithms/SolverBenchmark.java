@@ -0,0 +1,561 @@
+package edu.rowan.algorithms;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmark harness for the parser, the matrix construction and every
+ * solver. Each benchmark runs a number of warm-up iterations followed by
+ * measured iterations; the time and the bytes allocated by the benchmark
+ * thread are recorded per operation. Tracing is turned off and any other
+ * console output is discarded while measuring, so only the computation is
+ * timed.
+ *
+ * Usage:
+ *   SolverBenchmark [--inputs dir] [--instances a,b,c] [--benchmarks x,y]
+ *                   [--warmup n] [--iterations n] [--max-exact n]
+ *                   [--max-brute n]
+ *                   [--csv file] [--baseline file] [--threshold pct]
+ *                   [--batch n] [--assert-no-alloc]
+ *
+ * When a baseline .csv (a previous --csv output) is given, the run fails
+ * with exit code 1 if any benchmark mean is slower than the baseline by
+ * more than the threshold (10% by default).
+ *
+ * With --assert-no-alloc, the steady-state loops of the solvers are checked
+ * not to allocate during the measured iterations (see AllocationGuard); the
+ * run fails with exit code 1 if any of them does. An iteration whose loop
+ * allocated is run again, and only fails the run if it allocates on every
+ * one of ALLOCATION_RETRIES retries, since the JVM itself charges a few
+ * bytes to a thread now and then while it compiles a loop. At least one
+ * warm-up iteration is needed.
+ *
+ * The 'evaluate' and 'evaluateparallel' benchmarks score a batch of random
+ * tours with TourEvaluator (--batch tours per operation) and also report
+ * the tours evaluated per second. Compile src-vector and run with
+ * '--add-modules jdk.incubator.vector -Dtsp.vector=true' to measure the
+ * Vector API kernel (see README.md).
+ */
+public class SolverBenchmark {
+
+    static final String[] DEFAULT_INSTANCES = {
+        "mini1", "mini2", "brute10", "brute11", "brute12",
+        "eil51", "berlin52", "kroA100", "a280"
+    };
+
+    static final String[] ALL_BENCHMARKS = {
+        "parse", "matrix", "lbmatrix", "bruteforce", "nearest",
+        "branchandbound", "bestfirst", "mst", "christofides", "evaluate",
+        "evaluateparallel"
+    };
+
+    /** Re-runs of an iteration whose steady-state loop allocated. */
+    static final int ALLOCATION_RETRIES = 3;
+
+    private static final String[] INPUT_FOLDERS = {
+        "bruteforce/inputs", "nearest_neighbour/inputs"
+    };
+
+    private static final PrintStream NULL_STREAM = new PrintStream(
+            new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            });
+
+    private final com.sun.management.ThreadMXBean threads;
+
+    private String inputs = "src/edu/rowan/algorithms";
+    private String[] instances = DEFAULT_INSTANCES;
+    private String[] benchmarks = ALL_BENCHMARKS;
+    private int warmup = 3;
+    private int iterations = 5;
+    private int maxExact = 12;
+    private int maxBruteForce = 10;
+    private String csvFile;
+    private String baselineFile;
+    private double threshold = 0.10;
+    private int batch = 1000;
+    private boolean assertNoAlloc;
+    private int allocationFailures;
+
+    /**
+     * The result of one benchmark on one instance.
+     */
+    static class Result {
+        String benchmark;
+        String instance;
+        int dimension;
+        double meanMs;
+        double minMs;
+        double stdDevMs;
+        long bytesPerOp;
+        double evaluationsPerSec;
+
+        String toCsv() {
+            return String.format(Locale.ROOT,
+                    "%s,%s,%d,%.4f,%.4f,%.4f,%d,%.0f", benchmark, instance,
+                    dimension, meanMs, minMs, stdDevMs, bytesPerOp,
+                    evaluationsPerSec);
+        }
+    }
+
+    /**
+     * A single measured operation. Preparing the state is not measured.
+     */
+    interface Operation {
+        void prepare() throws IOException;
+
+        void run();
+    }
+
+    /**
+     * Scores a batch of random tours; the tours are drawn once.
+     */
+    class EvaluateOperation implements Operation {
+        final TourEvaluator evaluator;
+        final boolean parallel;
+        final int[][] tours;
+        final double[] costs;
+
+        EvaluateOperation(Tour parsed, boolean parallel) {
+            this.evaluator = new TourEvaluator(parsed);
+            this.parallel = parallel;
+            this.tours = randomTours(parsed.getDimension(), batch);
+            this.costs = new double[batch];
+        }
+
+        public void prepare() {
+        }
+
+        public void run() {
+            if (!parallel) {
+                evaluator.evaluate(tours, costs);
+                return;
+            }
+            try {
+                evaluator.evaluateParallel(tours, costs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    SolverBenchmark() {
+        threads = (com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean();
+        if (threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        SolverBenchmark bench = new SolverBenchmark();
+        bench.parseArguments(args);
+        Trace.setLevel(TraceLevel.OFF);
+        List<Result> results = bench.runAll();
+        bench.report(results);
+
+        if (bench.baselineFile != null) {
+            int regressions = bench.compareToBaseline(results);
+            if (regressions > 0) {
+                System.err.println(regressions + " benchmark(s) regressed.");
+                System.exit(1);
+            }
+        }
+        if (bench.allocationFailures > 0) {
+            System.err.println(bench.allocationFailures
+                    + " benchmark(s) allocated in a steady-state loop.");
+            System.exit(1);
+        }
+    }//end of main()
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equalsIgnoreCase("--inputs")) {
+                inputs = args[++i];
+            } else if (arg.equalsIgnoreCase("--instances")) {
+                instances = args[++i].split(",");
+            } else if (arg.equalsIgnoreCase("--benchmarks")) {
+                benchmarks = args[++i].toLowerCase(Locale.ROOT).split(",");
+            } else if (arg.equalsIgnoreCase("--warmup")) {
+                warmup = Integer.parseInt(args[++i]);
+            } else if (arg.equalsIgnoreCase("--iterations")) {
+                iterations = Integer.parseInt(args[++i]);
+            } else if (arg.equalsIgnoreCase("--max-exact")) {
+                maxExact = Integer.parseInt(args[++i]);
+            } else if (arg.equalsIgnoreCase("--max-brute")) {
+                maxBruteForce = Integer.parseInt(args[++i]);
+            } else if (arg.equalsIgnoreCase("--csv")) {
+                csvFile = args[++i];
+            } else if (arg.equalsIgnoreCase("--baseline")) {
+                baselineFile = args[++i];
+            } else if (arg.equalsIgnoreCase("--batch")) {
+                batch = Integer.parseInt(args[++i]);
+            } else if (arg.equalsIgnoreCase("--threshold")) {
+                threshold = Double.parseDouble(args[++i]) / 100.0;
+            } else if (arg.equalsIgnoreCase("--assert-no-alloc")) {
+                assertNoAlloc = true;
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+    }//end of parseArguments()
+
+    /**
+     * This function runs every selected benchmark on every selected
+     * instance. The exact solvers are skipped on instances with more than
+     * 'maxExact' cities (12 by default, all of the brute* instances), and
+     * brute force on those with more than 'maxBruteForce' (10 by default:
+     * it tries (n - 1)! tours, which takes over a minute per run on 11
+     * cities and over ten on 12).
+     * @return The list of results.
+     */
+    List<Result> runAll() throws IOException {
+        List<Result> results = new ArrayList<Result>();
+        for (String instance : instances) {
+            String filename = locate(instance);
+            if (filename == null) {
+                System.err.println("Skipping " + instance + ": not found.");
+                continue;
+            }
+            List<String> lines = readLines(filename);
+            Tour parsed = parse(lines);
+
+            for (String benchmark : benchmarks) {
+                Operation op = createOperation(benchmark, lines, parsed);
+                if (op == null) {
+                    continue;
+                }
+                Result result;
+                try {
+                    result = measure(op);
+                } catch (IllegalStateException e) {
+                    // Thrown by AllocationGuard.check().
+                    System.err.println(benchmark + " on " + instance + ": "
+                            + e.getMessage());
+                    allocationFailures++;
+                    continue;
+                }
+                result.benchmark = benchmark;
+                result.instance = instance;
+                result.dimension = parsed.getDimension();
+                if (op instanceof EvaluateOperation) {
+                    result.evaluationsPerSec = batch * 1000.0 / result.meanMs;
+                }
+                results.add(result);
+                System.out.println(result.toCsv());
+            }
+        }
+        return results;
+    }//end of runAll()
+
+    /**
+     * This function creates the operation to be measured for a benchmark.
+     * @return The operation, or null if the benchmark does not apply.
+     */
+    private Operation createOperation(String benchmark,
+            final List<String> lines, final Tour parsed) {
+        boolean small = parsed.getDimension() <= maxExact;
+        boolean enumerable = small && parsed.getDimension() <= maxBruteForce;
+
+        if (benchmark.equals("parse")) {
+            return new Operation() {
+                public void prepare() {
+                }
+
+                public void run() {
+                    parse(lines);
+                }
+            };
+        } else if (benchmark.equals("matrix")) {
+            return new Operation() {
+                public void prepare() {
+                }
+
+                public void run() {
+                    parsed.populateMatrix();
+                }
+            };
+        } else if (benchmark.equals("lbmatrix")) {
+            return new Operation() {
+                public void prepare() {
+                }
+
+                public void run() {
+                    parsed.populateLowerBoundMatrix();
+                }
+            };
+        } else if (benchmark.equals("bruteforce") && enumerable) {
+            return new Operation() {
+                BruteForceSolver solver;
+
+                public void prepare() {
+                    solver = new BruteForceSolver(parse(lines));
+                }
+
+                public void run() {
+                    solver.generatePermutations();
+                }
+            };
+        } else if (benchmark.equals("nearest")) {
+            return new Operation() {
+                NearestNeighborSolver solver;
+
+                public void prepare() {
+                    solver = new NearestNeighborSolver(parsed);
+                }
+
+                public void run() {
+                    solver.getShortestTour();
+                }
+            };
+        } else if (benchmark.equals("branchandbound") && small) {
+            return new Operation() {
+                public void prepare() {
+                }
+
+                public void run() {
+                    new BranchAndBoundSolver(parsed);
+                }
+            };
+        } else if (benchmark.equals("bestfirst") && small) {
+            return new Operation() {
+                public void prepare() {
+                }
+
+                public void run() {
+                    SolverType.BESTFIRST.solve(parsed);
+                }
+            };
+        } else if (benchmark.equals("mst")) {
+            return new Operation() {
+                public void prepare() {
+                }
+
+                public void run() {
+                    MinimumSpanningTree.prim(parsed, -1);
+                }
+            };
+        } else if (benchmark.equals("christofides")) {
+            return new Operation() {
+                public void prepare() {
+                }
+
+                public void run() {
+                    SolverType.CHRISTOFIDES.solve(parsed);
+                }
+            };
+        } else if (benchmark.equals("evaluate")) {
+            return new EvaluateOperation(parsed, false);
+        } else if (benchmark.equals("evaluateparallel")) {
+            return new EvaluateOperation(parsed, true);
+        }
+        return null;
+    }//end of createOperation()
+
+    /**
+     * This function runs the warm-up and measured iterations of an
+     * operation, with the console output redirected to a null stream.
+     * @param op The operation to measure.
+     * @return The timing and allocation figures.
+     */
+    private Result measure(Operation op) throws IOException {
+        long threadId = Thread.currentThread().getId();
+        double[] samples = new double[iterations];
+        long allocated = 0;
+
+        PrintStream console = System.out;
+        System.setOut(NULL_STREAM);
+        try {
+            for (int i = 0; i < warmup; i++) {
+                op.prepare();
+                op.run();
+            }
+            AllocationGuard.setEnabled(assertNoAlloc);
+            int strikes = 0;
+            for (int i = 0; i < iterations; i++) {
+                op.prepare();
+                long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+                long start = System.nanoTime();
+                try {
+                    op.run();
+                } catch (IllegalStateException e) {
+                    // The JVM charges a few bytes to the thread when a loop
+                    // is compiled or moves to its compiled code; only a
+                    // loop that allocates again on every retry fails.
+                    if (++strikes > ALLOCATION_RETRIES) {
+                        throw e;
+                    }
+                    i--;
+                    continue;
+                }
+                strikes = 0;
+                samples[i] = (System.nanoTime() - start) / 1e6;
+                allocated += threads.getThreadAllocatedBytes(threadId)
+                        - bytesBefore;
+            }
+        } finally {
+            AllocationGuard.setEnabled(false);
+            System.setOut(console);
+        }
+
+        Result result = new Result();
+        double sum = 0;
+        result.minMs = Double.MAX_VALUE;
+        for (double sample : samples) {
+            sum += sample;
+            result.minMs = Math.min(result.minMs, sample);
+        }
+        result.meanMs = sum / iterations;
+        double squares = 0;
+        for (double sample : samples) {
+            squares += (sample - result.meanMs) * (sample - result.meanMs);
+        }
+        result.stdDevMs = Math.sqrt(squares / iterations);
+        result.bytesPerOp = allocated / iterations;
+        return result;
+    }//end of measure()
+
+    /**
+     * This function prints the results as a table and, if requested, saves
+     * them off to a .csv file.
+     */
+    private void report(List<Result> results) throws IOException {
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT,
+                "%-16s %-10s %6s %12s %12s %12s %14s %14s", "Benchmark",
+                "Instance", "n", "Mean(ms)", "Min(ms)", "StdDev", "Bytes/op",
+                "Evals/s"));
+        for (Result r : results) {
+            System.out.println(String.format(Locale.ROOT,
+                    "%-16s %-10s %6d %12.4f %12.4f %12.4f %14d %14.0f",
+                    r.benchmark, r.instance, r.dimension, r.meanMs, r.minMs,
+                    r.stdDevMs, r.bytesPerOp, r.evaluationsPerSec));
+        }
+
+        if (csvFile != null) {
+            PrintWriter out = new PrintWriter(new FileWriter(csvFile));
+            try {
+                out.println("benchmark,instance,dimension,mean_ms,min_ms,"
+                        + "stddev_ms,bytes_per_op,evals_per_sec");
+                for (Result r : results) {
+                    out.println(r.toCsv());
+                }
+            } finally {
+                out.close();
+            }
+        }
+    }//end of report()
+
+    /**
+     * This function compares the results against a baseline .csv file.
+     * @return The number of benchmarks slower than the allowed threshold.
+     */
+    private int compareToBaseline(List<Result> results) throws IOException {
+        Map<String, Double> baseline = new HashMap<String, Double>();
+        for (String line : readLines(baselineFile)) {
+            String[] split = line.split(",");
+            if (split.length < 4 || split[0].equals("benchmark")) {
+                continue;
+            }
+            baseline.put(split[0] + "/" + split[1],
+                    Double.parseDouble(split[3]));
+        }
+
+        int regressions = 0;
+        for (Result r : results) {
+            Double previous = baseline.get(r.benchmark + "/" + r.instance);
+            if (previous == null) {
+                continue;
+            }
+            if (r.meanMs > previous * (1.0 + threshold)) {
+                System.err.println(String.format(Locale.ROOT,
+                        "REGRESSION %s/%s: %.4f ms vs %.4f ms baseline",
+                        r.benchmark, r.instance, r.meanMs, previous));
+                regressions++;
+            }
+        }
+        return regressions;
+    }//end of compareToBaseline()
+
+    /**
+     * This function looks for an instance in the bundled input folders.
+     * @return The path of the .tsp file, or null if it does not exist.
+     */
+    private String locate(String instance) {
+        String name = instance.endsWith(".tsp") ? instance : instance + ".tsp";
+        File direct = new File(name);
+        if (direct.isFile()) {
+            return direct.getPath();
+        }
+        for (String folder : INPUT_FOLDERS) {
+            File file = new File(new File(inputs, folder), name);
+            if (file.isFile()) {
+                return file.getPath();
+            }
+        }
+        return null;
+    }//end of locate()
+
+    /**
+     * This function draws random tours (Fisher-Yates shuffles) with a fixed
+     * seed, so every run scores the same batch.
+     */
+    static int[][] randomTours(int dimension, int count) {
+        Random random = new Random(42);
+        int[][] tours = new int[count][dimension];
+        for (int[] tour : tours) {
+            for (int i = 0; i < dimension; i++) {
+                tour[i] = i;
+            }
+            for (int i = dimension - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = tour[i];
+                tour[i] = tour[j];
+                tour[j] = tmp;
+            }
+        }
+        return tours;
+    }//end of randomTours()
+
+    static List<String> readLines(String filename) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader br = new BufferedReader(new FileReader(filename));
+        try {
+            String readLine;
+            while ((readLine = br.readLine()) != null) {
+                lines.add(readLine);
+            }
+        } finally {
+            br.close();
+        }
+        return lines;
+    }//end of readLines()
+
+    static Tour parse(List<String> lines) {
+        Tour tour = new Tour();
+        for (String line : lines) {
+            tour.parseLine(line);
+        }
+        return tour;
+    }//end of parse()
+}//end of class
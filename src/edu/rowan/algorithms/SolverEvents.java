@@ -0,0 +1,111 @@
+package edu.rowan.algorithms;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events emitted by SolverMetrics. They can be
+ * recorded with, e.g., -XX:StartFlightRecording and inspected with JDK
+ * Mission Control or 'jfr print --events edu.rowan.algorithms.*'.
+ */
+final class SolverEvents {
+
+    private SolverEvents() {
+    }
+
+    @Name("edu.rowan.algorithms.Incumbent")
+    @Label("Incumbent Improved")
+    @Category("TSP")
+    @Description("A solver found a tour shorter than its previous best.")
+    @StackTrace(false)
+    static class Incumbent extends Event {
+        @Label("Solver")
+        String solver;
+
+        @Label("Instance")
+        String instance;
+
+        @Label("Cost")
+        double cost;
+
+        @Label("Elapsed (ms)")
+        long elapsedMillis;
+    }
+
+    @Name("edu.rowan.algorithms.Solve")
+    @Label("Solve")
+    @Category("TSP")
+    @Description("One complete run of a solver.")
+    @StackTrace(false)
+    static class Solve extends Event {
+        @Label("Solver")
+        String solver;
+
+        @Label("Instance")
+        String instance;
+
+        @Label("Dimension")
+        int dimension;
+
+        @Label("Cost")
+        double cost;
+
+        @Label("Nodes Expanded")
+        long nodesExpanded;
+
+        @Label("Nodes Pruned")
+        long nodesPruned;
+
+        @Label("Bound Evaluations")
+        long boundEvaluations;
+
+        @Label("Permutations Evaluated")
+        long permutationsEvaluated;
+
+        @Label("Restarts")
+        long restarts;
+
+        @Label("Incumbent Improvements")
+        long incumbentImprovements;
+    }
+
+    @Name("edu.rowan.algorithms.Progress")
+    @Label("Solver Progress")
+    @Category("TSP")
+    @Description("Periodic snapshot of the counters of a running solver.")
+    @Period("1 s")
+    @StackTrace(false)
+    static class Progress extends Event {
+        @Label("Solver")
+        String solver;
+
+        @Label("Instance")
+        String instance;
+
+        @Label("Best Cost")
+        double cost;
+
+        @Label("Nodes Expanded")
+        long nodesExpanded;
+
+        @Label("Nodes Pruned")
+        long nodesPruned;
+
+        @Label("Bound Evaluations")
+        long boundEvaluations;
+
+        @Label("Permutations Evaluated")
+        long permutationsEvaluated;
+
+        @Label("Restarts")
+        long restarts;
+
+        @Label("Incumbent Improvements")
+        long incumbentImprovements;
+    }
+}//end of class
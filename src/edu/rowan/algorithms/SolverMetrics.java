@@ -0,0 +1,233 @@
+package edu.rowan.algorithms;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * This class collects the counters of a running solver: nodes expanded and
+ * pruned, lower bound evaluations, permutations evaluated, restarts and
+ * incumbent improvements. The counters are LongAdders (striped), so several
+ * search threads can share one instance without contending on a single
+ * memory location. Any thread may poll a consistent-enough view of the
+ * counters with snapshot().
+ *
+ * The same figures are published to Java Flight Recorder: an event for
+ * every incumbent improvement, one for the whole solve, and a periodic
+ * progress event for every solve that is still running.
+ */
+public class SolverMetrics {
+
+    private static final Set<SolverMetrics> RUNNING =
+            ConcurrentHashMap.newKeySet();
+
+    private static final EventType INCUMBENT_EVENT =
+            EventType.getEventType(SolverEvents.Incumbent.class);
+
+    static {
+        FlightRecorder.addPeriodicEvent(SolverEvents.Progress.class,
+                new Runnable() {
+                    public void run() {
+                        for (SolverMetrics metrics : RUNNING) {
+                            metrics.emitProgress();
+                        }
+                    }
+                });
+    }
+
+    private final String solver;
+    private volatile String instance = "";
+    private volatile int dimension;
+
+    private final LongAdder nodesExpanded = new LongAdder();
+    private final LongAdder nodesPruned = new LongAdder();
+    private final LongAdder boundEvaluations = new LongAdder();
+    private final LongAdder permutationsEvaluated = new LongAdder();
+    private final LongAdder restarts = new LongAdder();
+    private final LongAdder incumbentImprovements = new LongAdder();
+
+    private volatile double incumbentCost = Double.POSITIVE_INFINITY;
+    private volatile long lastImprovementMillis;
+    private volatile long startNanos;
+    private volatile long startMillis;
+    private volatile long elapsedNanos = -1;
+
+    private SolverEvents.Solve solveEvent;
+
+    /**
+     * Constructor
+     * @param solver Name of the solver reporting to these metrics.
+     */
+    public SolverMetrics(String solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * This function marks the beginning of a solve.
+     * @param tour The Tour object being solved.
+     */
+    public void start(Tour tour) {
+        instance = tour.getName();
+        dimension = tour.getDimension();
+        startMillis = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+        elapsedNanos = -1;
+        RUNNING.add(this);
+
+        solveEvent = new SolverEvents.Solve();
+        solveEvent.begin();
+    }//end of start()
+
+    /**
+     * This function marks the end of a solve and commits the JFR event.
+     */
+    public void finish() {
+        elapsedNanos = System.nanoTime() - startNanos;
+        RUNNING.remove(this);
+
+        SolverEvents.Solve event = solveEvent;
+        solveEvent = null;
+        if (event != null && event.shouldCommit()) {
+            event.solver = solver;
+            event.instance = instance;
+            event.dimension = dimension;
+            event.cost = incumbentCost;
+            event.nodesExpanded = nodesExpanded.sum();
+            event.nodesPruned = nodesPruned.sum();
+            event.boundEvaluations = boundEvaluations.sum();
+            event.permutationsEvaluated = permutationsEvaluated.sum();
+            event.restarts = restarts.sum();
+            event.incumbentImprovements = incumbentImprovements.sum();
+            event.commit();
+        }
+    }//end of finish()
+
+    public void nodeExpanded() {
+        nodesExpanded.increment();
+    }
+
+    public void nodePruned() {
+        nodesPruned.increment();
+    }
+
+    public void boundEvaluated() {
+        boundEvaluations.increment();
+    }
+
+    public void permutationEvaluated() {
+        permutationsEvaluated.increment();
+    }
+
+    public void restarted() {
+        restarts.increment();
+    }
+
+    /**
+     * This function records a new best tour.
+     * @param cost The cost of the new best tour.
+     */
+    public void incumbentImproved(double cost) {
+        incumbentImprovements.increment();
+        incumbentCost = cost;
+        lastImprovementMillis = System.currentTimeMillis();
+
+        // Checked first, so that no event is allocated while not recording.
+        if (!INCUMBENT_EVENT.isEnabled()) {
+            return;
+        }
+        SolverEvents.Incumbent event = new SolverEvents.Incumbent();
+        if (event.shouldCommit()) {
+            event.solver = solver;
+            event.instance = instance;
+            event.cost = cost;
+            event.elapsedMillis = (System.nanoTime() - startNanos) / 1000000;
+            event.commit();
+        }
+    }//end of incumbentImproved()
+
+    private void emitProgress() {
+        SolverEvents.Progress event = new SolverEvents.Progress();
+        event.solver = solver;
+        event.instance = instance;
+        event.cost = incumbentCost;
+        event.nodesExpanded = nodesExpanded.sum();
+        event.nodesPruned = nodesPruned.sum();
+        event.boundEvaluations = boundEvaluations.sum();
+        event.permutationsEvaluated = permutationsEvaluated.sum();
+        event.restarts = restarts.sum();
+        event.incumbentImprovements = incumbentImprovements.sum();
+        event.commit();
+    }//end of emitProgress()
+
+    /**
+     * This function returns the number of solves started and not finished,
+     * which get a progress event every second.
+     * @return The number of running solves.
+     */
+    static int runningCount() {
+        return RUNNING.size();
+    }//end of runningCount()
+
+    /**
+     * This function returns the current value of every counter.
+     * @return An immutable view of the counters.
+     */
+    public Snapshot snapshot() {
+        long elapsed = elapsedNanos;
+        if (elapsed < 0) {
+            elapsed = (startNanos == 0) ? 0 : System.nanoTime() - startNanos;
+        }
+        return new Snapshot(this, elapsed / 1000000);
+    }//end of snapshot()
+
+    /**
+     * An immutable copy of the counters of a SolverMetrics object.
+     */
+    public static final class Snapshot {
+        public final String solver;
+        public final String instance;
+        public final long nodesExpanded;
+        public final long nodesPruned;
+        public final long boundEvaluations;
+        public final long permutationsEvaluated;
+        public final long restarts;
+        public final long incumbentImprovements;
+        public final double incumbentCost;
+        public final long startMillis;
+        public final long lastImprovementMillis;
+        public final long elapsedMillis;
+
+        private Snapshot(SolverMetrics m, long elapsedMillis) {
+            this.solver = m.solver;
+            this.instance = m.instance;
+            this.nodesExpanded = m.nodesExpanded.sum();
+            this.nodesPruned = m.nodesPruned.sum();
+            this.boundEvaluations = m.boundEvaluations.sum();
+            this.permutationsEvaluated = m.permutationsEvaluated.sum();
+            this.restarts = m.restarts.sum();
+            this.incumbentImprovements = m.incumbentImprovements.sum();
+            this.incumbentCost = m.incumbentCost;
+            this.startMillis = m.startMillis;
+            this.lastImprovementMillis = m.lastImprovementMillis;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder line = new StringBuilder();
+            line.append(solver).append(" [").append(instance).append("]");
+            line.append(" elapsed=").append(elapsedMillis).append("ms");
+            line.append(" expanded=").append(nodesExpanded);
+            line.append(" pruned=").append(nodesPruned);
+            line.append(" bounds=").append(boundEvaluations);
+            line.append(" permutations=").append(permutationsEvaluated);
+            line.append(" restarts=").append(restarts);
+            line.append(" improvements=").append(incumbentImprovements);
+            line.append(" best=").append(incumbentCost);
+            return line.toString();
+        }
+    }//end of class Snapshot
+}//end of class
@@ -0,0 +1,131 @@
+package edu.rowan.algorithms;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+/**
+ * This enumeration lists the available solvers and knows how to run each
+ * one of them on a Tour object.
+ */
+public enum SolverType {
+
+    BRUTEFORCE(true) {
+        @Override
+        public SolveResult solve(Tour tour) {
+            BruteForceSolver bruteForce = new BruteForceSolver(tour);
+            bruteForce.generatePermutations();
+            return new SolveResult(this, bruteForce.getShortestTour(),
+                    bruteForce.getShortestDistance(), notInterrupted());
+        }
+    },
+
+    NEAREST(false) {
+        @Override
+        public SolveResult solve(Tour tour) {
+            NearestNeighborSolver nn = new NearestNeighborSolver(tour);
+            return new SolveResult(this, nn.getShortestTour(),
+                    nn.getShortestDistance(), notInterrupted());
+        }
+    },
+
+    BRANCHANDBOUND(true) {
+        @Override
+        public SolveResult solve(Tour tour) {
+            BranchAndBoundSolver bab = new BranchAndBoundSolver(tour);
+            return new SolveResult(this, bab.getShortestTour(),
+                    bab.getShortestDistance(), notInterrupted());
+        }
+    },
+
+    BESTFIRST(true) {
+        @Override
+        public SolveResult solve(Tour tour) {
+            BestFirstSolver bestFirst = new BestFirstSolver(tour);
+            try {
+                bestFirst.solve();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new SolveResult(this, bestFirst.getShortestTour(),
+                    bestFirst.getShortestDistance(), notInterrupted());
+        }
+    },
+
+    DECOMPOSITION(false) {
+        @Override
+        public SolveResult solve(Tour tour) {
+            DecompositionSolver decomposition = new DecompositionSolver(tour);
+            return new SolveResult(this, decomposition.getShortestTour(),
+                    decomposition.getShortestDistance(), notInterrupted());
+        }
+    },
+
+    DOUBLETREE(false) {
+        @Override
+        public SolveResult solve(Tour tour) {
+            SpanningTreeSolver doubleTree = new SpanningTreeSolver(tour, false);
+            return new SolveResult(this, doubleTree.getShortestTour(),
+                    doubleTree.getShortestDistance(), notInterrupted());
+        }
+    },
+
+    CHRISTOFIDES(false) {
+        @Override
+        public SolveResult solve(Tour tour) {
+            SpanningTreeSolver christofides = new SpanningTreeSolver(tour,
+                    true);
+            return new SolveResult(this, christofides.getShortestTour(),
+                    christofides.getShortestDistance(), notInterrupted());
+        }
+    },
+
+    TIMEWINDOWS(false) {
+        @Override
+        public SolveResult solve(Tour tour) {
+            TimeWindowSolver timeWindows = new TimeWindowSolver(tour);
+            return new SolveResult(this, timeWindows.getShortestTour(),
+                    timeWindows.getShortestDistance(), notInterrupted());
+        }
+    };
+
+    private final boolean exact;
+
+    private SolverType(boolean exact) {
+        this.exact = exact;
+    }
+
+    /**
+     * This function runs the solver on the specified tour. Interrupting the
+     * calling thread stops the search early; the result then holds the best
+     * tour found so far and is marked as not complete.
+     * @param tour The Tour object to be solved.
+     * @return The best tour found and its cost.
+     */
+    public abstract SolveResult solve(Tour tour);
+
+    private static boolean notInterrupted() {
+        return !Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * This function tells if the solver always returns an optimal tour.
+     * @return True, for exact solvers; otherwise, false.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * This function returns the solver with the specified name. The name is
+     * not case sensitive and may be given as a command line switch, e.g.
+     * '--Nearest'.
+     * @param name The solver name.
+     * @return The matching solver type.
+     * @throws IllegalArgumentException If there is no such solver.
+     */
+    public static SolverType fromName(String name) {
+        String key = name.replaceFirst("^--", "").toUpperCase(Locale.ROOT);
+        return SolverType.valueOf(key);
+    }//end of fromName()
+}//end of enum
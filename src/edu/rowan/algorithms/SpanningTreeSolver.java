@@ -0,0 +1,353 @@
+package edu.rowan.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class builds a tour from a minimum spanning tree (see
+ * MinimumSpanningTree), in near-linear time after the tree.
+ *
+ * Double tree: the cities are visited in the depth-first order of the tree
+ * from city 0, which shortcuts the walk around the tree with every edge
+ * doubled; for metric distances the tour costs at most twice the tree,
+ * i.e. twice the optimal tour.
+ *
+ * Christofides: the cities of odd degree in the tree are matched in pairs,
+ * greedily by increasing distance over their candidate edges (the
+ * unmatched ones are then paired with their nearest unmatched city), and
+ * the Euler circuit of the tree plus the matching is shortcut. With a
+ * minimum matching this is the 1.5 approximation of Christofides; the
+ * greedy matching keeps it fast and is usually close.
+ *
+ * The tree weight is reported with the tour: it is a lower bound, so the
+ * ratio of the two bounds the gap to the optimal tour.
+ */
+public class SpanningTreeSolver {
+
+    /** Candidate partners per odd city of the greedy matching. */
+    static final int MATCHING_CANDIDATES = 8;
+
+    final Tour tour;
+    final boolean christofides;
+    final SolverMetrics metrics;
+
+    MinimumSpanningTree tree;
+    int[] bestTour;
+    double bestTourDist;
+
+    /**
+     * Constructor
+     * @param tour The Tour object to be solved.
+     * @param christofides True for the Christofides tour, false for the
+     *        double tree one.
+     */
+    public SpanningTreeSolver(Tour tour, boolean christofides) {
+        this.tour = tour;
+        this.christofides = christofides;
+        this.metrics = new SolverMetrics(christofides ? "Christofides"
+                : "DoubleTree");
+    }//end of constructor
+
+    /**
+     * This function returns an array representing a solution for the TSP
+     * problem. The locations/nodes are numbered from '1' as in the .tsp
+     * file.
+     * @return An array representing the shortest tour found.
+     */
+    public ArrayList<Integer> getShortestTour() {
+        if (bestTour == null) {
+            solve();
+        }
+        ArrayList<Integer> cities = new ArrayList<Integer>(bestTour.length);
+        for (int city : bestTour) {
+            cities.add(city + 1);
+        }
+        return cities;
+    }//end of getShortestTour()
+
+    /**
+     * This function returns the cost of the tour found by getShortestTour().
+     * @return The cost of the shortest tour found.
+     */
+    public double getShortestDistance() {
+        return bestTourDist;
+    }//end of getShortestDistance()
+
+    /**
+     * This function returns the spanning tree the tour was built from.
+     * @return The tree, or null before getShortestTour().
+     */
+    public MinimumSpanningTree getTree() {
+        return tree;
+    }//end of getTree()
+
+    /**
+     * This function returns the counters collected during the search.
+     * @return The solver metrics.
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }//end of getMetrics()
+
+    private void solve() {
+        int n = tour.getDimension();
+        metrics.start(tour);
+        try {
+            try {
+                tree = MinimumSpanningTree.compute(tour);
+            } catch (InterruptedException e) {
+                // Cancelled before the tree was done; keep the cities in
+                // order.
+                Thread.currentThread().interrupt();
+                bestTour = new int[n];
+                for (int i = 0; i < n; i++) {
+                    bestTour[i] = i;
+                }
+                bestTourDist = cost(bestTour);
+                return;
+            }
+            Trace.summary(tree.toString());
+
+            if (christofides) {
+                int[] matching = greedyMatching(tree.degrees());
+                bestTour = shortcut(eulerCircuit(matching));
+            } else {
+                bestTour = preorder();
+            }
+            bestTourDist = cost(bestTour);
+            metrics.incumbentImproved(bestTourDist);
+        } finally {
+            // Also when compute() rejects the tour, so that the metrics do
+            // not stay registered as running.
+            metrics.finish();
+        }
+        Trace.summary("Tour cost = " + bestTourDist + ", tree weight = "
+                + tree.getWeight() + ", ratio <= " + (tree.getWeight() > 0
+                ? bestTourDist / tree.getWeight() : 1));
+    }//end of solve()
+
+    /**
+     * This function visits the cities in depth-first order of the tree,
+     * from city 0.
+     */
+    private int[] preorder() {
+        int n = tour.getDimension();
+        int[] start = new int[n + 1];
+        int[] adjacent = adjacency(null, start);
+        int[] order = new int[n];
+        int[] stack = new int[n];
+        boolean[] seen = new boolean[n];
+        int count = 0;
+        int top = 0;
+        stack[top++] = 0;
+        seen[0] = true;
+        while (top > 0) {
+            int city = stack[--top];
+            order[count++] = city;
+            // Pushed in reverse, so the first neighbor is visited first.
+            for (int a = start[city + 1] - 1; a >= start[city]; a--) {
+                int next = adjacent[a];
+                if (!seen[next]) {
+                    seen[next] = true;
+                    stack[top++] = next;
+                }
+            }
+        }
+        return order;
+    }//end of preorder()
+
+    /**
+     * This function pairs the cities of odd degree: candidate pairs by
+     * increasing distance first, then each city left with its nearest
+     * unmatched city.
+     * @param degree The degrees of the cities in the tree.
+     * @return The matching, as pairs of cities (a0, b0, a1, b1, ...).
+     */
+    private int[] greedyMatching(int[] degree) {
+        int n = tour.getDimension();
+        int odd = 0;
+        for (int city = 0; city < n; city++) {
+            if ((degree[city] & 1) != 0) {
+                odd++;
+            }
+        }
+        int[] pairs = new int[odd];
+        if (odd == 0) {
+            return pairs;
+        }
+        NeighborList neighbors = tour.getNeighborList(MATCHING_CANDIDATES);
+        int k = neighbors.getK();
+
+        // Candidate pairs, sorted by (float) distance in the high bits of
+        // the key; the low bits index the pair.
+        int[] candidateFrom = new int[odd * k];
+        int[] candidateTo = new int[odd * k];
+        long[] keys = new long[odd * k];
+        int count = 0;
+        for (int city = 0; city < n; city++) {
+            if ((degree[city] & 1) == 0) {
+                continue;
+            }
+            for (int r = 0; r < k; r++) {
+                int other = neighbors.get(city, r);
+                if (other > city && (degree[other] & 1) != 0) {
+                    candidateFrom[count] = city;
+                    candidateTo[count] = other;
+                    keys[count] = ((long) Float.floatToIntBits(
+                            (float) tour.distance(city, other)) << 32) | count;
+                    count++;
+                }
+            }
+        }
+        keys = Arrays.copyOf(keys, count);
+        Arrays.parallelSort(keys);
+
+        boolean[] matched = new boolean[n];
+        int size = 0;
+        for (long key : keys) {
+            int c = (int) key;
+            int a = candidateFrom[c];
+            int b = candidateTo[c];
+            if (!matched[a] && !matched[b]) {
+                matched[a] = true;
+                matched[b] = true;
+                pairs[size++] = a;
+                pairs[size++] = b;
+            }
+        }
+
+        int[] left = new int[odd - size];
+        int leftCount = 0;
+        for (int city = 0; city < n; city++) {
+            if ((degree[city] & 1) != 0 && !matched[city]) {
+                left[leftCount++] = city;
+            }
+        }
+        for (int i = 0; i < leftCount; i++) {
+            int a = left[i];
+            if (matched[a]) {
+                continue;
+            }
+            int nearest = -1;
+            for (int j = i + 1; j < leftCount; j++) {
+                int b = left[j];
+                if (!matched[b] && (nearest < 0 || tour.distance(a, b)
+                        < tour.distance(a, nearest))) {
+                    nearest = b;
+                }
+            }
+            matched[a] = true;
+            matched[nearest] = true;
+            pairs[size++] = a;
+            pairs[size++] = nearest;
+        }
+        return pairs;
+    }//end of greedyMatching()
+
+    /**
+     * This function finds an Euler circuit (Hierholzer's algorithm) of the
+     * tree plus the matching, in which every city has an even degree.
+     * @return The cities of the circuit, from city 0.
+     */
+    private int[] eulerCircuit(int[] matching) {
+        int n = tour.getDimension();
+        int[] start = new int[n + 1];
+        int[] edgeOf = new int[2 * (tree.getEdgeCount() + matching.length / 2)];
+        int[] adjacent = adjacency(matching, start, edgeOf);
+        boolean[] used = new boolean[edgeOf.length / 2];
+        int[] next = Arrays.copyOf(start, n);
+
+        int[] circuit = new int[used.length + 1];
+        int length = 0;
+        int[] stack = new int[used.length + 1];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int city = stack[top - 1];
+            while (next[city] < start[city + 1] && used[edgeOf[next[city]]]) {
+                next[city]++;
+            }
+            if (next[city] == start[city + 1]) {
+                circuit[length++] = city;
+                top--;
+            } else {
+                int a = next[city]++;
+                used[edgeOf[a]] = true;
+                stack[top++] = adjacent[a];
+            }
+        }
+        return Arrays.copyOf(circuit, length);
+    }//end of eulerCircuit()
+
+    /**
+     * This function keeps the first visit of every city of a circuit.
+     */
+    private int[] shortcut(int[] circuit) {
+        int n = tour.getDimension();
+        boolean[] seen = new boolean[n];
+        int[] order = new int[n];
+        int count = 0;
+        for (int city : circuit) {
+            if (!seen[city]) {
+                seen[city] = true;
+                order[count++] = city;
+            }
+        }
+        return order;
+    }//end of shortcut()
+
+    private int[] adjacency(int[] matching, int[] start) {
+        int edges = tree.getEdgeCount()
+                + (matching == null ? 0 : matching.length / 2);
+        return adjacency(matching, start, new int[2 * edges]);
+    }//end of adjacency()
+
+    /**
+     * This function lays out the edges of the tree (and of the matching)
+     * by city: the neighbors of city i are adjacent[start[i]] up to
+     * adjacent[start[i + 1]] - 1, and edgeOf gives their edge index.
+     */
+    private int[] adjacency(int[] matching, int[] start, int[] edgeOf) {
+        int n = tour.getDimension();
+        int treeEdges = tree.getEdgeCount();
+        int edges = edgeOf.length / 2;
+        int[] a = new int[edges];
+        int[] b = new int[edges];
+        for (int e = 0; e < treeEdges; e++) {
+            a[e] = tree.getFrom(e);
+            b[e] = tree.getTo(e);
+        }
+        for (int e = treeEdges; e < edges; e++) {
+            a[e] = matching[2 * (e - treeEdges)];
+            b[e] = matching[2 * (e - treeEdges) + 1];
+        }
+        for (int e = 0; e < edges; e++) {
+            start[a[e] + 1]++;
+            start[b[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            start[i + 1] += start[i];
+        }
+        int[] fill = Arrays.copyOf(start, n);
+        int[] adjacent = new int[2 * edges];
+        for (int e = 0; e < edges; e++) {
+            edgeOf[fill[a[e]]] = e;
+            adjacent[fill[a[e]]++] = b[e];
+            edgeOf[fill[b[e]]] = e;
+            adjacent[fill[b[e]]++] = a[e];
+        }
+        return adjacent;
+    }//end of adjacency()
+
+    private double cost(int[] order) {
+        double total = 0;
+        int n = order.length;
+        if (n < 2) {
+            return 0;
+        }
+        for (int i = 0; i < n; i++) {
+            total += tour.distance(order[i], order[(i + 1) % n]);
+        }
+        return total;
+    }//end of cost()
+}//end of class
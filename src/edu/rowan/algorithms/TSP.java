@@ -1,9 +1,11 @@
 package edu.rowan.algorithms;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 import java.util.prefs.Preferences;
 
@@ -24,6 +26,21 @@ public class TSP {
          *  Variable declaration
          */
         String filename = "";
+        String batch = null;
+        String report = "batch-report.csv";
+        int threads = 0;
+        String checkpointFile = null;
+        long checkpointInterval = 60;
+        boolean resume = false;
+        boolean presolve = false;
+        int clusterSize = DecompositionSolver.DEFAULT_CLUSTER_SIZE;
+        boolean integerDistances = false;
+        String storeDir = null;
+        String output = null;
+        List<SolverType> portfolio = null;
+        long deadlineMillis = 10000;
+        long frontierMemory = BestFirstSolver.DEFAULT_MEMORY;
+        String spillDir = System.getProperty("java.io.tmpdir");
         Preferences prefsRoot = Preferences.userRoot();
         Preferences myPrefs = prefsRoot
                .node("edu.rowan.alogorithms.preference.staticPreferenceLoader");
@@ -32,6 +49,11 @@ public class TSP {
         final int BRUTEFORCE = 1;
         final int NEAREST = 2;
         final int BRANCHANDBOUND=3;
+        final int DECOMPOSITION = 4;
+        final int BESTFIRST = 5;
+        final int DOUBLETREE = 6;
+        final int CHRISTOFIDES = 7;
+        final int TIMEWINDOWS = 8;
         int strategy = DEFAULT;
         
         ArrayList<Integer> shortestTour;
@@ -54,8 +76,90 @@ public class TSP {
                 else if((args[i].equalsIgnoreCase("--BranchAndBound"))){
                     strategy = BRANCHANDBOUND;
                 }
+                else if((args[i].equalsIgnoreCase("--Decomposition"))){
+                    strategy = DECOMPOSITION;
+                }
+                else if((args[i].equalsIgnoreCase("--BestFirst"))){
+                    strategy = BESTFIRST;
+                }
+                else if((args[i].equalsIgnoreCase("--DoubleTree"))){
+                    strategy = DOUBLETREE;
+                }
+                else if((args[i].equalsIgnoreCase("--Christofides"))){
+                    strategy = CHRISTOFIDES;
+                }
+                else if((args[i].equalsIgnoreCase("--TimeWindows"))){
+                    strategy = TIMEWINDOWS;
+                }
+                else if (args[i].equalsIgnoreCase("--frontier-memory")) {
+                    // Off-heap memory of the best-first frontier, in MB.
+                    frontierMemory = Long.parseLong(args[++i]) << 20;
+                }
+                else if (args[i].equalsIgnoreCase("--spill-dir")) {
+                    // Where the best-first frontier spills.
+                    spillDir = args[++i];
+                }
+                else if (args[i].equalsIgnoreCase("--cluster-size")) {
+                    // Maximum number of cities per cluster (decomposition).
+                    clusterSize = Integer.parseInt(args[++i]);
+                }
+                else if (args[i].toLowerCase().startsWith("--trace=")) {
+                    // --trace=off|summary|debug
+                    Trace.setLevel(TraceLevel.fromName(
+                            args[i].substring("--trace=".length())));
+                }
+                else if (args[i].equalsIgnoreCase("--batch")) {
+                    // Directory of .tsp files, or a manifest listing them.
+                    batch = args[++i];
+                }
+                else if (args[i].equalsIgnoreCase("--report")) {
+                    report = args[++i];
+                }
+                else if (args[i].equalsIgnoreCase("--threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                }
+                else if (args[i].equalsIgnoreCase("--checkpoint")) {
+                    checkpointFile = args[++i];
+                }
+                else if (args[i].equalsIgnoreCase("--checkpoint-interval")) {
+                    // Seconds between two checkpoints.
+                    checkpointInterval = Long.parseLong(args[++i]);
+                }
+                else if (args[i].equalsIgnoreCase("--resume")) {
+                    resume = true;
+                }
+                else if (args[i].equalsIgnoreCase("--presolve")) {
+                    // Merge duplicate cities and contract fixed edges.
+                    presolve = true;
+                }
+                else if (args[i].equalsIgnoreCase("--portfolio")) {
+                    // Solvers raced against each other, e.g.
+                    // nearest,decomposition,branchandbound or default
+                    portfolio = PortfolioRunner.parseMembers(args[++i]);
+                }
+                else if (args[i].equalsIgnoreCase("--deadline")) {
+                    // Time budget of the portfolio, in milliseconds.
+                    deadlineMillis = Long.parseLong(args[++i]);
+                }
+                else if (args[i].equalsIgnoreCase("--output")) {
+                    // .tour file receiving the solution.
+                    output = args[++i];
+                }
+                else if (args[i].equalsIgnoreCase("--store")) {
+                    // Directory of the solution store.
+                    storeDir = args[++i];
+                }
+                else if (args[i].equalsIgnoreCase("--bound")) {
+                    // Branch-and-bound bound: nearest or assignment.
+                    System.setProperty(BranchAndBoundSolver.BOUND_PROPERTY,
+                            args[++i]);
+                }
+                else if (args[i].equalsIgnoreCase("--integer")) {
+                    // TSPLIB distances, rounded to the nearest integer.
+                    integerDistances = true;
+                }
                 else{
-                    filename = args[0];
+                    filename = args[i];
                 }
             }//end of for...loop
 
@@ -78,6 +182,11 @@ public class TSP {
             scanner.close();
         }
 
+        if (batch != null) {
+            runBatch(batch, report, threads, toSolverType(strategy));
+            return;
+        }
+
         Tour tour = new Tour();
         tour.setFilename(filename);
         
@@ -93,41 +202,376 @@ public class TSP {
         catch (IOException e) {
             System.err.println("Error: " + e);
         }
+        tour.setIntegerDistances(integerDistances);
 
+        /**
+         * Solution store: an instance solved before is answered right away
+         * when its stored tour is proven optimal or was found by the same
+         * solver. Otherwise the stored tour is a warm start for the
+         * branch-and-bound search.
+         */
+        SolutionStore store = null;
+        SolutionStore.Key key = null;
+        SolutionStore.Entry stored = null;
+        SolverType solverType = toSolverType(strategy);
+        if (tour.hasConstraints() && solverType != SolverType.TIMEWINDOWS) {
+            System.err.println("Warning: the time windows and precedences"
+                    + " are ignored; use --TimeWindows to meet them.");
+        }
+        // Stored tours are keyed by the cities only, not the constraints.
+        if (storeDir != null && !tour.hasConstraints()) {
+            try {
+                store = new SolutionStore(new File(storeDir));
+                key = SolutionStore.keyOf(tour);
+                stored = store.lookup(key);
+            } catch (IOException e) {
+                System.err.println("Error: " + e);
+                return;
+            }
+            if (stored != null && (stored.isOptimal() || (portfolio == null
+                    && stored.getSolver().equals(solverType.name())))) {
+                showTour(tour, stored.getTour(), output);
+                Trace.summary("From solution store " + key + ": "
+                        + stored.getSolver() + ", Dist.: " + stored.getCost()
+                        + (stored.isOptimal() ? " (optimal)" : ""));
+                closeStore(store);
+                Trace.flush();
+                return;
+            }
+        }
+
+        if (portfolio != null) {
+            runPortfolio(tour, portfolio, deadlineMillis, stored, output,
+                    store, key);
+            return;
+        }
+
+        /**
+         * Checkpoints (exact solvers only): the search state is saved off
+         * periodically and, with --resume, the search continues from it.
+         */
+        CheckpointWriter checkpoints = null;
+        Checkpoint resumeFrom = null;
+        if (checkpointFile != null) {
+            File file = new File(checkpointFile);
+            if (resume && file.isFile()) {
+                try {
+                    resumeFrom = Checkpoint.read(file);
+                    resumeFrom.checkCompatible(strategy == BRUTEFORCE
+                            ? Checkpoint.BRUTE_FORCE
+                            : Checkpoint.BRANCH_AND_BOUND, tour);
+                    Trace.summary("Resuming from " + checkpointFile
+                            + ", best so far: " + resumeFrom.getBestCost());
+                } catch (IOException e) {
+                    System.err.println("Error: " + e);
+                    return;
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Error: " + e.getMessage());
+                    return;
+                }
+            }
+            checkpoints = new CheckpointWriter(file, checkpointInterval);
+        }
+        if (resumeFrom == null && stored != null
+                && solverType == SolverType.BRANCHANDBOUND) {
+            Trace.summary("Warm start from solution store, Dist.: "
+                    + stored.getCost());
+            resumeFrom = Checkpoint.warmStart(tour, stored.getCost(),
+                    stored.getTour());
+        }
+
+        /**
+         * Pre-solve: the solver runs on a smaller tour and its solution is
+         * expanded back to the cities of this one.
+         */
+        InstanceReduction reduction = null;
+        Tour instance = tour;
+        if (presolve) {
+            if (checkpoints != null || resumeFrom != null) {
+                System.err.println("Warning: --presolve is ignored with"
+                        + " checkpoints and stored tours.");
+            } else {
+                // The forced edges of a contracted tour suit the two
+                // shortest edges bounds; the assignment bound loses them.
+                boolean fixEdges = solverType.isExact()
+                        && !"assignment".equalsIgnoreCase(System.getProperty(
+                        BranchAndBoundSolver.BOUND_PROPERTY));
+                reduction = InstanceReduction.reduce(tour, fixEdges);
+                Trace.summary(reduction.toString());
+                if (reduction.isReduced()) {
+                    instance = reduction.getReducedTour();
+                } else {
+                    reduction = null;
+                }
+            }
+        }
+
+        shortestTour = null;
+        long totalTime = 0;
         
         switch (strategy) {
         //case DEFAULT:    
         case BRUTEFORCE:
                 // System.out.println(tour.toString());
         		long startTime = System.currentTimeMillis();
-                BruteForceSolver bruteForce = new BruteForceSolver(tour);
+                BruteForceSolver bruteForce = new BruteForceSolver(instance,
+                        new SolverMetrics("BruteForce"), checkpoints, resumeFrom);
                 bruteForce.generatePermutations();
-                shortestTour = bruteForce.getShortestTour();
-                
-                String answer = tour.printTour(shortestTour);
-                System.out.println(answer);
-                System.out.println("Solution :" + bruteForce.getShortestTour()
-                      + ", Dist.: " + bruteForce.getShortestDistance() + "\n");
+                shortestTour = expand(reduction, bruteForce.getShortestTour());
             	long endTime   = System.currentTimeMillis();
-            	long totalTime = endTime - startTime;
-            	System.out.println("Total time to execute: "+totalTime+" ms");
+            	totalTime = endTime - startTime;
+                
+                showTour(tour, shortestTour, output);
+                // The reduced tour's cost includes the forced edge penalty.
+                Trace.summary("Solution :" + shortestTour + ", Dist.: "
+                      + (reduction == null ? bruteForce.getShortestDistance()
+                      : PrimitiveTour.fromSolution(tour, shortestTour).cost())
+                      + "\n");
+            	Trace.summary("Total time to execute: "+totalTime+" ms");
                 break;
               
             case NEAREST:
-                NearestNeighborSolver nn = new NearestNeighborSolver(tour);
-                shortestTour = nn.getShortestTour();
-                String answer2 = tour.printTour(shortestTour);
-                System.out.println(answer2);
+                startTime = System.currentTimeMillis();
+                NearestNeighborSolver nn = new NearestNeighborSolver(instance);
+                shortestTour = expand(reduction, nn.getShortestTour());
+                totalTime = System.currentTimeMillis() - startTime;
+                showTour(tour, shortestTour, output);
                 break;
             
             case DEFAULT:
             case BRANCHANDBOUND:
             	startTime = System.currentTimeMillis();
-            	BranchAndBoundSolver bab = new BranchAndBoundSolver(tour);
+            	BranchAndBoundSolver bab = new BranchAndBoundSolver(instance,
+            	        new SolverMetrics("BranchAndBound"), checkpoints, resumeFrom);
             	endTime   = System.currentTimeMillis();
             	totalTime = endTime - startTime;
-            	System.out.println("Total time to execute: "+totalTime+" ms");
+            	shortestTour = expand(reduction, bab.getShortestTour());
+            	if (output != null || reduction != null) {
+            	    showTour(tour, shortestTour, output);
+            	}
+            	Trace.summary("Total time to execute: "+totalTime+" ms");
             	break;
+
+            case BESTFIRST:
+                startTime = System.currentTimeMillis();
+                BestFirstSolver bestFirst = new BestFirstSolver(instance,
+                        new SolverMetrics("BestFirst"), frontierMemory,
+                        new File(spillDir));
+                try {
+                    bestFirst.solve();
+                } catch (IOException e) {
+                    System.err.println("Error: " + e);
+                }
+                shortestTour = expand(reduction, bestFirst.getShortestTour());
+                totalTime = System.currentTimeMillis() - startTime;
+                if (output != null || reduction != null) {
+                    showTour(tour, shortestTour, output);
+                }
+                Trace.summary("Total time to execute: "+totalTime+" ms");
+                break;
+
+            case DECOMPOSITION:
+                startTime = System.currentTimeMillis();
+                DecompositionSolver decomposition =
+                        new DecompositionSolver(instance, clusterSize, threads);
+                shortestTour = expand(reduction,
+                        decomposition.getShortestTour());
+                totalTime = System.currentTimeMillis() - startTime;
+                showTour(tour, shortestTour, output);
+                Trace.summary("Total time to execute: "+totalTime+" ms");
+                break;
+
+            case DOUBLETREE:
+            case CHRISTOFIDES:
+                startTime = System.currentTimeMillis();
+                SpanningTreeSolver spanningTree = new SpanningTreeSolver(
+                        instance, strategy == CHRISTOFIDES);
+                shortestTour = expand(reduction,
+                        spanningTree.getShortestTour());
+                totalTime = System.currentTimeMillis() - startTime;
+                showTour(tour, shortestTour, output);
+                Trace.summary("Total time to execute: "+totalTime+" ms");
+                break;
+
+            case TIMEWINDOWS:
+                startTime = System.currentTimeMillis();
+                TimeWindowSolver timeWindows = new TimeWindowSolver(instance);
+                shortestTour = expand(reduction, timeWindows.getShortestTour());
+                totalTime = System.currentTimeMillis() - startTime;
+                showTour(tour, shortestTour, output);
+                Trace.summary("Feasible: " + timeWindows.isFeasible());
+                Trace.summary("Total time to execute: "+totalTime+" ms");
+                break;
         }//end of switch statement
+        if (reduction != null && shortestTour != null) {
+            Trace.summary("Expanded to " + tour.getDimension()
+                    + " cities, Dist.: "
+                    + PrimitiveTour.fromSolution(tour, shortestTour).cost());
+        }
+        if (checkpoints != null) {
+            checkpoints.close();
+        }
+        if (store != null) {
+            try {
+                boolean complete = !Thread.currentThread().isInterrupted();
+                if (store.record(key, tour, shortestTour, solverType.name(),
+                        solverType.isExact() && complete, totalTime)) {
+                    Trace.summary("Saved to solution store " + key);
+                }
+            } catch (IOException e) {
+                System.err.println("Error: " + e);
+            }
+            closeStore(store);
+        }
+        Trace.flush();
     }//end of main()
+
+    /**
+     * This function races the solvers of a portfolio on a tour until the
+     * deadline, and shows and stores the best tour found.
+     * @param tour The Tour object to be solved.
+     * @param members The solvers to race.
+     * @param deadlineMillis Time budget in milliseconds.
+     * @param stored Solution found in the solution store, or null.
+     * @param output The .tour file, or null to print the solution.
+     * @param store The solution store, or null.
+     * @param key The key of the tour in the solution store.
+     */
+    private static void runPortfolio(Tour tour, List<SolverType> members,
+            long deadlineMillis, SolutionStore.Entry stored, String output,
+            SolutionStore store, SolutionStore.Key key) {
+        long startTime = System.currentTimeMillis();
+        SolveResult result;
+        try {
+            result = new PortfolioRunner(members).run(tour, deadlineMillis,
+                    stored == null ? null : stored.getTour());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (IllegalStateException e) {
+            System.err.println("Error: " + e.getMessage() + " "
+                    + e.getCause());
+            return;
+        }
+        long totalTime = System.currentTimeMillis() - startTime;
+
+        String source = (result.getSolver() == null)
+                ? stored.getSolver() : result.getSolver().name();
+        if (result.getTour() == null) {
+            Trace.summary("No tour found before the deadline.");
+        } else {
+            showTour(tour, result.getTour(), output);
+            Trace.summary("Best tour by " + source + ", Dist.: "
+                    + result.getCost() + (result.isComplete()
+                            ? " (optimal)" : ""));
+        }
+        Trace.summary("Total time to execute: " + totalTime + " ms");
+
+        if (store != null) {
+            try {
+                if (result.getTour() != null && store.record(key, tour,
+                        result.getTour(), source, result.isComplete(),
+                        totalTime)) {
+                    Trace.summary("Saved to solution store " + key);
+                }
+            } catch (IOException e) {
+                System.err.println("Error: " + e);
+            }
+            closeStore(store);
+        }
+        Trace.flush();
+    }//end of runPortfolio()
+
+    /**
+     * This function prints the solution or, if an output file was given,
+     * streams it to that .tour file instead.
+     * @param tour The Tour object that was solved.
+     * @param solution The solution, numbered from '1'.
+     * @param output The .tour file, or null to print the solution.
+     */
+    private static void showTour(Tour tour, ArrayList<Integer> solution,
+            String output) {
+        if (output == null) {
+            Trace.summary(tour.printTour(solution));
+            return;
+        }
+        try {
+            TourFileWriter.write(output, tour.getName(), solution);
+            Trace.summary("Tour written to " + output);
+        } catch (IOException e) {
+            System.err.println("Error: " + e);
+        }
+    }//end of showTour()
+
+    /**
+     * This function expands a solution of the pre-solved tour.
+     * @param reduction The reduction, or null if there is none.
+     * @param solution A solution of the tour that was solved.
+     * @return The solution of the original tour.
+     */
+    private static ArrayList<Integer> expand(InstanceReduction reduction,
+            ArrayList<Integer> solution) {
+        return (reduction == null) ? solution : reduction.expand(solution);
+    }//end of expand()
+
+    private static void closeStore(SolutionStore store) {
+        try {
+            store.close();
+        } catch (IOException e) {
+            System.err.println("Error: " + e);
+        }
+    }//end of closeStore()
+
+    /**
+     * This function maps the strategy switches to a solver.
+     * @param strategy One of the strategy constants used by main().
+     * @return The matching solver type.
+     */
+    private static SolverType toSolverType(int strategy) {
+        switch (strategy) {
+            case 1:
+                return SolverType.BRUTEFORCE;
+            case 2:
+                return SolverType.NEAREST;
+            case 4:
+                return SolverType.DECOMPOSITION;
+            case 5:
+                return SolverType.BESTFIRST;
+            case 6:
+                return SolverType.DOUBLETREE;
+            case 7:
+                return SolverType.CHRISTOFIDES;
+            case 8:
+                return SolverType.TIMEWINDOWS;
+            default:
+                return SolverType.BRANCHANDBOUND;
+        }
+    }//end of toSolverType()
+
+    /**
+     * This function solves every instance of a directory or manifest in
+     * this JVM, writing the results to the report file as they complete.
+     * @param source A directory of .tsp files or a manifest file.
+     * @param report The report (.csv) file.
+     * @param threads Number of instances solved at once (0 = processors).
+     * @param solver The solver to run on every instance.
+     */
+    private static void runBatch(String source, String report, int threads,
+            SolverType solver) {
+        try {
+            BatchRunner runner = new BatchRunner(solver, threads);
+            List<File> instances = BatchRunner.listInstances(source);
+            long startTime = System.currentTimeMillis();
+            int failures = runner.run(instances, report);
+            long totalTime = System.currentTimeMillis() - startTime;
+            Trace.summary("Solved " + (instances.size() - failures) + " of "
+                    + instances.size() + " instances in " + totalTime
+                    + " ms. Report: " + report);
+        } catch (IOException e) {
+            System.err.println("Error: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Trace.flush();
+    }//end of runBatch()
 }// end of class TSP
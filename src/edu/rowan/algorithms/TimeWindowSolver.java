@@ -0,0 +1,589 @@
+package edu.rowan.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class solves tours with time windows and precedences (see
+ * Tour.hasConstraints()): the route starts at city 0 at its earliest time,
+ * travels the distances as times, may wait for a window to open, must
+ * reach every city and the return to city 0 before their windows close,
+ * and must visit the first city of each precedence before the second.
+ *
+ * The route is built by insertion: the cities are taken in precedence
+ * order, the one whose window closes first next, and each is inserted at
+ * its cheapest feasible position. An Or-opt local search (chains of one to
+ * three cities moved to their best position) then shortens it. A route
+ * that misses windows is measured by its time warp, the time it would have
+ * to go back in order to meet them; while it is not zero the moves reduce
+ * it first, so the search also repairs routes the insertion could not
+ * complete.
+ *
+ * No move re-simulates the route. Every prefix and suffix of the route is
+ * summarized by its duration, the earliest and latest start times of its
+ * first city and its time warp (the concatenation of Vidal et al.), so a
+ * route made of a prefix, a few cities and a suffix is checked in O(1).
+ * The moves grow the part of the route between the old and new position
+ * one city at a time, which is O(1) per position as well. The precedences
+ * restrict each chain to a range of positions, found once per chain.
+ */
+public class TimeWindowSolver {
+
+    /** Largest number of local search passes. */
+    static final int MAX_PASSES = 100;
+
+    /** Longest chain of cities moved at once. */
+    static final int MAX_CHAIN = 3;
+
+    private static final double EPSILON = 1e-9;
+
+    final Tour tour;
+    final SolverMetrics metrics;
+    final int dimension;
+
+    /** The cities each city must follow and precede, by zero based index. */
+    final int[][] predecessors;
+    final int[][] successors;
+
+    /** The route: route[0] is city 0; the return to city 0 is implicit. */
+    int[] route;
+    int[] position;
+    int size;
+
+    /**
+     * Summaries of the prefixes route[0..i] and of the suffixes
+     * route[i..size - 1] followed by the return to city 0.
+     */
+    double[] prefixDuration;
+    double[] prefixEarliest;
+    double[] prefixLatest;
+    double[] prefixWarp;
+    double[] suffixDuration;
+    double[] suffixEarliest;
+    double[] suffixLatest;
+    double[] suffixWarp;
+
+    /** Time warp of the whole route. */
+    double routeWarp;
+
+    int[] bestTour;
+    double bestTourDist;
+    boolean feasible;
+
+    /**
+     * A part of a route: its first and last city, the least time from the
+     * start of its first city to the start of its last one (waiting
+     * included), the earliest and latest start of its first city with that
+     * duration, and its time warp (zero if it meets every window).
+     */
+    private final class Segment {
+        int first;
+        int last;
+        double duration;
+        double earliest;
+        double latest;
+        double warp;
+
+        void city(int city) {
+            first = city;
+            last = city;
+            duration = 0;
+            earliest = tour.getEarliest(city);
+            latest = tour.getLatest(city);
+            warp = Math.max(0, earliest - latest);
+        }
+
+        void prefix(int i) {
+            first = 0;
+            last = route[i];
+            duration = prefixDuration[i];
+            earliest = prefixEarliest[i];
+            latest = prefixLatest[i];
+            warp = prefixWarp[i];
+        }
+
+        void suffix(int i) {
+            first = (i < size) ? route[i] : 0;
+            last = 0;
+            duration = suffixDuration[i];
+            earliest = suffixEarliest[i];
+            latest = suffixLatest[i];
+            warp = suffixWarp[i];
+        }
+
+        void copy(Segment other) {
+            first = other.first;
+            last = other.last;
+            duration = other.duration;
+            earliest = other.earliest;
+            latest = other.latest;
+            warp = other.warp;
+        }
+
+        /**
+         * This function appends another part of the route to this one.
+         */
+        void append(int first2, int last2, double duration2,
+                double earliest2, double latest2, double warp2) {
+            double travel = (last == first2) ? 0 : tour.distance(last, first2);
+            // The time warp of this part shortens it (Vidal et al.).
+            double delta = duration - warp + travel;
+            double wait = Math.max(earliest2 - delta - latest, 0);
+            double lateness = Math.max(earliest + delta - latest2, 0);
+            duration += travel + duration2 + wait;
+            earliest = Math.max(earliest2 - delta, earliest) - wait;
+            latest = Math.min(latest2 - delta, latest) + lateness;
+            warp += warp2 + lateness;
+            last = last2;
+        }
+
+        void append(Segment other) {
+            append(other.first, other.last, other.duration, other.earliest,
+                    other.latest, other.warp);
+        }
+
+        void appendCity(int city) {
+            double e = tour.getEarliest(city);
+            double l = tour.getLatest(city);
+            append(city, city, 0, e, l, Math.max(0, e - l));
+        }
+
+        /**
+         * This function puts a city in front of this part of the route.
+         */
+        void prependCity(int city) {
+            scratch.city(city);
+            scratch.append(this);
+            copy(scratch);
+        }
+    }//end of class Segment
+
+    private final Segment candidate = new Segment();
+    private final Segment chain = new Segment();
+    private final Segment middle = new Segment();
+    private final Segment scratch = new Segment();
+    private final Segment tail = new Segment();
+
+    /** The best move found by the current search. */
+    private double bestWarp;
+    private double bestDelta;
+
+    /**
+     * Constructor
+     * @param tour The Tour object to be solved.
+     * @throws IllegalArgumentException If the precedences put a city
+     *         before city 0.
+     */
+    public TimeWindowSolver(Tour tour) {
+        this.tour = tour;
+        this.metrics = new SolverMetrics("TimeWindows");
+        this.dimension = tour.getDimension();
+
+        int[] pairs = tour.getPrecedences();
+        int[] before = new int[dimension];
+        int[] after = new int[dimension];
+        for (int p = 0; p < pairs.length; p += 2) {
+            if (pairs[p + 1] == 0) {
+                throw new IllegalArgumentException("No city can precede"
+                        + " city 1, the start of the route.");
+            }
+            after[pairs[p]]++;
+            before[pairs[p + 1]]++;
+        }
+        predecessors = new int[dimension][];
+        successors = new int[dimension][];
+        for (int city = 0; city < dimension; city++) {
+            predecessors[city] = new int[before[city]];
+            successors[city] = new int[after[city]];
+        }
+        Arrays.fill(before, 0);
+        Arrays.fill(after, 0);
+        for (int p = 0; p < pairs.length; p += 2) {
+            int a = pairs[p];
+            int b = pairs[p + 1];
+            successors[a][after[a]++] = b;
+            predecessors[b][before[b]++] = a;
+        }
+    }//end of constructor
+
+    /**
+     * This function returns an array representing a solution for the
+     * problem. The locations/nodes are numbered from '1' as in the .tsp
+     * file; the route starts with location 1.
+     * @return An array representing the shortest route found.
+     * @throws IllegalArgumentException If the precedences form a cycle.
+     */
+    public ArrayList<Integer> getShortestTour() {
+        if (bestTour == null) {
+            solve();
+        }
+        ArrayList<Integer> cities = new ArrayList<Integer>(bestTour.length);
+        for (int city : bestTour) {
+            cities.add(city + 1);
+        }
+        return cities;
+    }//end of getShortestTour()
+
+    /**
+     * This function returns the cost of the route found by
+     * getShortestTour().
+     * @return The cost of the shortest route found.
+     */
+    public double getShortestDistance() {
+        return bestTourDist;
+    }//end of getShortestDistance()
+
+    /**
+     * This function tells if the route found meets every time window (the
+     * precedences are always met).
+     * @return True, if the route is feasible.
+     */
+    public boolean isFeasible() {
+        return feasible;
+    }//end of isFeasible()
+
+    /**
+     * This function returns the counters collected during the search.
+     * @return The solver metrics.
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }//end of getMetrics()
+
+    private void solve() {
+        metrics.start(tour);
+        route = new int[dimension];
+        position = new int[dimension];
+        prefixDuration = new double[dimension + 1];
+        prefixEarliest = new double[dimension + 1];
+        prefixLatest = new double[dimension + 1];
+        prefixWarp = new double[dimension + 1];
+        suffixDuration = new double[dimension + 1];
+        suffixEarliest = new double[dimension + 1];
+        suffixLatest = new double[dimension + 1];
+        suffixWarp = new double[dimension + 1];
+
+        try {
+            construct();
+            improve();
+
+            feasible = routeWarp <= EPSILON;
+            bestTour = Arrays.copyOf(route, size);
+            bestTourDist = cost();
+            metrics.incumbentImproved(bestTourDist);
+        } finally {
+            // Also when construct() finds a precedence cycle, so that the
+            // metrics do not stay registered as running.
+            metrics.finish();
+        }
+        Trace.summary("Route cost = " + bestTourDist + (feasible ? ""
+                : ", time windows missed by " + routeWarp));
+    }//end of solve()
+
+    /**
+     * This function builds the route by cheapest feasible insertion, the
+     * cities being taken in precedence order by closing time.
+     */
+    private void construct() {
+        int[] waiting = new int[dimension];
+        for (int city = 0; city < dimension; city++) {
+            waiting[city] = predecessors[city].length;
+        }
+        boolean[] routed = new boolean[dimension];
+        Arrays.fill(position, -1);
+        route[0] = 0;
+        position[0] = 0;
+        routed[0] = true;
+        size = 1;
+        for (int s : successors[0]) {
+            waiting[s]--;
+        }
+        refresh();
+
+        for (int step = 1; step < dimension; step++) {
+            int next = -1;
+            for (int city = 1; city < dimension; city++) {
+                if (!routed[city] && waiting[city] == 0 && (next < 0
+                        || tour.getLatest(city) < tour.getLatest(next)
+                        || (tour.getLatest(city) == tour.getLatest(next)
+                        && tour.getEarliest(city) < tour.getEarliest(next)))) {
+                    next = city;
+                }
+            }
+            if (next < 0) {
+                throw new IllegalArgumentException("The precedences form"
+                        + " a cycle.");
+            }
+            insert(next);
+            routed[next] = true;
+            for (int s : successors[next]) {
+                waiting[s]--;
+            }
+        }
+    }//end of construct()
+
+    /**
+     * This function inserts a city after all its predecessors, at the
+     * position of least time warp and then least cost.
+     */
+    private void insert(int city) {
+        int first = 0;
+        for (int p : predecessors[city]) {
+            first = Math.max(first, position[p]);
+        }
+        int best = first;
+        bestWarp = Double.MAX_VALUE;
+        bestDelta = Double.MAX_VALUE;
+        for (int i = first; i < size; i++) {
+            int a = route[i];
+            int b = (i + 1 < size) ? route[i + 1] : 0;
+            double delta = tour.distance(a, city) + tour.distance(city, b)
+                    - (size > 1 ? tour.distance(a, b) : 0);
+            if (bestWarp <= EPSILON && delta >= bestDelta) {
+                continue;
+            }
+            metrics.boundEvaluated();
+            candidate.prefix(i);
+            candidate.appendCity(city);
+            scratch.suffix(i + 1);
+            candidate.append(scratch);
+            if (better(candidate.warp, delta)) {
+                best = i;
+            }
+        }
+        System.arraycopy(route, best + 1, route, best + 2, size - best - 1);
+        route[best + 1] = city;
+        size++;
+        for (int i = best + 1; i < size; i++) {
+            position[route[i]] = i;
+        }
+        refresh();
+    }//end of insert()
+
+    /**
+     * This function moves chains of cities until no move lowers the time
+     * warp or the cost of the route.
+     */
+    private void improve() {
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            metrics.restarted();
+            boolean improved = false;
+            for (int length = 1; length <= MAX_CHAIN; length++) {
+                for (int p = 1; p + length <= size; p++) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        // Cancelled; keep the route found so far.
+                        return;
+                    }
+                    metrics.nodeExpanded();
+                    if (move(p, length)) {
+                        improved = true;
+                    }
+                }
+            }
+            if (!improved) {
+                return;
+            }
+        }
+    }//end of improve()
+
+    /**
+     * This function moves the chain of cities at route[p..p + length - 1]
+     * to its best position, if that lowers the time warp or, at the same
+     * warp, the cost of the route.
+     * @param p The position of the chain, 1 or more.
+     * @param length The number of cities of the chain.
+     * @return True, if the chain was moved.
+     */
+    private boolean move(int p, int length) {
+        int end = p + length - 1;
+        int head = route[p];
+        int foot = route[end];
+        int previous = route[p - 1];
+        int next = (end + 1 < size) ? route[end + 1] : 0;
+        double gain = tour.distance(previous, head)
+                + tour.distance(foot, next) - tour.distance(previous, next);
+
+        // The chain may only go after 'first' and before 'last'.
+        int first = 0;
+        int last = size - 1;
+        chain.city(head);
+        for (int i = p; i <= end; i++) {
+            int city = route[i];
+            if (i > p) {
+                chain.appendCity(city);
+            }
+            for (int q : predecessors[city]) {
+                if (position[q] < p) {
+                    first = Math.max(first, position[q]);
+                }
+            }
+            for (int q : successors[city]) {
+                if (position[q] > end) {
+                    last = Math.min(last, position[q] - 1);
+                }
+            }
+        }
+
+        int best = -1;
+        bestWarp = routeWarp;
+        bestDelta = -EPSILON;
+
+        // Earlier: prefix[j] + chain + route[j+1..p-1] + suffix[end+1].
+        tail.suffix(end + 1);
+        for (int j = p - 2; j >= first; j--) {
+            int a = route[j];
+            int b = route[j + 1];
+            if (j == p - 2) {
+                middle.city(b);
+            } else {
+                middle.prependCity(b);
+            }
+            if (middle.warp > bestWarp + EPSILON) {
+                break;
+            }
+            double delta = tour.distance(a, head) + tour.distance(foot, b)
+                    - tour.distance(a, b) - gain;
+            if (bestWarp <= EPSILON && delta >= bestDelta) {
+                continue;
+            }
+            metrics.boundEvaluated();
+            candidate.prefix(j);
+            candidate.append(chain);
+            candidate.append(middle);
+            candidate.append(tail);
+            if (better(candidate.warp, delta)) {
+                best = j;
+            }
+        }
+
+        // Later: prefix[p-1] + route[end+1..j] + chain + suffix[j+1].
+        for (int j = end + 1; j <= last; j++) {
+            int a = route[j];
+            int b = (j + 1 < size) ? route[j + 1] : 0;
+            if (j == end + 1) {
+                middle.city(a);
+            } else {
+                middle.appendCity(a);
+            }
+            if (middle.warp > bestWarp + EPSILON) {
+                break;
+            }
+            double delta = tour.distance(a, head) + tour.distance(foot, b)
+                    - tour.distance(a, b) - gain;
+            if (bestWarp <= EPSILON && delta >= bestDelta) {
+                continue;
+            }
+            metrics.boundEvaluated();
+            candidate.prefix(p - 1);
+            candidate.append(middle);
+            candidate.append(chain);
+            tail.suffix(j + 1);
+            candidate.append(tail);
+            if (better(candidate.warp, delta)) {
+                best = j;
+            }
+        }
+
+        if (best < 0) {
+            return false;
+        }
+        int[] cities = Arrays.copyOfRange(route, p, end + 1);
+        int from;
+        int to;
+        if (best < p) {
+            System.arraycopy(route, best + 1, route, best + 1 + length,
+                    p - best - 1);
+            System.arraycopy(cities, 0, route, best + 1, length);
+            from = best + 1;
+            to = end;
+        } else {
+            System.arraycopy(route, end + 1, route, p, best - end);
+            System.arraycopy(cities, 0, route, best - length + 1, length);
+            from = p;
+            to = best;
+        }
+        for (int i = from; i <= to; i++) {
+            position[route[i]] = i;
+        }
+        refresh();
+        metrics.incumbentImproved(cost());
+        return true;
+    }//end of move()
+
+    /**
+     * This function tells if a move beats the best one found so far: less
+     * time warp, or as much and a lower cost. If so, it becomes the best.
+     */
+    private boolean better(double warp, double delta) {
+        if (warp < bestWarp - EPSILON
+                || (warp <= bestWarp + EPSILON && delta < bestDelta)) {
+            bestWarp = warp;
+            bestDelta = delta;
+            return true;
+        }
+        return false;
+    }//end of better()
+
+    /**
+     * This function recomputes the summaries of the prefixes and suffixes
+     * of the route, in O(n).
+     */
+    private void refresh() {
+        candidate.city(0);
+        savePrefix(0, candidate);
+        for (int i = 1; i < size; i++) {
+            candidate.appendCity(route[i]);
+            savePrefix(i, candidate);
+        }
+        candidate.city(0);
+        saveSuffix(size, candidate);
+        for (int i = size - 1; i >= 1; i--) {
+            candidate.prependCity(route[i]);
+            saveSuffix(i, candidate);
+        }
+        candidate.prefix(0);
+        scratch.suffix(1);
+        candidate.append(scratch);
+        routeWarp = candidate.warp;
+    }//end of refresh()
+
+    /**
+     * This function returns the time warp of the route summarized as the
+     * prefix route[0..i] followed by the suffix after it; it is the same
+     * for every i.
+     * @param i Position of the last city of the prefix.
+     * @return The time warp of the route.
+     */
+    double warpSplitAfter(int i) {
+        candidate.prefix(i);
+        scratch.suffix(i + 1);
+        candidate.append(scratch);
+        return candidate.warp;
+    }//end of warpSplitAfter()
+
+    private void savePrefix(int i, Segment segment) {
+        prefixDuration[i] = segment.duration;
+        prefixEarliest[i] = segment.earliest;
+        prefixLatest[i] = segment.latest;
+        prefixWarp[i] = segment.warp;
+    }//end of savePrefix()
+
+    private void saveSuffix(int i, Segment segment) {
+        suffixDuration[i] = segment.duration;
+        suffixEarliest[i] = segment.earliest;
+        suffixLatest[i] = segment.latest;
+        suffixWarp[i] = segment.warp;
+    }//end of saveSuffix()
+
+    private double cost() {
+        if (size < 2) {
+            return 0;
+        }
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += tour.distance(route[i], (i + 1 < size) ? route[i + 1]
+                    : 0);
+        }
+        return total;
+    }//end of cost()
+}//end of class
@@ -1,6 +1,10 @@
 package edu.rowan.algorithms;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -26,8 +30,40 @@ public class Tour {
     private static final int X_COORD = 1;
     private static final int Y_COORD = 2;
     private static final int numClosestPoints = 4;
-    private double [ ] [ ] matrix;
+    private volatile double [ ] [ ] matrix;
     private double [ ] [ ] lbmatrix;
+    private NeighborList neighborList;
+
+    // Coordinates of the cities, by zero based index (the order in which 
+    // they appear in the .tsp file).
+    private double [ ] xCoords = new double [ 0 ];
+    private double [ ] yCoords = new double [ 0 ];
+
+    // EXPLICIT edge weights: the numbers of the EDGE_WEIGHT_SECTION as they
+    // appear in the file, laid out as the EDGE_WEIGHT_FORMAT says. Tours
+    // with explicit weights have no coordinates.
+    private String edgeWeightFormat = "FULL_MATRIX";
+    private double [ ] weights;
+    private int weightCount;
+    private boolean inWeightSection;
+    private boolean asymmetric;
+
+    // Routing constraints: the time window [earliest, latest] in which each
+    // city must be visited (travel times are the distances), and pairs of
+    // cities (before, after) that must be visited in that order. Both are
+    // optional; a tour without them is a plain TSP.
+    private double [ ] earliest;
+    private double [ ] latest;
+    private int [ ] precedences = new int [ 0 ];
+    private int precedenceCount;
+    private boolean inTimeWindowSection;
+    private boolean inPrecedenceSection;
+
+    // Integer distance mode: TSPLIB distances rounded to the nearest integer,
+    // with int matrices for the solvers.
+    private boolean integerDistances;
+    private volatile int [ ] [ ] intMatrix;
+    private int [ ] [ ] intLbmatrix;
 
     public Tour() {
         name = "";
@@ -39,6 +75,118 @@ public class Tour {
         inNodesSection = false;
     }
 
+    /**
+     * This function creates a Tour object and fills it with the information
+     * from the specified .tsp file.
+     * @param filename The .tsp file to read.
+     * @return The parsed tour.
+     * @throws IOException If the file can not be read.
+     */
+    public static Tour load(String filename) throws IOException {
+        Tour tour = new Tour();
+        tour.setFilename(filename);
+
+        BufferedReader br = new BufferedReader(new FileReader(filename));
+        try {
+            String readLine;
+            // Read-in the .tsp file line-by-line
+            while ((readLine = br.readLine()) != null) {
+                tour.parseLine(readLine);
+            }
+        } finally {
+            br.close();
+        }
+        return tour;
+    }//end of load()
+
+    /**
+     * This function creates a Tour object from the text of a .tsp file.
+     * @param text The contents of a .tsp file.
+     * @return The parsed tour.
+     */
+    public static Tour parse(String text) {
+        Tour tour = new Tour();
+        for (String line : text.split("\r?\n")) {
+            tour.parseLine(line);
+        }
+        return tour;
+    }//end of parse()
+
+    /**
+     * This function creates a Euclidean (EUC_2D) Tour object from a list of
+     * coordinates. The cities are numbered from '1' in the given order.
+     * @param name The NAME of the tour.
+     * @param x x-coordinates of the cities.
+     * @param y y-coordinates of the cities.
+     * @return The tour. Its matrices are populated on first use.
+     */
+    public static Tour fromCoordinates(String name, double[] x, double[] y) {
+        Tour tour = new Tour();
+        tour.setName(name);
+        tour.parseLine("TYPE: TSP");
+        tour.parseLine("DIMENSION: " + x.length);
+        tour.parseLine("EDGE_WEIGHT_TYPE: EUC_2D");
+        tour.parseLine("NODE_COORD_SECTION");
+        for (int i = 0; i < x.length; i++) {
+            tour.saveEntry(i + 1, x[i], y[i]);
+        }
+        tour.parseLine("EOF");
+        return tour;
+    }//end of fromCoordinates()
+
+    /**
+     * This function creates an explicit (FULL_MATRIX) Tour object from the
+     * distances between its cities. The cities are numbered from '1' in
+     * the given order and have no coordinates.
+     * @param name The NAME of the tour.
+     * @param distances The symmetric distances; the diagonal is ignored.
+     * @return The tour.
+     */
+    public static Tour fromWeights(String name, double[][] distances) {
+        int n = distances.length;
+        Tour tour = new Tour();
+        tour.setName(name);
+        tour.parseLine("TYPE: TSP");
+        tour.parseLine("DIMENSION: " + n);
+        tour.parseLine("EDGE_WEIGHT_TYPE: EXPLICIT");
+        tour.parseLine("EDGE_WEIGHT_FORMAT: FULL_MATRIX");
+        tour.parseLine("EDGE_WEIGHT_SECTION");
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(distances[i], 0, tour.weights, i * n, n);
+            tour.weights[i * n + i] = 0;
+        }
+        tour.weightCount = n * n;
+        tour.parseLine("EOF");
+        return tour;
+    }//end of fromWeights()
+
+    /**
+     * This function reads only the header of a .tsp file and returns its
+     * DIMENSION entry, without parsing the cities or building any matrix.
+     * @param filename The .tsp file to read.
+     * @return The number of nodes/cities, or -1 if there is no DIMENSION.
+     * @throws IOException If the file can not be read.
+     */
+    public static int peekDimension(String filename) throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(filename));
+        try {
+            String readLine;
+            while ((readLine = br.readLine()) != null) {
+                readLine = readLine.trim();
+                if (readLine.startsWith("DIMENSION")) {
+                    String[] split = readLine.split(":");
+                    return Integer.parseInt(split[1].trim());
+                }
+                if (readLine.contains("_SECTION")) {
+                    break;
+                }
+            }
+        } finally {
+            br.close();
+        }
+        return -1;
+    }//end of peekDimension()
+
     /**
      * Parses lines that are compatible with the TSPLIB file format.
      * @param line A line from the .tsp file
@@ -46,6 +194,36 @@ public class Tour {
     public void parseLine(String line) {
 
         line = line.trim();
+
+        if (this.inWeightSection) {
+            if (isNumeric(line)) {
+                saveWeights(line);
+                return;
+            }
+            endWeightSection();
+        }
+
+        if (this.inTimeWindowSection || this.inPrecedenceSection) {
+            if (isNumeric(line)) {
+                String[] split = line.split("\\s+");
+                if (this.inTimeWindowSection) {
+                    saveTimeWindow(Integer.parseInt(split[0]),
+                            Double.parseDouble(split[1]),
+                            Double.parseDouble(split[2]));
+                } else {
+                    savePrecedence(Integer.parseInt(split[0]),
+                            Integer.parseInt(split[1]));
+                }
+                return;
+            }
+            this.inTimeWindowSection = false;
+            this.inPrecedenceSection = false;
+        }
+
+        if (this.inNodesSection && !line.isEmpty() && !isNumeric(line)) {
+            // Another section follows the cities.
+            this.inNodesSection = false;
+        }
         
         if (line.contains("NAME")) {
             String[] split = line.split(":");
@@ -64,17 +242,21 @@ public class Tour {
             this.type = split[1].trim();
         }
 
+        if (line.startsWith("TYPE")) {
+            // ATSP: the distance from i to j may differ from the one from j
+            // to i.
+            this.asymmetric = line.split(":")[1].trim().equals("ATSP");
+        }
+
         if (line.contains("DIMENSION")) {
             String[] split = line.split(":");
             this.dimension = Integer.parseInt(split[1].trim());
             
-            // Create adjancency matrix. This matrix will be use to store 
-            // the distances between cities.
-            matrix = new double [ this.dimension ] [ this.dimension ] ;   
-
-            // Create lower bound matrix. This matrix will be used to store 
-            // the two shortest distances from a node.
-            lbmatrix = new double [ this.dimension ] [ numClosestPoints ] ;   
+            // The adjacency and lower bound matrices are not created here, 
+            // but on first use (see getAdjacencyMatrix()), since they take 
+            // O(n^2) memory and the large instances are solved without them.
+            xCoords = new double [ this.dimension ] ;
+            yCoords = new double [ this.dimension ] ;
         }
 
         if (line.contains("EDGE_WEIGHT_TYPE")) {
@@ -82,10 +264,13 @@ public class Tour {
             this.edgeWeighType = split[1].trim();
         }
 
+        if (line.contains("EDGE_WEIGHT_FORMAT")) {
+            String[] split = line.split(":");
+            this.edgeWeightFormat = split[1].trim();
+        }
+
         if (line.contains("EOF")) {
             this.inNodesSection = false;
-            populateMatrix();
-            populateLowerBoundMatrix();
         }
 
         if (this.inNodesSection) {
@@ -100,8 +285,193 @@ public class Tour {
         if (line.contains("NODE_COORD_SECTION")) {
             this.inNodesSection = true;
         }
+
+        if (line.contains("TIME_WINDOW_SECTION")) {
+            this.inTimeWindowSection = true;
+        }
+
+        if (line.contains("PRECEDENCE_SECTION")) {
+            this.inPrecedenceSection = true;
+        }
+
+        if (line.contains("EDGE_WEIGHT_SECTION")) {
+            this.inWeightSection = true;
+            this.weights = new double [ weightsExpected() ] ;
+            this.weightCount = 0;
+            // The cities have no coordinates, but they are numbered from '1'
+            // like the others.
+            for (int i = allCitiesContainer.size(); i < this.dimension; i++) {
+                saveEntry(i + 1, 0, 0);
+            }
+        }
     }//end of parseLine
 
+    private static boolean isNumeric(String line) {
+        return !line.isEmpty() && (Character.isDigit(line.charAt(0))
+                || line.charAt(0) == '-' || line.charAt(0) == '.');
+    }//end of isNumeric()
+
+    /**
+     * This function saves off an entry of the TIME_WINDOW_SECTION.
+     * @param location The node/city location.
+     * @param from The earliest time the city may be visited.
+     * @param to The latest time the city may be visited.
+     */
+    public void saveTimeWindow(int location, double from, double to) {
+        if (location < 1 || location > this.dimension) {
+            throw new IllegalArgumentException("No location: " + location);
+        }
+        if (earliest == null) {
+            earliest = new double [ this.dimension ] ;
+            latest = new double [ this.dimension ] ;
+            Arrays.fill(latest, Double.MAX_VALUE);
+        }
+        earliest[location - 1] = from;
+        latest[location - 1] = to;
+    }//end of saveTimeWindow()
+
+    /**
+     * This function saves off an entry of the PRECEDENCE_SECTION: the
+     * first city must be visited before the second one.
+     * @param before The node/city location visited first.
+     * @param after The node/city location visited later.
+     */
+    public void savePrecedence(int before, int after) {
+        if (before < 1 || before > this.dimension || after < 1
+                || after > this.dimension || before == after) {
+            throw new IllegalArgumentException("Bad precedence: " + before
+                    + " " + after);
+        }
+        if (precedenceCount + 2 > precedences.length) {
+            precedences = Arrays.copyOf(precedences,
+                    Math.max(16, 2 * precedences.length));
+        }
+        precedences[precedenceCount++] = before - 1;
+        precedences[precedenceCount++] = after - 1;
+    }//end of savePrecedence()
+
+    /**
+     * This function tells if the tour has time windows or precedences.
+     * @return True, if the tour is a constrained routing problem.
+     */
+    public boolean hasConstraints() {
+        return earliest != null || precedenceCount > 0;
+    }//end of hasConstraints()
+
+    /**
+     * This function returns the earliest time a city may be visited.
+     * @param city Zero based index of the city.
+     * @return The start of its time window (0 without a window).
+     */
+    public double getEarliest(int city) {
+        return (earliest == null) ? 0 : earliest[city];
+    }//end of getEarliest()
+
+    /**
+     * This function returns the latest time a city may be visited.
+     * @param city Zero based index of the city.
+     * @return The end of its time window (Double.MAX_VALUE without one).
+     */
+    public double getLatest(int city) {
+        return (latest == null) ? Double.MAX_VALUE : latest[city];
+    }//end of getLatest()
+
+    /**
+     * This function returns the precedences of the PRECEDENCE_SECTION.
+     * @return Pairs of zero based city indexes (before, after, before,
+     *         after, ...); a copy.
+     */
+    public int[] getPrecedences() {
+        return Arrays.copyOf(precedences, precedenceCount);
+    }//end of getPrecedences()
+
+    /**
+     * This function saves off the numbers of a line of the
+     * EDGE_WEIGHT_SECTION, which may hold any number of entries.
+     * @param line A line from the EDGE_WEIGHT_SECTION.
+     */
+    private void saveWeights(String line) {
+        for (String entry : line.split("\\s+")) {
+            if (weightCount == weights.length) {
+                throw new IllegalArgumentException("EDGE_WEIGHT_SECTION has "
+                        + "more than the " + weights.length + " entries of a "
+                        + edgeWeightFormat + " of dimension " + dimension);
+            }
+            weights[weightCount++] = Double.parseDouble(entry);
+        }
+    }//end of saveWeights()
+
+    /**
+     * This function checks that the EDGE_WEIGHT_SECTION is complete.
+     */
+    private void endWeightSection() {
+        this.inWeightSection = false;
+        if (weightCount != weights.length) {
+            throw new IllegalArgumentException("EDGE_WEIGHT_SECTION has "
+                    + weightCount + " entries, a " + edgeWeightFormat
+                    + " of dimension " + dimension + " has "
+                    + weights.length);
+        }
+    }//end of endWeightSection()
+
+    /**
+     * This function returns the number of entries of the
+     * EDGE_WEIGHT_SECTION for the EDGE_WEIGHT_FORMAT and DIMENSION.
+     */
+    private int weightsExpected() {
+        long n = this.dimension;
+        switch (edgeWeightFormat) {
+            case "FULL_MATRIX":
+                return (int) (n * n);
+            case "UPPER_ROW":
+            case "LOWER_ROW":
+            case "UPPER_COL":
+            case "LOWER_COL":
+                return (int) (n * (n - 1) / 2);
+            case "UPPER_DIAG_ROW":
+            case "LOWER_DIAG_ROW":
+            case "UPPER_DIAG_COL":
+            case "LOWER_DIAG_COL":
+                return (int) (n * (n + 1) / 2);
+            default:
+                throw new IllegalArgumentException(
+                        "Unsupported EDGE_WEIGHT_FORMAT: " + edgeWeightFormat);
+        }
+    }//end of weightsExpected()
+
+    /**
+     * This function reads the weight of the edge from one city to another
+     * from the EDGE_WEIGHT_SECTION. A column format of a triangle lists the
+     * same numbers as the row format of the other triangle.
+     * @param from Zero based index of the starting node/location.
+     * @param to Zero based index of the destination node/location.
+     * @return The weight of the edge.
+     */
+    private double explicitWeight(int from, int to) {
+        if (weightCount != weights.length) {
+            // The section ended with the file, without an EOF.
+            endWeightSection();
+        }
+        int n = this.dimension;
+        int i = Math.min(from, to);
+        int j = Math.max(from, to);
+        switch (edgeWeightFormat) {
+            case "FULL_MATRIX":
+                return weights[from * n + to];
+            case "UPPER_ROW":
+            case "LOWER_COL":
+                return weights[i * n - i * (i + 1) / 2 + (j - i - 1)];
+            case "LOWER_ROW":
+            case "UPPER_COL":
+                return weights[j * (j - 1) / 2 + i];
+            case "UPPER_DIAG_ROW":
+            case "LOWER_DIAG_COL":
+                return weights[i * n - i * (i - 1) / 2 + (j - i)];
+            default:
+                return weights[j * (j + 1) / 2 + i];
+        }
+    }//end of explicitWeight()
+
     
     /**
      * This function saves off the 'NAME' entry of the .tsp file.
@@ -162,6 +532,15 @@ public class Tour {
         city.add(x_coord);
         city.add(y_coord);
         allCitiesContainer.add(city);
+
+        int index = allCitiesContainer.size() - 1;
+        if (index >= xCoords.length) {
+            int capacity = Math.max(16, 2 * xCoords.length);
+            xCoords = Arrays.copyOf(xCoords, capacity);
+            yCoords = Arrays.copyOf(yCoords, capacity);
+        }
+        xCoords[index] = x_coord;
+        yCoords[index] = y_coord;
     }//end of saveEntry()
 
     
@@ -313,6 +692,29 @@ public class Tour {
         return line.toString();
     }
 
+    /**
+     * This function formats the solution to the tour, reading the cities
+     * straight from a primitive tour (no conversion copy is made). The
+     * zero based city indexes are printed as TSPLIB locations.
+     * @param tour A primitive tour solution.
+     * @return formatted solution
+     */
+    public String printTour(TourSequence tour) {
+        StringBuilder line = new StringBuilder();
+        line.append("\n");
+        line.append("NAME: ").append(this.name).append("\n");
+        line.append("TYPE: ").append(this.type).append("\n");
+        line.append("DIMENSION: ").append(this.dimension).append("\n");
+        line.append("TOUR_SECTION" + "\n");
+
+        for (int i = 0; i < tour.size(); i++) {
+            line.append(tour.city(i) + 1).append("\n");
+        }
+        line.append("-1");
+        line.append("\n\n");
+        return line.toString();
+    }
+
     @Override
     public String toString() {
         StringBuilder line = new StringBuilder();
@@ -341,7 +743,15 @@ public class Tour {
      * This function calculates all the distances between the different 
      * nodes/locations and stores them in the adjacency matrix for later use.
      */
-    private void populateMatrix() {
+    void populateMatrix() {
+        double [ ] [ ] matrix = this.matrix;
+        if (matrix == null || matrix.length < this.dimension) {
+            // Create adjancency matrix. This matrix will be use to store 
+            // the distances between cities. It has some spare room, so that
+            // addCity() only fills in a row and a column.
+            int capacity = matrixCapacity(this.dimension);
+            matrix = new double [ capacity ] [ capacity ] ;
+        }
         for (int i = 0; i < this.dimension; i++) {
             for (int j = 0; j < this.dimension; j++) {
 
@@ -353,16 +763,23 @@ public class Tour {
                 }
             }
         }
+        this.matrix = matrix;
     }//end of populateMatrix()
     
     /**
      * This function calculates the two shortest distances for a certain node. 
      * The distances are stored in the lower bound matrix for later use.
      */
-    private void populateLowerBoundMatrix() {
+    void populateLowerBoundMatrix() {
     	int closestNode = 0;
     	int closestPoint = 1;
-    	int initClosestPt = 1000000000;
+    	double initClosestPt = Double.MAX_VALUE;
+    	double [ ] [ ] matrix = getAdjacencyMatrix();
+    	if (lbmatrix == null) {
+            // Create lower bound matrix. This matrix will be used to store 
+            // the two shortest distances from a node.
+    	    lbmatrix = new double [ this.dimension ] [ numClosestPoints ] ;
+    	}
 
     	// Initialize values for lower bound matrix
     	for (int m = 0; m < this.dimension; m++) {
@@ -409,37 +826,233 @@ public class Tour {
      */
     private double calculateDistances(int location1, int location2) {
 
-        double x1 = allCitiesContainer.get(location1).get(X_COORD);
-        double y1 = allCitiesContainer.get(location1).get(Y_COORD);
+        if (weights != null) {
+            double d = explicitWeight(location1, location2);
+            return integerDistances ? (int) (d + 0.5) : d;
+        }
 
-        double x2 = allCitiesContainer.get(location2).get(X_COORD);
-        double y2 = allCitiesContainer.get(location2).get(Y_COORD);       
-        
-              
         // dist((x, y), (a, b)) = √(x - a)² + (y - b)²
-        double x = Math.pow((x1 - x2), 2);
-        double y = Math.pow((y1 - y2), 2);        
+        double x = xCoords[location1] - xCoords[location2];
+        double y = yCoords[location1] - yCoords[location2];
         
-        return Math.sqrt( x + y );    
+        if (integerDistances) {
+            // TSPLIB EUC_2D: nint(√(x - a)² + (y - b)²)
+            return (int) (Math.sqrt( x * x + y * y ) + 0.5);
+        }
+        return Math.sqrt( x * x + y * y );    
     }//end of calculateDistances()
+
+    /**
+     * This function turns the integer distance mode on or off. In this mode
+     * every distance is rounded to the nearest integer, as TSPLIB defines
+     * EUC_2D distances, so tour costs can be compared with the published
+     * optima; the solvers then work on int matrices (see
+     * getIntAdjacencyMatrix()), with exact comparisons and half the memory.
+     * The matrices computed so far are dropped.
+     * @param integerDistances True, to round distances to integers.
+     */
+    public synchronized void setIntegerDistances(boolean integerDistances) {
+        if (this.integerDistances != integerDistances) {
+            this.integerDistances = integerDistances;
+            this.matrix = null;
+            this.lbmatrix = null;
+            this.neighborList = null;
+            this.intMatrix = null;
+            this.intLbmatrix = null;
+        }
+    }//end of setIntegerDistances()
+
+    /**
+     * This function tells if the distances are rounded to integers.
+     * @return True, in integer distance mode.
+     */
+    public boolean isIntegerDistances() {
+        return integerDistances;
+    }//end of isIntegerDistances()
+
+    /**
+     * This function returns the adjacency matrix of the integer distance
+     * mode. It is computed on first use. The diagonal holds 0; solvers must
+     * test for the same city by index.
+     * @return A two dimensional array containing all distances between nodes.
+     */
+    public int[][] getIntAdjacencyMatrix() {
+        int[][] m = intMatrix;
+        if (m == null) {
+            synchronized (this) {
+                if (intMatrix == null) {
+                    int[][] built = new int [ this.dimension ] [ this.dimension ];
+                    for (int i = 0; weights != null && i < this.dimension; i++) {
+                        for (int j = 0; j < this.dimension; j++) {
+                            if (i != j) {
+                                built[i][j] = (int) calculateDistances(i, j);
+                            }
+                        }
+                    }
+                    for (int i = 0; weights == null && i < this.dimension; i++) {
+                        for (int j = i + 1; j < this.dimension; j++) {
+                            double x = xCoords[i] - xCoords[j];
+                            double y = yCoords[i] - yCoords[j];
+                            int d = (int) (Math.sqrt(x * x + y * y) + 0.5);
+                            built[i][j] = d;
+                            built[j][i] = d;
+                        }
+                    }
+                    intMatrix = built;
+                }
+                m = intMatrix;
+            }
+        }
+        return m;
+    }//end of getIntAdjacencyMatrix()
+
+    /**
+     * This function returns the lower bound matrix of the integer distance
+     * mode: for every node, its closest node, the distance to it, its
+     * second closest node and the distance to that one.
+     * @return A two dimensional array with four entries per node.
+     */
+    public synchronized int[][] getIntLowerBoundMatrix() {
+        if (intLbmatrix == null) {
+            int[][] matrix = getIntAdjacencyMatrix();
+            int[][] lb = new int [ this.dimension ] [ numClosestPoints ];
+            for (int i = 0; i < this.dimension; i++) {
+                int[] row = lb[i];
+                row[0] = -1;
+                row[1] = Integer.MAX_VALUE;
+                row[2] = -1;
+                row[3] = Integer.MAX_VALUE;
+                for (int j = 0; j < this.dimension; j++) {
+                    if (i == j) {
+                        continue;
+                    }
+                    int d = matrix[i][j];
+                    if (d < row[1]) {
+                        row[2] = row[0];
+                        row[3] = row[1];
+                        row[0] = j;
+                        row[1] = d;
+                    } else if (d < row[3]) {
+                        row[2] = j;
+                        row[3] = d;
+                    }
+                }
+            }
+            intLbmatrix = lb;
+        }
+        return intLbmatrix;
+    }//end of getIntLowerBoundMatrix()
     
     
     
     /**
      * This functions returns the Adjacency Matrix. This matrix consist of all
      * the calculated distances from one node to another.
+     * The matrix is computed on first use.
      * @return A two dimensional array containing all distances between nodes.
      */
     public double[][] getAdjacencyMatrix(){
-        return matrix;
+        double[][] m = matrix;
+        if (m == null) {
+            synchronized (this) {
+                if (matrix == null) {
+                    populateMatrix();
+                }
+                m = matrix;
+            }
+        }
+        return m;
     }//end of getAdjacencyMatrix()
+
+    /**
+     * This function tells if the adjacency matrix was computed already.
+     * @return True, if distance() reads from the adjacency matrix.
+     */
+    public boolean hasAdjacencyMatrix() {
+        return matrix != null;
+    }//end of hasAdjacencyMatrix()
+
+    /**
+     * This function tells if the cities have coordinates. Tours read with
+     * an EDGE_WEIGHT_SECTION (EDGE_WEIGHT_TYPE: EXPLICIT) only have the
+     * distances between the cities.
+     * @return True, if the distances are calculated from the coordinates.
+     */
+    public boolean hasCoordinates() {
+        return weights == null;
+    }//end of hasCoordinates()
+
+    /**
+     * This function tells if the tour is asymmetric (TYPE: ATSP): the
+     * distance from one city to another may differ from the distance back.
+     * Bounds and moves that assume distance(i, j) == distance(j, i) do not
+     * hold for such tours.
+     * @return True, for an ATSP tour.
+     */
+    public boolean isAsymmetric() {
+        return asymmetric;
+    }//end of isAsymmetric()
+
+    /**
+     * This function returns the distance between two nodes/locations. It
+     * reads the adjacency matrix if it was computed; otherwise, the distance
+     * is calculated from the coordinates (and no matrix is created).
+     * @param from Zero based index of the starting node/location
+     * @param to Zero based index of the destination node/location
+     * @return The distance between the specified nodes.
+     */
+    public double distance(int from, int to) {
+        double[][] m = matrix;
+        if (m != null) {
+            return m[from][to];
+        }
+        int[][] im = intMatrix;
+        if (im != null) {
+            return (from == to) ? -1 : im[from][to];
+        }
+        return (from == to) ? -1 : calculateDistances(from, to);
+    }//end of distance()
+
+    /**
+     * This function returns the x-coordinates of all cities.
+     * @return The x-coordinates, by zero based index (not a copy).
+     */
+    public double[] getXCoordinates() {
+        return xCoords;
+    }//end of getXCoordinates()
+
+    /**
+     * This function returns the y-coordinates of all cities.
+     * @return The y-coordinates, by zero based index (not a copy).
+     */
+    public double[] getYCoordinates() {
+        return yCoords;
+    }//end of getYCoordinates()
  
+    /**
+     * This function returns the 'k' nearest neighbors of every city. The
+     * lists are computed on first use and kept for later calls.
+     * @param k Number of neighbors per city.
+     * @return The neighbor lists (with at least 'k' neighbors per city,
+     *         unless the tour has fewer cities).
+     */
+    public synchronized NeighborList getNeighborList(int k) {
+        if (neighborList == null || neighborList.getK() < Math.min(k,
+                this.dimension - 1)) {
+            neighborList = new NeighborList(this, k);
+        }
+        return neighborList;
+    }//end of getNeighborList()
+
     /**
      * This functions returns the Lower Bound Matrix. This matrix consist of the
-     * the two shortest distances from each node.
+     * the two shortest distances from each node. It is computed on first use.
      * @return A two dimensional array containing the two shortest distances from a node.
      */
-    public double[][] getLowerBoundMatrix(){
+    public synchronized double[][] getLowerBoundMatrix(){
+        if (lbmatrix == null) {
+            populateLowerBoundMatrix();
+        }
         return lbmatrix;
     }//end of getLowerBoundMatrix()
     
@@ -460,5 +1073,260 @@ public class Tour {
     public String getFilename(){
         return filename;
     }//end of getFilename()
+
+
+    /**
+     * This function adds a city at the end of the tour (it gets the next
+     * location number). The distance matrix, the lower bound matrix and the
+     * neighbor lists are updated in O(n) instead of being rebuilt. Must not
+     * be called while a solver is working on this Tour object.
+     * @param x_coord x-coordinate of the new city.
+     * @param y_coord y-coordinate of the new city.
+     * @return The zero based index of the new city.
+     */
+    public synchronized int addCity(double x_coord, double y_coord) {
+        checkCoordinates();
+        int city = this.dimension;
+        dropIntegerMatrices();
+        saveEntry(city + 1, x_coord, y_coord);
+        this.dimension++;
+
+        double [ ] [ ] matrix = this.matrix;
+        if (matrix != null) {
+            if (matrix.length <= city || matrix[0].length <= city) {
+                // Grow with some spare room, so that the next additions only
+                // fill in a row and a column.
+                int capacity = matrixCapacity(this.dimension);
+                double [ ] [ ] grown = new double [ capacity ] [ ];
+                for (int i = 0; i < capacity; i++) {
+                    grown[i] = (i < city) ? Arrays.copyOf(matrix[i], capacity)
+                                          : new double [ capacity ];
+                }
+                matrix = grown;
+            }
+            updateMatrixRow(matrix, city);
+            this.matrix = matrix;
+        }
+
+        if (lbmatrix != null) {
+            if (lbmatrix.length <= city) {
+                lbmatrix = Arrays.copyOf(lbmatrix,
+                        matrixCapacity(this.dimension));
+            }
+            lbmatrix[city] = new double [ numClosestPoints ] ;
+            offerLowerBound(city);
+            lowerBoundRow(city);
+        }
+
+        if (neighborList != null) {
+            neighborList.cityAdded(this, city);
+        }
+        return city;
+    }//end of addCity()
+
+    /**
+     * This function returns the number of rows and columns given to the
+     * distance matrix of a tour of 'dimension' cities: 1/8 more, and at
+     * least 16 more, for the cities added later.
+     */
+    private static int matrixCapacity(int dimension) {
+        return dimension + Math.max(16, dimension / 8);
+    }//end of matrixCapacity()
+
+    /**
+     * This function removes a city. To keep the indexes dense, the last
+     * city takes the index (and location number) of the removed one. The
+     * matrices and neighbor lists are updated incrementally. Must not be
+     * called while a solver is working on this Tour object.
+     * @param city Zero based index of the city to remove.
+     * @return The former index of the city that now has index 'city', or
+     *         -1 if the removed city was the last one.
+     */
+    public synchronized int removeCity(int city) {
+        int last = this.dimension - 1;
+        if (city < 0 || city > last) {
+            throw new IndexOutOfBoundsException("No city: " + city);
+        }
+        checkCoordinates();
+        dropIntegerMatrices();
+        if (city != last) {
+            xCoords[city] = xCoords[last];
+            yCoords[city] = yCoords[last];
+            List<Double> entry = allCitiesContainer.get(last);
+            entry.set(LOCATION, (double) (city + 1));
+            allCitiesContainer.set(city, entry);
+
+            double [ ] [ ] matrix = this.matrix;
+            if (matrix != null) {
+                double [ ] removedRow = matrix[city];
+                matrix[city] = matrix[last];
+                matrix[last] = removedRow;
+                for (int i = 0; i < last; i++) {
+                    matrix[i][city] = matrix[i][last];
+                }
+                matrix[city][city] = -1;
+            }
+            if (lbmatrix != null) {
+                lbmatrix[city] = lbmatrix[last];
+            }
+        }
+        allCitiesContainer.remove(last);
+        this.dimension--;
+
+        if (lbmatrix != null) {
+            lbmatrix[last] = null;
+            for (int i = 0; i < this.dimension; i++) {
+                double [ ] row = lbmatrix[i];
+                if (row[0] == city || row[2] == city) {
+                    // Lost one of its two closest nodes.
+                    lowerBoundRow(i);
+                } else {
+                    if (row[0] == last) {
+                        row[0] = city;
+                    }
+                    if (row[2] == last) {
+                        row[2] = city;
+                    }
+                }
+            }
+        }
+
+        if (neighborList != null) {
+            if (neighborList.getK() > this.dimension - 1) {
+                neighborList = null; // rebuilt on next use
+            } else {
+                neighborList.cityRemoved(this, city, last);
+            }
+        }
+        return (city != last) ? last : -1;
+    }//end of removeCity()
+
+    /**
+     * This function changes the coordinates of a city, updating the
+     * matrices and neighbor lists incrementally. Must not be called while a
+     * solver is working on this Tour object.
+     * @param city Zero based index of the city.
+     * @param x_coord New x-coordinate.
+     * @param y_coord New y-coordinate.
+     */
+    public synchronized void moveCity(int city, double x_coord,
+            double y_coord) {
+        if (city < 0 || city >= this.dimension) {
+            throw new IndexOutOfBoundsException("No city: " + city);
+        }
+        checkCoordinates();
+        dropIntegerMatrices();
+        xCoords[city] = x_coord;
+        yCoords[city] = y_coord;
+        List<Double> entry = allCitiesContainer.get(city);
+        entry.set(X_COORD, x_coord);
+        entry.set(Y_COORD, y_coord);
+
+        double [ ] [ ] matrix = this.matrix;
+        if (matrix != null) {
+            updateMatrixRow(matrix, city);
+        }
+
+        if (lbmatrix != null) {
+            for (int i = 0; i < this.dimension; i++) {
+                double [ ] row = lbmatrix[i];
+                if (i != city && (row[0] == city || row[2] == city)) {
+                    // The city may now be farther than the third closest.
+                    lowerBoundRow(i);
+                }
+            }
+            offerLowerBound(city);
+            lowerBoundRow(city);
+        }
+
+        if (neighborList != null) {
+            neighborList.cityMoved(this, city);
+        }
+    }//end of moveCity()
+
+    /**
+     * This function drops the matrices of the integer distance mode, which
+     * are not updated incrementally; they are rebuilt on next use.
+     */
+    private void dropIntegerMatrices() {
+        intMatrix = null;
+        intLbmatrix = null;
+    }//end of dropIntegerMatrices()
+
+    /**
+     * The cities of a tour with explicit weights can not be changed, since
+     * the distances of a new or moved city are unknown.
+     */
+    private void checkCoordinates() {
+        if (weights != null) {
+            throw new UnsupportedOperationException("The cities of a tour"
+                    + " with EXPLICIT edge weights can not be changed.");
+        }
+    }//end of checkCoordinates()
+
+    /**
+     * This function (re)calculates the row and the column of one city in
+     * the adjacency matrix.
+     */
+    private void updateMatrixRow(double [ ] [ ] matrix, int city) {
+        for (int j = 0; j < this.dimension; j++) {
+            double d = (j == city) ? -1 : calculateDistances(city, j);
+            matrix[city][j] = d;
+            matrix[j][city] = d;
+        }
+    }//end of updateMatrixRow()
+
+    /**
+     * This function makes a city one of the two closest nodes of every other
+     * city it is now closer to.
+     */
+    private void offerLowerBound(int city) {
+        for (int i = 0; i < this.dimension; i++) {
+            if (i == city) {
+                continue;
+            }
+            double [ ] row = lbmatrix[i];
+            if (row[0] == city || row[2] == city) {
+                continue;
+            }
+            double d = distance(i, city);
+            if (d < row[1]) {
+                row[2] = row[0];
+                row[3] = row[1];
+                row[0] = city;
+                row[1] = d;
+            } else if (d < row[3]) {
+                row[2] = city;
+                row[3] = d;
+            }
+        }
+    }//end of offerLowerBound()
+
+    /**
+     * This function calculates the two shortest distances of one node, as
+     * populateLowerBoundMatrix() does for all of them.
+     */
+    private void lowerBoundRow(int i) {
+        double [ ] row = lbmatrix[i];
+        row[0] = -1;
+        row[1] = Double.MAX_VALUE;
+        row[2] = -1;
+        row[3] = Double.MAX_VALUE;
+        for (int j = 0; j < this.dimension; j++) {
+            if (i == j) {
+                continue;
+            }
+            double d = distance(i, j);
+            if (d < row[1]) {
+                row[2] = row[0];
+                row[3] = row[1];
+                row[0] = j;
+                row[1] = d;
+            } else if (d < row[3]) {
+                row[2] = j;
+                row[3] = d;
+            }
+        }
+    }//end of lowerBoundRow()
     
 }
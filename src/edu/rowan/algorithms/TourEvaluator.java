@@ -0,0 +1,229 @@
+package edu.rowan.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class computes the cost of many tours of the same Tour object, as
+ * needed by population-based and sampling searches. The coordinates are
+ * copied into primitive arrays once; a tour is then scored from them
+ * directly, with no matrix, boxing or formatting per edge.
+ *
+ * The edge lengths are computed by a scalar loop. With the system property
+ * 'tsp.vector=true' they are computed with the JDK Vector API instead, when
+ * it is available (VectorTourEvaluator, in the optional src-vector folder,
+ * compiled and run with '--add-modules jdk.incubator.vector'). The vector
+ * kernel is no faster on the benchmark instances and allocates until it is
+ * compiled, which short runs never reach, so it is not the default.
+ */
+public class TourEvaluator {
+
+    /**
+     * Edges per task below which a parallel evaluation is not worth
+     * splitting.
+     */
+    static final int PARALLEL_GRAIN = 1 << 16;
+
+    /**
+     * Computes the cost of one tour.
+     */
+    interface Kernel {
+
+        /**
+         * @param x x-coordinates of the cities.
+         * @param y y-coordinates of the cities.
+         * @param tour The tour, numbered from '0'.
+         * @param integer True for distances rounded as TSPLIB EUC_2D.
+         * @return The cost of the closed tour.
+         */
+        double cost(double[] x, double[] y, int[] tour, boolean integer);
+    }
+
+    /** The kernel selected by 'tsp.vector'. */
+    private static final Kernel KERNEL = loadKernel();
+
+    private final double[] x;
+    private final double[] y;
+    private final boolean integer;
+    private final Kernel kernel;
+
+    /** The distances, for tours without coordinates; otherwise null. */
+    private final double[][] matrix;
+
+    /**
+     * Constructor
+     * @param tour The Tour object the tours are made of.
+     */
+    public TourEvaluator(Tour tour) {
+        this(tour, KERNEL);
+    }//end of constructor
+
+    TourEvaluator(Tour tour, Kernel kernel) {
+        int n = tour.getDimension();
+        this.x = Arrays.copyOf(tour.getXCoordinates(), n);
+        this.y = Arrays.copyOf(tour.getYCoordinates(), n);
+        this.integer = tour.isIntegerDistances();
+        this.kernel = kernel;
+        this.matrix = tour.hasCoordinates() ? null : tour.getAdjacencyMatrix();
+    }//end of constructor
+
+    /**
+     * This function returns the cost of a tour.
+     * @param tour The tour, numbered from '0'.
+     * @return The cost of the closed tour.
+     */
+    public double evaluate(int[] tour) {
+        if (matrix != null) {
+            return matrixCost(tour);
+        }
+        return kernel.cost(x, y, tour, integer);
+    }//end of evaluate()
+
+    /**
+     * This function computes the cost of every tour of a batch.
+     * @param tours The tours, numbered from '0'.
+     * @param costs Receives the cost of tours[i] in costs[i].
+     */
+    public void evaluate(int[][] tours, double[] costs) {
+        evaluate(tours, costs, 0, tours.length);
+    }//end of evaluate()
+
+    /**
+     * This function computes the cost of every tour of a batch, splitting
+     * it among the threads of the common fork/join pool.
+     * @param tours The tours, numbered from '0'.
+     * @param costs Receives the cost of tours[i] in costs[i].
+     */
+    public void evaluateParallel(int[][] tours, double[] costs)
+            throws InterruptedException {
+        evaluateParallel(tours, costs, ForkJoinPool.commonPool(),
+                ForkJoinPool.getCommonPoolParallelism());
+    }//end of evaluateParallel()
+
+    /**
+     * This function computes the cost of every tour of a batch, splitting
+     * it among the threads of a pool. Small batches are evaluated on the
+     * calling thread.
+     * @param tours The tours, numbered from '0'.
+     * @param costs Receives the cost of tours[i] in costs[i].
+     * @param pool The threads to use.
+     * @param threads Number of threads of the pool.
+     */
+    public void evaluateParallel(final int[][] tours, final double[] costs,
+            ExecutorService pool, int threads) throws InterruptedException {
+        long edges = (long) tours.length * x.length;
+        int tasks = (int) Math.min(Math.max(1, threads),
+                Math.min(tours.length, edges / PARALLEL_GRAIN));
+        if (tasks <= 1) {
+            evaluate(tours, costs);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<Future<?>>(tasks);
+        for (int t = 0; t < tasks; t++) {
+            final int from = (int) ((long) tours.length * t / tasks);
+            final int to = (int) ((long) tours.length * (t + 1) / tasks);
+            futures.add(pool.submit(new Callable<Void>() {
+                public Void call() {
+                    evaluate(tours, costs, from, to);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }//end of evaluateParallel()
+
+    private void evaluate(int[][] tours, double[] costs, int from, int to) {
+        for (int i = from; i < to; i++) {
+            costs[i] = evaluate(tours[i]);
+        }
+    }//end of evaluate()
+
+    /**
+     * This function reads the cost of a tour from the adjacency matrix, in
+     * the direction of the tour.
+     */
+    private double matrixCost(int[] tour) {
+        int n = tour.length;
+        if (n < 2) {
+            return 0;
+        }
+        double total = 0;
+        int from = tour[n - 1];
+        for (int i = 0; i < n; i++) {
+            total += matrix[from][tour[i]];
+            from = tour[i];
+        }
+        return total;
+    }//end of matrixCost()
+
+    /**
+     * This function tells which kernel is in use.
+     * @return True, if the tours are scored with the Vector API.
+     */
+    public boolean isVectorized() {
+        return !(kernel instanceof ScalarKernel);
+    }//end of isVectorized()
+
+    /**
+     * This function loads the Vector API kernel, if 'tsp.vector' is true
+     * and this JVM has the jdk.incubator.vector module; otherwise it
+     * returns the scalar one.
+     */
+    private static Kernel loadKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("tsp.vector", "false"))) {
+            return new ScalarKernel();
+        }
+        try {
+            Class<?> type = Class.forName(
+                    "edu.rowan.algorithms.VectorTourEvaluator");
+            return (Kernel) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return new ScalarKernel();
+        } catch (LinkageError e) {
+            // Compiled, but the module is not in this JVM.
+            return new ScalarKernel();
+        }
+    }//end of loadKernel()
+
+    /**
+     * Scalar kernel: one edge at a time.
+     */
+    static final class ScalarKernel implements Kernel {
+
+        public double cost(double[] x, double[] y, int[] tour,
+                boolean integer) {
+            int n = tour.length;
+            if (n < 2) {
+                return 0;
+            }
+            double total = 0;
+            int from = tour[n - 1];
+            for (int i = 0; i < n; i++) {
+                int to = tour[i];
+                double dx = x[from] - x[to];
+                double dy = y[from] - y[to];
+                double d = Math.sqrt(dx * dx + dy * dy);
+                total += integer ? (int) (d + 0.5) : d;
+                from = to;
+            }
+            return total;
+        }
+    }//end of class ScalarKernel
+}//end of class
@@ -0,0 +1,173 @@
+package edu.rowan.algorithms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * This class reads tours written in the TSPLIB .tour format, such as the
+ * optimal tours (.opt.tour) that ship with some of the .tsp inputs, or the
+ * ones written by TourFileWriter. The file is read through a fixed size
+ * buffer and the TOUR_SECTION is decoded byte by byte, so no String is
+ * created per node.
+ */
+public class TourFileReader {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer =
+            ByteBuffer.allocateDirect(TourFileWriter.BUFFER_SIZE);
+    private final String source;
+
+    private TourFileReader(ReadableByteChannel channel, String source) {
+        this.channel = channel;
+        this.source = source;
+        buffer.flip();
+    }
+
+    /**
+     * This function reads the TOUR_SECTION of a .tour file.
+     * @param filename The .tour file to read.
+     * @return The locations/nodes in visiting order, numbered from '1'.
+     * @throws IOException If the file can not be read or is malformed.
+     */
+    public static int[] read(String filename) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filename));
+        try {
+            return read(channel, filename);
+        } finally {
+            channel.close();
+        }
+    }//end of read()
+
+    /**
+     * This function reads the TOUR_SECTION of a tour in the .tour format.
+     * The channel is not closed.
+     * @param channel Where to read the tour from.
+     * @param source Name of the source, for the error messages.
+     * @return The locations/nodes in visiting order, numbered from '1'.
+     * @throws IOException If the tour can not be read or is malformed.
+     */
+    public static int[] read(ReadableByteChannel channel, String source)
+            throws IOException {
+        return new TourFileReader(channel, source).read();
+    }//end of read()
+
+    private int[] read() throws IOException {
+        int dimension = -1;
+        int[] cities = null;
+        int count = 0;
+
+        String line;
+        while ((line = readLine()) != null) {
+            line = line.trim();
+            if (line.startsWith("DIMENSION")) {
+                dimension = Integer.parseInt(line.split(":")[1].trim());
+            } else if (line.startsWith("TOUR_SECTION")) {
+                // Some .tour files omit the DIMENSION entry; in that case
+                // the array grows as the nodes are read.
+                cities = new int[dimension >= 0 ? dimension : 64];
+                int location;
+                while ((location = readLocation()) != -1) {
+                    if (count == cities.length) {
+                        if (dimension >= 0) {
+                            throw new IOException(source + ": more than "
+                                    + dimension + " nodes.");
+                        }
+                        cities = Arrays.copyOf(cities, 2 * count);
+                    }
+                    cities[count++] = location;
+                }
+                break;
+            } else if (line.startsWith("EOF")) {
+                break;
+            }
+        }
+
+        if (cities == null) {
+            throw new IOException(source + ": TOUR_SECTION missing.");
+        }
+        if (dimension < 0) {
+            return Arrays.copyOf(cities, count);
+        }
+        if (count != dimension) {
+            throw new IOException(source + ": expected " + dimension
+                    + " nodes, found " + count + ".");
+        }
+        return cities;
+    }//end of read()
+
+    /**
+     * This function decodes the next number of the TOUR_SECTION.
+     * @return The location, or -1 at the end of the section (the -1
+     *         terminator, EOF or the end of the file).
+     */
+    private int readLocation() throws IOException {
+        int c = next();
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            c = next();
+        }
+        if (c < 0 || c == 'E') {
+            return -1;
+        }
+        boolean negative = c == '-';
+        if (negative) {
+            c = next();
+        }
+        if (c < '0' || c > '9') {
+            throw new IOException(source + ": bad node in TOUR_SECTION.");
+        }
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            value = 10 * value + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException(source + ": node out of range.");
+            }
+            c = next();
+        }
+        if (negative) {
+            if (value != 1) {
+                throw new IOException(source + ": bad node -" + value + ".");
+            }
+            return -1;
+        }
+        return (int) value;
+    }//end of readLocation()
+
+    /**
+     * This function reads a header line.
+     * @return The line, or null at the end of the file.
+     */
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c = next();
+        if (c < 0) {
+            return null;
+        }
+        while (c >= 0 && c != '\n') {
+            line.append((char) c);
+            c = next();
+        }
+        return line.toString();
+    }//end of readLine()
+
+    /**
+     * @return The next byte, or -1 at the end of the file.
+     */
+    private int next() throws IOException {
+        if (!buffer.hasRemaining()) {
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            if (read < 0) {
+                return -1;
+            }
+        }
+        return buffer.get() & 0xff;
+    }//end of next()
+}//end of class
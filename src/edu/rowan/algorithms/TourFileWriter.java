@@ -0,0 +1,156 @@
+package edu.rowan.algorithms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * This class writes tours in the TSPLIB .tour format. The numbers are
+ * encoded as ASCII straight into a fixed size buffer that is drained to a
+ * channel whenever it fills up, so writing a tour takes time linear in its
+ * length and a constant amount of memory, whatever its size (unlike
+ * Tour.printTour(), which builds the whole text in memory).
+ */
+public final class TourFileWriter {
+
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final byte[] digits = new byte[11];
+
+    private TourFileWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }//end of constructor
+
+    /**
+     * This function writes a .tour file.
+     * @param filename The .tour file; it is replaced if it exists.
+     * @param name The NAME entry.
+     * @param tour The tour, numbered from '1' as returned by the solvers.
+     */
+    public static void write(String filename, String name, List<Integer> tour)
+            throws IOException {
+        FileChannel channel = open(filename);
+        try {
+            write(channel, name, tour);
+        } finally {
+            channel.close();
+        }
+    }//end of write()
+
+    /**
+     * This function writes a .tour file from a primitive tour.
+     * @param filename The .tour file; it is replaced if it exists.
+     * @param name The NAME entry.
+     * @param tour The tour, numbered from '0'.
+     */
+    public static void write(String filename, String name, TourSequence tour)
+            throws IOException {
+        FileChannel channel = open(filename);
+        try {
+            write(channel, name, tour);
+        } finally {
+            channel.close();
+        }
+    }//end of write()
+
+    /**
+     * This function writes a tour in the .tour format to a channel. The
+     * channel is not closed.
+     * @param channel Where to write the tour.
+     * @param name The NAME entry.
+     * @param tour The tour, numbered from '1' as returned by the solvers.
+     */
+    public static void write(WritableByteChannel channel, String name,
+            List<Integer> tour) throws IOException {
+        TourFileWriter writer = new TourFileWriter(channel);
+        int n = tour.size();
+        writer.header(name, n);
+        for (int i = 0; i < n; i++) {
+            writer.location(tour.get(i));
+        }
+        writer.footer();
+    }//end of write()
+
+    /**
+     * This function writes a primitive tour in the .tour format to a
+     * channel. The channel is not closed.
+     * @param channel Where to write the tour.
+     * @param name The NAME entry.
+     * @param tour The tour, numbered from '0'.
+     */
+    public static void write(WritableByteChannel channel, String name,
+            TourSequence tour) throws IOException {
+        TourFileWriter writer = new TourFileWriter(channel);
+        int n = tour.size();
+        writer.header(name, n);
+        for (int i = 0; i < n; i++) {
+            writer.location(tour.city(i) + 1);
+        }
+        writer.footer();
+    }//end of write()
+
+    private static FileChannel open(String filename) throws IOException {
+        return FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }//end of open()
+
+    private void header(String name, int dimension) throws IOException {
+        text("NAME: " + name + "\nTYPE: TOUR\nDIMENSION: " + dimension
+                + "\nTOUR_SECTION\n");
+    }//end of header()
+
+    private void footer() throws IOException {
+        text("-1\nEOF\n");
+        drain();
+    }//end of footer()
+
+    private void text(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        int i = 0;
+        while (i < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int count = Math.min(buffer.remaining(), bytes.length - i);
+            buffer.put(bytes, i, count);
+            i += count;
+        }
+    }//end of text()
+
+    /**
+     * This function encodes a location followed by a new line.
+     */
+    private void location(int location) throws IOException {
+        if (buffer.remaining() < digits.length + 2) {
+            drain();
+        }
+        if (location < 0) {
+            buffer.put((byte) '-');
+            location = -location;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + location % 10);
+            location /= 10;
+        } while (location > 0);
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+        buffer.put((byte) '\n');
+    }//end of location()
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }//end of drain()
+}//end of class
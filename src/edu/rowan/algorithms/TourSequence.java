@@ -0,0 +1,69 @@
+package edu.rowan.algorithms;
+
+/**
+ * This interface describes a complete tour (a cyclic ordering of all the
+ * cities of a Tour object). Cities are identified by their zero based index
+ * in the adjacency matrix, i.e. city 'k' in the .tsp file is index 'k - 1'.
+ */
+public interface TourSequence {
+
+    /**
+     * This function returns the number of cities in the tour.
+     * @return number of cities in the tour.
+     */
+    int size();
+
+    /**
+     * This function returns the city visited at the specified position.
+     * @param position Position in the tour, from 0 to size() - 1.
+     * @return The zero based index of the city at that position.
+     */
+    int city(int position);
+
+    /**
+     * This function returns the city visited right after the specified one.
+     * @param city Zero based index of a city.
+     * @return The successor of the city in the tour.
+     */
+    int next(int city);
+
+    /**
+     * This function returns the city visited right before the specified one.
+     * @param city Zero based index of a city.
+     * @return The predecessor of the city in the tour.
+     */
+    int prev(int city);
+
+    /**
+     * This function tests if, travelling forward from city 'a', city 'b' is
+     * reached no later than city 'c'.
+     * @param a Starting city.
+     * @param b City being tested.
+     * @param c Ending city.
+     * @return True, if 'b' lies on the forward path from 'a' to 'c'.
+     */
+    boolean between(int a, int b, int c);
+
+    /**
+     * This function reverses the path that starts at city 'from' and ends at
+     * city 'to' (travelling forward).
+     * @param from First city of the path to be reversed.
+     * @param to Last city of the path to be reversed.
+     */
+    void reverse(int from, int to);
+
+    /**
+     * This function returns the total cost of the tour, including the edge
+     * from the last city back to the first one.
+     * @return The cost of the tour.
+     */
+    double cost();
+
+    /**
+     * This function copies the tour, starting at position 0, into the
+     * specified array.
+     * @param dest Array of at least size() elements.
+     * @return The array argument.
+     */
+    int[] toArray(int[] dest);
+}
@@ -0,0 +1,70 @@
+package edu.rowan.algorithms;
+
+/**
+ * This class is the single entry point used by the solvers to report what
+ * they are doing. The trace level defaults to SUMMARY, so only the final
+ * results are printed. Callers building expensive debug messages should test
+ * isDebug() first, so nothing is formatted when debugging is off.
+ */
+public final class Trace {
+
+    private static final int CAPACITY = 8192;
+
+    private static volatile TraceLevel level = TraceLevel.SUMMARY;
+    private static final TraceSink sink = new TraceSink(System.out, CAPACITY);
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                sink.flush();
+            }
+        }, "trace-flush"));
+    }
+
+    private Trace() {
+    }
+
+    public static void setLevel(TraceLevel newLevel) {
+        level = newLevel;
+    }
+
+    public static TraceLevel getLevel() {
+        return level;
+    }
+
+    public static boolean isDebug() {
+        return level == TraceLevel.DEBUG;
+    }
+
+    public static boolean isSummary() {
+        return level != TraceLevel.OFF;
+    }
+
+    /**
+     * This function reports a detail of the search. It never blocks; the
+     * message may be dropped if the trace buffer is full.
+     * @param message The message to print.
+     */
+    public static void debug(String message) {
+        if (level == TraceLevel.DEBUG) {
+            sink.offer(message);
+        }
+    }//end of debug()
+
+    /**
+     * This function reports a final result. The message is never dropped.
+     * @param message The message to print.
+     */
+    public static void summary(String message) {
+        if (level != TraceLevel.OFF) {
+            sink.put(message);
+        }
+    }//end of summary()
+
+    /**
+     * This function waits until all pending messages have been printed.
+     */
+    public static void flush() {
+        sink.flush();
+    }//end of flush()
+}//end of class
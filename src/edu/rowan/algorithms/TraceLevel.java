@@ -0,0 +1,23 @@
+package edu.rowan.algorithms;
+
+import java.util.Locale;
+
+/**
+ * This enumeration lists how much the solvers report while they run.
+ * OFF prints nothing, SUMMARY prints only the final results and DEBUG
+ * prints every node, permutation and edge visited by the solvers.
+ */
+public enum TraceLevel {
+    OFF,
+    SUMMARY,
+    DEBUG;
+
+    /**
+     * This function returns the trace level with the specified name.
+     * @param name The level name, not case sensitive.
+     * @return The matching trace level.
+     */
+    public static TraceLevel fromName(String name) {
+        return TraceLevel.valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}//end of enum
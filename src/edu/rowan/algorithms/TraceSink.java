@@ -0,0 +1,117 @@
+package edu.rowan.algorithms;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class writes trace messages asynchronously. Messages are placed in a
+ * bounded ring buffer and a single background thread prints them, so the
+ * search threads never wait on the console. When the buffer is full debug
+ * messages are dropped (and counted) instead of blocking the caller.
+ */
+final class TraceSink {
+
+    private static final int BATCH_SIZE = 256;
+
+    private final ArrayBlockingQueue<Object> ring;
+    private final PrintStream out;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+
+    /**
+     * Constructor
+     * @param out Stream the messages are printed to.
+     * @param capacity Maximum number of messages waiting to be printed.
+     */
+    TraceSink(PrintStream out, int capacity) {
+        this.out = out;
+        this.ring = new ArrayBlockingQueue<Object>(capacity);
+        this.writer = new Thread(new Runnable() {
+            public void run() {
+                drain();
+            }
+        }, "trace-sink");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }//end of constructor
+
+    /**
+     * This function queues a message without ever blocking. The message is
+     * dropped if the ring buffer is full.
+     * @param message The message to print.
+     */
+    void offer(String message) {
+        if (!ring.offer(message)) {
+            dropped.incrementAndGet();
+        }
+    }//end of offer()
+
+    /**
+     * This function queues a message, waiting for room if the ring buffer is
+     * full. Used for messages that must not be lost.
+     * @param message The message to print.
+     */
+    void put(String message) {
+        try {
+            ring.put(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }//end of put()
+
+    /**
+     * This function waits until every message queued so far is printed.
+     */
+    void flush() {
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            ring.put(done);
+            done.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }//end of flush()
+
+    /**
+     * This function returns the number of messages dropped so far.
+     * @return number of dropped messages.
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    private void drain() {
+        List<Object> batch = new ArrayList<Object>(BATCH_SIZE);
+        while (true) {
+            try {
+                batch.add(ring.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            ring.drainTo(batch, BATCH_SIZE - 1);
+
+            for (Object item : batch) {
+                if (item instanceof CountDownLatch) {
+                    long lost = dropped.getAndSet(0);
+                    if (lost > 0) {
+                        out.println("[trace] " + lost
+                                + " debug message(s) dropped");
+                    }
+                    out.flush();
+                    ((CountDownLatch) item).countDown();
+                } else {
+                    out.println(item);
+                }
+            }
+            batch.clear();
+            if (ring.isEmpty()) {
+                out.flush();
+            }
+        }
+    }//end of drain()
+}//end of class
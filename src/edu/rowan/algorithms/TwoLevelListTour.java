@@ -0,0 +1,329 @@
+package edu.rowan.algorithms;
+
+/**
+ * This class holds a complete tour as a two-level doubly-linked list. The
+ * cities are grouped into roughly sqrt(n) segments; each segment keeps its
+ * cities in an array plus a 'reversed' bit, and the segments are linked in
+ * a circular doubly-linked list. Reversing a path only splits the two end
+ * segments and flips the segments in between, so it costs O(sqrt(n))
+ * instead of O(n). This makes it the representation of choice for local
+ * search on large tours.
+ */
+public class TwoLevelListTour implements TourSequence {
+
+    private static final int MIN_GROUP_SIZE = 8;
+
+    private static final class Segment {
+        int[] cities;
+        int length;
+        boolean reversed;
+        int rank;
+        Segment next;
+        Segment prev;
+    }
+
+    private final Tour tour;
+    private final int dimension;
+    private final int groupSize;
+
+    private final Segment[] segmentOf;
+    private final int[] index;
+    private Segment[] scratch;
+    private int[] orderBuffer;
+
+    private Segment head;
+    private int segmentCount;
+
+    private double cost;
+    private boolean costValid;
+
+    /**
+     * Constructor
+     * @param tour The Tour object holding the distances between cities.
+     * @param cities Zero based city indexes in visiting order.
+     */
+    public TwoLevelListTour(Tour tour, int[] cities) {
+        this.tour = tour;
+        this.dimension = cities.length;
+        this.groupSize = Math.max(MIN_GROUP_SIZE,
+                (int) Math.ceil(Math.sqrt(dimension)));
+        this.segmentOf = new Segment[dimension];
+        this.index = new int[dimension];
+        this.scratch = new Segment[maxSegments() + 2];
+        this.orderBuffer = new int[dimension];
+        build(cities);
+    }//end of constructor
+
+    /**
+     * This function (re)creates the segments from a plain ordering.
+     * @param cities Zero based city indexes in visiting order.
+     */
+    private void build(int[] cities) {
+        head = null;
+        segmentCount = 0;
+        Segment last = null;
+
+        for (int start = 0; start < dimension; start += groupSize) {
+            Segment s = new Segment();
+            s.length = Math.min(groupSize, dimension - start);
+            s.cities = new int[s.length];
+            System.arraycopy(cities, start, s.cities, 0, s.length);
+            for (int i = 0; i < s.length; i++) {
+                segmentOf[s.cities[i]] = s;
+                index[s.cities[i]] = i;
+            }
+            if (last == null) {
+                head = s;
+            } else {
+                last.next = s;
+                s.prev = last;
+            }
+            last = s;
+            segmentCount++;
+        }
+        if (head != null) {
+            last.next = head;
+            head.prev = last;
+        }
+        renumber();
+        costValid = false;
+    }//end of build()
+
+    private int maxSegments() {
+        return 2 * (dimension / groupSize + 1);
+    }
+
+    private static int logical(Segment s, int raw) {
+        return s.reversed ? s.length - 1 - raw : raw;
+    }
+
+    private static int at(Segment s, int logicalPos) {
+        return s.cities[s.reversed ? s.length - 1 - logicalPos : logicalPos];
+    }
+
+    private long key(int city) {
+        Segment s = segmentOf[city];
+        return ((long) s.rank << 32) | logical(s, index[city]);
+    }
+
+    /**
+     * This function renumbers the segments in traversal order starting from
+     * the head segment.
+     */
+    private void renumber() {
+        if (head == null) {
+            return;
+        }
+        Segment s = head;
+        int rank = 0;
+        do {
+            s.rank = rank++;
+            s = s.next;
+        } while (s != head);
+    }//end of renumber()
+
+    @Override
+    public int size() {
+        return dimension;
+    }
+
+    @Override
+    public int city(int position) {
+        Segment s = head;
+        while (position >= s.length) {
+            position -= s.length;
+            s = s.next;
+        }
+        return at(s, position);
+    }//end of city()
+
+    @Override
+    public int next(int city) {
+        Segment s = segmentOf[city];
+        int p = logical(s, index[city]);
+        if (p + 1 < s.length) {
+            return at(s, p + 1);
+        }
+        return at(s.next, 0);
+    }//end of next()
+
+    @Override
+    public int prev(int city) {
+        Segment s = segmentOf[city];
+        int p = logical(s, index[city]);
+        if (p > 0) {
+            return at(s, p - 1);
+        }
+        return at(s.prev, s.prev.length - 1);
+    }//end of prev()
+
+    @Override
+    public boolean between(int a, int b, int c) {
+        long ka = key(a);
+        long kb = key(b);
+        long kc = key(c);
+        if (ka <= kc) {
+            return ka <= kb && kb <= kc;
+        }
+        return kb >= ka || kb <= kc;
+    }//end of between()
+
+    /**
+     * This function splits the segment holding the specified city, so that
+     * the city becomes the first one of its segment.
+     * @param city Zero based index of a city.
+     */
+    private void splitBefore(int city) {
+        Segment s = segmentOf[city];
+        int p = logical(s, index[city]);
+        if (p == 0) {
+            return;
+        }
+
+        int[] left = new int[p];
+        int[] right = new int[s.length - p];
+        for (int i = 0; i < s.length; i++) {
+            if (i < p) {
+                left[i] = at(s, i);
+            } else {
+                right[i - p] = at(s, i);
+            }
+        }
+
+        Segment t = new Segment();
+        t.cities = right;
+        t.length = right.length;
+        s.cities = left;
+        s.length = left.length;
+        s.reversed = false;
+
+        t.next = s.next;
+        t.prev = s;
+        s.next.prev = t;
+        s.next = t;
+
+        for (int i = 0; i < left.length; i++) {
+            index[left[i]] = i;
+        }
+        for (int i = 0; i < right.length; i++) {
+            segmentOf[right[i]] = t;
+            index[right[i]] = i;
+        }
+        segmentCount++;
+    }//end of splitBefore()
+
+    /**
+     * This function reverses the path from 'from' to 'to' by splitting the
+     * segments at both ends and flipping the whole segments in between.
+     * @param from First city of the path to be reversed.
+     * @param to Last city of the path to be reversed.
+     */
+    @Override
+    public void reverse(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        boolean whole = (next(to) == from);
+
+        if (!whole && costValid) {
+            int a = prev(from);
+            int b = next(to);
+            cost += tour.distance(a, to) + tour.distance(from, b)
+                    - tour.distance(a, from) - tour.distance(to, b);
+        }
+
+        splitBefore(from);
+        splitBefore(next(to));
+
+        if (scratch.length < segmentCount) {
+            scratch = new Segment[segmentCount * 2];
+        }
+        int k = 0;
+        Segment s = segmentOf[from];
+        Segment end = segmentOf[to];
+        while (true) {
+            scratch[k++] = s;
+            if (s == end) {
+                break;
+            }
+            s = s.next;
+        }
+
+        if (whole) {
+            // Flip the orientation of the whole cycle.
+            for (int i = 0; i < k; i++) {
+                s = scratch[i];
+                Segment tmp = s.next;
+                s.next = s.prev;
+                s.prev = tmp;
+                s.reversed = !s.reversed;
+            }
+        } else {
+            Segment before = scratch[0].prev;
+            Segment after = scratch[k - 1].next;
+            for (int i = 0; i < k; i++) {
+                s = scratch[i];
+                s.reversed = !s.reversed;
+                s.next = (i == 0) ? after : scratch[i - 1];
+                s.prev = (i == k - 1) ? before : scratch[i + 1];
+            }
+            before.next = scratch[k - 1];
+            after.prev = scratch[0];
+        }
+        for (int i = 0; i < k; i++) {
+            scratch[i] = null;
+        }
+
+        if (segmentCount > maxSegments()) {
+            // Rebalancing does not change the cycle, keep the cached cost.
+            boolean valid = costValid;
+            build(toArray(orderBuffer));
+            costValid = valid;
+        } else {
+            renumber();
+        }
+    }//end of reverse()
+
+    @Override
+    public double cost() {
+        if (!costValid) {
+            double total = 0.0;
+            int first = at(head, 0);
+            int city = first;
+            do {
+                int next = next(city);
+                total += tour.distance(city, next);
+                city = next;
+            } while (city != first);
+            cost = total;
+            costValid = true;
+        }
+        return cost;
+    }//end of cost()
+
+    @Override
+    public int[] toArray(int[] dest) {
+        int k = 0;
+        Segment s = head;
+        do {
+            for (int i = 0; i < s.length; i++) {
+                dest[k++] = at(s, i);
+            }
+            s = s.next;
+        } while (s != head);
+        return dest;
+    }//end of toArray()
+
+    @Override
+    public String toString() {
+        int[] cities = toArray(new int[dimension]);
+        StringBuilder line = new StringBuilder("[");
+        for (int i = 0; i < cities.length; i++) {
+            if (i > 0) {
+                line.append(", ");
+            }
+            line.append(cities[i] + 1);
+        }
+        return line.append("]").toString();
+    }//end of toString()
+}//end of class
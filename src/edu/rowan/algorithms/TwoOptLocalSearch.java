@@ -0,0 +1,168 @@
+package edu.rowan.algorithms;
+
+/**
+ * This class improves a complete tour with 2-opt moves: two edges (a, b)
+ * and (c, d) are replaced by (a, c) and (b, d) whenever that shortens the
+ * tour. Only the 'k' nearest neighbors of a city are tried as 'c', and a
+ * queue of "dirty" cities (don't-look bits) limits the work to the parts of
+ * the tour that changed, so a pass over a large tour costs about O(n * k)
+ * distance evaluations plus the cost of the reversals.
+ */
+public class TwoOptLocalSearch {
+
+    /** Smallest gain considered an improvement (avoids cycling on ties). */
+    private static final double EPSILON = 1e-9;
+
+    private final Tour tour;
+    private final NeighborList neighbors;
+
+    private final int[] queue;
+    private final boolean[] queued;
+    private int queueHead;
+    private int queueSize;
+
+    private long moves;
+
+    /**
+     * Constructor
+     * @param tour The Tour object holding the distances between cities.
+     * @param neighbors The candidate neighbors of every city.
+     */
+    public TwoOptLocalSearch(Tour tour, NeighborList neighbors) {
+        this.tour = tour;
+        this.neighbors = neighbors;
+        this.queue = new int[tour.getDimension()];
+        this.queued = new boolean[tour.getDimension()];
+    }//end of constructor
+
+    /**
+     * This function applies improving moves anywhere in the tour until
+     * none is left (a 2-opt local optimum), or the thread is interrupted.
+     * @param sequence The tour to improve, in place.
+     * @return The number of moves applied.
+     */
+    public long optimize(TourSequence sequence) {
+        for (int city = 0; city < sequence.size(); city++) {
+            push(city);
+        }
+        return run(sequence);
+    }//end of optimize()
+
+    /**
+     * This function applies improving moves around the specified cities
+     * only, e.g. where a tour was just modified; the search spreads to the
+     * cities touched by every move applied.
+     * @param sequence The tour to improve, in place.
+     * @param cities Zero based indexes of the cities to start from.
+     * @return The number of moves applied.
+     */
+    public long optimize(TourSequence sequence, int[] cities) {
+        for (int city : cities) {
+            push(city);
+        }
+        return run(sequence);
+    }//end of optimize()
+
+    private long run(TourSequence sequence) {
+        long before = moves;
+        int polls = 0;
+        while (queueSize > 0) {
+            if ((++polls & 1023) == 0 && Thread.currentThread().isInterrupted()) {
+                // Cancelled; the tour is valid, just not fully improved.
+                break;
+            }
+            int a = pop();
+            if (improveCity(sequence, a)) {
+                push(a);
+            }
+        }
+        while (queueSize > 0) {
+            pop();
+        }
+        return moves - before;
+    }//end of run()
+
+    /**
+     * This function looks for an improving move that removes one of the
+     * two tour edges of city 'a', and applies the first one found.
+     * @return True, if the tour was changed.
+     */
+    private boolean improveCity(TourSequence sequence, int a) {
+        int k = neighbors.getK();
+
+        // Edge (a, succ(a)): new edges (a, c) and (succ(a), succ(c)).
+        int b = sequence.next(a);
+        double ab = tour.distance(a, b);
+        for (int r = 0; r < k; r++) {
+            int c = neighbors.get(a, r);
+            double ac = tour.distance(a, c);
+            if (ac >= ab) {
+                break;
+            }
+            int d = sequence.next(c);
+            if (c == b || d == a) {
+                continue;
+            }
+            double gain = ab + tour.distance(c, d) - ac - tour.distance(b, d);
+            if (gain > EPSILON) {
+                sequence.reverse(b, c);
+                touched(a, b, c, d);
+                return true;
+            }
+        }
+
+        // Edge (pred(a), a): new edges (c, a) and (pred(c), pred(a)).
+        b = sequence.prev(a);
+        ab = tour.distance(b, a);
+        for (int r = 0; r < k; r++) {
+            int c = neighbors.get(a, r);
+            double ac = tour.distance(a, c);
+            if (ac >= ab) {
+                break;
+            }
+            int d = sequence.prev(c);
+            if (c == b || d == a) {
+                continue;
+            }
+            double gain = ab + tour.distance(d, c) - ac - tour.distance(b, d);
+            if (gain > EPSILON) {
+                sequence.reverse(a, d);
+                touched(a, b, c, d);
+                return true;
+            }
+        }
+        return false;
+    }//end of improveCity()
+
+    private void touched(int a, int b, int c, int d) {
+        moves++;
+        push(a);
+        push(b);
+        push(c);
+        push(d);
+    }//end of touched()
+
+    private void push(int city) {
+        if (!queued[city]) {
+            queued[city] = true;
+            queue[(queueHead + queueSize) % queue.length] = city;
+            queueSize++;
+        }
+    }//end of push()
+
+    private int pop() {
+        int city = queue[queueHead];
+        queueHead = (queueHead + 1) % queue.length;
+        queueSize--;
+        queued[city] = false;
+        return city;
+    }//end of pop()
+
+    /**
+     * This function returns the number of moves applied so far.
+     * @return The number of improving moves.
+     */
+    public long getMoves() {
+        return moves;
+    }//end of getMoves()
+}//end of class